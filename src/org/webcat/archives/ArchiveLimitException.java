@@ -0,0 +1,52 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.archives;
+
+import java.io.IOException;
+
+//-------------------------------------------------------------------------
+/**
+ * Thrown when unpacking an archive stops because the archive exceeds one of
+ * the {@link UnpackLimits}, or contains an entry whose path would be
+ * written outside of the destination directory.
+ *
+ * @author  Stephen Edwards
+ */
+public class ArchiveLimitException
+    extends IOException
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Creates a new exception.
+     *
+     * @param message A description of the limit that was exceeded.
+     */
+    public ArchiveLimitException(String message)
+    {
+        super(message);
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private static final long serialVersionUID = 1L;
+}
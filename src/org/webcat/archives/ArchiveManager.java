@@ -22,6 +22,7 @@
 package org.webcat.archives;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -303,6 +304,101 @@ public class ArchiveManager
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * Opens a single entry of an archive for reading, without unpacking the
+     * rest of the archive.  This requires a handler that implements
+     * {@link IRandomAccessArchiveHandler}, such as the ZIP handler, which
+     * reads only the archive's index and the one entry.
+     * <p>
+     * As with {@link #getContents(File)}, a directory is treated as an
+     * archive of the files beneath it, and a file with no handler as an
+     * archive containing only itself.
+     *
+     * @param archiveFile A File object representing the archive.
+     * @param entryName The name of the entry, as listed by
+     * {@link #getContents(File)}.
+     *
+     * @return A stream of the entry's contents, which the caller must
+     * close, or null if the archive has no such entry.
+     *
+     * @throws IOException if the archive cannot be read, or if its format
+     * does not support reading single entries.
+     */
+    public InputStream openEntry(File archiveFile, String entryName)
+        throws IOException
+    {
+        IArchiveHandler handler = findHandler(archiveFile.getName());
+
+        if (handler instanceof IRandomAccessArchiveHandler)
+        {
+            return ((IRandomAccessArchiveHandler) handler).openEntry(
+                archiveFile, entryName);
+        }
+        else if (handler != null)
+        {
+            throw new IOException("Cannot read single entries from "
+                + archiveFile.getName() + ": its format has no index");
+        }
+        else if (archiveFile.isDirectory())
+        {
+            File entry = new File(archiveFile, entryName);
+            if (!entry.isFile() || !entry.getCanonicalPath().startsWith(
+                archiveFile.getCanonicalPath() + File.separator))
+            {
+                return null;
+            }
+            return new FileInputStream(entry);
+        }
+        else if (archiveFile.getName().equals(entryName))
+        {
+            return new FileInputStream(archiveFile);
+        }
+        else
+        {
+            return null;
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Copies a single entry of an archive to a file, without unpacking the
+     * rest of the archive (see {@link #openEntry(File, String)}).
+     *
+     * @param archiveFile A File object representing the archive.
+     * @param entryName The name of the entry, as listed by
+     * {@link #getContents(File)}.
+     * @param destFile The file to write the entry's contents to.
+     *
+     * @return true if the entry was extracted, or false if the archive has
+     * no such entry.
+     *
+     * @throws IOException if the archive cannot be read, or if its format
+     * does not support reading single entries.
+     */
+    public boolean extractEntry(
+        File archiveFile, String entryName, File destFile)
+        throws IOException
+    {
+        InputStream stream = openEntry(archiveFile, entryName);
+        if (stream == null)
+        {
+            return false;
+        }
+
+        try
+        {
+            FileUtilities.copyStreamToFile(stream, destFile);
+        }
+        finally
+        {
+            stream.close();
+        }
+        return true;
+    }
+
+
     // ----------------------------------------------------------
     public IWritableContainer writableContainerForZip(
             ZipOutputStream zipStream)
@@ -0,0 +1,112 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.archives;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.log4j.Logger;
+import er.extensions.foundation.ERXProperties;
+
+//-------------------------------------------------------------------------
+/**
+ * The bounded thread pool shared by {@link ArchiveUnpacker} and
+ * {@link DirectoryZipper}.  It has
+ * <code>Core.archive.unpackThreads</code> threads (one per processor by
+ * default) and a short queue; when the queue is full, the submitting
+ * thread runs the task itself, which keeps any one archive from flooding
+ * the pool.  Tasks must not wait for other tasks in the pool.
+ *
+ * @author  Stephen Edwards
+ */
+final class ArchiveThreads
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    private ArchiveThreads()
+    {
+        // Static methods only
+    }
+
+
+    //~ Methods ...............................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Returns the shared pool.
+     *
+     * @return The pool.
+     */
+    static ThreadPoolExecutor pool()
+    {
+        return pool;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Returns the number of threads in the shared pool.
+     *
+     * @return The thread count.
+     */
+    static int threads()
+    {
+        return pool.getMaximumPoolSize();
+    }
+
+
+    // ----------------------------------------------------------
+    private static ThreadPoolExecutor createPool()
+    {
+        int threads = ERXProperties.intForKeyWithDefault(
+            "Core.archive.unpackThreads",
+            Runtime.getRuntime().availableProcessors());
+        threads = Math.max(1, threads);
+
+        ThreadPoolExecutor result = new ThreadPoolExecutor(
+            threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(threads * 4),
+            new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+                public Thread newThread(Runnable task)
+                {
+                    Thread thread = new Thread(task,
+                        "ArchiveThreads-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            },
+            new ThreadPoolExecutor.CallerRunsPolicy());
+        result.allowCoreThreadTimeOut(true);
+        log.debug("archive pool has " + threads + " threads");
+        return result;
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    static Logger log = Logger.getLogger(ArchiveThreads.class);
+
+    // Created last, since it logs
+    private static final ThreadPoolExecutor pool = createPool();
+}
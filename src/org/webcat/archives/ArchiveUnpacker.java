@@ -0,0 +1,554 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.archives;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+//-------------------------------------------------------------------------
+/**
+ * Unpacks one archive into a destination directory, enforcing
+ * {@link UnpackLimits} as it goes.  Every entry name is normalized and
+ * must stay inside the destination, and the total size, entry count,
+ * per-entry compression ratio, and elapsed time are all checked while
+ * data is being written (not just against the sizes an archive claims),
+ * so unpacking stops with an {@link ArchiveLimitException} as soon as an
+ * archive exceeds a limit.  Files created by an unpack that is stopped are
+ * deleted.  Files that already existed are only ever replaced whole, once
+ * their new content is complete, and are never deleted by a stopped
+ * unpack, so they are left either as they were or with the archive's
+ * version.
+ * <p>
+ * ZIP files on disk are unpacked by {@link #unpackZip(File)}, which reads
+ * the central directory, checks the entry count and declared sizes before
+ * writing anything, creates all directories in one pass, and then
+ * extracts the files in parallel on a shared, bounded pool of
+ * <code>Core.archive.unpackThreads</code> threads (one per processor by
+ * default).  When the pool's queue is full, the calling thread extracts
+ * entries itself.  Streamed formats, such as TAR, are unpacked
+ * sequentially by the archive handlers, which use
+ * {@link #destinationFor(String)} and
+ * {@link #copyEntry(InputStream, File, long, long)} so that the same
+ * limits apply.
+ * </p>
+ *
+ * @author  Stephen Edwards
+ */
+public class ArchiveUnpacker
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Creates an unpacker that uses the configured default limits.
+     *
+     * @param destPath The directory to unpack into, which must exist.
+     */
+    public ArchiveUnpacker(File destPath)
+    {
+        this(destPath, UnpackLimits.defaults());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Creates an unpacker.
+     *
+     * @param destPath The directory to unpack into, which must exist.
+     * @param limits The limits to enforce.
+     */
+    public ArchiveUnpacker(File destPath, UnpackLimits limits)
+    {
+        this.destPath = destPath;
+        this.limits = limits;
+        this.deadline = limits.maxMillis() > 0
+            ? System.currentTimeMillis() + limits.maxMillis()
+            : Long.MAX_VALUE;
+    }
+
+
+    //~ Methods ...............................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Unpacks a ZIP file, extracting its entries in parallel.
+     *
+     * @param archiveFile The ZIP file.
+     *
+     * @throws ArchiveLimitException if the archive exceeds a limit.
+     * @throws IOException if the archive cannot be read or a file cannot be
+     * written.
+     */
+    public void unpackZip(File archiveFile)
+        throws IOException
+    {
+        final ZipFile zipFile = new ZipFile(archiveFile);
+        List<Future<Void>> results = new ArrayList<Future<Void>>();
+
+        try
+        {
+            // First pass: check the central directory and plan the work
+            List<ZipEntry> fileEntries = new ArrayList<ZipEntry>();
+            List<File> fileDestinations = new ArrayList<File>();
+            TreeSet<File> directories = new TreeSet<File>();
+            long declaredBytes = 0;
+
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements())
+            {
+                ZipEntry entry = entries.nextElement();
+                File dest = destinationFor(entry.getName());
+                if (dest == null)
+                {
+                    continue;
+                }
+
+                if (entry.isDirectory())
+                {
+                    directories.add(dest);
+                }
+                else
+                {
+                    if (entry.getSize() > 0)
+                    {
+                        declaredBytes += entry.getSize();
+                        checkBytes(declaredBytes);
+                        checkRatio(entry.getSize(), entry.getCompressedSize());
+                    }
+                    fileEntries.add(entry);
+                    fileDestinations.add(dest);
+                    if (dest.getParentFile() != null)
+                    {
+                        directories.add(dest.getParentFile());
+                    }
+                }
+            }
+
+            // Parents sort before their children, so each mkdirs() call
+            // normally only creates one directory
+            for (File dir : directories)
+            {
+                if (!dir.isDirectory() && !dir.mkdirs())
+                {
+                    throw new IOException("Cannot create directory " + dir);
+                }
+            }
+
+            // Second pass: extract the files in parallel
+            ExecutorService pool = ArchiveThreads.pool();
+            for (int i = 0; i < fileEntries.size(); i++)
+            {
+                final ZipEntry entry = fileEntries.get(i);
+                final File dest = fileDestinations.get(i);
+                results.add(pool.submit(new Callable<Void>() {
+                    public Void call() throws IOException
+                    {
+                        if (!aborted)
+                        {
+                            InputStream in = zipFile.getInputStream(entry);
+                            try
+                            {
+                                copyEntry(in, dest,
+                                    entry.getCompressedSize(),
+                                    entry.getTime());
+                            }
+                            finally
+                            {
+                                in.close();
+                            }
+                        }
+                        return null;
+                    }
+                }));
+                if (aborted)
+                {
+                    break;
+                }
+            }
+
+            awaitAll(results);
+        }
+        catch (IOException e)
+        {
+            abort();
+            awaitQuietly(results);
+            throw e;
+        }
+        finally
+        {
+            zipFile.close();
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Resolves an archive entry name to the file it should be unpacked to,
+     * and counts it against the entry limit.  Backslashes are treated as
+     * separators, and empty and "." segments are dropped.
+     *
+     * @param name The entry name.
+     *
+     * @return The destination, or null if the entry should be skipped
+     * because it is Mac OS X metadata or names the root itself.
+     *
+     * @throws ArchiveLimitException if the archive has too many entries, or
+     * the name is absolute or climbs out of the destination with "..".
+     */
+    public File destinationFor(String name)
+        throws ArchiveLimitException
+    {
+        if (limits.maxEntries() > 0
+            && entryCount.incrementAndGet() > limits.maxEntries())
+        {
+            throw new ArchiveLimitException("Archive has more than "
+                + limits.maxEntries() + " entries");
+        }
+
+        String path = name.replace('\\', '/');
+        if (path.startsWith("/")
+            || (path.length() > 1 && path.charAt(1) == ':'
+                && Character.isLetter(path.charAt(0))))
+        {
+            throw new ArchiveLimitException(
+                "Archive entry has an absolute path: " + name);
+        }
+
+        StringBuilder normalized = new StringBuilder(path.length());
+        for (String segment : path.split("/"))
+        {
+            if (segment.length() == 0 || ".".equals(segment))
+            {
+                continue;
+            }
+            else if ("..".equals(segment))
+            {
+                throw new ArchiveLimitException(
+                    "Archive entry is outside the archive: " + name);
+            }
+            if (normalized.length() > 0)
+            {
+                normalized.append('/');
+            }
+            normalized.append(segment);
+        }
+
+        String result = normalized.toString();
+        if (result.length() == 0
+            || result.equals(".DS_Store")
+            || result.endsWith("/.DS_Store")
+            || result.equals("__MACOSX")
+            || result.startsWith("__MACOSX/"))
+        {
+            return null;
+        }
+
+        return new File(destPath, result);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Wraps the raw (compressed) stream of an archive that is unpacked
+     * sequentially, so that the bytes read from it are counted.  Entries
+     * whose own compressed size is unknown are then checked against the
+     * ratio limit using the totals for the whole archive so far.
+     *
+     * @param stream The compressed archive data.
+     *
+     * @return A stream that reads the same data.
+     */
+    public InputStream countingCompressed(InputStream stream)
+    {
+        return new FilterInputStream(stream) {
+            @Override
+            public int read()
+                throws IOException
+            {
+                int result = super.read();
+                if (result >= 0)
+                {
+                    compressedBytes.incrementAndGet();
+                }
+                return result;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length)
+                throws IOException
+            {
+                int result = super.read(bytes, offset, length);
+                if (result > 0)
+                {
+                    compressedBytes.addAndGet(result);
+                }
+                return result;
+            }
+        };
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Copies one entry's data to a file, counting it against the limits,
+     * and sets the file's modification time.  The file's parent directory
+     * must already exist.  If a limit is exceeded, the partial file is
+     * deleted.  If the file already exists, the data is written to a
+     * temporary file beside it, which replaces it only once complete.
+     *
+     * @param in The entry's uncompressed data.
+     * @param destFile The destination, from {@link #destinationFor(String)}.
+     * @param compressedSize The entry's compressed size, or -1 if unknown
+     * (in which case the archive's totals are checked instead, if the
+     * archive was read through {@link #countingCompressed(InputStream)}).
+     * @param time The entry's modification time, or -1 if unknown.
+     *
+     * @throws ArchiveLimitException if a limit is exceeded.
+     * @throws IOException if the file cannot be written.
+     */
+    public void copyEntry(
+        InputStream in, File destFile, long compressedSize, long time)
+        throws IOException
+    {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long written = 0;
+        boolean replacing = destFile.exists();
+        File target = replacing
+            ? File.createTempFile(
+                ".unpack", ".tmp", destFile.getParentFile())
+            : destFile;
+        // Only files this unpack creates are deleted if it is stopped
+        createdFiles.add(target);
+        OutputStream out = new FileOutputStream(target);
+        boolean complete = false;
+
+        try
+        {
+            int count;
+            while ((count = in.read(buffer)) > 0)
+            {
+                if (aborted)
+                {
+                    throw new ArchiveLimitException("Unpacking was stopped");
+                }
+                written += count;
+                long total = totalBytes.addAndGet(count);
+                checkBytes(total);
+                if (compressedSize >= 0)
+                {
+                    checkRatio(written, compressedSize);
+                }
+                else if (compressedBytes.get() > 0)
+                {
+                    checkRatio(total, compressedBytes.get());
+                }
+                if (System.currentTimeMillis() > deadline)
+                {
+                    throw new ArchiveLimitException("Unpacking took longer "
+                        + "than " + limits.maxMillis() / 1000 + " seconds");
+                }
+                out.write(buffer, 0, count);
+            }
+            complete = true;
+        }
+        finally
+        {
+            out.close();
+            if (!complete)
+            {
+                target.delete();
+            }
+        }
+
+        if (replacing)
+        {
+            Files.move(target.toPath(), destFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (time > 0)
+        {
+            destFile.setLastModified(time);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Stops this unpack: entries not yet started are skipped, entries in
+     * progress stop at their next buffer, and every file it has created so
+     * far is deleted.  Files that existed before the unpack are not
+     * deleted.  Call this when a sequential unpack fails part way through.
+     */
+    public void abort()
+    {
+        aborted = true;
+        File file;
+        while ((file = createdFiles.poll()) != null)
+        {
+            file.delete();
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Returns the number of bytes written so far.
+     *
+     * @return The byte count.
+     */
+    public long bytesWritten()
+    {
+        return totalBytes.get();
+    }
+
+
+    // ----------------------------------------------------------
+    private void checkBytes(long bytes)
+        throws ArchiveLimitException
+    {
+        if (limits.maxBytes() > 0 && bytes > limits.maxBytes())
+        {
+            throw new ArchiveLimitException("Archive expands to more than "
+                + limits.maxBytes() + " bytes");
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private void checkRatio(long size, long compressedSize)
+        throws ArchiveLimitException
+    {
+        if (limits.maxRatio() > 0
+            && size > UnpackLimits.RATIO_THRESHOLD
+            && size / Math.max(1, compressedSize) > limits.maxRatio())
+        {
+            throw new ArchiveLimitException("Archive entry expands more than "
+                + limits.maxRatio() + " times");
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Waits for every extraction task, stopping them all when the first
+     * one fails or the time limit passes.
+     */
+    private void awaitAll(List<Future<Void>> results)
+        throws IOException
+    {
+        for (Future<Void> result : results)
+        {
+            try
+            {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0)
+                {
+                    throw new TimeoutException();
+                }
+                result.get(remaining, TimeUnit.MILLISECONDS);
+            }
+            catch (TimeoutException e)
+            {
+                throw new ArchiveLimitException("Unpacking took longer than "
+                    + limits.maxMillis() / 1000 + " seconds");
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while unpacking");
+            }
+            catch (ExecutionException e)
+            {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException)
+                {
+                    throw (IOException) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Waits for aborted tasks to finish, so that the archive is not closed
+     * while they are still reading it.
+     */
+    private void awaitQuietly(List<Future<Void>> results)
+    {
+        for (Future<Void> result : results)
+        {
+            try
+            {
+                result.get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch (ExecutionException e)
+            {
+                // Already reported by the first failure
+            }
+        }
+
+        // Tasks that were in progress may have finished files after the
+        // first cleanup
+        abort();
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private final File destPath;
+    private final UnpackLimits limits;
+    private final long deadline;
+    private final AtomicInteger entryCount = new AtomicInteger();
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+    private final ConcurrentLinkedQueue<File> createdFiles =
+        new ConcurrentLinkedQueue<File>();
+    private volatile boolean aborted;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+}
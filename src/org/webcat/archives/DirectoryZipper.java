@@ -0,0 +1,358 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.archives;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.apache.log4j.Logger;
+
+//-------------------------------------------------------------------------
+/**
+ * Writes the files beneath a directory to an output stream as a ZIP
+ * archive, for "download folder" actions.  Entries are written as the
+ * directory is walked, so the archive is never held in memory:
+ * <ul>
+ * <li>Files that are already compressed (archives, images, PDFs, and so
+ *   on) are stored as-is, which costs no CPU time and makes them no
+ *   smaller anyway.</li>
+ * <li>Other files up to 8MB are deflated in parallel on the shared
+ *   archive thread pool, a bounded window ahead of the writer, and are
+ *   written in directory order as they complete.</li>
+ * <li>Larger files are deflated straight into the output on the calling
+ *   thread.</li>
+ * </ul>
+ * Entry names are relative to the directory and use "/" separators.  Only
+ * regular files are included; symbolic links and empty directories are
+ * left out.  Files and directories that cannot be read are logged and
+ * skipped, as the old in-memory zipping did, rather than failing the
+ * whole download; only a read error part way through a large file that
+ * is already being written can still abort the archive.
+ *
+ * @author  Stephen Edwards
+ */
+public class DirectoryZipper
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Creates a zipper for a directory.
+     *
+     * @param directory The directory whose contents will be zipped.
+     */
+    public DirectoryZipper(File directory)
+    {
+        this.directory = directory;
+    }
+
+
+    //~ Methods ...............................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Determines whether a file's contents are already compressed, judging
+     * by its extension, so that deflating it again would be wasted work.
+     *
+     * @param fileName The file name.
+     *
+     * @return True if the file should be stored without compression.
+     */
+    public static boolean isCompressed(String fileName)
+    {
+        int dot = fileName.lastIndexOf('.');
+        return dot >= 0 && COMPRESSED_EXTENSIONS.contains(
+            fileName.substring(dot + 1).toLowerCase());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Writes the archive.
+     *
+     * @param out The stream to write to, which is not closed.
+     *
+     * @throws IOException if the archive cannot be written.
+     */
+    public void writeTo(OutputStream out)
+        throws IOException
+    {
+        final ZipStreamWriter zip = new ZipStreamWriter(out);
+        final Path root = directory.toPath();
+
+        try
+        {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(
+                    Path path, BasicFileAttributes attributes)
+                    throws IOException
+                {
+                    if (attributes.isRegularFile())
+                    {
+                        add(zip, entryName(root, path), path.toFile(),
+                            attributes.size(),
+                            attributes.lastModifiedTime().toMillis());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(
+                    Path path, IOException e)
+                {
+                    skipped(path.toFile(), e);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            drain(zip, 0);
+            zip.finish();
+        }
+        finally
+        {
+            // On failure, let queued work finish without waiting for it
+            for (Pending pending : window)
+            {
+                pending.result.cancel(false);
+            }
+            window.clear();
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private void add(ZipStreamWriter zip, final String name, final File file,
+        long size, long time)
+        throws IOException
+    {
+        ExecutorService pool = ArchiveThreads.pool();
+
+        if (size > PARALLEL_LIMIT)
+        {
+            // Too big to hold in memory, so write everything before it
+            // and then send it straight through
+            drain(zip, 0);
+            if (isCompressed(name))
+            {
+                long checksum;
+                try
+                {
+                    checksum = ZipStreamWriter.checksum(file);
+                }
+                catch (IOException e)
+                {
+                    // Nothing has been written for it yet
+                    skipped(file, e);
+                    return;
+                }
+                zip.addStored(name, time, file, checksum);
+            }
+            else
+            {
+                InputStream in;
+                try
+                {
+                    in = new FileInputStream(file);
+                }
+                catch (FileNotFoundException e)
+                {
+                    skipped(file, e);
+                    return;
+                }
+                try
+                {
+                    zip.addStreamed(name, time, in);
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+            return;
+        }
+
+        Callable<Object> task;
+        if (isCompressed(name))
+        {
+            task = new Callable<Object>() {
+                public Object call() throws IOException
+                {
+                    return ZipStreamWriter.checksum(file);
+                }
+            };
+        }
+        else
+        {
+            task = new Callable<Object>() {
+                public Object call() throws IOException
+                {
+                    InputStream in = new FileInputStream(file);
+                    try
+                    {
+                        return ZipStreamWriter.deflate(in);
+                    }
+                    finally
+                    {
+                        in.close();
+                    }
+                }
+            };
+        }
+
+        window.add(new Pending(name, file, time, size, pool.submit(task)));
+        windowBytes += size;
+        drain(zip, WINDOW_BYTES);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Writes finished entries, in order, until no more than the given
+     * number of bytes of file data are waiting.
+     */
+    private void drain(ZipStreamWriter zip, long maxWaiting)
+        throws IOException
+    {
+        while (!window.isEmpty()
+            && (windowBytes > maxWaiting || window.peek().result.isDone()))
+        {
+            Pending pending = window.poll();
+            windowBytes -= pending.size;
+
+            Object result;
+            try
+            {
+                result = pending.result.get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while zipping");
+            }
+            catch (ExecutionException e)
+            {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException)
+                {
+                    // Nothing has been written for it yet
+                    skipped(pending.file, (IOException) cause);
+                    continue;
+                }
+                throw new IOException(cause);
+            }
+
+            if (result instanceof ZipStreamWriter.Prepared)
+            {
+                zip.addDeflated(pending.name, pending.time,
+                    (ZipStreamWriter.Prepared) result);
+            }
+            else
+            {
+                zip.addStored(pending.name, pending.time, pending.file,
+                    (Long) result);
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private static void skipped(File file, IOException e)
+    {
+        log.warn("leaving unreadable " + file + " out of zip: " + e);
+    }
+
+
+    // ----------------------------------------------------------
+    private static String entryName(Path root, Path path)
+    {
+        String name = root.relativize(path).toString();
+        if (File.separatorChar != '/')
+        {
+            name = name.replace(File.separatorChar, '/');
+        }
+        return name;
+    }
+
+
+    //~ Nested classes ........................................................
+
+    // ----------------------------------------------------------
+    private static class Pending
+    {
+        // ----------------------------------------------------------
+        public Pending(
+            String name, File file, long time, long size, Future<Object> result)
+        {
+            this.name = name;
+            this.file = file;
+            this.time = time;
+            this.size = size;
+            this.result = result;
+        }
+
+
+        //~ Instance/static variables .........................................
+
+        public final String name;
+        public final File file;
+        public final long time;
+        public final long size;
+        public final Future<Object> result;
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private final File directory;
+    private final ArrayDeque<Pending> window = new ArrayDeque<Pending>();
+    private long windowBytes;
+
+    /** Files larger than this are not deflated ahead of the writer. */
+    private static final long PARALLEL_LIMIT = 8L * 1024 * 1024;
+
+    /** The most file data that may be waiting to be written. */
+    private static final long WINDOW_BYTES = 32L * 1024 * 1024;
+
+    private static final Set<String> COMPRESSED_EXTENSIONS =
+        Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+            "zip", "jar", "war", "ear", "apk", "gz", "tgz", "bz2", "xz",
+            "7z", "rar", "png", "jpg", "jpeg", "gif", "webp", "pdf",
+            "mp3", "mp4", "m4a", "mov", "avi", "ogg", "docx", "xlsx",
+            "pptx", "odt", "ods", "odp")));
+
+    static Logger log = Logger.getLogger(DirectoryZipper.class);
+}
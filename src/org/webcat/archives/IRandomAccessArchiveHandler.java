@@ -0,0 +1,55 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.archives;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+//-------------------------------------------------------------------------
+/**
+ * An archive handler for a format with an index, such as the central
+ * directory of a ZIP file, that lets a single entry be read from an
+ * archive file without reading any of the others.  The
+ * {@link ArchiveManager} uses this interface, when a handler implements
+ * it, for {@link ArchiveManager#openEntry(File, String)}.
+ *
+ * @author  Stephen Edwards
+ */
+public interface IRandomAccessArchiveHandler
+    extends IArchiveHandler
+{
+    // ----------------------------------------------------------
+    /**
+     * Opens a single entry in an archive file for reading.  Closing the
+     * returned stream releases the archive file.
+     *
+     * @param archiveFile A File object representing the archive.
+     * @param entryName The name of the entry, exactly as it is listed by
+     * {@link #getContents(File)}.
+     *
+     * @return A stream of the entry's uncompressed contents, or null if
+     * the archive has no file entry with that name.
+     *
+     * @throws IOException
+     */
+    InputStream openEntry(File archiveFile, String entryName)
+        throws IOException;
+}
@@ -0,0 +1,145 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.archives;
+
+import er.extensions.foundation.ERXProperties;
+
+//-------------------------------------------------------------------------
+/**
+ * The limits enforced by {@link ArchiveUnpacker} while unpacking a single
+ * archive, so that a malicious or broken upload cannot fill the disk or
+ * tie up a thread.  A limit of zero means no limit.
+ *
+ * @author  Stephen Edwards
+ */
+public class UnpackLimits
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Creates a new set of limits.
+     *
+     * @param maxBytes The most bytes that may be written in total.
+     * @param maxEntries The most entries (files and directories) that an
+     * archive may contain.
+     * @param maxRatio The largest ratio of uncompressed to compressed size
+     * allowed for any entry larger than {@link #RATIO_THRESHOLD}.
+     * @param maxMillis The longest an unpack may take, in milliseconds.
+     */
+    public UnpackLimits(
+        long maxBytes, int maxEntries, int maxRatio, long maxMillis)
+    {
+        this.maxBytes = maxBytes;
+        this.maxEntries = maxEntries;
+        this.maxRatio = maxRatio;
+        this.maxMillis = maxMillis;
+    }
+
+
+    //~ Methods ...............................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Returns the limits set by the configuration properties
+     * <code>Core.archive.maxUnpackBytes</code> (1GB by default),
+     * <code>Core.archive.maxUnpackEntries</code> (20,000),
+     * <code>Core.archive.maxCompressionRatio</code> (200), and
+     * <code>Core.archive.maxUnpackSeconds</code> (300).
+     *
+     * @return The configured limits.
+     */
+    public static UnpackLimits defaults()
+    {
+        return new UnpackLimits(
+            ERXProperties.longForKeyWithDefault(
+                "Core.archive.maxUnpackBytes", 1024L * 1024 * 1024),
+            ERXProperties.intForKeyWithDefault(
+                "Core.archive.maxUnpackEntries", 20000),
+            ERXProperties.intForKeyWithDefault(
+                "Core.archive.maxCompressionRatio", 200),
+            1000L * ERXProperties.intForKeyWithDefault(
+                "Core.archive.maxUnpackSeconds", 300));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Returns the most bytes that may be written in total.
+     *
+     * @return The limit, or zero for no limit.
+     */
+    public long maxBytes()
+    {
+        return maxBytes;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Returns the most entries that an archive may contain.
+     *
+     * @return The limit, or zero for no limit.
+     */
+    public int maxEntries()
+    {
+        return maxEntries;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Returns the largest ratio of uncompressed to compressed size allowed
+     * for an entry.  Small entries are exempt, since a few kilobytes of
+     * blank lines can legitimately compress very well.
+     *
+     * @return The limit, or zero for no limit.
+     */
+    public int maxRatio()
+    {
+        return maxRatio;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Returns the longest an unpack may take.
+     *
+     * @return The limit in milliseconds, or zero for no limit.
+     */
+    public long maxMillis()
+    {
+        return maxMillis;
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    /**
+     * Entries that expand to no more than this many bytes are not subject
+     * to the compression ratio limit.
+     */
+    public static final long RATIO_THRESHOLD = 1024 * 1024;
+
+    private final long maxBytes;
+    private final int maxEntries;
+    private final int maxRatio;
+    private final long maxMillis;
+}
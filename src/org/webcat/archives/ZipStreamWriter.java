@@ -0,0 +1,494 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.archives;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+//-------------------------------------------------------------------------
+/**
+ * Writes a ZIP archive to an output stream one entry at a time, without
+ * buffering the archive.  Unlike {@link java.util.zip.ZipOutputStream},
+ * it accepts entries whose data was already deflated (possibly on another
+ * thread), so that {@link DirectoryZipper} can compress several entries
+ * in parallel and still write them in order.  It also writes entries
+ * stored without compression, and deflates large entries as they are
+ * written.
+ * <p>
+ * Names are written as UTF-8.  ZIP64 is not supported, so an archive is
+ * limited to 65,535 entries and 4GB.
+ * </p>
+ *
+ * @author  Stephen Edwards
+ */
+public class ZipStreamWriter
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Creates a writer.
+     *
+     * @param out The stream to write the archive to.  It is not closed by
+     * {@link #finish()}.
+     */
+    public ZipStreamWriter(OutputStream out)
+    {
+        this.out = out;
+    }
+
+
+    //~ Methods ...............................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Deflates data the way that entries in a ZIP archive are compressed,
+     * for use with {@link #addDeflated(String, long, Prepared)}.  This
+     * method may be called on any thread.
+     *
+     * @param in The uncompressed data, which is read to the end but not
+     * closed.
+     *
+     * @return The compressed data, with its checksum and sizes.
+     *
+     * @throws IOException if the data cannot be read.
+     */
+    public static Prepared deflate(InputStream in)
+        throws IOException
+    {
+        CRC32 crc = new CRC32();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        long size = 0;
+
+        try
+        {
+            DeflaterOutputStream deflating =
+                new DeflaterOutputStream(compressed, deflater, BUFFER_SIZE);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) > 0)
+            {
+                crc.update(buffer, 0, count);
+                deflating.write(buffer, 0, count);
+                size += count;
+            }
+            deflating.finish();
+        }
+        finally
+        {
+            deflater.end();
+        }
+
+        return new Prepared(crc.getValue(), size, compressed.toByteArray());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Computes the checksum of a file, for use with
+     * {@link #addStored(String, long, File, long)}.  This method may be
+     * called on any thread.
+     *
+     * @param file The file.
+     *
+     * @return The CRC-32 checksum of the file's contents.
+     *
+     * @throws IOException if the file cannot be read.
+     */
+    public static long checksum(File file)
+        throws IOException
+    {
+        CRC32 crc = new CRC32();
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) > 0)
+            {
+                crc.update(buffer, 0, count);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return crc.getValue();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Writes an entry whose data was compressed by
+     * {@link #deflate(InputStream)}.
+     *
+     * @param name The entry name, with "/" separators.
+     * @param time The modification time.
+     * @param data The compressed data.
+     *
+     * @throws IOException if the archive cannot be written.
+     */
+    public void addDeflated(String name, long time, Prepared data)
+        throws IOException
+    {
+        Entry entry = new Entry(name, time, DEFLATED, 0);
+        entry.crc = data.crc;
+        entry.size = data.size;
+        entry.compressedSize = data.compressed.length;
+        writeLocalHeader(entry);
+        write(data.compressed, 0, data.compressed.length);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Writes a file without compressing it, which is the best choice for
+     * data that is already compressed.
+     *
+     * @param name The entry name, with "/" separators.
+     * @param time The modification time.
+     * @param file The file.
+     * @param crc The file's checksum, from {@link #checksum(File)}.
+     *
+     * @throws IOException if the file cannot be read, has changed size, or
+     * the archive cannot be written.
+     */
+    public void addStored(String name, long time, File file, long crc)
+        throws IOException
+    {
+        Entry entry = new Entry(name, time, STORED, 0);
+        entry.crc = crc;
+        entry.size = file.length();
+        entry.compressedSize = entry.size;
+        writeLocalHeader(entry);
+
+        long copied = 0;
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while (copied < entry.size && (count = in.read(buffer, 0,
+                (int) Math.min(buffer.length, entry.size - copied))) > 0)
+            {
+                write(buffer, 0, count);
+                copied += count;
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+
+        if (copied != entry.size)
+        {
+            throw new IOException(file + " changed while it was being zipped");
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Deflates data into the archive as it is read, without holding it in
+     * memory.  The checksum and sizes follow the data in a data descriptor.
+     *
+     * @param name The entry name, with "/" separators.
+     * @param time The modification time.
+     * @param in The uncompressed data, which is read to the end but not
+     * closed.
+     *
+     * @throws IOException if the data cannot be read or the archive cannot
+     * be written.
+     */
+    public void addStreamed(String name, long time, InputStream in)
+        throws IOException
+    {
+        Entry entry = new Entry(name, time, DEFLATED, FLAG_DATA_DESCRIPTOR);
+        writeLocalHeader(entry);
+
+        CRC32 crc = new CRC32();
+        long start = written;
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try
+        {
+            DeflaterOutputStream deflating = new DeflaterOutputStream(
+                new OutputStream() {
+                    @Override
+                    public void write(int b)
+                        throws IOException
+                    {
+                        ZipStreamWriter.this.write(
+                            new byte[] { (byte) b }, 0, 1);
+                    }
+
+                    @Override
+                    public void write(byte[] bytes, int offset, int length)
+                        throws IOException
+                    {
+                        ZipStreamWriter.this.write(bytes, offset, length);
+                    }
+                },
+                deflater, BUFFER_SIZE);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) > 0)
+            {
+                crc.update(buffer, 0, count);
+                deflating.write(buffer, 0, count);
+                entry.size += count;
+            }
+            deflating.finish();
+        }
+        finally
+        {
+            deflater.end();
+        }
+
+        entry.crc = crc.getValue();
+        entry.compressedSize = written - start;
+        checkLimit(entry.size);
+
+        writeInt(DATA_DESCRIPTOR_SIGNATURE);
+        writeInt(entry.crc);
+        writeInt(entry.compressedSize);
+        writeInt(entry.size);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Writes the central directory, which completes the archive.
+     *
+     * @throws IOException if the archive cannot be written.
+     */
+    public void finish()
+        throws IOException
+    {
+        long start = written;
+        for (Entry entry : entries)
+        {
+            writeInt(CENTRAL_HEADER_SIGNATURE);
+            writeShort(VERSION);
+            writeShort(VERSION);
+            writeShort(entry.flags);
+            writeShort(entry.method);
+            writeInt(entry.dosTime);
+            writeInt(entry.crc);
+            writeInt(entry.compressedSize);
+            writeInt(entry.size);
+            writeShort(entry.name.length);
+            writeShort(0);              // extra field length
+            writeShort(0);              // comment length
+            writeShort(0);              // disk number
+            writeShort(0);              // internal attributes
+            writeInt(0);                // external attributes
+            writeInt(entry.offset);
+            write(entry.name, 0, entry.name.length);
+        }
+        long size = written - start;
+        checkLimit(written);
+
+        writeInt(END_SIGNATURE);
+        writeShort(0);                  // this disk
+        writeShort(0);                  // disk with the central directory
+        writeShort(entries.size());
+        writeShort(entries.size());
+        writeInt(size);
+        writeInt(start);
+        writeShort(0);                  // comment length
+        out.flush();
+    }
+
+
+    // ----------------------------------------------------------
+    private void writeLocalHeader(Entry entry)
+        throws IOException
+    {
+        if (entries.size() >= MAX_ENTRIES)
+        {
+            throw new IOException("ZIP archive has too many entries");
+        }
+        checkLimit(written);
+        checkLimit(entry.size);
+        entry.offset = written;
+        entries.add(entry);
+
+        boolean descriptor = (entry.flags & FLAG_DATA_DESCRIPTOR) != 0;
+        writeInt(LOCAL_HEADER_SIGNATURE);
+        writeShort(VERSION);
+        writeShort(entry.flags);
+        writeShort(entry.method);
+        writeInt(entry.dosTime);
+        writeInt(descriptor ? 0 : entry.crc);
+        writeInt(descriptor ? 0 : entry.compressedSize);
+        writeInt(descriptor ? 0 : entry.size);
+        writeShort(entry.name.length);
+        writeShort(0);                  // extra field length
+        write(entry.name, 0, entry.name.length);
+    }
+
+
+    // ----------------------------------------------------------
+    private static void checkLimit(long value)
+        throws IOException
+    {
+        if (value > MAX_SIZE)
+        {
+            throw new IOException("ZIP archive is larger than 4GB");
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private void writeShort(int value)
+        throws IOException
+    {
+        header[0] = (byte) value;
+        header[1] = (byte) (value >>> 8);
+        write(header, 0, 2);
+    }
+
+
+    // ----------------------------------------------------------
+    private void writeInt(long value)
+        throws IOException
+    {
+        header[0] = (byte) value;
+        header[1] = (byte) (value >>> 8);
+        header[2] = (byte) (value >>> 16);
+        header[3] = (byte) (value >>> 24);
+        write(header, 0, 4);
+    }
+
+
+    // ----------------------------------------------------------
+    private void write(byte[] bytes, int offset, int length)
+        throws IOException
+    {
+        out.write(bytes, offset, length);
+        written += length;
+    }
+
+
+    //~ Nested classes ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * The compressed data of an entry, produced by
+     * {@link ZipStreamWriter#deflate(InputStream)}.
+     */
+    public static class Prepared
+    {
+        // ----------------------------------------------------------
+        private Prepared(long crc, long size, byte[] compressed)
+        {
+            this.crc = crc;
+            this.size = size;
+            this.compressed = compressed;
+        }
+
+
+        //~ Instance/static variables .........................................
+
+        private final long crc;
+        private final long size;
+        private final byte[] compressed;
+    }
+
+
+    // ----------------------------------------------------------
+    private static class Entry
+    {
+        // ----------------------------------------------------------
+        public Entry(String name, long time, int method, int flags)
+            throws UnsupportedEncodingException
+        {
+            this.name = name.getBytes("UTF-8");
+            this.dosTime = dosTime(time);
+            this.method = method;
+            this.flags = flags | FLAG_UTF8;
+        }
+
+
+        // ----------------------------------------------------------
+        private static long dosTime(long time)
+        {
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTimeInMillis(time);
+            int year = calendar.get(Calendar.YEAR);
+            if (year < 1980)
+            {
+                // The earliest time DOS can represent: 1980-01-01 00:00
+                return (1 << 21) | (1 << 16);
+            }
+            return ((long) (year - 1980) << 25)
+                | ((calendar.get(Calendar.MONTH) + 1) << 21)
+                | (calendar.get(Calendar.DAY_OF_MONTH) << 16)
+                | (calendar.get(Calendar.HOUR_OF_DAY) << 11)
+                | (calendar.get(Calendar.MINUTE) << 5)
+                | (calendar.get(Calendar.SECOND) >> 1);
+        }
+
+
+        //~ Instance/static variables .........................................
+
+        public final byte[] name;
+        public final long dosTime;
+        public final int method;
+        public final int flags;
+        public long crc;
+        public long size;
+        public long compressedSize;
+        public long offset;
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private final OutputStream out;
+    private final List<Entry> entries = new ArrayList<Entry>();
+    private final byte[] header = new byte[4];
+    private long written;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int VERSION = 20;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final long LOCAL_HEADER_SIGNATURE = 0x04034b50L;
+    private static final long DATA_DESCRIPTOR_SIGNATURE = 0x08074b50L;
+    private static final long CENTRAL_HEADER_SIGNATURE = 0x02014b50L;
+    private static final long END_SIGNATURE = 0x06054b50L;
+    private static final int MAX_ENTRIES = 0xffff;
+    private static final long MAX_SIZE = 0xffffffffL;
+}
@@ -26,6 +26,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.zip.GZIPInputStream;
 import org.webcat.archives.AbstractArchiveHandler;
+import org.webcat.archives.ArchiveUnpacker;
 import org.webcat.archives.IArchiveEntry;
 
 
@@ -58,7 +59,9 @@ public class TarGzArchiveHandler extends AbstractArchiveHandler
 	public void unpack( File destPath, InputStream stream )
 	    throws IOException
 	{
-		GZIPInputStream gzipStream = new GZIPInputStream( stream );
-		TarUtil.unpack( destPath, gzipStream );
+        ArchiveUnpacker unpacker = new ArchiveUnpacker( destPath );
+		GZIPInputStream gzipStream =
+		    new GZIPInputStream( unpacker.countingCompressed( stream ) );
+		TarUtil.unpack( destPath, gzipStream, unpacker );
 	}
 }
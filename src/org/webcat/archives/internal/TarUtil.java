@@ -22,11 +22,11 @@
 package org.webcat.archives.internal;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import org.webcat.archives.ArchiveEntry;
+import org.webcat.archives.ArchiveUnpacker;
 import org.webcat.archives.IArchiveEntry;
 import com.ice.tar.TarEntry;
 import com.ice.tar.TarInputStream;
@@ -75,47 +75,53 @@ public class TarUtil
     // ----------------------------------------------------------
 	public static void unpack( File destPath, InputStream stream )
 		throws IOException
+	{
+        unpack( destPath, stream, new ArchiveUnpacker( destPath ) );
+	}
+
+
+    // ----------------------------------------------------------
+    /**
+     * Unpacks a TAR stream with the given unpacker, which enforces the
+     * unpacking limits.  Compressed formats should read their raw data
+     * through {@link ArchiveUnpacker#countingCompressed(InputStream)}
+     * so that the compression ratio can be checked.
+     */
+	public static void unpack(
+	    File destPath, InputStream stream, ArchiveUnpacker unpacker )
+		throws IOException
 	{
 		TarInputStream tarStream = new TarInputStream( stream );
 
-		TarEntry tarEntry = tarStream.getNextEntry();
-		while ( tarEntry != null )
-		{
-            String name = tarEntry.getName();
-			if ( tarEntry.isDirectory() )
-			{
-                if (!"__MACOSX".equals(name)
-                    && !name.startsWith("__MACOSX/"))
+        try
+        {
+            TarEntry tarEntry = tarStream.getNextEntry();
+            while ( tarEntry != null )
+            {
+                File dest = unpacker.destinationFor( tarEntry.getName() );
+                if ( dest != null && tarEntry.isDirectory() )
                 {
-                    File destDir = new File( destPath, name );
-
-                    if ( !destDir.exists() )
+                    dest.mkdirs();
+                }
+                else if ( dest != null )
+                {
+                    File destParent = dest.getParentFile();
+                    if ( destParent != null  &&  !destParent.exists() )
                     {
-                        destDir.mkdirs();
+                        destParent.mkdirs();
                     }
-                }
-			}
-            else if (name != null
-                     && !(name.equals(".DS_Store")
-                          || name.startsWith("__MACOSX/")
-                          || name.endsWith("/.DS_Store")))
-			{
-				File destFile = new File( destPath, name );
-				File destParent = destFile.getParentFile();
 
-				if ( destParent != null  &&  !destParent.exists() )
-                {
-					destParent.mkdirs();
+                    unpacker.copyEntry( tarStream, dest, -1,
+                        tarEntry.getModTime().getTime() );
                 }
 
-				FileOutputStream destStream = new FileOutputStream( destFile );
-				tarStream.copyEntryContents( destStream );
-				destStream.flush();
-				destStream.close();
-                destFile.setLastModified( tarEntry.getModTime().getTime() );
-			}
-
-			tarEntry = tarStream.getNextEntry();
-		}
+                tarEntry = tarStream.getNextEntry();
+            }
+        }
+        catch ( IOException e )
+        {
+            unpacker.abort();
+            throw e;
+        }
 	}
 }
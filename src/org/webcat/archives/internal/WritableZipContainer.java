@@ -25,8 +25,10 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
+import org.webcat.archives.DirectoryZipper;
 import org.webcat.archives.IWritableContainer;
 
 //-------------------------------------------------------------------------
@@ -77,6 +79,10 @@ public class WritableZipContainer implements IWritableContainer
             entry.setSize(sizeHint);
         }
 
+        // Deflating data that is already compressed only costs time
+        zipStream.setLevel(DirectoryZipper.isCompressed(name)
+            ? Deflater.NO_COMPRESSION
+            : Deflater.DEFAULT_COMPRESSION);
         zipStream.putNextEntry(entry);
         return new ZipEntryOutputStream();
     }
@@ -22,23 +22,36 @@
 package org.webcat.archives.internal;
 
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Enumeration;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import org.webcat.archives.*;
-import org.webcat.core.FileUtilities;
 
 //-------------------------------------------------------------------------
 /**
- * An archive handler that unpacks ZIP and JAR archives.
+ * An archive handler that unpacks ZIP and JAR archives.  Unpacking goes
+ * through an {@link ArchiveUnpacker}, so it is subject to the configured
+ * {@link UnpackLimits}, and ZIP files on disk are unpacked in parallel.
+ * <p>
+ * Archives that are files on disk are listed from their central directory,
+ * which records the name, size, and time of every entry at the end of the
+ * file, so listing does not decompress (or even read) any entry data.
+ * For the same reason, single entries can be read directly with
+ * {@link #openEntry(File, String)}.  Archives whose central directory
+ * cannot be read are listed by scanning them as a stream instead.
  *
  * @author Tony Allowatt
  */
 public class ZipArchiveHandler
     extends AbstractArchiveHandler
+    implements IRandomAccessArchiveHandler
 {
     // ----------------------------------------------------------
 	public boolean acceptsFile( String name )
@@ -48,6 +61,96 @@ public class ZipArchiveHandler
 	}
 
 
+    // ----------------------------------------------------------
+    @Override
+    public IArchiveEntry[] getContents(File archiveFile)
+        throws IOException
+    {
+        ZipFile zipFile;
+        try
+        {
+            zipFile = new ZipFile(archiveFile);
+        }
+        catch (ZipException e)
+        {
+            // Damaged or truncated archives may still be readable as a
+            // stream of local entry headers
+            return super.getContents(archiveFile);
+        }
+
+        try
+        {
+            ArrayList<IArchiveEntry> entryList =
+                new ArrayList<IArchiveEntry>(zipFile.size());
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements())
+            {
+                ZipEntry zipEntry = entries.nextElement();
+                if (isListed(zipEntry))
+                {
+                    entryList.add(new ArchiveEntry(
+                        zipEntry.getName(),
+                        false,
+                        new Date(zipEntry.getTime()),
+                        zipEntry.getSize()));
+                }
+            }
+
+            IArchiveEntry[] entryArray = new IArchiveEntry[entryList.size()];
+            entryList.toArray(entryArray);
+            return entryArray;
+        }
+        finally
+        {
+            zipFile.close();
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    public InputStream openEntry(File archiveFile, String entryName)
+        throws IOException
+    {
+        final ZipFile zipFile = new ZipFile(archiveFile);
+        boolean opened = false;
+
+        try
+        {
+            ZipEntry zipEntry = zipFile.getEntry(entryName);
+            if (zipEntry == null || zipEntry.isDirectory())
+            {
+                return null;
+            }
+
+            InputStream result =
+                new FilterInputStream(zipFile.getInputStream(zipEntry)) {
+                    @Override
+                    public void close()
+                        throws IOException
+                    {
+                        try
+                        {
+                            super.close();
+                        }
+                        finally
+                        {
+                            zipFile.close();
+                        }
+                    }
+                };
+            opened = true;
+            return result;
+        }
+        finally
+        {
+            if (!opened)
+            {
+                zipFile.close();
+            }
+        }
+    }
+
+
     // ----------------------------------------------------------
 	public IArchiveEntry[] getContents( InputStream stream )
         throws IOException
@@ -60,15 +163,10 @@ public class ZipArchiveHandler
 		while ( zipEntry != null )
 		{
             zipStream.closeEntry();
-            String name = zipEntry.getName();
-            if (name != null
-                && !zipEntry.isDirectory()
-                && !name.equals(".DS_Store")
-                && !name.endsWith("/.DS_Store")
-                && !name.startsWith("__MACOSX/"))
+            if (isListed(zipEntry))
             {
                 ArchiveEntry entry = new ArchiveEntry(
-					name,
+					zipEntry.getName(),
 					zipEntry.isDirectory(),
 					new Date( zipEntry.getTime() ),
 					zipEntry.getSize() );
@@ -85,47 +183,83 @@ public class ZipArchiveHandler
 
 
     // ----------------------------------------------------------
-	public void unpack( File destPath, InputStream stream )
-	    throws IOException
-	{
-		ZipInputStream zipStream = new ZipInputStream( stream );
+    @Override
+    public void unpack(File destPath, File archiveFile)
+        throws IOException
+    {
+        ArchiveUnpacker unpacker = new ArchiveUnpacker(destPath);
+        try
+        {
+            unpacker.unpackZip(archiveFile);
+        }
+        catch (ZipException e)
+        {
+            // As in getContents(File), fall back to reading the local
+            // entry headers as a stream
+            if (unpacker.bytesWritten() > 0)
+            {
+                throw e;
+            }
+            super.unpack(destPath, archiveFile);
+        }
+    }
 
-		ZipEntry zipEntry = zipStream.getNextEntry();
-		while ( zipEntry != null )
-		{
-	        String name = zipEntry.getName();
-			if ( zipEntry.isDirectory() )
-			{
-			    if (!"__MACOSX".equals(name)
-			        && !name.startsWith("__MACOSX/"))
-			    {
-			        File destDir = new File( destPath, name );
-
-			        if ( !destDir.exists() )
-			        {
-			            destDir.mkdirs();
-			        }
-			    }
-			}
-			else if (name != null
-			         && !(name.equals(".DS_Store")
-			              || name.startsWith("__MACOSX/")
-			              || name.endsWith("/.DS_Store")))
-			{
-				File destFile = new File( destPath, name );
-				File destParent = destFile.getParentFile();
-
-				if ( destParent != null  &&  !destParent.exists() )
+
+    // ----------------------------------------------------------
+    public void unpack(File destPath, InputStream stream)
+        throws IOException
+    {
+        ArchiveUnpacker unpacker = new ArchiveUnpacker(destPath);
+        ZipInputStream zipStream =
+            new ZipInputStream(unpacker.countingCompressed(stream));
+
+        try
+        {
+            ZipEntry zipEntry = zipStream.getNextEntry();
+            while (zipEntry != null)
+            {
+                File dest = unpacker.destinationFor(zipEntry.getName());
+                if (dest != null && zipEntry.isDirectory())
                 {
-					destParent.mkdirs();
+                    dest.mkdirs();
                 }
+                else if (dest != null)
+                {
+                    File destParent = dest.getParentFile();
+                    if (destParent != null && !destParent.exists())
+                    {
+                        destParent.mkdirs();
+                    }
 
-				FileUtilities.copyStreamToFile(
-                    zipStream, destFile, zipEntry.getTime() );
-			}
+                    // The compressed size is -1 when it follows the data
+                    unpacker.copyEntry(zipStream, dest,
+                        zipEntry.getCompressedSize(), zipEntry.getTime());
+                }
 
-			zipStream.closeEntry();
-			zipEntry = zipStream.getNextEntry();
-		}
-	}
+                zipStream.closeEntry();
+                zipEntry = zipStream.getNextEntry();
+            }
+        }
+        catch (IOException e)
+        {
+            unpacker.abort();
+            throw e;
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Determines whether an entry should be listed: directories and the
+     * metadata files that Mac OS X adds to archives are left out.
+     */
+    private static boolean isListed(ZipEntry zipEntry)
+    {
+        String name = zipEntry.getName();
+        return name != null
+            && !zipEntry.isDirectory()
+            && !name.equals(".DS_Store")
+            && !name.endsWith("/.DS_Store")
+            && !name.startsWith("__MACOSX/");
+    }
 }
@@ -20,6 +20,8 @@
 package org.webcat.core;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
@@ -32,11 +34,12 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.activation.CommandMap;
 import javax.activation.DataHandler;
-import javax.activation.FileDataSource;
+import javax.activation.FileTypeMap;
 import javax.activation.MailcapCommandMap;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMultipart;
+import javax.mail.util.ByteArrayDataSource;
 import ognl.helperfunction.WOHelperFunctionHTMLTemplateParser;
 import ognl.helperfunction.WOTagProcessor;
 import org.apache.log4j.Level;
@@ -44,10 +47,12 @@ import org.apache.log4j.Logger;
 import org.webcat.archives.ArchiveManager;
 import org.webcat.archives.IArchiveHandler;
 import org.webcat.core.git.GitUtilities;
+import org.webcat.core.git.WorkingCopyPushScheduler;
 import org.webcat.core.git.http.GitRequestHandler;
 import org.webcat.core.messaging.ApplicationStartupMessage;
 import org.webcat.core.messaging.FallbackMessageDispatcher;
 import org.webcat.core.messaging.IMessageDispatcher;
+import org.webcat.core.messaging.MailOutbox;
 import org.webcat.core.messaging.UnexpectedExceptionMessage;
 import org.webcat.core.webapi.WebAPIRequestHandler;
 import org.webcat.core.webdav.WebDAVRequestHandler;
@@ -1831,20 +1836,79 @@ public class Application
                                        String subject,
                                        String body,
                                        List<File> attachments)
+    {
+        sendEmail(to, subject, body, attachments, false);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Sends the same text e-mail message to each of the specified
+     * recipients, without revealing the recipients to each other.  Unlike
+     * calling {@link #sendSimpleEmail(String, String, String, List)} once
+     * per recipient, this allows the whole group (and any other queued
+     * copies of the same message) to be delivered in one SMTP transaction.
+     *
+     * @param to          the destination addresses
+     * @param subject     the subject line
+     * @param body        the body of the message
+     * @param attachments the attachments
+     */
+    static public void sendIndividualEmails(NSArray<String> to,
+                                            String subject,
+                                            String body,
+                                            List<File> attachments)
+    {
+        sendEmail(to, subject, body, attachments, true);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Composes a text e-mail message and places it in the
+     * {@link MailOutbox} for delivery.  This does not wait for the
+     * message to be sent.
+     *
+     * @param to          the destination addresses
+     * @param subject     the subject line
+     * @param body        the body of the message
+     * @param attachments the attachments
+     * @param hideRecipients true if the recipients should be hidden from
+     *                    each other (as Bcc recipients)
+     */
+    static private void sendEmail(NSArray<String> to,
+                                  String subject,
+                                  String body,
+                                  List<File> attachments,
+                                  boolean hideRecipients)
     {
         try
         {
+            // Send the message
+            if ("donotsendmail".equals(
+                configurationProperties().getProperty("mail.smtp.host")))
+            {
+                log.warn("E-MAIL DISABLED: unsent message:\nTo: "
+                    + to
+                    + "\nSubject: " + (subject == null ? "null" : subject)
+                    + "\nBody:\n" + (body == null ? "null" : body));
+                return;
+            }
+
+            MailOutbox outbox = MailOutbox.outbox();
+
             // Define message
-            javax.mail.Message message =
-                new javax.mail.internet.MimeMessage(
-                        javax.mail.Session.getInstance(
-                            configurationProperties(), null));
+            javax.mail.internet.MimeMessage message =
+                new javax.mail.internet.MimeMessage(outbox.session());
 
             message.setFrom(new InternetAddress(
                 configurationProperties().getProperty("coreAdminEmail")));
             message.setSentDate(new NSTimestamp());
 
             // Add each recipient to the message.
+            javax.mail.Message.RecipientType recipientType = hideRecipients
+                ? javax.mail.Message.RecipientType.BCC
+                : javax.mail.Message.RecipientType.TO;
             for (String toAddress : to)
             {
                 String defaultDomain = configurationProperties()
@@ -1855,12 +1919,30 @@ public class Application
                     toAddress += "@" + defaultDomain;
                 }
 
-                message.addRecipient(javax.mail.Message.RecipientType.TO,
+                message.addRecipient(recipientType,
                                      new InternetAddress(toAddress));
             }
 
             message.setSubject(appIdentifier() + subject);
 
+            // Identical hidden-recipient messages can be batched together
+            String batchKey = null;
+            if (hideRecipients)
+            {
+                StringBuffer key = new StringBuffer();
+                key.append(subject).append('\0').append(body);
+                if (attachments != null)
+                {
+                    for (File file : attachments)
+                    {
+                        key.append('\0').append(file.getAbsolutePath())
+                            .append(':').append(file.length())
+                            .append(':').append(file.lastModified());
+                    }
+                }
+                batchKey = key.toString();
+            }
+
             if (attachments == null || attachments.size() == 0)
             {
                 message.setText(body);
@@ -1891,8 +1973,21 @@ public class Application
                     // attachments
                     if (file.length() < maxAttachmentSize)
                     {
-                        // Get the attachment
-                        FileDataSource source = new FileDataSource(file);
+                        // Read the attachment now, rather than when the
+                        // message is finally sent, so callers may delete
+                        // the file as soon as this method returns
+                        InputStream in = new FileInputStream(file);
+                        ByteArrayDataSource source;
+                        try
+                        {
+                            source = new ByteArrayDataSource(in,
+                                FileTypeMap.getDefaultFileTypeMap()
+                                    .getContentType(file));
+                        }
+                        finally
+                        {
+                            in.close();
+                        }
 
                         // Set the data handler to the attachment
                         messageBodyPart.setDataHandler(
@@ -1920,52 +2015,17 @@ public class Application
                 message.setContent(multipart);
             }
 
-            // Send the message
-            if ("donotsendmail".equals(
-                configurationProperties().getProperty("mail.smtp.host")))
-            {
-                log.warn("E-MAIL DISABLED: unsent message:\nTo: "
-                    + to
-                    + "\nSubject: " + (subject == null ? "null" : subject)
-                    + "\nBody:\n" + (body == null ? "null" : body));
-            }
-            else
-            {
-                // AJA 2010.01.12: Fix for the JAF/Mail issue that prevented
-                // mail from being sent from a servlet when running under
-                // Java 1.6:
-                // http://blog.hpxn.net/2009/12/02/tomcat-java-6-and-javamail-cant-load-dch/
-                ClassLoader originalClassLoader =
-                    Thread.currentThread().getContextClassLoader();
-
-                try
-                {
-                    Thread.currentThread().setContextClassLoader(
-                            Application.class.getClassLoader());
-                    javax.mail.Transport.send(message);
-                }
-                finally
-                {
-                    Thread.currentThread().setContextClassLoader(
-                            originalClassLoader);
-                }
-            }
+            // Queue the message.  Attachments have already been read into
+            // memory, so callers may delete them once this returns.
+            outbox.enqueue(message, batchKey);
         }
         catch (Exception e)
         {
-            String msg = e.getMessage();
-            if (msg != null && msg.contains("java.net.UnknownHostException:"))
-            {
-                log.error("Exception sending mail message: " + e);
-            }
-            else
-            {
-                log.error("Exception sending mail message:\n", e);
-                log.error("unsent message:\nTo: "
-                       + (to == null ? "null" : to)
-                       + "\nSubject: " + (subject == null ? "null" : subject)
-                       + "\nBody:\n" + (body == null ? "null" : body));
-            }
+            log.error("Exception queueing mail message:\n", e);
+            log.error("unsent message:\nTo: "
+                   + (to == null ? "null" : to)
+                   + "\nSubject: " + (subject == null ? "null" : subject)
+                   + "\nBody:\n" + (body == null ? "null" : body));
         }
     }
 
@@ -2171,159 +2231,126 @@ public class Application
             errorBuffer.append(aContext.request().headerForKey("referer"));
         }
 
-        new ECAction() {
-            // ----------------------------------------------------------
-            public void action()
-            {
-            LoggedError loggedError = null;
-            if (!wcApplication().needsInstallation())
-            {
-                loggedError = LoggedError.objectForException(
-                    ec, anException);
-            }
-
-            if (loggedError != null)
-            {
-                loggedError.setOccurrences(loggedError.occurrences() + 1);
-                loggedError.setMostRecent(now);
-                errorBuffer.append("\nOccurrences: ");
-                errorBuffer.append(loggedError.occurrences());
-            }
-            if (   aContext != null
-                && aContext.component() != null)
-            {
-                // Get the current component
-                errorBuffer.append("\nComponent:   ");
-                String name = aContext.component().name();
-                if (name == null)
-                {
-                    name = aContext.component().getClass().getName();
-                }
-                if (loggedError != null)
-                {
-                    loggedError.setComponent(name);
-                }
-                errorBuffer.append(name);
-            }
-            if (   aContext        != null
-                && aContext.page() != null
-                && loggedError     != null)
+        // Find the current component and page
+        String componentName = null;
+        String pageName = null;
+        if (aContext != null && aContext.component() != null)
+        {
+            componentName = aContext.component().name();
+            if (componentName == null)
             {
-                loggedError.setPage(aContext.page().name());
+                componentName = aContext.component().getClass().getName();
             }
+        }
+        if (aContext != null && aContext.page() != null)
+        {
+            pageName = aContext.page().name();
+        }
 
-            // Get the session associated (if any)
-            if (s != null)
-            {
-                errorBuffer.append("\nSessionID: " + s.sessionID());
-            }
+        // Count this occurrence in memory; the recorder writes the
+        // LoggedError rows in the background
+        if (anException != null && !wcApplication().needsInstallation())
+        {
+            LoggedErrorRecorder.Aggregate loggedError =
+                LoggedErrorRecorder.recorder().record(
+                    anException, componentName, pageName);
+            errorBuffer.append("\nOccurrences: ");
+            errorBuffer.append(loggedError.occurrences());
+        }
+        if (componentName != null)
+        {
+            // Get the current component
+            errorBuffer.append("\nComponent:   ");
+            errorBuffer.append(componentName);
+        }
 
-            if (anException != null)
-            {
-                // Get the full message for the exception
-                errorBuffer.append("\n\nException:\n----------\n");
-                errorBuffer.append(anException.getClass().getName());
-                errorBuffer.append(":\n");
-                errorBuffer.append(anException.getMessage());
-                errorBuffer.append("\n");
-                if (anException.getMessage() != null
-                    && loggedError != null)
-                {
-                    loggedError.setMessage(anException.getMessage());
-                }
+        // Get the session associated (if any)
+        if (s != null)
+        {
+            errorBuffer.append("\nSessionID: " + s.sessionID());
+        }
 
-                if (extraInfo != null)
-                {
-                    errorBuffer.append(
-                        "\n\nExtra information:\n--------------------\n");
-                    for (Enumeration<?> e = extraInfo.keyEnumerator();
-                         e.hasMoreElements();)
-                    {
-                        Object key = e.nextElement();
-                        if (!"Session".equals(key)
-                            && !"Bundles".equals(key))
-                        {
-                            Object value = extraInfo.objectForKey(key);
-                            errorBuffer.append(key);
-                            errorBuffer.append(" = ");
-                            errorBuffer.append(value);
-                            errorBuffer.append('\n');
-                        }
-                    }
-                }
+        if (anException != null)
+        {
+            // Get the full message for the exception
+            errorBuffer.append("\n\nException:\n----------\n");
+            errorBuffer.append(anException.getClass().getName());
+            errorBuffer.append(":\n");
+            errorBuffer.append(anException.getMessage());
+            errorBuffer.append("\n");
 
-                // Get the stack trace for the exception
-                errorBuffer.append("\nStack trace:\n-----------------\n");
-                if (loggedError != null)
-                {
-                    StringWriter writer = new StringWriter();
-                    PrintWriter pwriter = new PrintWriter(writer);
-                    anException.printStackTrace(pwriter);
-                    pwriter.close();
-                    loggedError.setStackTrace(
-                        writer.getBuffer().toString());
-                }
-                if (!isRunningAsServlet())
-                {
-                    // If we're not running as a servlet, then assume we're
-                    // in a developer environment and generate fully
-                    // compliant stack trace info for IDE parsing:
-                    StringWriter writer = new StringWriter();
-                    PrintWriter pwriter = new PrintWriter(writer);
-                    anException.printStackTrace(pwriter);
-                    pwriter.close();
-                    errorBuffer.append(writer.getBuffer());
-                }
-                else
-                {
-                    // For deployment, use a simplified stack trace
-                    // presentation to make e-mail messages lighter (and
-                    // also somewhat more readable).
-                    WOExceptionParser exParser =
-                        new WOExceptionParser(anException);
-                    Enumeration<?> traceEnum =
-                        exParser.stackTrace().objectEnumerator();
-
-                    // Append each trace line
-                    while (traceEnum.hasMoreElements())
-                    {
-                        WOParsedErrorLine aLine =
-                            (WOParsedErrorLine)traceEnum.nextElement();
-                        errorBuffer.append("at " + aLine.methodName() + "("
-                            + aLine.fileName() + ":"
-                            + aLine.lineNumber() + ")\n");
-                    }
-                }
-            }
-            else
+            if (extraInfo != null)
             {
-                if (extraInfo != null)
+                errorBuffer.append(
+                    "\n\nExtra information:\n--------------------\n");
+                for (Enumeration<?> e = extraInfo.keyEnumerator();
+                     e.hasMoreElements();)
                 {
-                    errorBuffer.append(
-                        "\n\nExtra information:\n--------------------\n");
-                    for (Enumeration<?> e = extraInfo.keyEnumerator();
-                         e.hasMoreElements();)
+                    Object key = e.nextElement();
+                    if (!"Session".equals(key)
+                        && !"Bundles".equals(key))
                     {
-                        Object key = e.nextElement();
                         Object value = extraInfo.objectForKey(key);
                         errorBuffer.append(key);
-                        errorBuffer.append("\t= ");
+                        errorBuffer.append(" = ");
                         errorBuffer.append(value);
                         errorBuffer.append('\n');
                     }
                 }
             }
-            try
+
+            // Get the stack trace for the exception
+            errorBuffer.append("\nStack trace:\n-----------------\n");
+            if (!isRunningAsServlet())
             {
-                ec.saveChanges();
+                // If we're not running as a servlet, then assume we're
+                // in a developer environment and generate fully
+                // compliant stack trace info for IDE parsing:
+                StringWriter writer = new StringWriter();
+                PrintWriter pwriter = new PrintWriter(writer);
+                anException.printStackTrace(pwriter);
+                pwriter.close();
+                errorBuffer.append(writer.getBuffer());
             }
-            catch (Exception e)
+            else
             {
-                log.fatal("informationForExceptionInContext() failed", e);
-                log.info("failed exception details", anException);
+                // For deployment, use a simplified stack trace
+                // presentation to make e-mail messages lighter (and
+                // also somewhat more readable).
+                WOExceptionParser exParser =
+                    new WOExceptionParser(anException);
+                Enumeration<?> traceEnum =
+                    exParser.stackTrace().objectEnumerator();
+
+                // Append each trace line
+                while (traceEnum.hasMoreElements())
+                {
+                    WOParsedErrorLine aLine =
+                        (WOParsedErrorLine)traceEnum.nextElement();
+                    errorBuffer.append("at " + aLine.methodName() + "("
+                        + aLine.fileName() + ":"
+                        + aLine.lineNumber() + ")\n");
+                }
+            }
+        }
+        else
+        {
+            if (extraInfo != null)
+            {
+                errorBuffer.append(
+                    "\n\nExtra information:\n--------------------\n");
+                for (Enumeration<?> e = extraInfo.keyEnumerator();
+                     e.hasMoreElements();)
+                {
+                    Object key = e.nextElement();
+                    Object value = extraInfo.objectForKey(key);
+                    errorBuffer.append(key);
+                    errorBuffer.append("\t= ");
+                    errorBuffer.append(value);
+                    errorBuffer.append('\n');
+                }
             }
         }
-        }.run();
 
         // Return the information
         return errorBuffer.toString();
@@ -2425,6 +2452,24 @@ public class Application
      */
     public void killInstance()
     {
+        try
+        {
+            // Save any error counts that have not been written yet
+            LoggedErrorRecorder.recorder().flush();
+        }
+        catch (Exception e)
+        {
+            log.error("unable to flush logged errors before shutdown", e);
+        }
+        try
+        {
+            // Don't lose WebDAV changes that are waiting to be pushed
+            WorkingCopyPushScheduler.scheduler().flush(30000);
+        }
+        catch (Exception e)
+        {
+            log.error("unable to push working copies before shutdown", e);
+        }
         String killAction =
             configurationProperties().getProperty("coreKillAction");
         if (killAction == null)
@@ -3082,6 +3127,10 @@ public class Application
 
         ApplicationStartupMessage.register();
         UnexpectedExceptionMessage.register();
+
+        // Create the outbox now, so that mail spooled before a restart is
+        // delivered right away, instead of when the next message is sent
+        MailOutbox.outbox();
     }
 
 
@@ -119,6 +119,21 @@ public class Course
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * Get a database qualifier matching the courses that a user can
+     * access, which are those with an offering where the user is staff
+     * (the same rule as {@link #accessibleByUser(User)}).
+     * @param user The user to check.
+     * @return The qualifier
+     */
+    public static EOQualifier qualifierForAccessibleBy(User user)
+    {
+        return offerings.dot(CourseOffering.instructors).is(user).or(
+            offerings.dot(CourseOffering.graders).is(user));
+    }
+
+
     // ----------------------------------------------------------
     public Object validateNumber( Object value )
     {
@@ -260,6 +260,21 @@ public class CourseOffering
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * Get a database qualifier matching the course offerings that a user
+     * can access, which are those where the user is staff (the same rule
+     * as {@link #accessibleByUser(User)}).
+     *
+     * @param user The user to check
+     * @return The qualifier
+     */
+    public static EOQualifier qualifierForAccessibleBy(User user)
+    {
+        return instructors.is(user).or(graders.is(user));
+    }
+
+
     // ----------------------------------------------------------
     /**
      * Gets the array of graders (TAs) for this course offering.
@@ -25,6 +25,8 @@ import com.webobjects.appserver.*;
 import com.webobjects.foundation.*;
 import java.io.*;
 import org.webcat.core.DeliverFile;
+import org.webcat.core.http.FileDelivery;
+import org.webcat.core.http.SpillingOutputStream;
 import org.webcat.core.Session;
 import org.apache.log4j.Logger;
 
@@ -114,6 +116,24 @@ public class DeliverFile
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * Set a writer that generates the content to deliver, for content
+     * such as zipped folders that would otherwise have to be built in
+     * memory with setFileData().  The writer is called while the response
+     * is generated.  Its output is kept in memory only up to a small
+     * limit and is otherwise moved to a temporary file, so the size of
+     * the content does not affect the server's memory use.  A content
+     * writer takes precedence over any file data.
+     *
+     * @param writer the writer that generates the content
+     */
+    public void setContentWriter( ContentWriter writer )
+    {
+        contentWriter = writer;
+    }
+
+
     // ----------------------------------------------------------
     /**
      * Set the MIME type for the associated file content.  Any
@@ -178,35 +198,55 @@ public class DeliverFile
     {
         if ( fileName == null )
         {
-            if ( fileData == null )
+            if ( fileData == null && contentWriter == null )
             {
                 log.error( "no file name or file data specified" );
             }
             fileName = new File( "file.dat" );
         }
 
-        if ( fileData == null )
+        if ( contentWriter != null )
+        {
+            SpillingOutputStream out =
+                new SpillingOutputStream( CONTENT_MEMORY_LIMIT );
+            try
+            {
+                contentWriter.writeTo( out );
+                out.sendTo( response );
+            }
+            catch ( Exception e )
+            {
+                log.error( "cannot generate content for " + fileName, e );
+                out.discard();
+                response.setContent( "" );
+            }
+        }
+        else if ( fileData == null )
         {
-            log.debug( "no file data provided, attempting to read from "
+            // Stream the file straight from disk, rather than loading the
+            // whole thing into memory first
+            log.debug( "no file data provided, attempting to stream from "
                        + fileName );
             try
             {
-                FileInputStream stream = new FileInputStream( fileName );
-                fileData = new NSData( stream, (int)fileName.length() );
-                stream.close();
+                FileDelivery.sendFile( fileName, context.request(), response );
             }
             catch ( Exception e )
             {
                 log.error( "cannot read data from file", e );
+                response.setContent( "" );
             }
         }
+        else
+        {
+            response.setContent( fileData );
+        }
 
         if ( contentType == null )
         {
             log.debug( "no content type provided, using default" );
             contentType = defaultContentType;
         }
-        response.setContent( fileData );
         response.setHeader( contentType, "content-type" );
 
         // TA: Allow the download to be presented to the user with a different
@@ -244,11 +284,33 @@ public class DeliverFile
     }
 
 
+    //~ Nested classes ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Generates content for delivery.
+     *
+     * @see DeliverFile#setContentWriter(ContentWriter)
+     */
+    public interface ContentWriter
+    {
+        // ----------------------------------------------------------
+        /**
+         * Write the content to a stream.
+         *
+         * @param out the stream to write to, which should not be closed
+         * @throws IOException if the content cannot be generated
+         */
+        void writeTo( OutputStream out )
+            throws IOException;
+    }
+
+
     //~ Instance/static variables .............................................
 
     /**
      * The file data to deliver.  If it is not provided using
-     * setFileData(), then the contents will be read directly from
+     * setFileData(), then the contents will be streamed directly from
      * the given file on disk.
      */
     protected NSData  fileData;
@@ -262,9 +324,13 @@ public class DeliverFile
     protected boolean startDownload = false;
     /** The MIME type of the file's content. */
     protected String  contentType;
+    /** If not null, generates the content to deliver. */
+    protected ContentWriter contentWriter;
 
     private static final String defaultContentType = "text/plain";
         // "application/octet-stream";
+    /** The most generated content to keep in memory before spilling. */
+    private static final int CONTENT_MEMORY_LIMIT = 1024 * 1024;
 
     static Logger log = Logger.getLogger( DeliverFile.class );
 }
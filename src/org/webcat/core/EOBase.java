@@ -20,11 +20,15 @@
 package org.webcat.core;
 
 import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import org.webcat.woextensions.WCEC;
 import com.webobjects.eoaccess.EOEntity;
 import com.webobjects.eoaccess.EOUtilities;
 import com.webobjects.eocontrol.EOEditingContext;
 import com.webobjects.eocontrol.EOGlobalID;
+import com.webobjects.eocontrol.EOQualifier;
 
 // -------------------------------------------------------------------------
 /**
@@ -115,6 +119,74 @@ public class EOBase
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * Get a qualifier that selects the objects of a given class that a user
+     * can access, in a form that can be translated to SQL, so that only the
+     * accessible objects need to be fetched.  Unlike
+     * {@link #accessibleBy(User)}, this does not treat administrators
+     * specially, since callers normally skip the restriction for them.
+     * <p>
+     * A class supports this by declaring a static method
+     * {@code qualifierForAccessibleBy(User)} that restates its
+     * {@link #accessibleByUser(User)} rule in terms of its attributes and
+     * relationships.  Classes that do not (because their rule cannot be
+     * expressed that way) must be filtered in memory with
+     * {@link #accessibleBy(User)} instead.
+     * </p>
+     *
+     * @param type The class of objects to be fetched.
+     * @param user The user to check.
+     * @return The qualifier, or null if the class cannot express its
+     *     access rule as a database qualifier.
+     */
+    public static EOQualifier accessibleByQualifier(
+        Class<? extends EOBase> type, User user)
+    {
+        Method method;
+        synchronized (accessQualifierMethods)
+        {
+            if (accessQualifierMethods.containsKey(type))
+            {
+                method = accessQualifierMethods.get(type);
+            }
+            else
+            {
+                try
+                {
+                    method = type.getMethod(
+                        "qualifierForAccessibleBy", User.class);
+                    if (!EOQualifier.class.isAssignableFrom(
+                        method.getReturnType()))
+                    {
+                        method = null;
+                    }
+                }
+                catch (NoSuchMethodException e)
+                {
+                    method = null;
+                }
+                accessQualifierMethods.put(type, method);
+            }
+        }
+
+        if (method == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            return (EOQualifier) method.invoke(null, user);
+        }
+        catch (Exception e)
+        {
+            log.error("Unable to get access qualifier for " + type, e);
+            return null;
+        }
+    }
+
+
     // ----------------------------------------------------------
     /**
      * Gets the database ID of the object. This method is defined here so that
@@ -277,4 +349,12 @@ public class EOBase
             return null;
         }
     }
+
+
+    //~ Instance/static variables .............................................
+
+    // Maps each class to its qualifierForAccessibleBy() method, or to null
+    // if it has none
+    private static final Map<Class<?>, Method> accessQualifierMethods =
+        Collections.synchronizedMap(new HashMap<Class<?>, Method>());
 }
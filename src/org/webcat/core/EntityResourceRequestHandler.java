@@ -22,12 +22,12 @@
 package org.webcat.core;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import org.webcat.core.Application;
 import org.webcat.core.EntityResourceRequestHandler;
 import org.webcat.core.EntityResourceHandler;
 import org.webcat.core.Session;
+import org.webcat.core.http.FileDelivery;
 import org.webcat.woextensions.ECAction;
 import org.webcat.woextensions.WCFetchSpecification;
 import static org.webcat.woextensions.ECAction.run;
@@ -43,7 +43,6 @@ import com.webobjects.eocontrol.EOEditingContext;
 import com.webobjects.eocontrol.EOEnterpriseObject;
 import com.webobjects.eocontrol.EOFetchSpecification;
 import com.webobjects.foundation.NSArray;
-import com.webobjects.foundation.NSData;
 import com.webobjects.foundation.NSMutableDictionary;
 import er.extensions.eof.ERXQ;
 
@@ -255,8 +254,8 @@ public class EntityResourceRequestHandler
                     {
                         if (canAccessObject(object, handler, session))
                         {
-                            generateResponse(response, handler, object,
-                                    entityRequest.resourcePath());
+                            generateResponse(request, response, handler,
+                                    object, entityRequest.resourcePath());
                         }
                         else
                         {
@@ -438,6 +437,7 @@ public class EntityResourceRequestHandler
 
     // ----------------------------------------------------------
     private void generateResponse(
+        WORequest request,
         WOResponse response,
         EntityResourceHandler<EOEnterpriseObject> handler,
         EOEnterpriseObject object,
@@ -482,13 +482,9 @@ public class EntityResourceRequestHandler
                 log.debug("Generating response from contents of file: "
                         + absolutePath.getAbsolutePath());
 
-                FileInputStream stream = null;
-
                 try
                 {
-                    stream = new FileInputStream(absolutePath);
-                    response.setContent(new NSData(stream, 0));
-                    response.setStatus(WOResponse.HTTP_STATUS_OK);
+                    FileDelivery.sendFile(absolutePath, request, response);
                 }
                 catch (IOException e)
                 {
@@ -497,20 +493,6 @@ public class EntityResourceRequestHandler
 
                     response.setStatus(WOResponse.HTTP_STATUS_NOT_FOUND);
                 }
-                finally
-                {
-                    if (stream != null)
-                    {
-                        try
-                        {
-                            stream.close();
-                        }
-                        catch (IOException e)
-                        {
-                            // Do nothing.
-                        }
-                    }
-                }
             }
         }
         else
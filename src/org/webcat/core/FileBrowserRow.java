@@ -21,18 +21,18 @@
 
 package org.webcat.core;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FilenameFilter;
-import java.util.zip.ZipOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import org.apache.log4j.Logger;
+import org.webcat.archives.DirectoryZipper;
 import org.webcat.ui.generators.JavascriptGenerator;
 import com.webobjects.appserver.WOActionResults;
 import com.webobjects.appserver.WOComponent;
 import com.webobjects.appserver.WOContext;
 import com.webobjects.appserver.WOResponse;
 import com.webobjects.foundation.NSArray;
-import com.webobjects.foundation.NSData;
 import com.webobjects.foundation.NSMutableArray;
 import com.webobjects.foundation.NSTimestamp;
 import er.extensions.foundation.ERXArrayUtilities;
@@ -488,15 +488,14 @@ public class FileBrowserRow
             File zipFile = new File(file.getName() + ".zip");
             nextPage.setFileName(zipFile);
             nextPage.setContentType(FileUtilities.mimeType(zipFile));
-            ByteArrayOutputStream boas = new ByteArrayOutputStream();
-            ZipOutputStream       zos  = new ZipOutputStream(boas);
-            FileUtilities.appendToZip(
-                file,
-                zos,
-                file.getCanonicalPath().length());
-            zos.close();
-            nextPage.setFileData(new NSData(boas.toByteArray()));
-            boas.close();
+            final DirectoryZipper zipper = new DirectoryZipper(file);
+            nextPage.setContentWriter(new DeliverFile.ContentWriter() {
+                public void writeTo(OutputStream out)
+                    throws IOException
+                {
+                    zipper.writeTo(out);
+                }
+            });
         }
         else
         {
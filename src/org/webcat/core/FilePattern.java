@@ -22,12 +22,11 @@
 package org.webcat.core;
 
 import java.io.File;
-import java.util.regex.Pattern;
 
 //--------------------------------------------------------------------------
 /**
- * This class internally converts a DOS-style wildcard pattern into a regular
- * expression that can be used to match filenames.
+ * This class matches filenames against a DOS-style wildcard pattern, which
+ * is compiled once into a {@link GlobPattern}.
  *
  * @author  Tony Allevato (Virginia Tech Computer Science)
  * @author  latest changes by: $Author: aallowat $
@@ -45,33 +44,7 @@ public class FilePattern
      */
     public FilePattern(String pattern)
     {
-        int length = pattern.length();
-
-        StringBuffer buffer = new StringBuffer(length);
-
-        for (int i = 0; i < length; i++)
-        {
-            char c = pattern.charAt(i);
-
-            if (!Character.isLetterOrDigit(c))
-            {
-                switch (c)
-                {
-                    case '?': // Fall through
-                    case '*':
-                        buffer.append('.');
-                        break;
-
-                    default:
-                        buffer.append('\\');
-                        break;
-                }
-            }
-
-            buffer.append(c);
-        }
-
-        this.pattern = Pattern.compile(buffer.toString());
+        this.pattern = GlobPattern.compile(pattern);
     }
 
 
@@ -86,7 +59,7 @@ public class FilePattern
      */
     public boolean matches(String path)
     {
-        return pattern.matcher(path).matches();
+        return pattern.matches(path);
     }
 
 
@@ -112,12 +85,12 @@ public class FilePattern
     @Override
     public String toString()
     {
-        return "<FilePattern: " + pattern + ">";
+        return "<FilePattern: " + pattern.pattern() + ">";
     }
 
 
     //~ Static/instance variables .............................................
 
-    /* The regular expression that represents this file pattern. */
-    private Pattern pattern;
+    /* The compiled form of this file pattern. */
+    private GlobPattern pattern;
 }
@@ -304,12 +304,12 @@ public class FilePickerDialog
     {
         GitRef ref = refForModelObject(refModel.selectedObjects().anyObject());
 
-        NSArray<GitCommit> commits =
-            entry.repository().commitsWithId(ref.objectId(), entry.path());
+        GitCommit commit = entry.repository().commitQuery(ref.objectId())
+            .path(entry.path()).first();
 
-        if (commits != null && commits.count() > 0)
+        if (commit != null)
         {
-            return commits.objectAtIndex(0).commitTime();
+            return commit.commitTime();
         }
         else
         {
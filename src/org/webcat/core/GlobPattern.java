@@ -0,0 +1,306 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+//--------------------------------------------------------------------------
+/**
+ * <p>
+ * A compiled DOS-style wildcard pattern, as used by {@link FilePattern} and
+ * for each path component of a {@link PathMatcher} pattern.  The pattern is
+ * parsed once into a small token program, and each match runs that program
+ * directly over the string, in time proportional to the length of the
+ * string times the length of the pattern, with no regular expressions
+ * involved.
+ * </p><p>
+ * The wildcards have the same meaning they have always had in these
+ * classes:
+ * </p>
+ * <ul>
+ * <li><code>*</code> matches any run of characters, including none</li>
+ * <li><code>?</code> matches any single character, or none</li>
+ * </ul>
+ * <p>
+ * All other characters match only themselves.  As with the regular
+ * expressions these patterns used to be translated into, wildcards do not
+ * match line terminators, and strings are matched by Unicode code point,
+ * so a wildcard matches a supplementary character (a surrogate pair) as a
+ * single character.
+ * </p><p>
+ * Use {@link #compile(String)} to share compiled patterns; compiled
+ * patterns are immutable and thread-safe.
+ * </p>
+ *
+ * @author  Stephen Edwards
+ */
+public final class GlobPattern
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    private GlobPattern(String pattern)
+    {
+        this.pattern = pattern;
+
+        int length = pattern.length();
+        ops = new byte[length];
+        codePoints = new int[length];
+        int count = 0;
+        boolean literal = true;
+
+        for (int i = 0; i < length; )
+        {
+            int c = pattern.codePointAt(i);
+            i += Character.charCount(c);
+            switch (c)
+            {
+                case '*':
+                    // Adjacent stars are the same as one
+                    if (count == 0 || ops[count - 1] != ANY_RUN)
+                    {
+                        ops[count++] = ANY_RUN;
+                    }
+                    literal = false;
+                    break;
+
+                case '?':
+                    ops[count++] = ANY_OPTIONAL;
+                    literal = false;
+                    break;
+
+                default:
+                    ops[count] = LITERAL;
+                    codePoints[count++] = c;
+                    break;
+            }
+        }
+
+        size = count;
+        isLiteral = literal;
+    }
+
+
+    //~ Methods ...............................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the compiled form of a pattern, compiling it only if it has not
+     * been used recently.
+     *
+     * @param pattern the wildcard pattern
+     * @return the compiled pattern
+     */
+    public static GlobPattern compile(String pattern)
+    {
+        GlobPattern result = cache.get(pattern);
+        if (result == null)
+        {
+            if (cache.size() >= MAX_CACHED)
+            {
+                cache.clear();
+            }
+            result = new GlobPattern(pattern);
+            GlobPattern existing = cache.putIfAbsent(pattern, result);
+            if (existing != null)
+            {
+                result = existing;
+            }
+        }
+        return result;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the pattern this object was compiled from.
+     *
+     * @return the pattern
+     */
+    public String pattern()
+    {
+        return pattern;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Determines whether the pattern contains no wildcards, so that it
+     * only matches a string equal to itself.
+     *
+     * @return true if the pattern is a plain string
+     */
+    public boolean isLiteral()
+    {
+        return isLiteral;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Determines if an entire string matches the pattern.
+     *
+     * @param string the string to test
+     * @return true if the string matches the pattern; otherwise, false
+     */
+    public boolean matches(CharSequence string)
+    {
+        if (isLiteral)
+        {
+            return pattern.contentEquals(string);
+        }
+
+        // Run the program as a nondeterministic automaton: state i means
+        // "the first i tokens have matched", and state size accepts.
+        // Both wildcards may match nothing, so a state before a wildcard
+        // also puts the state after it in play.
+        boolean[] current = new boolean[size + 1];
+        boolean[] next = new boolean[size + 1];
+        current[0] = true;
+        closeOver(current);
+
+        int length = string.length();
+        for (int pos = 0; pos < length; )
+        {
+            int c = Character.codePointAt(string, pos);
+            pos += Character.charCount(c);
+            boolean wild = !isLineTerminator(c);
+            boolean any = false;
+
+            for (int i = 0; i < size; i++)
+            {
+                next[i] = false;
+            }
+            next[size] = false;
+
+            for (int i = 0; i < size; i++)
+            {
+                if (current[i])
+                {
+                    switch (ops[i])
+                    {
+                        case LITERAL:
+                            if (codePoints[i] == c)
+                            {
+                                next[i + 1] = any = true;
+                            }
+                            break;
+
+                        case ANY_OPTIONAL:
+                            if (wild)
+                            {
+                                next[i + 1] = any = true;
+                            }
+                            break;
+
+                        default:
+                            if (wild)
+                            {
+                                next[i] = any = true;
+                            }
+                            break;
+                    }
+                }
+            }
+
+            if (!any)
+            {
+                return false;
+            }
+            closeOver(next);
+
+            boolean[] swap = current;
+            current = next;
+            next = swap;
+        }
+
+        return current[size];
+    }
+
+
+    // ----------------------------------------------------------
+    @Override
+    public boolean equals(Object other)
+    {
+        return other instanceof GlobPattern
+            && pattern.equals(((GlobPattern) other).pattern);
+    }
+
+
+    // ----------------------------------------------------------
+    @Override
+    public int hashCode()
+    {
+        return pattern.hashCode();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets a human-readable description of the object.
+     *
+     * @return a human-readable description of the object
+     */
+    @Override
+    public String toString()
+    {
+        return "<GlobPattern: " + pattern + ">";
+    }
+
+
+    // ----------------------------------------------------------
+    private void closeOver(boolean[] states)
+    {
+        // Wildcards only ever skip forward, so one pass is enough
+        for (int i = 0; i < size; i++)
+        {
+            if (states[i] && ops[i] != LITERAL)
+            {
+                states[i + 1] = true;
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private static boolean isLineTerminator(int c)
+    {
+        return c == '\n' || c == '\r' || c == '\u0085'
+            || c == '\u2028' || c == '\u2029';
+    }
+
+
+    //~ Static/instance variables .............................................
+
+    private final String pattern;
+    private final boolean isLiteral;
+    private final int size;
+    private final byte[] ops;
+    private final int[] codePoints;
+
+    private static final byte LITERAL = 0;
+    private static final byte ANY_OPTIONAL = 1;
+    private static final byte ANY_RUN = 2;
+
+    private static final int MAX_CACHED = 4096;
+    private static final ConcurrentMap<String, GlobPattern> cache =
+        new ConcurrentHashMap<String, GlobPattern>();
+}
@@ -0,0 +1,340 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.core;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+//--------------------------------------------------------------------------
+/**
+ * <p>
+ * Tests paths against many {@link PathMatcher}-style patterns at once, for
+ * include and exclude lists that are applied to every file in a
+ * submission, archive, or repository.  Each path is split into components
+ * only once, and all of the patterns then advance together, one path
+ * component at a time, so a path costs one pass no matter how many
+ * patterns there are.  Patterns that share a component (such as
+ * "&#42;.java" or "src") test it against each path component only once.
+ * </p><p>
+ * Every pattern matches exactly the paths that a {@link PathMatcher} for
+ * it would, including its treatment of relative patterns, leading and
+ * trailing slashes, and "&#42;&#42;".
+ * </p><p>
+ * A set is immutable once created and may be shared between threads.
+ * </p>
+ *
+ * @author  Stephen Edwards
+ */
+public class GlobSet
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Creates a set of patterns.
+     *
+     * @param patterns the Ant-style patterns, in the order that their
+     *     indices will refer to
+     */
+    public GlobSet(String... patterns)
+    {
+        this(Arrays.asList(patterns));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Creates a set of patterns.
+     *
+     * @param patterns the Ant-style patterns, in the order that their
+     *     indices will refer to
+     */
+    public GlobSet(Collection<String> patterns)
+    {
+        Map<GlobPattern, Integer> ids = new HashMap<GlobPattern, Integer>();
+        programs = new Program[patterns.size()];
+        int index = 0;
+
+        for (String pattern : patterns)
+        {
+            programs[index++] = new Program(pattern, ids);
+        }
+
+        globs = new GlobPattern[ids.size()];
+        for (Map.Entry<GlobPattern, Integer> entry : ids.entrySet())
+        {
+            globs[entry.getValue()] = entry.getKey();
+        }
+    }
+
+
+    //~ Methods ...............................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the number of patterns in this set.
+     *
+     * @return the number of patterns
+     */
+    public int size()
+    {
+        return programs.length;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets one of the patterns in this set, as it was given.
+     *
+     * @param index the position of the pattern
+     * @return the pattern
+     */
+    public String pattern(int index)
+    {
+        return programs[index].source;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Determines whether any pattern in this set matches a path.
+     *
+     * @param path the path to test
+     * @return true if at least one pattern matches
+     */
+    public boolean matchesAny(String path)
+    {
+        return !matching(path).isEmpty();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Determines which patterns in this set match a path.
+     *
+     * @param path the path to test
+     * @return the indices of the matching patterns
+     */
+    public BitSet matching(String path)
+    {
+        String[] parts = PathMatcher.getPathComponents(path);
+        boolean startsWithSeparator = path.startsWith(SEPARATOR);
+        boolean endsWithSeparator = path.endsWith(SEPARATOR);
+        BitSet result = new BitSet(programs.length);
+
+        // Start every pattern whose anchoring allows this path
+        int[] live = new int[programs.length];
+        int liveCount = 0;
+        boolean[][] states = new boolean[programs.length][];
+        boolean[][] scratch = new boolean[programs.length][];
+        for (int p = 0; p < programs.length; p++)
+        {
+            Program program = programs[p];
+            if (program.startsWithGlobstar
+                || program.startsWithSeparator == startsWithSeparator)
+            {
+                states[p] = new boolean[program.length + 1];
+                scratch[p] = new boolean[program.length + 1];
+                states[p][0] = true;
+                program.closeOver(states[p]);
+                live[liveCount++] = p;
+            }
+        }
+
+        // Results of matching the current path component against each
+        // distinct compiled component: 0 = not tried, 1 = yes, 2 = no
+        byte[] tried = new byte[globs.length];
+
+        for (int k = 0; k < parts.length && liveCount > 0; k++)
+        {
+            String part = parts[k];
+            Arrays.fill(tried, (byte) 0);
+            int kept = 0;
+
+            for (int n = 0; n < liveCount; n++)
+            {
+                int p = live[n];
+                Program program = programs[p];
+                boolean[] current = states[p];
+                boolean[] next = scratch[p];
+                boolean any = false;
+                Arrays.fill(next, false);
+
+                for (int i = 0; i < program.length; i++)
+                {
+                    if (!current[i])
+                    {
+                        continue;
+                    }
+
+                    int id = program.globIds[i];
+                    if (id == GLOBSTAR)
+                    {
+                        next[i] = any = true;
+                    }
+                    else
+                    {
+                        if (tried[id] == 0)
+                        {
+                            tried[id] = globs[id].matches(part)
+                                ? (byte) 1
+                                : (byte) 2;
+                        }
+                        if (tried[id] == 1)
+                        {
+                            next[i + 1] = any = true;
+                        }
+                    }
+                }
+
+                if (any)
+                {
+                    program.closeOver(next);
+                    states[p] = next;
+                    scratch[p] = current;
+                    live[kept++] = p;
+                }
+            }
+
+            liveCount = kept;
+        }
+
+        for (int n = 0; n < liveCount; n++)
+        {
+            int p = live[n];
+            if (programs[p].accepts(states[p], endsWithSeparator))
+            {
+                result.set(p);
+            }
+        }
+
+        return result;
+    }
+
+
+    //~ Nested classes ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * One pattern, as a sequence of path components.  State i means that
+     * the first i components have been matched.
+     */
+    private static class Program
+    {
+        // ----------------------------------------------------------
+        public Program(String source, Map<GlobPattern, Integer> ids)
+        {
+            PathMatcher matcher = new PathMatcher(source);
+            String pattern = matcher.pattern();
+            String[] components = matcher.patternComponents();
+            GlobPattern[] compiled = matcher.componentGlobs();
+
+            this.source = source;
+            length = components.length;
+            globIds = new int[length];
+            startsWithSeparator = pattern.startsWith(SEPARATOR);
+            startsWithGlobstar = pattern.startsWith("**/");
+            endsWithSeparator = pattern.endsWith(SEPARATOR);
+            endsWithStar = length > 0 && "*".equals(components[length - 1]);
+
+            boolean globstar = false;
+            for (int i = 0; i < length; i++)
+            {
+                if (compiled[i] == null)
+                {
+                    globIds[i] = GLOBSTAR;
+                    globstar = true;
+                }
+                else
+                {
+                    Integer id = ids.get(compiled[i]);
+                    if (id == null)
+                    {
+                        id = ids.size();
+                        ids.put(compiled[i], id);
+                    }
+                    globIds[i] = id;
+                }
+            }
+            hasGlobstar = globstar;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Adds the states reachable by letting a "**" match nothing.
+         */
+        public void closeOver(boolean[] states)
+        {
+            for (int i = 0; i < length; i++)
+            {
+                if (states[i] && globIds[i] == GLOBSTAR)
+                {
+                    states[i + 1] = true;
+                }
+            }
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Determines whether the states left after the whole path has been
+         * read mean a match.
+         */
+        public boolean accepts(boolean[] states, boolean pathEndsWithSeparator)
+        {
+            if (hasGlobstar)
+            {
+                return states[length];
+            }
+
+            // Without a "**", PathMatcher requires the trailing separators
+            // to agree, but lets a final "*" match a directory path
+            return (states[length]
+                    && endsWithSeparator == pathEndsWithSeparator)
+                || (endsWithStar && states[length - 1]
+                    && pathEndsWithSeparator);
+        }
+
+
+        //~ Instance/static variables .........................................
+
+        public final String source;
+        public final int length;
+        public final int[] globIds;
+        public final boolean startsWithSeparator;
+        public final boolean startsWithGlobstar;
+        public final boolean endsWithSeparator;
+        public final boolean endsWithStar;
+        public final boolean hasGlobstar;
+    }
+
+
+    //~ Static/instance variables .............................................
+
+    private final Program[] programs;
+    private final GlobPattern[] globs;
+
+    private static final int GLOBSTAR = -1;
+    private static final String SEPARATOR = "/";
+}
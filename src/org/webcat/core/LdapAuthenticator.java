@@ -21,13 +21,24 @@ package org.webcat.core;
 
 import com.webobjects.eoaccess.*;
 import com.webobjects.eocontrol.EOEditingContext;
-import edu.vt.middleware.ldap.*;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.SizeLimitExceededException;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
 import org.apache.log4j.Logger;
 
 // --------------------------------------------------------------------------
 /**
  *  A concrete implementation of <code>UserAuthenticator</code> that
- *  tests user ids/passwords using LDAP.
+ *  tests user ids/passwords using LDAP.  Connections to the server are
+ *  kept in an {@link LdapConnectionPool}, so that each login costs a
+ *  search and a bind rather than a new (possibly TLS) connection.  The
+ *  pool is configured with the properties "baseName.ldap.pool.maxSize",
+ *  "baseName.ldap.pool.idleSeconds", "baseName.ldap.pool.maxWaitMillis",
+ *  and "baseName.ldap.pool.reuseForUserBinds".  An authorization filter
+ *  given by "baseName.ldap.authFilter" is evaluated as the user who is
+ *  logging in, unless "baseName.ldap.authFilterAsServiceUser" is true.
  *
  *  @author  Stephen Edwards
  */
@@ -95,8 +106,6 @@ public class LdapAuthenticator
         log.debug(baseName + ": host = " + host + ", context = " + base
             + ", user field = " + userField);
 
-        AuthenticatorConfig config = new AuthenticatorConfig(host, base);
-
         String bindDN =  properties.getProperty( baseName + ".ldap.bindDN" );
         String bindPassword =
             properties.getProperty( baseName + ".ldap.bindPassword" );
@@ -116,45 +125,44 @@ public class LdapAuthenticator
         }
         if (bindDN != null)
         {
-            config.setServiceUser(bindDN);
             log.debug(baseName + ": bindDN = " + bindDN);
         }
-        if (bindPassword != null)
-        {
-            config.setServiceCredential(bindPassword);
-            log.debug(baseName + ": bindPassword = " + bindPassword);
-        }
+        if (!result) return result;
 
-        config.setSubtreeSearch(
-            properties.booleanForKey( baseName + ".ldap.searchSubtrees" ) );
+        this.context = base;
+        this.userField = userField;
+        this.searchControls = new SearchControls();
+        searchControls.setSearchScope(
+            properties.booleanForKey( baseName + ".ldap.searchSubtrees" )
+            ? SearchControls.SUBTREE_SCOPE
+            : SearchControls.ONELEVEL_SCOPE);
+        searchControls.setReturningAttributes(new String[0]);
+        searchControls.setCountLimit(2);
 
         String authFilter =
             properties.getProperty( baseName + ".ldap.authFilter" );
         if (authFilter != null && !authFilter.equals(""))
         {
-            config.setAuthorizationFilter(authFilter);
+            this.authFilter = authFilter;
         }
+        this.authFilterAsServiceUser = properties.booleanForKey(
+            baseName + ".ldap.authFilterAsServiceUser");
 
-        config.setUserField(new String[] {userField});
-        authenticator = new Authenticator(config);
+        boolean useTls = properties.booleanForKey(baseName + ".useTLS");
+        log.debug(baseName + ": turning TLS " + (useTls ? "on" : "off"));
 
-        try
-        {
-            if (properties.booleanForKey(baseName + ".useTLS"))
-            {
-                log.debug(baseName + ": turning TLS on");
-                authenticator.useTls(true);
-            }
-            else
-            {
-                log.debug(baseName + ": turning TLS off");
-                authenticator.useTls(false);
-            }
-        }
-        catch (Exception e)
-        {
-            log.error("Cannot use TLS:", e);
-        }
+        pool = new LdapConnectionPool(
+            baseName, host, useTls, bindDN, bindPassword);
+        pool.setMaxSize(properties.intForKeyWithDefault(
+            baseName + ".ldap.pool.maxSize", pool.maxSize()));
+        pool.setIdleMillis(1000L * properties.intForKeyWithDefault(
+            baseName + ".ldap.pool.idleSeconds",
+            (int)(pool.idleMillis() / 1000)));
+        pool.setMaxWaitMillis(properties.intForKeyWithDefault(
+            baseName + ".ldap.pool.maxWaitMillis",
+            (int)pool.maxWaitMillis()));
+        pool.setReuseForUserBinds(properties.booleanForKeyWithDefault(
+            baseName + ".ldap.pool.reuseForUserBinds", true));
 
         this.cacheInSession =
             properties.booleanForKey(baseName + ".cacheInSession");
@@ -268,7 +276,7 @@ public class LdapAuthenticator
         if (!result) {
             try
             {
-                result = authenticator.authenticate(username, password);
+                result = authenticate(username, password);
                 log.info("user " + username + ": ldap forced auth, result = "
                     + result);
             }
@@ -282,9 +290,180 @@ public class LdapAuthenticator
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * Check a user id/password against the LDAP server.  The user's DN is
+     * found by searching as the service user on a pooled connection, then
+     * the password is checked with a bind as that DN (on the same
+     * connection, if the pool allows it).  If an authorization filter is
+     * configured, the user's entry must also match it.  The filter is
+     * evaluated after the bind, on a connection bound as the user, so that
+     * it sees what the user may read; when the pool does not reuse
+     * connections for user binds, the user's own connection is kept open
+     * for it.  If the authenticator is configured to evaluate the filter
+     * as the service user instead, it is checked before the bind.
+     *
+     * @param username The user id to validate
+     * @param password The password to check
+     * @return True if the user id/password are valid
+     * @throws NamingException if the server cannot be reached
+     */
+    private boolean authenticate(String username, String password)
+        throws NamingException
+    {
+        if (password == null || password.length() == 0)
+        {
+            // An empty password would be an anonymous bind
+            return false;
+        }
+
+        LdapConnectionPool.Connection connection = pool.borrow();
+        try
+        {
+            String dn = dnForUser(connection, username);
+            boolean filterAsUser = authFilter != null
+                && !authFilterAsServiceUser;
+            boolean result = dn != null;
+            if (result && authFilter != null && authFilterAsServiceUser)
+            {
+                result = matches(connection, dn, authFilter);
+                log.debug("user " + username + ": authorization = "
+                    + result);
+            }
+
+            if (result)
+            {
+                if (pool.reuseForUserBinds())
+                {
+                    result = connection.bind(dn, password);
+                    if (result && filterAsUser)
+                    {
+                        result = matches(connection, dn, authFilter);
+                        log.debug("user " + username + ": authorization = "
+                            + result);
+                    }
+                }
+                else if (filterAsUser)
+                {
+                    result = matchesAsUser(dn, password, authFilter);
+                    log.debug("user " + username + ": authorization = "
+                        + result);
+                }
+                else
+                {
+                    result = pool.bindOnce(dn, password);
+                }
+            }
+            pool.release(connection);
+            return result;
+        }
+        catch (NamingException e)
+        {
+            pool.discard(connection);
+            throw e;
+        }
+        catch (RuntimeException e)
+        {
+            pool.discard(connection);
+            throw e;
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private String dnForUser(
+        LdapConnectionPool.Connection connection, String username)
+        throws NamingException
+    {
+        NamingEnumeration<SearchResult> results =
+            connection.context().search(context, "(" + userField + "={0})",
+                new Object[] { username }, searchControls);
+        try
+        {
+            if (!results.hasMore())
+            {
+                log.debug("user " + username + ": no LDAP entry found");
+                return null;
+            }
+            String dn = results.next().getNameInNamespace();
+            if (results.hasMore())
+            {
+                log.warn("user " + username + ": more than one LDAP entry "
+                    + "found, refusing login");
+                return null;
+            }
+            return dn;
+        }
+        catch (SizeLimitExceededException e)
+        {
+            // The search is limited to two entries, so the server may
+            // report that there are more instead of returning them
+            log.warn("user " + username + ": more than one LDAP entry "
+                + "found, refusing login");
+            return null;
+        }
+        finally
+        {
+            results.close();
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Bind a new, unpooled connection as a user and check whether the
+     * user's entry matches a filter, as seen by that user.
+     * @return True if the bind succeeded and the entry matches
+     */
+    private boolean matchesAsUser(String dn, String password, String filter)
+        throws NamingException
+    {
+        LdapConnectionPool.Connection connection =
+            pool.openAsUser(dn, password);
+        if (connection == null)
+        {
+            return false;
+        }
+        try
+        {
+            return matches(connection, dn, filter);
+        }
+        finally
+        {
+            pool.closeUnpooled(connection);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private boolean matches(
+        LdapConnectionPool.Connection connection, String dn, String filter)
+        throws NamingException
+    {
+        SearchControls controls = new SearchControls();
+        controls.setSearchScope(SearchControls.OBJECT_SCOPE);
+        controls.setReturningAttributes(new String[0]);
+        NamingEnumeration<SearchResult> results =
+            connection.context().search(dn, filter, controls);
+        try
+        {
+            return results.hasMore();
+        }
+        finally
+        {
+            results.close();
+        }
+    }
+
+
     //~ Instance/static variables .............................................
 
     static Logger log = Logger.getLogger( LdapAuthenticator.class );
-    private Authenticator authenticator;
+    private LdapConnectionPool pool;
+    private String context;
+    private String userField;
+    private String authFilter;
+    private boolean authFilterAsServiceUser = false;
+    private SearchControls searchControls;
     private boolean cacheInSession = false;
 }
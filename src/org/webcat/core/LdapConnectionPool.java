@@ -0,0 +1,869 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.naming.AuthenticationException;
+import javax.naming.Context;
+import javax.naming.InterruptedNamingException;
+import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.ldap.InitialLdapContext;
+import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.StartTlsRequest;
+import javax.naming.ldap.StartTlsResponse;
+import org.apache.log4j.Logger;
+
+//-------------------------------------------------------------------------
+/**
+ * A bounded pool of LDAP connections for one authentication domain, used
+ * by {@link LdapAuthenticator}.  Connections are opened (with StartTLS, if
+ * requested) and bound as the domain's service user once, then reused for
+ * the searches that find each user's DN.  When
+ * {@link #setReuseForUserBinds(boolean)} is on, the user's own bind is
+ * also done on the pooled connection, and the connection is re-bound as
+ * the service user the next time it is borrowed.  A connection whose user
+ * bind fails is closed rather than reused.
+ * <p>
+ * At most {@link #maxSize()} connections are open at once; callers that
+ * find them all in use wait up to {@link #maxWaitMillis()}.  A connection
+ * that has sat idle for more than a few seconds is checked with a root DSE
+ * read before it is handed out, and connections that have been idle
+ * longer than {@link #idleMillis()} are closed by a background sweep.
+ * </p><p>
+ * Each pool keeps counters for pool waits and bind latency, which are
+ * shown on the system status page.
+ * </p>
+ *
+ * @author  Stephen Edwards
+ */
+public class LdapConnectionPool
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Create a new pool and register it for {@link #allPools()}.
+     * @param name              The name of the pool, usually the
+     *                          authenticator's base property name
+     * @param url               The LDAP URL (or space-separated URLs)
+     * @param useTls            True if StartTLS should be negotiated on
+     *                          each connection
+     * @param serviceUser       The DN to bind as for searches, or null to
+     *                          search anonymously
+     * @param serviceCredential The service user's password
+     */
+    public LdapConnectionPool(
+        String  name,
+        String  url,
+        boolean useTls,
+        String  serviceUser,
+        String  serviceCredential)
+    {
+        this.name = name;
+        this.url = url;
+        this.useTls = useTls;
+        this.serviceUser = serviceUser;
+        this.serviceCredential = serviceCredential;
+
+        LdapConnectionPool old = pools.put(name, this);
+        if (old != null)
+        {
+            old.close();
+        }
+    }
+
+
+    //~ Public Nested Classes .................................................
+
+    // ----------------------------------------------------------
+    /**
+     * A pooled connection.  Borrow one with {@link #borrow()}, and hand
+     * it back with {@link #release(Connection)}, or with
+     * {@link #discard(Connection)} if an operation on it failed.
+     */
+    public class Connection
+    {
+        // ----------------------------------------------------------
+        private Connection(LdapContext context, StartTlsResponse tls)
+        {
+            this.context = context;
+            this.tls = tls;
+            this.lastUsed = System.currentTimeMillis();
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Get the JNDI context for this connection.  It is bound as the
+         * service user when the connection is borrowed.
+         * @return The context
+         */
+        public LdapContext context()
+        {
+            return context;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Bind this connection as another user, to check that user's
+         * password.  If the bind fails, the connection must be discarded.
+         * @param dn       The user's DN
+         * @param password The user's password
+         * @return True if the bind succeeded
+         * @throws NamingException if the bind fails for any reason other
+         *                         than bad credentials
+         */
+        public boolean bind(String dn, String password)
+            throws NamingException
+        {
+            boundAsServiceUser = false;
+            long start = System.nanoTime();
+            try
+            {
+                setCredentials(context, dn, password);
+                context.reconnect(null);
+                return true;
+            }
+            catch (AuthenticationException e)
+            {
+                broken = true;
+                return false;
+            }
+            catch (NamingException e)
+            {
+                broken = true;
+                throw e;
+            }
+            finally
+            {
+                recordBind(System.nanoTime() - start);
+            }
+        }
+
+
+        // ----------------------------------------------------------
+        private void bindAsServiceUser()
+            throws NamingException
+        {
+            long start = System.nanoTime();
+            try
+            {
+                setCredentials(context, serviceUser, serviceCredential);
+                context.reconnect(null);
+                boundAsServiceUser = true;
+            }
+            finally
+            {
+                recordBind(System.nanoTime() - start);
+            }
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Make sure this connection is still alive, and bound as the
+         * service user.
+         * @return True if the connection can be used
+         */
+        private boolean prepare()
+        {
+            try
+            {
+                if (!boundAsServiceUser)
+                {
+                    bindAsServiceUser();
+                }
+                else if (System.currentTimeMillis() - lastUsed
+                    > VALIDATE_AFTER_MILLIS)
+                {
+                    context.getAttributes("", ROOT_DSE_ATTRIBUTES);
+                }
+                return true;
+            }
+            catch (NamingException e)
+            {
+                log.info(name + ": closing stale LDAP connection: " + e);
+                validationFailures.incrementAndGet();
+                return false;
+            }
+        }
+
+
+        // ----------------------------------------------------------
+        private void close()
+        {
+            try
+            {
+                if (tls != null)
+                {
+                    tls.close();
+                }
+            }
+            catch (IOException e)
+            {
+                log.debug(name + ": error ending TLS", e);
+            }
+            try
+            {
+                context.close();
+            }
+            catch (NamingException e)
+            {
+                log.debug(name + ": error closing LDAP connection", e);
+            }
+            openCount.decrementAndGet();
+        }
+
+
+        //~ Instance/static variables .........................................
+
+        private final LdapContext context;
+        private final StartTlsResponse tls;
+        private volatile long lastUsed;
+        private boolean boundAsServiceUser;
+        private boolean broken;
+    }
+
+
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Get the pool with the given name.
+     * @param name The pool's name
+     * @return The pool, or null if there is none
+     */
+    public static LdapConnectionPool poolNamed(String name)
+    {
+        return pools.get(name);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get all of the pools that have been created.
+     * @return A snapshot list of the pools
+     */
+    public static List<LdapConnectionPool> allPools()
+    {
+        return new ArrayList<LdapConnectionPool>(pools.values());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the name of this pool.
+     * @return The name
+     */
+    public String name()
+    {
+        return name;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the largest number of connections this pool will open.
+     * @return The maximum size
+     */
+    public int maxSize()
+    {
+        return maxSize;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the largest number of connections this pool will open.  This
+     * should be called before the pool is first used.
+     * @param size The maximum size
+     */
+    public void setMaxSize(int size)
+    {
+        size = Math.max(1, size);
+        int change = size - maxSize;
+        maxSize = size;
+        if (change > 0)
+        {
+            permits.release(change);
+        }
+        else if (change < 0)
+        {
+            permits.acquireUninterruptibly(-change);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get how long an idle connection is kept open.
+     * @return The idle time, in milliseconds
+     */
+    public long idleMillis()
+    {
+        return idleMillis;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set how long an idle connection is kept open.
+     * @param millis The idle time, in milliseconds
+     */
+    public void setIdleMillis(long millis)
+    {
+        idleMillis = Math.max(0, millis);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get how long {@link #borrow()} waits for a connection when all of
+     * them are in use.
+     * @return The wait limit, in milliseconds
+     */
+    public long maxWaitMillis()
+    {
+        return maxWaitMillis;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set how long {@link #borrow()} waits for a connection when all of
+     * them are in use.
+     * @param millis The wait limit, in milliseconds
+     */
+    public void setMaxWaitMillis(long millis)
+    {
+        maxWaitMillis = Math.max(0, millis);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the connect and read timeouts for new connections.
+     * @param connectMillis The connect timeout, in milliseconds
+     * @param readMillis    The read timeout, in milliseconds
+     */
+    public void setTimeouts(long connectMillis, long readMillis)
+    {
+        connectTimeoutMillis = connectMillis;
+        readTimeoutMillis = readMillis;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Determine whether user binds are done on pooled connections.
+     * @return True if pooled connections are reused for user binds
+     */
+    public boolean reuseForUserBinds()
+    {
+        return reuseForUserBinds;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set whether user binds are done on pooled connections.  Turn this
+     * off for servers that do not allow a connection to be re-bound.
+     * @param reuse True if pooled connections should be reused
+     */
+    public void setReuseForUserBinds(boolean reuse)
+    {
+        reuseForUserBinds = reuse;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get a connection bound as the service user, waiting if all
+     * connections are in use.
+     * @return The connection
+     * @throws NamingException if no connection becomes free in time, or
+     *                         a new connection cannot be opened
+     */
+    public Connection borrow()
+        throws NamingException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS))
+            {
+                waitTimeouts.incrementAndGet();
+                throw new ServiceUnavailableException("no LDAP connection "
+                    + "available in pool " + name + " after "
+                    + maxWaitMillis + "ms");
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedNamingException(
+                "interrupted waiting for LDAP connection in pool " + name);
+        }
+        recordWait(System.nanoTime() - start);
+
+        try
+        {
+            Connection connection = idle.pollFirst();
+            while (connection != null && !connection.prepare())
+            {
+                connection.close();
+                connection = idle.pollFirst();
+            }
+            if (connection == null)
+            {
+                connection = open();
+            }
+            else
+            {
+                reuseCount.incrementAndGet();
+            }
+            return connection;
+        }
+        catch (NamingException e)
+        {
+            permits.release();
+            throw e;
+        }
+        catch (RuntimeException e)
+        {
+            permits.release();
+            throw e;
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Return a connection to the pool.
+     * @param connection The connection
+     */
+    public void release(Connection connection)
+    {
+        if (connection.broken || closed)
+        {
+            discard(connection);
+            return;
+        }
+
+        connection.lastUsed = System.currentTimeMillis();
+        idle.offerFirst(connection);
+        permits.release();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Close a connection that should not be reused, and free its place
+     * in the pool.
+     * @param connection The connection
+     */
+    public void discard(Connection connection)
+    {
+        connection.close();
+        permits.release();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Check a user's password with a bind on a new, unpooled connection.
+     * This is used when {@link #reuseForUserBinds()} is off.
+     * @param dn       The user's DN
+     * @param password The user's password
+     * @return True if the bind succeeded
+     * @throws NamingException if the server cannot be reached
+     */
+    public boolean bindOnce(String dn, String password)
+        throws NamingException
+    {
+        Connection connection = openAsUser(dn, password);
+        if (connection == null)
+        {
+            return false;
+        }
+        closeUnpooled(connection);
+        return true;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Open a new, unpooled connection bound as a user, so that its
+     * password can be checked and further operations done as that user.
+     * The connection does not count against {@link #maxSize()}, and must
+     * be closed with {@link #closeUnpooled(Connection)} rather than
+     * released.
+     * @param dn       The user's DN
+     * @param password The user's password
+     * @return The connection, or null if the bind failed
+     * @throws NamingException if the server cannot be reached
+     */
+    public Connection openAsUser(String dn, String password)
+        throws NamingException
+    {
+        return open(dn, password);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Close a connection from {@link #openAsUser(String, String)}.
+     * @param connection The connection
+     */
+    public void closeUnpooled(Connection connection)
+    {
+        connection.close();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Close all idle connections and stop pooling new ones.
+     */
+    public void close()
+    {
+        closed = true;
+        pools.remove(name, this);
+        Connection connection = idle.pollFirst();
+        while (connection != null)
+        {
+            connection.close();
+            connection = idle.pollFirst();
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the mean time spent waiting for a connection, in milliseconds.
+     * @return The mean wait time
+     */
+    public long meanWaitMillis()
+    {
+        long count = borrowCount.get();
+        return count == 0 ? 0 : totalWaitNanos.get() / count / NANOS_PER_MILLI;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the mean time taken by a bind, in milliseconds.
+     * @return The mean bind time
+     */
+    public long meanBindMillis()
+    {
+        long count = bindCount.get();
+        return count == 0 ? 0 : totalBindNanos.get() / count / NANOS_PER_MILLI;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Produce a compact one-line summary of this pool's activity.
+     * @return The summary
+     */
+    public String summary()
+    {
+        return openCount.get() + "/" + maxSize + " open, " + idle.size()
+            + " idle, " + borrowCount.get() + " borrowed ("
+            + reuseCount.get() + " reused), wait avg " + meanWaitMillis()
+            + "ms/max " + maxWaitNanos.get() / NANOS_PER_MILLI + "ms, "
+            + waitTimeouts.get() + " timeouts, " + bindCount.get()
+            + " binds avg " + meanBindMillis() + "ms/max "
+            + maxBindNanos.get() / NANOS_PER_MILLI + "ms, "
+            + evictedCount.get() + " evicted, " + validationFailures.get()
+            + " stale";
+    }
+
+
+    // ----------------------------------------------------------
+    public String toString()
+    {
+        return name + ": " + summary();
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    private Connection open()
+        throws NamingException
+    {
+        Connection connection = open(serviceUser, serviceCredential);
+        if (connection == null)
+        {
+            throw new AuthenticationException(
+                "service user bind failed for pool " + name);
+        }
+        connection.boundAsServiceUser = true;
+        return connection;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Open a new connection and bind it.
+     * @return The connection, or null if the credentials were rejected
+     */
+    private Connection open(String dn, String password)
+        throws NamingException
+    {
+        Hashtable<String, Object> env = new Hashtable<String, Object>();
+        env.put(Context.INITIAL_CONTEXT_FACTORY, CONTEXT_FACTORY);
+        env.put(Context.PROVIDER_URL, url);
+        env.put(CONNECT_TIMEOUT, Long.toString(connectTimeoutMillis));
+        env.put(READ_TIMEOUT, Long.toString(readTimeoutMillis));
+        env.put(Context.SECURITY_AUTHENTICATION, "none");
+
+        LdapContext context = new InitialLdapContext(env, null);
+        openCount.incrementAndGet();
+        Connection connection = null;
+        StartTlsResponse tls = null;
+        try
+        {
+            if (useTls)
+            {
+                tls = (StartTlsResponse)context.extendedOperation(
+                    new StartTlsRequest());
+                tls.negotiate();
+            }
+            connection = new Connection(context, tls);
+            if (dn != null && !connection.bind(dn, password))
+            {
+                connection.close();
+                return null;
+            }
+            return connection;
+        }
+        catch (IOException e)
+        {
+            NamingException ne =
+                new NamingException("StartTLS failed for pool " + name);
+            ne.setRootCause(e);
+            throw closeAfter(connection, context, ne);
+        }
+        catch (NamingException e)
+        {
+            throw closeAfter(connection, context, e);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private NamingException closeAfter(
+        Connection connection, LdapContext context, NamingException e)
+    {
+        if (connection != null)
+        {
+            connection.close();
+        }
+        else
+        {
+            try
+            {
+                context.close();
+            }
+            catch (NamingException ignored)
+            {
+                // Already failing
+            }
+            openCount.decrementAndGet();
+        }
+        return e;
+    }
+
+
+    // ----------------------------------------------------------
+    private static void setCredentials(
+        LdapContext context, String dn, String password)
+        throws NamingException
+    {
+        if (dn == null)
+        {
+            context.addToEnvironment(Context.SECURITY_AUTHENTICATION, "none");
+            context.removeFromEnvironment(Context.SECURITY_PRINCIPAL);
+            context.removeFromEnvironment(Context.SECURITY_CREDENTIALS);
+        }
+        else
+        {
+            context.addToEnvironment(
+                Context.SECURITY_AUTHENTICATION, "simple");
+            context.addToEnvironment(Context.SECURITY_PRINCIPAL, dn);
+            context.addToEnvironment(Context.SECURITY_CREDENTIALS, password);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Close connections that have been idle longer than
+     * {@link #idleMillis()}.
+     */
+    private void evictIdle()
+    {
+        long cutoff = System.currentTimeMillis() - idleMillis;
+        Iterator<Connection> i = idle.descendingIterator();
+        while (i.hasNext())
+        {
+            Connection connection = i.next();
+            if (connection.lastUsed < cutoff && idle.remove(connection))
+            {
+                connection.close();
+                evictedCount.incrementAndGet();
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private void recordWait(long nanos)
+    {
+        borrowCount.incrementAndGet();
+        totalWaitNanos.addAndGet(nanos);
+        updateMax(maxWaitNanos, nanos);
+    }
+
+
+    // ----------------------------------------------------------
+    private void recordBind(long nanos)
+    {
+        bindCount.incrementAndGet();
+        totalBindNanos.addAndGet(nanos);
+        updateMax(maxBindNanos, nanos);
+    }
+
+
+    // ----------------------------------------------------------
+    private static void updateMax(AtomicLong max, long value)
+    {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value))
+        {
+            current = max.get();
+        }
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private final String name;
+    private final String url;
+    private final boolean useTls;
+    private final String serviceUser;
+    private final String serviceCredential;
+
+    private volatile int maxSize = DEFAULT_MAX_SIZE;
+    private volatile long idleMillis = DEFAULT_IDLE_MILLIS;
+    private volatile long maxWaitMillis = DEFAULT_MAX_WAIT_MILLIS;
+    private volatile long connectTimeoutMillis = DEFAULT_CONNECT_MILLIS;
+    private volatile long readTimeoutMillis = DEFAULT_READ_MILLIS;
+    private volatile boolean reuseForUserBinds = true;
+    private volatile boolean closed;
+
+    private final Semaphore permits = new Semaphore(DEFAULT_MAX_SIZE, true);
+    private final LinkedBlockingDeque<Connection> idle =
+        new LinkedBlockingDeque<Connection>();
+
+    private final AtomicInteger openCount = new AtomicInteger();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong reuseCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong waitTimeouts = new AtomicLong();
+    private final AtomicLong bindCount = new AtomicLong();
+    private final AtomicLong totalBindNanos = new AtomicLong();
+    private final AtomicLong maxBindNanos = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+
+    private static final int DEFAULT_MAX_SIZE = 8;
+    private static final long DEFAULT_IDLE_MILLIS = 5 * 60 * 1000L;
+    private static final long DEFAULT_MAX_WAIT_MILLIS = 10000L;
+    private static final long DEFAULT_CONNECT_MILLIS = 5000L;
+    private static final long DEFAULT_READ_MILLIS = 15000L;
+    private static final long VALIDATE_AFTER_MILLIS = 5000L;
+    private static final long EVICT_PERIOD_SECONDS = 60L;
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private static final String CONTEXT_FACTORY =
+        "com.sun.jndi.ldap.LdapCtxFactory";
+    private static final String CONNECT_TIMEOUT =
+        "com.sun.jndi.ldap.connect.timeout";
+    private static final String READ_TIMEOUT =
+        "com.sun.jndi.ldap.read.timeout";
+    private static final String[] ROOT_DSE_ATTRIBUTES =
+        { "supportedLDAPVersion" };
+
+    private static final Map<String, LdapConnectionPool> pools =
+        new ConcurrentHashMap<String, LdapConnectionPool>();
+
+    static Logger log = Logger.getLogger(LdapConnectionPool.class);
+
+    private static final ScheduledThreadPoolExecutor evictor =
+        new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "LdapConnectionPool-evictor");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    static
+    {
+        evictor.scheduleWithFixedDelay(new Runnable() {
+                public void run()
+                {
+                    for (LdapConnectionPool pool : pools.values())
+                    {
+                        try
+                        {
+                            pool.evictIdle();
+                        }
+                        catch (RuntimeException e)
+                        {
+                            log.error("error evicting idle LDAP connections "
+                                + "from " + pool.name, e);
+                        }
+                    }
+                }
+            },
+            EVICT_PERIOD_SECONDS, EVICT_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+}
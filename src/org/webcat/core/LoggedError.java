@@ -80,23 +80,53 @@ public class LoggedError
             ? trace[0]
             : new StackTraceElement("unknown", "unknown", "unknown", 0);
 
-        LoggedError result = null;
-        NSArray<LoggedError> results = errorsWithExceptionLocation(
+        return objectForLocation(
             context,
+            throwable.getClass().getName(),
             top.getClassName(),
-            top.getLineNumber(),
             top.getMethodName(),
-            throwable.getClass().getName() );
+            top.getLineNumber());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Retrieve the object associated with a given exception type and
+     * location, creating one with zero occurrences if none exists.
+     * Assumes the given editing context has been locked.
+     *
+     * @param context The editing context to use
+     * @param exceptionName The class name of the exception
+     * @param inClass The class where the exception was thrown
+     * @param inMethod The method where the exception was thrown
+     * @param line The line number where the exception was thrown
+     * @return the corresponding LoggedError object
+     */
+    public static LoggedError objectForLocation(
+            EOEditingContext context,
+            String           exceptionName,
+            String           inClass,
+            String           inMethod,
+            int              line
+        )
+    {
+        LoggedError result = null;
+        NSArray<LoggedError> results = errorsWithExceptionLocation(
+            context,
+            inClass,
+            line,
+            inMethod,
+            exceptionName );
         if (results != null && results.count() > 0)
         {
             result = results.objectAtIndex(0);
         }
         else
         {
-            result = create(context, top.getLineNumber(), 1);
-            result.setExceptionName(throwable.getClass().getName());
-            result.setInClass(top.getClassName());
-            result.setInMethod(top.getMethodName());
+            result = create(context, line, 0);
+            result.setExceptionName(exceptionName);
+            result.setInClass(inClass);
+            result.setInMethod(inMethod);
         }
         return result;
     }
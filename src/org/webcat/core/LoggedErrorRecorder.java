@@ -0,0 +1,546 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.core;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.log4j.Logger;
+import org.webcat.woextensions.ECActionWithResult;
+import com.webobjects.foundation.NSArray;
+import com.webobjects.foundation.NSTimestamp;
+import er.extensions.foundation.ERXExceptionUtilities;
+
+// -------------------------------------------------------------------------
+/**
+ * Counts exception occurrences in memory and periodically writes them to
+ * the database as {@link LoggedError} objects.
+ * <p>
+ * Recording an occurrence is just a hash lookup keyed by (exception class,
+ * class, method, line) and an atomic increment, so request threads that
+ * hit the same bug never wait on each other or on the database.  A
+ * background thread flushes the accumulated counts every
+ * <code>LoggedError.flushSeconds</code> seconds (default 5), updating each
+ * affected row once, with the details of the most recent occurrence, in a
+ * single save.
+ * </p>
+ *
+ * @author  Stephen Edwards
+ */
+public class LoggedErrorRecorder
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Create a new recorder that flushes at the given interval.
+     * @param flushSeconds The number of seconds between flushes
+     */
+    public LoggedErrorRecorder(int flushSeconds)
+    {
+        flusher = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r, "LoggedErrorRecorder");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        flushSeconds = Math.max(1, flushSeconds);
+        flusher.scheduleWithFixedDelay(new Runnable() {
+                public void run()
+                {
+                    try
+                    {
+                        flush();
+                    }
+                    catch (Throwable t)
+                    {
+                        log.error("unable to flush logged errors", t);
+                    }
+                }
+            }, flushSeconds, flushSeconds, TimeUnit.SECONDS);
+    }
+
+
+    //~ Public Nested Classes .................................................
+
+    // ----------------------------------------------------------
+    /**
+     * The details of a single occurrence.
+     */
+    public static class Occurrence
+    {
+        // ----------------------------------------------------------
+        private Occurrence(
+            Throwable throwable, String component, String page)
+        {
+            this.throwable = throwable;
+            this.component = component;
+            this.page = page;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Get the time of this occurrence.
+         * @return The time
+         */
+        public NSTimestamp time()
+        {
+            return time;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Get the exception for this occurrence.
+         * @return The exception
+         */
+        public Throwable throwable()
+        {
+            return throwable;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Get the name of the component that was active, if any.
+         * @return The component name, or null
+         */
+        public String component()
+        {
+            return component;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Get the name of the page that was active, if any.
+         * @return The page name, or null
+         */
+        public String page()
+        {
+            return page;
+        }
+
+
+        //~ Instance/static variables .........................................
+
+        private final NSTimestamp time = new NSTimestamp();
+        private final Throwable throwable;
+        private final String component;
+        private final String page;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * The in-memory record of one kind of error, identified by its
+     * exception class and the location where it was thrown.
+     */
+    public static class Aggregate
+    {
+        // ----------------------------------------------------------
+        private Aggregate(String exceptionName, String inClass,
+            String inMethod, int line)
+        {
+            this.exceptionName = exceptionName;
+            this.inClass = inClass;
+            this.inMethod = inMethod;
+            this.line = line;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Get the class name of the exception.
+         * @return The exception class name
+         */
+        public String exceptionName()
+        {
+            return exceptionName;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Get the class where the exception was thrown.
+         * @return The class name
+         */
+        public String inClass()
+        {
+            return inClass;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Get the method where the exception was thrown.
+         * @return The method name
+         */
+        public String inMethod()
+        {
+            return inMethod;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Get the line where the exception was thrown.
+         * @return The line number
+         */
+        public int line()
+        {
+            return line;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Get the first occurrence seen since this application started.
+         * @return The first occurrence
+         */
+        public Occurrence first()
+        {
+            return first;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Get the most recent occurrence.
+         * @return The most recent occurrence
+         */
+        public Occurrence mostRecent()
+        {
+            return mostRecent;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Get the best available total number of occurrences: the count
+         * stored in the database as of the last flush, plus any that have
+         * happened since.
+         * @return The total occurrences
+         */
+        public int occurrences()
+        {
+            return persisted + pending.get();
+        }
+
+
+        // ----------------------------------------------------------
+        public String toString()
+        {
+            return exceptionName + " at " + inClass + "." + inMethod
+                + "(" + line + ")";
+        }
+
+
+        //~ Instance/static variables .........................................
+
+        private final String exceptionName;
+        private final String inClass;
+        private final String inMethod;
+        private final int line;
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile int persisted = 0;
+        private volatile boolean seeded = false;
+        private volatile Occurrence first;
+        private volatile Occurrence mostRecent;
+    }
+
+
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Get the application-wide recorder, creating it on first use.
+     * @return The shared recorder
+     */
+    public static synchronized LoggedErrorRecorder recorder()
+    {
+        if (sharedRecorder == null)
+        {
+            sharedRecorder = new LoggedErrorRecorder(
+                Application.configurationProperties()
+                    .intForKeyWithDefault("LoggedError.flushSeconds", 5));
+        }
+        return sharedRecorder;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Record an occurrence of an exception.  This does not touch the
+     * database.
+     * @param throwable The exception
+     * @param component The name of the current component, or null
+     * @param page      The name of the current page, or null
+     * @return The aggregate for this kind of error, after recording
+     */
+    public Aggregate record(Throwable throwable, String component, String page)
+    {
+        throwable = ERXExceptionUtilities.getMeaningfulThrowable(throwable);
+
+        StackTraceElement[] trace = throwable.getStackTrace();
+        StackTraceElement top = (trace != null && trace.length > 0)
+            ? trace[0]
+            : new StackTraceElement("unknown", "unknown", "unknown", 0);
+        String exceptionName = throwable.getClass().getName();
+        String key = exceptionName + '|' + top.getClassName() + '|'
+            + top.getMethodName() + '|' + top.getLineNumber();
+
+        Aggregate aggregate = aggregates.get(key);
+        if (aggregate == null)
+        {
+            final Aggregate newAggregate = new Aggregate(exceptionName,
+                top.getClassName(), top.getMethodName(),
+                top.getLineNumber());
+            aggregate = aggregates.putIfAbsent(key, newAggregate);
+            if (aggregate == null)
+            {
+                aggregate = newAggregate;
+                // Read the stored count on the flusher thread, not here
+                flusher.execute(new Runnable() {
+                    public void run()
+                    {
+                        seed(newAggregate);
+                    }
+                });
+            }
+        }
+
+        Occurrence occurrence = new Occurrence(throwable, component, page);
+        if (aggregate.first == null)
+        {
+            aggregate.first = occurrence;
+        }
+        aggregate.mostRecent = occurrence;
+        aggregate.pending.incrementAndGet();
+        return aggregate;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get a snapshot of all of the errors recorded since startup.
+     * @return The aggregates
+     */
+    public List<Aggregate> aggregates()
+    {
+        return new ArrayList<Aggregate>(aggregates.values());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Write all pending occurrence counts to the database.  This is called
+     * periodically by a background thread, but may also be called directly
+     * (for example, before shutting down).
+     */
+    public synchronized void flush()
+    {
+        final List<Aggregate> dirty = new ArrayList<Aggregate>();
+        final List<Integer> counts = new ArrayList<Integer>();
+        for (Aggregate aggregate : aggregates.values())
+        {
+            int count = aggregate.pending.getAndSet(0);
+            if (count > 0)
+            {
+                dirty.add(aggregate);
+                counts.add(count);
+            }
+        }
+        if (dirty.isEmpty())
+        {
+            pruneIdleAggregates();
+            return;
+        }
+
+        boolean saved = false;
+        try
+        {
+            saved = new ECActionWithResult<Boolean>() {
+                public Boolean action()
+                {
+                    int[] totals = new int[dirty.size()];
+                    for (int i = 0; i < dirty.size(); i++)
+                    {
+                        Aggregate aggregate = dirty.get(i);
+                        Occurrence recent = aggregate.mostRecent;
+                        LoggedError loggedError =
+                            LoggedError.objectForLocation(ec,
+                                aggregate.exceptionName,
+                                aggregate.inClass,
+                                aggregate.inMethod,
+                                aggregate.line);
+                        totals[i] =
+                            loggedError.occurrences() + counts.get(i);
+                        loggedError.setOccurrences(totals[i]);
+                        loggedError.setMostRecent(recent.time);
+                        if (recent.component != null)
+                        {
+                            loggedError.setComponent(recent.component);
+                        }
+                        if (recent.page != null)
+                        {
+                            loggedError.setPage(recent.page);
+                        }
+                        if (recent.throwable.getMessage() != null)
+                        {
+                            loggedError.setMessage(
+                                recent.throwable.getMessage());
+                        }
+                        StringWriter writer = new StringWriter();
+                        PrintWriter pwriter = new PrintWriter(writer);
+                        recent.throwable.printStackTrace(pwriter);
+                        pwriter.close();
+                        loggedError.setStackTrace(
+                            writer.getBuffer().toString());
+                    }
+                    ec.saveChanges();
+                    for (int i = 0; i < dirty.size(); i++)
+                    {
+                        dirty.get(i).persisted = totals[i];
+                        dirty.get(i).seeded = true;
+                    }
+                    return true;
+                }
+            }.call();
+        }
+        catch (Exception e)
+        {
+            log.error("unable to save logged errors", e);
+        }
+
+        if (!saved)
+        {
+            // Put the counts back so they are retried on the next flush
+            for (int i = 0; i < dirty.size(); i++)
+            {
+                dirty.get(i).pending.addAndGet(counts.get(i));
+            }
+        }
+        else if (log.isDebugEnabled())
+        {
+            log.debug("flushed " + dirty.size() + " logged errors");
+        }
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Read the number of occurrences already stored in the database for a
+     * kind of error, without creating a record for it.  This is queued on
+     * the flusher thread when an error is first seen after startup (or
+     * after its aggregate was pruned), so that
+     * {@link Aggregate#occurrences()} includes earlier runs without the
+     * thread that logged the error waiting on the database.  Until then,
+     * or if the first flush gets there first (it reads the stored row
+     * anyway), the aggregate counts only this run's occurrences.
+     * @param aggregate The aggregate to seed
+     */
+    private synchronized void seed(final Aggregate aggregate)
+    {
+        if (aggregate.seeded)
+        {
+            return;
+        }
+        try
+        {
+            aggregate.persisted = new ECActionWithResult<Integer>() {
+                public Integer action()
+                {
+                    NSArray<LoggedError> stored =
+                        LoggedError.errorsWithExceptionLocation(ec,
+                            aggregate.inClass,
+                            aggregate.line,
+                            aggregate.inMethod,
+                            aggregate.exceptionName);
+                    return (stored == null || stored.count() == 0)
+                        ? 0
+                        : stored.objectAtIndex(0).occurrences();
+                }
+            }.call();
+        }
+        catch (Exception e)
+        {
+            log.error("unable to read stored count for " + aggregate, e);
+        }
+        aggregate.seeded = true;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Keep the in-memory table from growing without bound by dropping
+     * errors that have nothing pending, oldest first.
+     */
+    private void pruneIdleAggregates()
+    {
+        if (aggregates.size() <= MAX_AGGREGATES)
+        {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - IDLE_MILLIS;
+        Iterator<Map.Entry<String, Aggregate>> entries =
+            aggregates.entrySet().iterator();
+        while (entries.hasNext())
+        {
+            Aggregate aggregate = entries.next().getValue();
+            Occurrence recent = aggregate.mostRecent;
+            if (aggregate.pending.get() == 0
+                && recent != null
+                && recent.time.getTime() < cutoff)
+            {
+                entries.remove();
+            }
+        }
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private final ConcurrentHashMap<String, Aggregate> aggregates =
+        new ConcurrentHashMap<String, Aggregate>();
+    private final ScheduledExecutorService flusher;
+
+    private static LoggedErrorRecorder sharedRecorder;
+
+    private static final int MAX_AGGREGATES = 1000;
+    private static final long IDLE_MILLIS = 60L * 60L * 1000L;
+
+    static Logger log = Logger.getLogger(LoggedErrorRecorder.class);
+}
@@ -23,7 +23,6 @@ package org.webcat.core;
 
 import java.util.ArrayList;
 import java.util.StringTokenizer;
-import java.util.regex.Pattern;
 
 //--------------------------------------------------------------------------
 /**
@@ -54,6 +53,11 @@ import java.util.regex.Pattern;
  * "&#42;&#42;/foo.java", to match the file "foo.java" in any directory in the
  * tree and not just the top-level directory. "/foo.java" would only match
  * "foo.java" in the top-level directory.
+ * </p><p>
+ * The pattern is split and its wildcards compiled (see {@link GlobPattern})
+ * once, when the matcher is created, so each call to {@link #matches(String)}
+ * only has to split the path.  To test paths against many patterns at once,
+ * use a {@link GlobSet}.
  * </p>
  *
  * @author  Tony Allevato (Virginia Tech Computer Science)
@@ -81,6 +85,16 @@ public class PathMatcher
         {
             this.pattern = pattern;
         }
+
+        patternComponents = getPathComponents(this.pattern);
+        componentGlobs = new GlobPattern[patternComponents.length];
+        for (int i = 0; i < patternComponents.length; i++)
+        {
+            if (!GLOBSTAR.equals(patternComponents[i]))
+            {
+                componentGlobs[i] = GlobPattern.compile(patternComponents[i]);
+            }
+        }
     }
 
 
@@ -94,7 +108,7 @@ public class PathMatcher
      * @param string the path
      * @return an array of path components
      */
-    private String[] getPathComponents(String string)
+    /*package*/ static String[] getPathComponents(String string)
     {
         if (string == null)
         {
@@ -119,6 +133,44 @@ public class PathMatcher
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * Gets the pattern used by this matcher, after any implicit leading
+     * "&#42;&#42;/" has been added.
+     *
+     * @return the pattern
+     */
+    public String pattern()
+    {
+        return pattern;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the components of this matcher's pattern.
+     *
+     * @return the pattern components; callers must not modify the array
+     */
+    /*package*/ String[] patternComponents()
+    {
+        return patternComponents;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the compiled forms of this matcher's pattern components.
+     *
+     * @return the compiled components, with null for each "&#42;&#42;";
+     *     callers must not modify the array
+     */
+    /*package*/ GlobPattern[] componentGlobs()
+    {
+        return componentGlobs;
+    }
+
+
     // ----------------------------------------------------------
     /**
      * Match the specified path against this matcher's pattern.
@@ -134,7 +186,6 @@ public class PathMatcher
             return false;
         }
 
-        String[] patternComponents = getPathComponents(pattern);
         String[] pathComponents = getPathComponents(path);
 
         int patternIdxStart = 0;
@@ -154,7 +205,8 @@ public class PathMatcher
                 break;
             }
 
-            if (!matchStrings(patternDir, pathComponents[pathIdxStart]))
+            if (!componentGlobs[patternIdxStart].matches(
+                    pathComponents[pathIdxStart]))
             {
                 return false;
             }
@@ -209,7 +261,8 @@ public class PathMatcher
                 break;
             }
 
-            if (!matchStrings(patDir, pathComponents[pathIdxEnd]))
+            if (!componentGlobs[patternIdxEnd].matches(
+                    pathComponents[pathIdxEnd]))
             {
                 return false;
             }
@@ -264,9 +317,10 @@ public class PathMatcher
                 {
                     for (int j = 0; j < patLength; j++)
                     {
-                        String subPat = patternComponents[patternIdxStart + j + 1];
+                        GlobPattern subPat =
+                            componentGlobs[patternIdxStart + j + 1];
                         String subStr = pathComponents[pathIdxStart + i + j];
-                        if (!matchStrings(subPat, subStr))
+                        if (!subPat.matches(subStr))
                         {
                             continue strLoop;
                         }
@@ -297,53 +351,20 @@ public class PathMatcher
     }
 
 
-    // ----------------------------------------------------------
-    /**
-     * Performs the DOS-style pattern matching for each of the individual
-     * path components. Essentially the {@link #matches(String)} method
-     * handles the "**" portions of the pattern, and this method handles the
-     * "*" and "?" wildcards.
-     *
-     * @param subpattern subpattern to match against
-     * @param str string which must be matched against the pattern
-     * @return true if the string matches against the pattern, otherwise false
-     */
-    private boolean matchStrings(String subpattern, String str)
-    {
-        StringBuffer buffer = new StringBuffer();
-        int length = subpattern.length();
-
-        for (int i = 0; i < length; i++)
-        {
-            char c = subpattern.charAt(i);
-
-            if (!Character.isLetterOrDigit(c))
-            {
-                switch (c)
-                {
-                    case '?': // Fall through
-                    case '*':
-                        buffer.append('.');
-                        break;
-
-                    default:
-                        buffer.append('\\');
-                        break;
-                }
-            }
-
-            buffer.append(c);
-        }
-
-        return Pattern.matches(buffer.toString(), str);
-    }
-
-
     //~ Static/instance variables .............................................
 
     /* The path separator used by the matcher. */
     private static final String PATH_SEPARATOR = "/";
 
+    /* The path component that matches any number of directories. */
+    private static final String GLOBSTAR = "**";
+
     /* The pattern used by the matcher. */
     private String pattern;
+
+    /* The pattern, split into path components. */
+    private String[] patternComponents;
+
+    /* The compiled pattern components, with null for each "**". */
+    private GlobPattern[] componentGlobs;
 }
@@ -172,8 +172,10 @@ public class Subsystem
     /**
      * Carry out any subsystem-specific initialization actions.  This method
      * is called once all subsystems have been created, so any dependencies
-     * on services provided by other subsystems are fulfilled.  Subsystems
-     * are init'ed in the same order they are created.  The default
+     * on services provided by other subsystems are fulfilled.  A subsystem
+     * is only init'ed after the subsystems it depends on (through its
+     * "depends" and "requires" properties), but subsystems that do not
+     * depend on each other may be init'ed concurrently.  The default
      * implementation calls {@link #updateDbIfNecessary()} to update
      * the subsystem's database tables, and then {@link #loadTabs()} to
      * load the subsystem's tab definitions.
@@ -204,9 +206,11 @@ public class Subsystem
     // ----------------------------------------------------------
     /**
      * Carry out any subsystem-specific startup actions.  This method is
-     * called once all subsystems have been initialized.  Subsystems
-     * are started in the same order they are created.  Subclasses should
-     * override this method to perform custom startup actions.
+     * called once all subsystems have been initialized.  A subsystem is
+     * only started after the subsystems it depends on have started, but
+     * subsystems that do not depend on each other may be started
+     * concurrently.  Subclasses should override this method to perform
+     * custom startup actions.
      */
     public void start()
     {
@@ -579,9 +583,14 @@ public class Subsystem
             {
                 log.debug("Applying updates for subsystem " + name()
                     + " using " + updaterClass);
-                // Apply any pending database updates for this subsystem
-                UpdateEngine.instance().applyNecessaryUpdates(
-                    updaterClass.newInstance());
+                // Apply any pending database updates for this subsystem.
+                // Subsystems may be initialized concurrently, but their
+                // updates are applied one at a time.
+                synchronized (DATABASE_UPDATE_LOCK)
+                {
+                    UpdateEngine.instance().applyNecessaryUpdates(
+                        updaterClass.newInstance());
+                }
             }
             catch (Exception e)
             {
@@ -789,5 +798,7 @@ public class Subsystem
     private static final String SUBSYSTEM_FRAGMENTS_PLIST_FILENAME =
         "SubsystemFragments.plist";
 
+    private static final Object DATABASE_UPDATE_LOCK = new Object();
+
     static Logger log = Logger.getLogger(Subsystem.class);
 }
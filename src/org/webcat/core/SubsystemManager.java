@@ -26,8 +26,11 @@ import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import net.sf.webcat.FeatureProvider;
 import org.apache.log4j.Logger;
 import com.webobjects.appserver.WOComponent;
@@ -62,6 +65,13 @@ public class SubsystemManager
      * defined, the corresponding classes will be registered as
      * subsystems.  Either property may be undefined, in which case it
      * will be ignored.
+     * <p>
+     * Subsystems are initialized and started by a {@link SubsystemStartup},
+     * which handles subsystems that do not depend on each other
+     * concurrently.  The property "SubsystemManager.startupThreads" limits
+     * how many are handled at once (by default, the number of processors,
+     * up to 4); setting it to 1 handles them one at a time, in order.
+     * </p>
      *
      * @param properties The application's property settings
      */
@@ -94,10 +104,17 @@ public class SubsystemManager
                 new HashMap<String, String>(),
                 properties);
         }
-        initAllSubsystems();
+        int threads = properties == null
+            ? 1
+            : properties.intForKeyWithDefault(
+                "SubsystemManager.startupThreads",
+                Math.min(4, Runtime.getRuntime().availableProcessors()));
+        startup = new SubsystemStartup(
+            subsystems(), subsystemPrerequisites(), threads);
+        startup.initAll();
         envp();
         pluginProperties();
-        startAllSubsystems();
+        startup.startAll();
 
         // Start up a thread to run periodic maintenance tasks every day
         new Thread(new Runnable() {
@@ -375,37 +392,87 @@ public class SubsystemManager
     }
 
 
-    //~ Private Methods .......................................................
-
     // ----------------------------------------------------------
     /**
-     * Calls {@link Subsystem#init()} for all registered subsystems.
+     * Get the record of how the subsystems were initialized and started,
+     * including how long each one took.
+     *
+     * @return The startup record
      */
-    private void initAllSubsystems()
+    public SubsystemStartup startup()
     {
-        for (Subsystem sub : subsystems())
-        {
-            log.debug("initializing subsystem " + sub.name());
-            sub.init();
-            sub.subsystemInitCompleted();
-            log.debug("subsystem " + sub.name() + " initialized");
-        }
+        return startup;
     }
 
 
+    //~ Private Methods .......................................................
+
     // ----------------------------------------------------------
     /**
-     * Calls {@link Subsystem#start()} for all registered subsystems.
+     * Work out which loaded subsystems each subsystem depends on, from
+     * the features named in its "depends" and "requires" properties.
+     * Every subsystem also depends on Core, whether it says so or not,
+     * since many plug-ins rely on Core (and its database schema) being
+     * ready without declaring it, as they could when subsystems started
+     * one at a time.  The exceptions are the subsystems that Core itself
+     * depends on.
+     *
+     * @return The names of each subsystem's prerequisites, by name
      */
-    private void startAllSubsystems()
+    private Map<String, List<String>> subsystemPrerequisites()
     {
-        for (Subsystem sub : subsystems())
+        Map<String, List<String>> result =
+            new HashMap<String, List<String>>();
+        for (Subsystem subsystem : subsystems())
+        {
+            List<String> names = new ArrayList<String>();
+            List<String> features = prerequisiteFeatures.get(subsystem.name());
+            if (features != null)
+            {
+                for (String feature : features)
+                {
+                    String provider = featureProviders.get(feature);
+                    if (provider != null)
+                    {
+                        names.add(provider);
+                    }
+                }
+            }
+            result.put(subsystem.name(), names);
+        }
+
+        if (result.containsKey(CORE_SUBSYSTEM))
         {
-            log.debug("starting subsystem " + sub.name());
-            sub.start();
-            sub.subsystemHasStarted();
-            log.debug("subsystem " + sub.name() + " started");
+            // Find everything Core needs, directly or indirectly
+            Set<String> coreNeeds = new HashSet<String>();
+            List<String> pending = new ArrayList<String>();
+            pending.add(CORE_SUBSYSTEM);
+            while (!pending.isEmpty())
+            {
+                List<String> needs =
+                    result.get(pending.remove(pending.size() - 1));
+                if (needs != null)
+                {
+                    for (String name : needs)
+                    {
+                        if (coreNeeds.add(name))
+                        {
+                            pending.add(name);
+                        }
+                    }
+                }
+            }
+
+            for (Map.Entry<String, List<String>> entry : result.entrySet())
+            {
+                if (!CORE_SUBSYSTEM.equals(entry.getKey())
+                    && !coreNeeds.contains(entry.getKey()))
+                {
+                    entry.getValue().add(CORE_SUBSYSTEM);
+                }
+            }
         }
+        return result;
     }
 
 
@@ -529,6 +596,45 @@ public class SubsystemManager
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * Remember which features a loaded subsystem provides and which ones
+     * it needs, so that startup can follow its dependencies.
+     * @param name the subsystem's name
+     * @param provides the features it provides (can be null)
+     * @param depends the features it uses if present (can be null)
+     * @param requires the features it cannot run without (can be null)
+     */
+    private void recordFeatures(
+        String name, String[] provides, String[] depends, String[] requires)
+    {
+        featureProviders.put(name, name);
+        if (provides != null)
+        {
+            for (String feature : provides)
+            {
+                if (!featureProviders.containsKey(feature))
+                {
+                    featureProviders.put(feature, name);
+                }
+            }
+        }
+
+        List<String> needed = new ArrayList<String>();
+        for (String[] features : new String[][] { depends, requires })
+        {
+            if (features != null)
+            {
+                for (String feature : features)
+                {
+                    needed.add(feature);
+                }
+            }
+        }
+        prerequisiteFeatures.put(name, needed);
+    }
+
+
     // ----------------------------------------------------------
     /**
      * Generate a string from an array of strings.
@@ -616,9 +722,10 @@ public class SubsystemManager
                 else
                 {
                     addedFeatures.put(name, name);
-                    addTo(featureList(
-                        properties.getProperty(name + PROVIDES_SUFFIX)),
-                        addedFeatures);
+                    String[] provides = featureList(
+                        properties.getProperty(name + PROVIDES_SUFFIX));
+                    addTo(provides, addedFeatures);
+                    recordFeatures(name, provides, depends, requires);
                     String className =
                         properties.getProperty(SUBSYSTEM_KEY_PREFIX + name);
 
@@ -708,8 +815,17 @@ public class SubsystemManager
     private NSDictionary<String, String> envCache = null;
     private NSDictionary<String, String> pluginPropertiesCache = null;
     private String[] envpCache = null;
+    private SubsystemStartup startup;
+
+    /** The loaded subsystem providing each feature, by feature name. */
+    private Map<String, String> featureProviders =
+        new HashMap<String, String>();
+    /** The features each loaded subsystem needs, by subsystem name. */
+    private Map<String, List<String>> prerequisiteFeatures =
+        new HashMap<String, List<String>>();
 
     private static final String SUBSYSTEM_KEY_PREFIX = "subsystem.";
+    private static final String CORE_SUBSYSTEM = "Core";
     private static final String DEPENDS_SUFFIX       = ".depends";
     private static final String REQUIRES_SUFFIX      = ".requires";
     private static final String PROVIDES_SUFFIX      = ".provides";
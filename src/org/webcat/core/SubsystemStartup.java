@@ -0,0 +1,671 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.log4j.Logger;
+import com.webobjects.foundation.NSArray;
+
+//-------------------------------------------------------------------------
+/**
+ * Initializes and starts a set of subsystems, running subsystems that do
+ * not depend on each other concurrently on a bounded pool of threads.  A
+ * subsystem is only initialized (or started) once every subsystem it
+ * depends on has been initialized (or started).  When there is only one
+ * thread, subsystems are handled one at a time on the calling thread, in
+ * the order they were given, just as they were before.
+ * <p>
+ * If any subsystem fails, no further subsystems are begun, the ones
+ * already running are allowed to finish, and an exception naming the
+ * failed subsystem and the ones that were skipped is thrown.  The time
+ * taken by each subsystem is recorded for the system status page.
+ * </p>
+ *
+ * @author  Stephen Edwards
+ */
+public class SubsystemStartup
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Creates a new startup plan.
+     *
+     * @param subsystems    The subsystems, in an order consistent with
+     *                      their dependencies
+     * @param prerequisites The names of the subsystems each subsystem
+     *                      depends on, by subsystem name; names that are
+     *                      not among the subsystems are ignored
+     * @param threads       The most subsystems to handle at once
+     * @throws IllegalStateException if the dependencies contain a cycle
+     */
+    public SubsystemStartup(
+        NSArray<Subsystem> subsystems,
+        Map<String, ? extends Iterable<String>> prerequisites,
+        int threads)
+    {
+        int count = subsystems.count();
+        this.subsystems = new ArrayList<Subsystem>(count);
+        this.threads = Math.max(1, Math.min(threads, count));
+        timings = new ArrayList<Timing>(count);
+        prerequisiteCounts = new int[count];
+        dependents = new ArrayList<List<Integer>>(count);
+
+        Map<String, Integer> indices = new HashMap<String, Integer>();
+        for (Subsystem subsystem : subsystems)
+        {
+            indices.put(subsystem.name(), this.subsystems.size());
+            this.subsystems.add(subsystem);
+            timings.add(new Timing(subsystem.name()));
+            dependents.add(new ArrayList<Integer>());
+        }
+
+        for (int i = 0; i < count; i++)
+        {
+            Iterable<String> names =
+                prerequisites.get(this.subsystems.get(i).name());
+            if (names == null)
+            {
+                continue;
+            }
+            for (String name : names)
+            {
+                Integer prerequisite = indices.get(name);
+                if (prerequisite != null && prerequisite != i
+                    && !dependents.get(prerequisite).contains(i))
+                {
+                    dependents.get(prerequisite).add(i);
+                    prerequisiteCounts[i]++;
+                }
+            }
+        }
+
+        checkForCycles();
+    }
+
+
+    //~ Methods ...............................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Initializes all of the subsystems.
+     *
+     * @throws IllegalStateException if a subsystem fails to initialize
+     */
+    public void initAll()
+    {
+        initMillis = run(new Phase("initialize") {
+            public void run(Subsystem subsystem, Timing timing)
+            {
+                long begin = System.currentTimeMillis();
+                subsystem.init();
+                subsystem.subsystemInitCompleted();
+                timing.initMillis = System.currentTimeMillis() - begin;
+            }
+        });
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Starts all of the subsystems.  This should only be called once
+     * {@link #initAll()} has succeeded.
+     *
+     * @throws IllegalStateException if a subsystem fails to start
+     */
+    public void startAll()
+    {
+        startMillis = run(new Phase("start") {
+            public void run(Subsystem subsystem, Timing timing)
+            {
+                long begin = System.currentTimeMillis();
+                subsystem.start();
+                subsystem.subsystemHasStarted();
+                timing.startMillis = System.currentTimeMillis() - begin;
+            }
+        });
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the time taken by each subsystem, in startup order.
+     *
+     * @return The timings
+     */
+    public List<Timing> timings()
+    {
+        return Collections.unmodifiableList(timings);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets a one-line summary of the whole startup, for the system status
+     * page.
+     *
+     * @return The summary
+     */
+    public String summary()
+    {
+        return subsystems.size() + " subsystems on " + threads
+            + (threads == 1 ? " thread" : " threads") + ", init "
+            + millis(initMillis) + ", start " + millis(startMillis);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Runs one phase over all of the subsystems.
+     *
+     * @param phase The phase
+     * @return The elapsed time in milliseconds
+     */
+    private long run(Phase phase)
+    {
+        log.info(phase.name + " " + subsystems.size() + " subsystems on "
+            + threads + " thread(s)");
+        long begin = System.currentTimeMillis();
+
+        if (threads == 1)
+        {
+            // The subsystems are already in dependency order
+            for (int i = 0; i < subsystems.size(); i++)
+            {
+                Outcome outcome = phase.call(i);
+                if (outcome.failure != null)
+                {
+                    fail(phase, outcome, skippedAfter(outcome.index));
+                }
+            }
+        }
+        else
+        {
+            runConcurrently(phase);
+        }
+
+        long elapsed = System.currentTimeMillis() - begin;
+        log.info(phase.name + " finished for all subsystems in "
+            + millis(elapsed));
+        return elapsed;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Runs one phase over all of the subsystems on a pool of threads.
+     *
+     * @param phase The phase
+     */
+    private void runConcurrently(final Phase phase)
+    {
+        int count = subsystems.size();
+        int[] waitingOn = prerequisiteCounts.clone();
+        boolean[] begun = new boolean[count];
+
+        // Ready subsystems are begun in their original order
+        TreeSet<Integer> ready = new TreeSet<Integer>();
+        for (int i = 0; i < count; i++)
+        {
+            if (waitingOn[i] == 0)
+            {
+                ready.add(i);
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(
+            threads,
+            new ThreadFactory() {
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r,
+                        "SubsystemStartup-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        CompletionService<Outcome> completion =
+            new ExecutorCompletionService<Outcome>(pool);
+        Outcome failed = null;
+        int running = 0;
+
+        try
+        {
+            while (true)
+            {
+                while (failed == null && running < threads
+                    && !ready.isEmpty())
+                {
+                    final int next = ready.pollFirst();
+                    begun[next] = true;
+                    completion.submit(new Callable<Outcome>() {
+                        public Outcome call()
+                        {
+                            return phase.call(next);
+                        }
+                    });
+                    running++;
+                }
+
+                if (running == 0)
+                {
+                    break;
+                }
+
+                Outcome outcome = completion.take().get();
+                running--;
+                if (outcome.failure != null)
+                {
+                    if (failed == null)
+                    {
+                        failed = outcome;
+                    }
+                    else
+                    {
+                        log.error("subsystem "
+                            + subsystems.get(outcome.index).name()
+                            + " also failed to " + phase.name,
+                            outcome.failure);
+                    }
+                }
+                else
+                {
+                    for (int dependent : dependents.get(outcome.index))
+                    {
+                        if (--waitingOn[dependent] == 0)
+                        {
+                            ready.add(dependent);
+                        }
+                    }
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(
+                "interrupted while waiting for subsystems to "
+                + phase.name, e);
+        }
+        catch (ExecutionException e)
+        {
+            // Phase.call() catches everything, so this cannot happen
+            throw new IllegalStateException(e.getCause());
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+
+        if (failed != null)
+        {
+            List<String> skipped = new ArrayList<String>();
+            for (int i = 0; i < count; i++)
+            {
+                if (!begun[i])
+                {
+                    skipped.add(subsystems.get(i).name());
+                }
+            }
+            fail(phase, failed, skipped);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Reports a failed subsystem.
+     *
+     * @param phase   The phase that failed
+     * @param outcome The failure
+     * @param skipped The names of the subsystems that were not begun
+     * @throws IllegalStateException always
+     */
+    private void fail(Phase phase, Outcome outcome, List<String> skipped)
+    {
+        String message = "subsystem "
+            + subsystems.get(outcome.index).name() + " failed to "
+            + phase.name + " ("
+            + outcome.failure + "); subsystems not begun: " + skipped;
+        log.error(message, outcome.failure);
+        throw new IllegalStateException(message, outcome.failure);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the names of the subsystems after a given one.
+     *
+     * @param index The position of the subsystem
+     * @return The names of the subsystems after it
+     */
+    private List<String> skippedAfter(int index)
+    {
+        List<String> result = new ArrayList<String>();
+        for (int i = index + 1; i < subsystems.size(); i++)
+        {
+            result.add(subsystems.get(i).name());
+        }
+        return result;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Makes sure the dependencies can be satisfied, by running a
+     * topological sort over them.
+     *
+     * @throws IllegalStateException if the dependencies contain a cycle
+     */
+    private void checkForCycles()
+    {
+        int count = subsystems.size();
+        int[] waitingOn = prerequisiteCounts.clone();
+        List<Integer> ready = new ArrayList<Integer>();
+        for (int i = 0; i < count; i++)
+        {
+            if (waitingOn[i] == 0)
+            {
+                ready.add(i);
+            }
+        }
+
+        int sorted = 0;
+        while (!ready.isEmpty())
+        {
+            int next = ready.remove(ready.size() - 1);
+            sorted++;
+            for (int dependent : dependents.get(next))
+            {
+                if (--waitingOn[dependent] == 0)
+                {
+                    ready.add(dependent);
+                }
+            }
+        }
+
+        if (sorted < count)
+        {
+            String message = "cyclic dependencies among subsystems: "
+                + describeCycle(waitingOn)
+                + " (each depends on the next)";
+            log.error(message);
+            throw new IllegalStateException(message);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Finds one dependency cycle among the subsystems left over by a
+     * topological sort.  Every leftover subsystem still waits on another
+     * leftover subsystem, so following those back from any of them must
+     * eventually come round to a cycle.
+     *
+     * @param waitingOn The number of unsorted prerequisites of each
+     *                  subsystem, as left by the sort
+     * @return The names in the cycle, separated by arrows
+     */
+    private String describeCycle(int[] waitingOn)
+    {
+        int count = subsystems.size();
+        int[] waitsFor = new int[count];
+        int current = -1;
+        for (int i = 0; i < count; i++)
+        {
+            if (waitingOn[i] > 0)
+            {
+                current = i;
+                for (int dependent : dependents.get(i))
+                {
+                    if (waitingOn[dependent] > 0)
+                    {
+                        waitsFor[dependent] = i;
+                    }
+                }
+            }
+        }
+
+        Map<Integer, Integer> positions = new HashMap<Integer, Integer>();
+        List<Integer> path = new ArrayList<Integer>();
+        while (!positions.containsKey(current))
+        {
+            positions.put(current, path.size());
+            path.add(current);
+            current = waitsFor[current];
+        }
+
+        StringBuffer result = new StringBuffer();
+        for (int index : path.subList(positions.get(current), path.size()))
+        {
+            result.append(subsystems.get(index).name());
+            result.append(" -> ");
+        }
+        result.append(subsystems.get(current).name());
+        return result.toString();
+    }
+
+
+    // ----------------------------------------------------------
+    private static String millis(long millis)
+    {
+        return millis < 0 ? "pending" : millis + "ms";
+    }
+
+
+    //~ Nested classes ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * The time one subsystem took to initialize and to start.
+     */
+    public static class Timing
+    {
+        // ----------------------------------------------------------
+        private Timing(String name)
+        {
+            this.name = name;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Gets the name of the subsystem.
+         *
+         * @return The name
+         */
+        public String name()
+        {
+            return name;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Gets the time the subsystem took to initialize.
+         *
+         * @return The time in milliseconds, or -1 if it has not been
+         *         initialized
+         */
+        public long initMillis()
+        {
+            return initMillis;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Gets the time the subsystem took to start.
+         *
+         * @return The time in milliseconds, or -1 if it has not been
+         *         started
+         */
+        public long startMillis()
+        {
+            return startMillis;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Gets the name of the thread that initialized the subsystem.
+         *
+         * @return The thread name, or null
+         */
+        public String threadName()
+        {
+            return threadName;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Gets a one-line summary of the timings, for the system status
+         * page.
+         *
+         * @return The summary
+         */
+        public String summary()
+        {
+            return "init " + millis(initMillis) + ", start "
+                + millis(startMillis)
+                + (threadName == null ? "" : " (" + threadName + ")");
+        }
+
+
+        //~ Instance/static variables .........................................
+
+        private final String name;
+        private volatile long initMillis = -1;
+        private volatile long startMillis = -1;
+        private volatile String threadName;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * One step (initializing or starting) to be carried out for every
+     * subsystem.
+     */
+    private abstract class Phase
+    {
+        // ----------------------------------------------------------
+        public Phase(String name)
+        {
+            this.name = name;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Carries out this phase for one subsystem, recording its time.
+         *
+         * @param subsystem The subsystem
+         * @param timing    Where to record its time
+         */
+        public abstract void run(Subsystem subsystem, Timing timing);
+
+
+        // ----------------------------------------------------------
+        /**
+         * Carries out this phase for one subsystem, capturing any
+         * failure.
+         *
+         * @param index The position of the subsystem
+         * @return The outcome
+         */
+        public Outcome call(int index)
+        {
+            Subsystem subsystem = subsystems.get(index);
+            Timing timing = timings.get(index);
+            log.debug(name + " subsystem " + subsystem.name());
+            try
+            {
+                if (timing.threadName == null)
+                {
+                    timing.threadName = Thread.currentThread().getName();
+                }
+                run(subsystem, timing);
+                log.debug(name + " subsystem " + subsystem.name()
+                    + " finished");
+                return new Outcome(index, null);
+            }
+            catch (Throwable t)
+            {
+                return new Outcome(index, t);
+            }
+        }
+
+
+        //~ Instance/static variables .........................................
+
+        public final String name;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * The result of carrying out a phase for one subsystem.
+     */
+    private static class Outcome
+    {
+        // ----------------------------------------------------------
+        public Outcome(int index, Throwable failure)
+        {
+            this.index = index;
+            this.failure = failure;
+        }
+
+
+        //~ Instance/static variables .........................................
+
+        public final int index;
+        public final Throwable failure;
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private final List<Subsystem> subsystems;
+    private final List<Timing> timings;
+    private final int[] prerequisiteCounts;
+    private final List<List<Integer>> dependents;
+    private final int threads;
+    private volatile long initMillis = -1;
+    private volatile long startMillis = -1;
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    static Logger log = Logger.getLogger(SubsystemStartup.class);
+}
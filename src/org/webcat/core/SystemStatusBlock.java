@@ -22,7 +22,16 @@
 package org.webcat.core;
 
 import com.webobjects.appserver.*;
+import java.util.List;
 import org.webcat.core.Application;
+import org.webcat.core.git.WorkingCopyPushScheduler;
+import org.webcat.core.git.WorkingCopySynchronizer;
+import org.webcat.core.http.CredentialCache;
+import org.webcat.core.http.ResponseCache;
+import org.webcat.core.messaging.MailOutbox;
+import org.webcat.core.webdav.WebDAVLockManager;
+import org.webcat.woextensions.LockDiagnostics;
+import org.webcat.woextensions.LockStatistics;
 
 // -------------------------------------------------------------------------
 /**
@@ -55,6 +64,9 @@ public class SystemStatusBlock
     public int     index;
     public boolean includeSeparator = false;
     public boolean startOpen = false;
+    public LockStatistics lockStats;
+    public LdapConnectionPool ldapPool;
+    public SubsystemStartup.Timing startupTiming;
 
 
     //~ Methods ...............................................................
@@ -72,4 +84,76 @@ public class SystemStatusBlock
     {
         return Application.userCount.get();
     }
+
+
+    // ----------------------------------------------------------
+    public String mailOutboxSummary()
+    {
+        return MailOutbox.outbox().summary();
+    }
+
+
+    // ----------------------------------------------------------
+    public String gitPushSummary()
+    {
+        return WorkingCopyPushScheduler.scheduler().summary();
+    }
+
+
+    // ----------------------------------------------------------
+    public String gitSyncSummary()
+    {
+        return WorkingCopySynchronizer.summary();
+    }
+
+
+    // ----------------------------------------------------------
+    public String credentialSummary()
+    {
+        return CredentialCache.cache().summary();
+    }
+
+
+    // ----------------------------------------------------------
+    public String responseCacheSummary()
+    {
+        return ResponseCache.cache().summary();
+    }
+
+
+    // ----------------------------------------------------------
+    public String webdavLockSummary()
+    {
+        return WebDAVLockManager.sharedSummary();
+    }
+
+
+    // ----------------------------------------------------------
+    public String subsystemStartupSummary()
+    {
+        return Application.wcApplication().subsystemManager().startup()
+            .summary();
+    }
+
+
+    // ----------------------------------------------------------
+    public List<SubsystemStartup.Timing> subsystemStartupTimings()
+    {
+        return Application.wcApplication().subsystemManager().startup()
+            .timings();
+    }
+
+
+    // ----------------------------------------------------------
+    public List<LockStatistics> lockStatistics()
+    {
+        return LockDiagnostics.allStatistics();
+    }
+
+
+    // ----------------------------------------------------------
+    public List<LdapConnectionPool> ldapPools()
+    {
+        return LdapConnectionPool.allPools();
+    }
 }
@@ -28,6 +28,7 @@ import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
 import java.security.SecureRandom;
 import org.apache.log4j.Logger;
+import org.webcat.core.http.CredentialCache;
 import org.webcat.woextensions.ECActionWithResult;
 import org.webcat.woextensions.MigratingEditingContext;
 import org.webcat.woextensions.WCEC;
@@ -689,10 +690,15 @@ public class User
         else
         {
             UserAuthenticator authenticator = ad.authenticator();
-            return authenticator != null
+            boolean changed = authenticator != null
                 && authenticator instanceof PasswordManagingUserAuthenticator
                 && ((PasswordManagingUserAuthenticator)authenticator)
                 .changePassword(this, newPassword);
+            if (changed)
+            {
+                CredentialCache.cache().invalidate(this);
+            }
+            return changed;
         }
     }
 
@@ -713,10 +719,15 @@ public class User
         else
         {
             UserAuthenticator authenticator = ad.authenticator();
-            return authenticator != null
+            boolean changed = authenticator != null
                 && authenticator instanceof PasswordManagingUserAuthenticator
                 && ((PasswordManagingUserAuthenticator)authenticator)
                 .newRandomPassword(this);
+            if (changed)
+            {
+                CredentialCache.cache().invalidate(this);
+            }
+            return changed;
         }
     }
 
@@ -27,6 +27,9 @@ import er.extensions.foundation.ERXValueUtilities;
 import java.io.*;
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import org.webcat.core.WCProperties;
 import org.apache.log4j.Logger;
 
@@ -50,6 +53,20 @@ import org.apache.log4j.Logger;
  * will result in <code>getProperty("C")</code>
  * returning the value "1234567890 plus more".  The property expansion
  * support is based on code written by Chris Mair.
+ * <p>
+ * Resolved values are cached, so repeated reads of the same key do not
+ * repeat the lookups and substitutions, and the typed accessors do not
+ * re-parse the same text.  Each cached value records the keys it was
+ * built from (including the keys named in its property references), and
+ * any change to one of those keys through <code>put()</code> (and so
+ * <code>setProperty()</code>, <code>load()</code>, and
+ * <code>addPropertiesFromDictionary()</code>), <code>putAll()</code>,
+ * <code>remove()</code>, or <code>clear()</code> discards just the values
+ * that depend on it.  Values that came from the defaults are rechecked
+ * against the defaults on every read, since those can change without
+ * notice (for example, through <code>System.setProperty()</code>).
+ * Arrays and dictionaries returned by the typed accessors are shared
+ * between callers and must not be modified.
  *
  * @author Stephen Edwards
  * @author  Last changed by $Author: stedwar2 $
@@ -330,8 +347,16 @@ public class WCProperties
      */
     public NSArray<?> arrayForKeyWithDefault(String s, NSArray<?> defaultValue)
     {
-        return ERXValueUtilities.arrayValueWithDefault(
-            getProperty(s), defaultValue);
+        Resolved resolved = resolved(s);
+        Typed typed = resolved.arrayValue;
+        if (typed == null || !typed.isFor(defaultValue))
+        {
+            typed = new Typed(defaultValue,
+                ERXValueUtilities.arrayValueWithDefault(
+                    resolved.value, defaultValue));
+            resolved.arrayValue = typed;
+        }
+        return (NSArray<?>) typed.value;
     }
 
     // ----------------------------------------------------------
@@ -363,8 +388,16 @@ public class WCProperties
      */
     public boolean booleanForKeyWithDefault(String s, boolean defaultValue)
     {
-        return ERXValueUtilities.booleanValueWithDefault(
-            getProperty(s), defaultValue);
+        Resolved resolved = resolved(s);
+        Typed typed = resolved.booleanValue;
+        if (typed == null || !typed.isFor(defaultValue))
+        {
+            typed = new Typed(defaultValue,
+                ERXValueUtilities.booleanValueWithDefault(
+                    resolved.value, defaultValue));
+            resolved.booleanValue = typed;
+        }
+        return (Boolean) typed.value;
     }
 
 
@@ -394,8 +427,16 @@ public class WCProperties
     public NSDictionary<?, ?> dictionaryForKeyWithDefault(
         String s, NSDictionary<?, ?> defaultValue)
     {
-        return ERXValueUtilities.dictionaryValueWithDefault(
-            getProperty(s), defaultValue);
+        Resolved resolved = resolved(s);
+        Typed typed = resolved.dictionaryValue;
+        if (typed == null || !typed.isFor(defaultValue))
+        {
+            typed = new Typed(defaultValue,
+                ERXValueUtilities.dictionaryValueWithDefault(
+                    resolved.value, defaultValue));
+            resolved.dictionaryValue = typed;
+        }
+        return (NSDictionary<?, ?>) typed.value;
     }
 
 
@@ -470,8 +511,16 @@ public class WCProperties
      */
     public int intForKeyWithDefault(String s, int defaultValue)
     {
-        return ERXValueUtilities.intValueWithDefault(
-            getProperty(s), defaultValue);
+        Resolved resolved = resolved(s);
+        Typed typed = resolved.intValue;
+        if (typed == null || !typed.isFor(defaultValue))
+        {
+            typed = new Typed(defaultValue,
+                ERXValueUtilities.intValueWithDefault(
+                    resolved.value, defaultValue));
+            resolved.intValue = typed;
+        }
+        return (Integer) typed.value;
     }
 
 
@@ -485,8 +534,16 @@ public class WCProperties
      */
     public long longForKeyWithDefault(String s, long defaultValue)
     {
-        return ERXValueUtilities.longValueWithDefault(
-            getProperty(s), defaultValue);
+        Resolved resolved = resolved(s);
+        Typed typed = resolved.longValue;
+        if (typed == null || !typed.isFor(defaultValue))
+        {
+            typed = new Typed(defaultValue,
+                ERXValueUtilities.longValueWithDefault(
+                    resolved.value, defaultValue));
+            resolved.longValue = typed;
+        }
+        return (Long) typed.value;
     }
 
 
@@ -667,6 +724,25 @@ public class WCProperties
      * @return The value, with all property references substituted
      */
     private String substitutePropertyReferences(String value, int maxDepth)
+    {
+        return substitutePropertyReferences(value, maxDepth, null);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Performs the real substitution work for
+     * {@link #substitutePropertyReferences(String)}, recording the keys
+     * that the result depends on.
+     * @param value the string to perform substitution on
+     * @param maxDepth the limit on the number of levels of recursion that
+     * can be used in substituting properties
+     * @param dependencies the keys read so far, or null if they are not
+     * being recorded
+     * @return The value, with all property references substituted
+     */
+    private String substitutePropertyReferences(
+        String value, int maxDepth, Dependencies dependencies)
     {
         if (value == null || value.length() == 0)
         {
@@ -697,7 +773,7 @@ public class WCProperties
             String constName  =
                 value.substring(startName + REFERENCE_START.length(), endName);
             String constValue = (maxDepth > 0)
-                ? getProperty(constName, true, maxDepth - 1)
+                ? resolve(constName, true, maxDepth - 1, dependencies)
                 : REFERENCE_START + constName + ":RECURSION-TOO-DEEP"
                   + REFERENCE_END;
 
@@ -741,6 +817,68 @@ public class WCProperties
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * Stores a property, discarding any cached values that depend on it.
+     * @param key the property key
+     * @param value the property value
+     * @return the previous value, or null
+     */
+    public synchronized Object put(Object key, Object value)
+    {
+        Object result = super.put(key, value);
+        changed(key);
+        return result;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Stores several properties, discarding any cached values that depend
+     * on them.
+     * @param map the properties to store
+     */
+    public synchronized void putAll(Map<?, ?> map)
+    {
+        super.putAll(map);
+        for (Object key : map.keySet())
+        {
+            changed(key);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Removes a property, discarding any cached values that depend on it.
+     * @param key the property key
+     * @return the previous value, or null
+     */
+    public synchronized Object remove(Object key)
+    {
+        Object result = super.remove(key);
+        changed(key);
+        return result;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Removes all locally defined properties and discards all cached
+     * values.
+     */
+    public synchronized void clear()
+    {
+        super.clear();
+        if (resolved != null)
+        {
+            changeCount.incrementAndGet();
+            resolved.clear();
+            dependents.clear();
+        }
+    }
+
+
     // ----------------------------------------------------------
     /**
      * Overriding the default getProperty method to first check:
@@ -751,8 +889,7 @@ public class WCProperties
      */
     public String getProperty(String key)
     {
-        return getProperty(
-            key, willPerformPropertySubstitution, MAX_RECURSIVE_DEPTH);
+        return resolved(key).value;
     }
 
 
@@ -770,6 +907,26 @@ public class WCProperties
      */
     public String getProperty(
         String key, boolean performSubstitution, int maxDepth)
+    {
+        return resolve(key, performSubstitution, maxDepth, null);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Does the work of {@link #getProperty(String, boolean, int)},
+     * recording the keys that the result depends on.
+     * @param key to check
+     * @param performSubstitution if true, any property references within
+     * the resulting value will be expanded through substitution
+     * @param maxDepth the limit on the number of levels of recursion that
+     * can be used in substituting properties
+     * @param dependencies the keys read so far, or null if they are not
+     * being recorded
+     * @return property value
+     */
+    private String resolve(String key, boolean performSubstitution,
+        int maxDepth, Dependencies dependencies)
     {
         String property = null;
         String application = applicationNameForAppending();
@@ -780,15 +937,15 @@ public class WCProperties
         }
         if (application != null)
         {
-            property = super.getProperty(key + application);
+            property = lookUp(key + application, dependencies);
         }
         if (property == null)
         {
-            property = super.getProperty(key);
+            property = lookUp(key, dependencies);
             if (property == null)
             {
-                property =
-                    super.getProperty(key + ERXProperties.DefaultString);
+                property = lookUp(
+                    key + ERXProperties.DefaultString, dependencies);
             }
             // This behavior from ERXProperties makes it hard to dynamically
             // reset properties easily, so turn it off here.
@@ -801,12 +958,158 @@ public class WCProperties
         }
         if (performSubstitution)
         {
-            property = substitutePropertyReferences(property, maxDepth);
+            property = substitutePropertyReferences(
+                property, maxDepth, dependencies);
         }
         return property;
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * Looks up the raw value of one key, here or in the defaults, just as
+     * {@link Properties#getProperty(String)} does.
+     * @param key the exact key to look up
+     * @param dependencies the keys read so far, or null if they are not
+     * being recorded
+     * @return the unexpanded value, or null
+     */
+    private String lookUp(String key, Dependencies dependencies)
+    {
+        if (dependencies == null)
+        {
+            return super.getProperty(key);
+        }
+
+        dependencies.keys.add(key);
+        Object local = get(key);
+        String value = (local instanceof String) ? (String)local : null;
+        if (value == null  &&  defaults != null)
+        {
+            value = defaults.getProperty(key);
+            dependencies.defaultKeys.add(key);
+            dependencies.defaultValues.add(value);
+        }
+        return value;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the cached resolution of a key, resolving it (and caching the
+     * result) if necessary.
+     * @param key the key to resolve
+     * @return the resolution
+     */
+    private Resolved resolved(String key)
+    {
+        String application = applicationNameForAppending();
+        if (application == null
+            ? resolvedApplicationName != null
+            : !application.equals(resolvedApplicationName))
+        {
+            // The application name has become known, which changes the
+            // first key looked up for every property
+            resolvedApplicationName = application;
+            changeCount.incrementAndGet();
+            resolved.clear();
+            dependents.clear();
+        }
+
+        boolean substitute = willPerformPropertySubstitution;
+        Resolved result = resolved.get(key);
+        if (result != null
+            && result.substituted == substitute
+            && result.defaultsUnchanged(defaults))
+        {
+            return result;
+        }
+
+        long version = changeCount.get();
+        Dependencies dependencies = new Dependencies();
+        result = new Resolved(
+            resolve(key, substitute, MAX_RECURSIVE_DEPTH, dependencies),
+            substitute,
+            dependencies);
+
+        if (resolved.size() >= MAX_RESOLVED)
+        {
+            resolved.clear();
+        }
+        for (String dependency : dependencies.keys)
+        {
+            Set<String> keys = dependents.get(dependency);
+            if (keys == null)
+            {
+                keys = Collections.newSetFromMap(
+                    new ConcurrentHashMap<String, Boolean>());
+                Set<String> existing =
+                    dependents.putIfAbsent(dependency, keys);
+                if (existing != null)
+                {
+                    keys = existing;
+                }
+            }
+            keys.add(key);
+        }
+        resolved.put(key, result);
+
+        // If anything changed while this value was being resolved, it may
+        // be stale, and the change may have missed it
+        if (changeCount.get() != version)
+        {
+            resolved.remove(key, result);
+        }
+        return result;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Discards the cached values that depend on a key.
+     * @param key the key that has changed
+     */
+    private void changed(Object key)
+    {
+        // Puts made by a superclass constructor happen before the cache
+        // exists
+        if (resolved == null)
+        {
+            return;
+        }
+
+        changeCount.incrementAndGet();
+        Set<String> keys = dependents.remove(key);
+        if (keys != null)
+        {
+            for (String dependent : keys)
+            {
+                resolved.remove(dependent);
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the value of a property coerced into its "actual" type, as
+     * for {@link #valueForKey(String)}.
+     * @param property the cached resolution of the property, which must
+     * have a value
+     * @return the coerced value
+     */
+    private Object coercedValue(Resolved property)
+    {
+        Object result = property.coercedValue;
+        if (result == null)
+        {
+            result = tryToCoercePropertyValue(property.value, false);
+            property.coercedValue = result;
+        }
+        return result;
+    }
+
+
     // ----------------------------------------------------------
     /**
      * Attempts to coerce the string value of a property into its "actual"
@@ -1158,11 +1461,11 @@ public class WCProperties
      */
     public Object valueForKey(String key)
     {
-        String result = getProperty(key);
+        Resolved property = resolved(key);
 
-        if (result != null)
+        if (property.value != null)
         {
-            return tryToCoercePropertyValue(result, false);
+            return coercedValue(property);
         }
         else
         {
@@ -1173,7 +1476,7 @@ public class WCProperties
             {
                 key = key.substring(4);
 
-                result = getProperty(key);
+                String result = getProperty(key);
                 if (result != null)
                 {
                     return result;
@@ -1200,10 +1503,10 @@ public class WCProperties
     {
         log.debug("valueForKeyPath(" + keyPath + ")");
 
-        String result = getProperty(keyPath);
-        if (result != null)
+        Resolved property = resolved(keyPath);
+        if (property.value != null)
         {
-            return tryToCoercePropertyValue(result, false);
+            return coercedValue(property);
         }
         else
         {
@@ -1214,7 +1517,7 @@ public class WCProperties
             {
                 keyPath = keyPath.substring(4);
 
-                result = getProperty(keyPath);
+                String result = getProperty(keyPath);
                 if (result != null)
                 {
                     return result;
@@ -1276,6 +1579,126 @@ public class WCProperties
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * Recreates the (transient) cache when a property list is
+     * deserialized.
+     * @param in the stream to read from
+     * @throws IOException if the stream cannot be read
+     * @throws ClassNotFoundException if a class cannot be found
+     */
+    private void readObject(ObjectInputStream in)
+        throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        resolved = new ConcurrentHashMap<String, Resolved>();
+        dependents = new ConcurrentHashMap<Object, Set<String>>();
+        changeCount = new AtomicLong();
+    }
+
+
+    //~ Nested classes ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * The keys read while resolving a property.
+     */
+    private static class Dependencies
+    {
+        /** Every key looked up here. */
+        final Set<String> keys = new HashSet<String>();
+
+        /** The keys that were looked up in the defaults. */
+        final List<String> defaultKeys = new ArrayList<String>();
+
+        /** The values found in the defaults, in the same order. */
+        final List<String> defaultValues = new ArrayList<String>();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * The cached resolution of one property, along with its value
+     * converted to the types that have been asked for.
+     */
+    private static class Resolved
+    {
+        // ----------------------------------------------------------
+        Resolved(String value, boolean substituted, Dependencies dependencies)
+        {
+            this.value = value;
+            this.substituted = substituted;
+            defaultKeys = dependencies.defaultKeys.toArray(
+                new String[dependencies.defaultKeys.size()]);
+            defaultValues = dependencies.defaultValues.toArray(
+                new String[dependencies.defaultValues.size()]);
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Determines whether the values this resolution found in the
+         * defaults are still the same.
+         */
+        boolean defaultsUnchanged(Properties defaults)
+        {
+            for (int i = 0; i < defaultKeys.length; i++)
+            {
+                String current = defaults.getProperty(defaultKeys[i]);
+                if (current == null
+                    ? defaultValues[i] != null
+                    : !current.equals(defaultValues[i]))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+
+        final String value;
+        final boolean substituted;
+        final String[] defaultKeys;
+        final String[] defaultValues;
+
+        volatile Typed booleanValue;
+        volatile Typed intValue;
+        volatile Typed longValue;
+        volatile Typed arrayValue;
+        volatile Typed dictionaryValue;
+        volatile Object coercedValue;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * A property value converted to a type, along with the default value
+     * that the conversion used.
+     */
+    private static class Typed
+    {
+        // ----------------------------------------------------------
+        Typed(Object defaultValue, Object value)
+        {
+            this.defaultValue = defaultValue;
+            this.value = value;
+        }
+
+
+        // ----------------------------------------------------------
+        boolean isFor(Object aDefaultValue)
+        {
+            return aDefaultValue == null
+                ? defaultValue == null
+                : aDefaultValue.equals(defaultValue);
+        }
+
+
+        final Object defaultValue;
+        final Object value;
+    }
+
+
     //~ Instance/static variables .............................................
 
     /** caches the application name that is appended to the key for lookup */
@@ -1286,6 +1709,17 @@ public class WCProperties
     private final String REFERENCE_END = "}";
     private final int    MAX_RECURSIVE_DEPTH = 256;
 
+    // The cache of resolved values, the cached keys that depend on each
+    // key, and a count of changes, used to detect changes that happen
+    // while a value is being resolved
+    private transient ConcurrentMap<String, Resolved> resolved =
+        new ConcurrentHashMap<String, Resolved>();
+    private transient ConcurrentMap<Object, Set<String>> dependents =
+        new ConcurrentHashMap<Object, Set<String>>();
+    private transient AtomicLong changeCount = new AtomicLong();
+    private transient String resolvedApplicationName;
+    private static final int MAX_RESOLVED = 4096;
+
     static Logger log = Logger.getLogger(WCProperties.class);
     public static final String PROPERTYFILES_LOADED = "propertyfiles.loaded";
     public static final String NO_SUBSTITUTION_PREFIX = "NOSUB.";
@@ -0,0 +1,556 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.core.git;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.log4j.Logger;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.patch.FileHeader;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import com.webobjects.foundation.NSArray;
+import com.webobjects.foundation.NSMutableArray;
+import er.extensions.foundation.ERXProperties;
+
+//-------------------------------------------------------------------------
+/**
+ * The changes made by a single commit, relative to its first parent.
+ * <p>
+ * Creating a diff computes the list of changed files along with their
+ * addition and deletion counts, but the HTML for each file's hunks is only
+ * produced when {@link FileDiff#prettyDiff(Repository)} is first called for
+ * that file.  Binary files, and files too large to diff comfortably (more
+ * than <code>CommitDiff.maxFileBytes</code> bytes, or more than
+ * <code>CommitDiff.maxDiffLines</code> changed lines), are listed with a
+ * marker instead of hunks.
+ * </p><p>
+ * Since commits never change, diffs are kept in a cache keyed by the
+ * parent id, commit id, and number of context lines.  The cache is bounded
+ * by an estimate of the memory its entries use (set with the property
+ * <code>CommitDiff.cacheBytes</code>), and the least recently used diffs are
+ * discarded first.
+ * </p>
+ *
+ * @author  Stephen Edwards
+ */
+public class CommitDiff
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    private CommitDiff(String key, int contextLines)
+    {
+        this.key = key;
+        this.contextLines = contextLines;
+        this.files = new NSMutableArray<FileDiff>();
+    }
+
+
+    //~ Public Nested Classes .................................................
+
+    // ----------------------------------------------------------
+    /**
+     * The changes made to a single file.
+     */
+    public class FileDiff
+    {
+        // ----------------------------------------------------------
+        private FileDiff(DiffEntry entry)
+        {
+            this.entry = entry;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Gets the path of the file, which is its old path if the file was
+         * deleted.
+         *
+         * @return the path
+         */
+        public String path()
+        {
+            return entry.getChangeType() == DiffEntry.ChangeType.DELETE
+                ? entry.getOldPath() : entry.getNewPath();
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Gets the kind of change, such as "ADD", "MODIFY", or "DELETE".
+         *
+         * @return the change type
+         */
+        public String changeType()
+        {
+            return entry.getChangeType().name();
+        }
+
+
+        // ----------------------------------------------------------
+        public int additionCount()
+        {
+            return additionCount;
+        }
+
+
+        // ----------------------------------------------------------
+        public int deletionCount()
+        {
+            return deletionCount;
+        }
+
+
+        // ----------------------------------------------------------
+        public boolean isBinary()
+        {
+            return isBinary;
+        }
+
+
+        // ----------------------------------------------------------
+        public boolean isTooLarge()
+        {
+            return isTooLarge;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Gets a value indicating whether hunks can be shown for this file.
+         *
+         * @return false if the file is binary, too large, or a submodule
+         */
+        public boolean canShowDiff()
+        {
+            return !isBinary && !isTooLarge && !isSubmodule;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Gets a short explanation of why hunks are not shown for this
+         * file.
+         *
+         * @return the explanation, or null if hunks can be shown
+         */
+        public String marker()
+        {
+            if (isSubmodule)
+            {
+                return "Submodule changed.";
+            }
+            else if (isBinary)
+            {
+                return "Binary file not shown.";
+            }
+            else if (isTooLarge)
+            {
+                return "File too large to display.";
+            }
+            else
+            {
+                return null;
+            }
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Gets the rendered hunks for this file, producing them on the
+         * first call.
+         *
+         * @param repository the repository containing the commit
+         * @return the rendered diff, or null if the file is binary or too
+         *     large, or could not be read
+         */
+        public synchronized PrettyDiffResult prettyDiff(Repository repository)
+        {
+            if (prettyDiff == null && canShowDiff())
+            {
+                PrettyDiffFormatter formatter = new PrettyDiffFormatter();
+
+                try
+                {
+                    formatter.setRepository(repository);
+                    formatter.setContext(contextLines);
+                    formatter.format(entry);
+                    prettyDiff = formatter.prettyDiffForPath(
+                        entry.getNewPath());
+
+                    if (prettyDiff != null)
+                    {
+                        addWeight(2L * (prettyDiff.content().length()
+                            + prettyDiff.aLineNumbers().length()
+                            + prettyDiff.bLineNumbers().length()));
+                    }
+                }
+                catch (IOException e)
+                {
+                    log.error("Unable to format the diff of " + path()
+                        + " in " + key, e);
+                }
+                finally
+                {
+                    formatter.release();
+                }
+            }
+
+            return prettyDiff;
+        }
+
+
+        //~ Instance/static variables .........................................
+
+        private final DiffEntry entry;
+        private int additionCount;
+        private int deletionCount;
+        private boolean isBinary;
+        private boolean isTooLarge;
+        private boolean isSubmodule;
+        private PrettyDiffResult prettyDiff;
+    }
+
+
+    //~ Methods ...............................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the diff for a commit against its first parent (or against an
+     * empty tree, for a root commit), computing it if it is not already
+     * cached.
+     *
+     * @param repository the repository containing the commit
+     * @param commit the commit
+     * @param contextLines the number of lines of context around each change
+     * @return the diff
+     * @throws IOException if an error occurs reading the repository
+     */
+    public static CommitDiff diffForCommit(
+            Repository repository, RevCommit commit, int contextLines)
+        throws IOException
+    {
+        RevCommit parent = commit.getParentCount() > 0
+            ? commit.getParent(0) : null;
+        String key = (parent == null ? "root" : parent.name())
+            + ".." + commit.name() + "-U" + contextLines;
+
+        synchronized (cache)
+        {
+            CommitDiff diff = cache.get(key);
+            if (diff != null)
+            {
+                hits++;
+                return diff;
+            }
+            misses++;
+        }
+
+        CommitDiff diff = new CommitDiff(key, contextLines);
+        diff.scan(repository, parent, commit);
+
+        synchronized (cache)
+        {
+            CommitDiff existing = cache.get(key);
+            if (existing != null)
+            {
+                return existing;
+            }
+
+            cache.put(key, diff);
+            cacheWeight += diff.weight;
+            trimCache();
+        }
+
+        return diff;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the changed files, sorted by path.
+     *
+     * @return the files
+     */
+    public NSArray<FileDiff> files()
+    {
+        return files;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the changes made to a specific file.
+     *
+     * @param path the path of the file
+     * @return the file's changes, or null if the commit did not change it
+     */
+    public FileDiff fileWithPath(String path)
+    {
+        for (FileDiff file : files)
+        {
+            if (file.path().equals(path))
+            {
+                return file;
+            }
+        }
+
+        return null;
+    }
+
+
+    // ----------------------------------------------------------
+    public int totalAdditionCount()
+    {
+        return totalAdditionCount;
+    }
+
+
+    // ----------------------------------------------------------
+    public int totalDeletionCount()
+    {
+        return totalDeletionCount;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Produce a compact one-line summary of the cache's effectiveness.
+     *
+     * @return the summary
+     */
+    public static String cacheSummary()
+    {
+        synchronized (cache)
+        {
+            return cache.size() + " diffs (" + (cacheWeight / 1024)
+                + "KB), " + hits + " hits, " + misses + " misses";
+        }
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    private void scan(Repository repository, RevCommit parent,
+            RevCommit commit)
+        throws IOException
+    {
+        RevWalk rw = new RevWalk(repository);
+        DiffFormatter formatter = new DiffFormatter(new NullOutputStream());
+        ObjectReader reader = repository.newObjectReader();
+
+        try
+        {
+            formatter.setRepository(repository);
+            formatter.setContext(contextLines);
+
+            CanonicalTreeParser newTree = new CanonicalTreeParser();
+            newTree.reset(reader, rw.parseCommit(commit).getTree());
+
+            List<DiffEntry> entries;
+            if (parent == null)
+            {
+                entries = formatter.scan(new EmptyTreeIterator(), newTree);
+            }
+            else
+            {
+                CanonicalTreeParser oldTree = new CanonicalTreeParser();
+                oldTree.reset(reader, rw.parseCommit(parent).getTree());
+                entries = formatter.scan(oldTree, newTree);
+            }
+
+            for (DiffEntry entry : entries)
+            {
+                FileDiff file = new FileDiff(entry);
+                measure(file, formatter, reader);
+                files.addObject(file);
+                weight += FILE_OVERHEAD + 2L * file.path().length();
+            }
+        }
+        finally
+        {
+            reader.release();
+            formatter.release();
+            rw.release();
+        }
+
+        sortFiles();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Computes the addition and deletion counts for a file, without
+     * rendering any of its hunks.
+     */
+    private void measure(FileDiff file, DiffFormatter formatter,
+            ObjectReader reader)
+        throws IOException
+    {
+        DiffEntry entry = file.entry;
+
+        if (entry.getOldMode() == FileMode.GITLINK
+            || entry.getNewMode() == FileMode.GITLINK)
+        {
+            file.isSubmodule = true;
+            return;
+        }
+
+        long size = Math.max(
+            blobSize(reader, entry.getOldId().toObjectId()),
+            blobSize(reader, entry.getNewId().toObjectId()));
+        if (size > MAX_FILE_BYTES)
+        {
+            file.isTooLarge = true;
+            return;
+        }
+
+        FileHeader header = formatter.toFileHeader(entry);
+        if (header.getPatchType() != FileHeader.PatchType.UNIFIED)
+        {
+            file.isBinary = true;
+            return;
+        }
+
+        for (Edit edit : header.toEditList())
+        {
+            file.deletionCount += edit.getEndA() - edit.getBeginA();
+            file.additionCount += edit.getEndB() - edit.getBeginB();
+        }
+
+        totalAdditionCount += file.additionCount;
+        totalDeletionCount += file.deletionCount;
+
+        if (file.additionCount + file.deletionCount > MAX_DIFF_LINES)
+        {
+            file.isTooLarge = true;
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private static long blobSize(ObjectReader reader, AnyObjectId id)
+        throws IOException
+    {
+        return ObjectId.zeroId().equals(id)
+            ? 0 : reader.getObjectSize(id, Constants.OBJ_BLOB);
+    }
+
+
+    // ----------------------------------------------------------
+    private void sortFiles()
+    {
+        FileDiff[] sorted = files.toArray(new FileDiff[files.count()]);
+        Arrays.sort(sorted, new Comparator<FileDiff>() {
+            public int compare(FileDiff lhs, FileDiff rhs)
+            {
+                return lhs.path().compareToIgnoreCase(rhs.path());
+            }
+        });
+
+        files.removeAllObjects();
+        files.addObjects(sorted);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Records that lazily rendered hunks have increased the size of this
+     * diff, and trims the cache if it has grown too large.
+     */
+    private void addWeight(long bytes)
+    {
+        synchronized (cache)
+        {
+            weight += bytes;
+            if (cache.get(key) == this)
+            {
+                cacheWeight += bytes;
+                trimCache();
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Discards the least recently used diffs until the cache is within its
+     * budget.  The most recently used diff is always kept, even if it is
+     * larger than the whole budget.  Callers must hold the cache's lock.
+     */
+    private static void trimCache()
+    {
+        Iterator<CommitDiff> it = cache.values().iterator();
+        while (cacheWeight > MAX_CACHE_BYTES && cache.size() > 1
+            && it.hasNext())
+        {
+            CommitDiff eldest = it.next();
+            cacheWeight -= eldest.weight;
+            it.remove();
+        }
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private final String key;
+    private final int contextLines;
+    private final NSMutableArray<FileDiff> files;
+    private int totalAdditionCount;
+    private int totalDeletionCount;
+    private long weight;
+
+    private static final long MAX_CACHE_BYTES =
+        ERXProperties.longForKeyWithDefault(
+            "CommitDiff.cacheBytes", 16L * 1024 * 1024);
+    private static final long MAX_FILE_BYTES =
+        ERXProperties.longForKeyWithDefault(
+            "CommitDiff.maxFileBytes", 512L * 1024);
+    private static final int MAX_DIFF_LINES =
+        ERXProperties.intForKeyWithDefault("CommitDiff.maxDiffLines", 5000);
+    private static final long FILE_OVERHEAD = 256;
+
+    // Access-ordered, so iteration starts with the least recently used
+    private static final Map<String, CommitDiff> cache =
+        new LinkedHashMap<String, CommitDiff>(16, 0.75f, true);
+    private static long cacheWeight;
+    private static long hits;
+    private static long misses;
+
+    private static final Logger log = Logger.getLogger(CommitDiff.class);
+}
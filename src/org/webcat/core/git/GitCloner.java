@@ -77,34 +77,88 @@ public class GitCloner
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * Creates a cloner for an already-open bare repository, which lets
+     * existing working copies be brought up to date without opening the
+     * bare repository again.
+     *
+     * @param repository the bare repository to clone
+     * @param destination the location of the working copy
+     */
+    public GitCloner(Repository repository, File destination)
+    {
+        this(repository.getDirectory(), destination);
+        this.repository = repository;
+    }
+
+
     //~ Methods ...............................................................
 
     // ----------------------------------------------------------
+    /**
+     * Gets the working copy, creating it with a full fetch and checkout if
+     * it does not exist yet.  When an existing working copy is pulled, only
+     * the paths that changed since it was last synchronized are updated
+     * (see {@link WorkingCopySynchronizer}), and nothing at all is done if
+     * the bare repository's master branch has not moved.
+     *
+     * @param forcePull if true, bring an existing working copy up to date
+     * @return the working copy repository
+     * @throws IOException if an I/O error occurs
+     * @throws GitAPIException if the working copy cannot be created
+     */
     public Repository cloneRepository(boolean forcePull)
         throws IOException, GitAPIException
     {
-        if (!destination.exists())
+        boolean created = !destination.exists();
+        if (created)
         {
-            forcePull = true;
             log.debug("Working copy created for the first time: " + destination);
         }
 
         Repository wcRepository = createWorkingCopyRepositoryIfNecessary(
                 destination, repositoryToClone);
 
-        if (forcePull)
+        if (created)
         {
             FetchResult fetchResult = doFetch(wcRepository);
             Ref head = guessHead(fetchResult);
-            doCheckout(wcRepository, head);
+            if (head != null)
+            {
+                RevCommit commit = doCheckout(wcRepository, head);
+                WorkingCopySynchronizer.recordSynchronized(
+                        wcRepository, commit);
+            }
 
-            log.debug("Pulled to update working copy: " + destination);
+            log.debug("Pulled to create working copy: " + destination);
+        }
+        else if (forcePull)
+        {
+            if (WorkingCopySynchronizer.synchronize(
+                    bareRepository(), wcRepository))
+            {
+                log.debug("Pulled to update working copy: " + destination);
+            }
         }
 
         return wcRepository;
     }
 
 
+    // ----------------------------------------------------------
+    private Repository bareRepository() throws IOException
+    {
+        if (repository == null)
+        {
+            repository = RepositoryCache.open(FileKey.exact(
+                    repositoryToClone, FS.DETECTED));
+        }
+
+        return repository;
+    }
+
+
     // ----------------------------------------------------------
     private Repository createWorkingCopyRepositoryIfNecessary(
             File location, File remoteDir) throws IOException, GitAPIException
@@ -185,7 +239,7 @@ public class GitCloner
 
 
     // ----------------------------------------------------------
-    private void doCheckout(Repository repository, Ref branch)
+    private RevCommit doCheckout(Repository repository, Ref branch)
             throws IOException
     {
         if (!Constants.HEAD.equals(branch.getName()))
@@ -204,6 +258,8 @@ public class GitCloner
         DirCacheCheckout checkout = new DirCacheCheckout(
                 repository, dirCache, commit.getTree());
         checkout.checkout();
+
+        return commit;
     }
 
 
@@ -272,6 +328,7 @@ public class GitCloner
 
     private File repositoryToClone;
     private File destination;
+    private Repository repository;
 
     private static final Logger log = Logger.getLogger(GitCloner.class);
 }
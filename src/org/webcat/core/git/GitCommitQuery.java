@@ -0,0 +1,410 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.core.git;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import org.apache.log4j.Logger;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.AndRevFilter;
+import org.eclipse.jgit.revwalk.filter.CommitTimeRevFilter;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import com.webobjects.foundation.NSArray;
+import com.webobjects.foundation.NSMutableArray;
+
+//-------------------------------------------------------------------------
+/**
+ * A bounded query over the commit history of a repository.  Commits are
+ * produced newest first, optionally restricted to those that modified a
+ * path or fall within a time window, and paged with an offset and limit.
+ * <p>
+ * The history is walked lazily, so the cost of a query depends on how far
+ * into the history the requested page lies, and only the commits on the
+ * page are ever held in memory.  Typical use looks like:
+ * </p>
+ * <pre>
+ * NSArray&lt;GitCommit&gt; page = repository.commitQuery(headId)
+ *     .path("src/Foo.java").offset(50).limit(50).commits();
+ * </pre>
+ *
+ * @author  Stephen Edwards
+ */
+public class GitCommitQuery
+    implements Iterable<GitCommit>
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Creates a new query over the history reachable from a commit.
+     *
+     * @param repository the repository
+     * @param startId the id of the commit to start from
+     */
+    public GitCommitQuery(GitRepository repository, ObjectId startId)
+    {
+        this.repository = repository;
+        this.startId = startId;
+    }
+
+
+    //~ Methods ...............................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Restricts the query to commits that modified a path.
+     *
+     * @param aPath the path, relative to the root of the repository, or null
+     *     to include all commits
+     * @return this query
+     */
+    public GitCommitQuery path(String aPath)
+    {
+        this.path = (aPath == null || aPath.length() == 0) ? null : aPath;
+        return this;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Restricts the query to commits made at or after a time.
+     *
+     * @param date the earliest commit time, or null for no limit
+     * @return this query
+     */
+    public GitCommitQuery since(Date date)
+    {
+        this.since = date;
+        return this;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Restricts the query to commits made at or before a time.
+     *
+     * @param date the latest commit time, or null for no limit
+     * @return this query
+     */
+    public GitCommitQuery until(Date date)
+    {
+        this.until = date;
+        return this;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Sets the number of matching commits to skip before the first one
+     * that is returned.
+     *
+     * @param count the number of commits to skip
+     * @return this query
+     */
+    public GitCommitQuery offset(int count)
+    {
+        this.offset = Math.max(0, count);
+        return this;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Sets the maximum number of commits to return.
+     *
+     * @param count the maximum number of commits, or a value less than or
+     *     equal to zero for no limit
+     * @return this query
+     */
+    public GitCommitQuery limit(int count)
+    {
+        this.limit = count;
+        return this;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the page of commits selected by this query.  If the query has a
+     * limit, one extra commit is examined so that {@link #hasMore()} can
+     * tell whether there is a following page.
+     *
+     * @return the commits, newest first (empty if there is no starting
+     *     commit), or null if an error occurred
+     */
+    public NSArray<GitCommit> commits()
+    {
+        NSMutableArray<GitCommit> commits = new NSMutableArray<GitCommit>();
+        hasMore = false;
+
+        if (startId == null)
+        {
+            return commits;
+        }
+
+        CommitIterator iterator = new CommitIterator();
+
+        try
+        {
+            while (iterator.hasNext()
+                    && (limit <= 0 || commits.count() < limit))
+            {
+                commits.addObject(iterator.next());
+            }
+
+            hasMore = iterator.hasNext();
+        }
+        catch (IllegalStateException e)
+        {
+            log.error("An exception occurred while walking the history of "
+                    + startId.name() + ": ", e.getCause());
+            return null;
+        }
+        finally
+        {
+            iterator.close();
+        }
+
+        return commits;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the first commit selected by this query, without walking any
+     * further into the history than necessary.
+     *
+     * @return the first commit, or null if there is none
+     */
+    public GitCommit first()
+    {
+        int oldLimit = limit;
+        limit = 1;
+
+        try
+        {
+            NSArray<GitCommit> commits = commits();
+            return (commits == null || commits.count() == 0)
+                ? null : commits.objectAtIndex(0);
+        }
+        finally
+        {
+            limit = oldLimit;
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets a value indicating whether the last call to {@link #commits()}
+     * stopped at the limit with more matching commits remaining.
+     *
+     * @return true if there is at least one more page of commits
+     */
+    public boolean hasMore()
+    {
+        return hasMore;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets a lazy iterator over the commits selected by this query.  The
+     * history is only walked as far as the iterator is advanced; the
+     * underlying walk is released when the iterator is exhausted, but an
+     * iterator that is abandoned early should be passed to
+     * {@link GitCommitQuery#close(Iterator)}.
+     *
+     * @return the iterator
+     */
+    public Iterator<GitCommit> iterator()
+    {
+        return new CommitIterator();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Releases the resources held by an iterator returned by
+     * {@link #iterator()} that was not run to completion.
+     *
+     * @param iterator the iterator
+     */
+    public static void close(Iterator<GitCommit> iterator)
+    {
+        if (iterator instanceof CommitIterator)
+        {
+            ((CommitIterator) iterator).close();
+        }
+    }
+
+
+    //~ Private methods .......................................................
+
+    // ----------------------------------------------------------
+    private RevWalk newWalk()
+        throws IOException
+    {
+        RevWalk rw = new RevWalk(repository.repository());
+
+        rw.sort(RevSort.COMMIT_TIME_DESC);
+
+        if (path != null)
+        {
+            rw.setTreeFilter(AndTreeFilter.create(
+                    PathFilter.create(path), TreeFilter.ANY_DIFF));
+        }
+
+        RevFilter filter = RevFilter.ALL;
+        if (since != null)
+        {
+            filter = CommitTimeRevFilter.after(since);
+        }
+        if (until != null)
+        {
+            RevFilter before = CommitTimeRevFilter.before(until);
+            filter = (filter == RevFilter.ALL)
+                ? before : AndRevFilter.create(filter, before);
+        }
+        rw.setRevFilter(filter);
+
+        rw.markStart(rw.parseCommit(startId));
+        return rw;
+    }
+
+
+    //~ Nested classes ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Walks the history on demand.  Errors reading the repository are
+     * rethrown as {@link IllegalStateException}s, since iterators cannot
+     * throw checked exceptions.
+     */
+    private class CommitIterator
+        implements Iterator<GitCommit>
+    {
+        // ----------------------------------------------------------
+        public boolean hasNext()
+        {
+            advance();
+            return nextCommit != null;
+        }
+
+
+        // ----------------------------------------------------------
+        public GitCommit next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+
+            GitCommit commit = new GitCommit(nextCommit);
+            nextCommit = null;
+            return commit;
+        }
+
+
+        // ----------------------------------------------------------
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+
+        // ----------------------------------------------------------
+        public void close()
+        {
+            if (rw != null)
+            {
+                rw.release();
+                rw = null;
+            }
+
+            done = true;
+        }
+
+
+        // ----------------------------------------------------------
+        private void advance()
+        {
+            if (nextCommit != null || done)
+            {
+                return;
+            }
+
+            try
+            {
+                if (rw == null)
+                {
+                    rw = newWalk();
+                }
+
+                nextCommit = rw.next();
+                while (nextCommit != null && skipped < offset)
+                {
+                    skipped++;
+                    nextCommit = rw.next();
+                }
+            }
+            catch (IOException e)
+            {
+                close();
+                throw new IllegalStateException(e);
+            }
+
+            if (nextCommit == null)
+            {
+                close();
+            }
+        }
+
+
+        //~ Instance/static variables .........................................
+
+        private RevWalk rw;
+        private RevCommit nextCommit;
+        private int skipped;
+        private boolean done;
+    }
+
+
+    //~ Static/instance variables .............................................
+
+    private GitRepository repository;
+    private ObjectId startId;
+    private String path;
+    private Date since;
+    private Date until;
+    private int offset;
+    private int limit;
+    private boolean hasMore;
+
+    private static final Logger log = Logger.getLogger(GitCommitQuery.class);
+}
@@ -118,12 +118,46 @@ public class GitRef implements NSKeyValueCodingAdditions
 
 
     // ----------------------------------------------------------
+    /**
+     * Gets the entire history of this ref. Prefer {@link #commits(int, int)}
+     * or {@link #latestCommit()}, whose cost does not grow with the length
+     * of the history.
+     *
+     * @return all of the commits reachable from this ref, newest first
+     */
     public NSArray<GitCommit> commits()
     {
         return repository.commitsWithId(ref.getObjectId(), null);
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * Gets one page of the history of this ref.
+     *
+     * @param offset the number of commits to skip
+     * @param limit the maximum number of commits to return
+     * @return the commits, newest first
+     */
+    public NSArray<GitCommit> commits(int offset, int limit)
+    {
+        return repository.commitQuery(ref.getObjectId())
+            .offset(offset).limit(limit).commits();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the commit that this ref points to.
+     *
+     * @return the latest commit, or null if it could not be found
+     */
+    public GitCommit latestCommit()
+    {
+        return repository.commitQuery(ref.getObjectId()).first();
+    }
+
+
     // ----------------------------------------------------------
     public int hashCode()
     {
@@ -192,6 +192,56 @@ public class GitRepository
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * Creates a query over the history reachable from a commit, which can
+     * be restricted to a path or time window and paged with an offset and
+     * limit before it is run.
+     *
+     * @param commitId the id of the commit to start from
+     * @return the query
+     */
+    public GitCommitQuery commitQuery(ObjectId commitId)
+    {
+        return new GitCommitQuery(this, commitId);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets a single commit, without walking any of its history.
+     *
+     * @param commitId the id of the commit
+     * @return the commit, or null if it could not be found
+     */
+    public GitCommit commitWithId(ObjectId commitId)
+    {
+        if (commitId == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            RevWalk rw = new RevWalk(repository);
+
+            try
+            {
+                return new GitCommit(rw.parseCommit(commitId));
+            }
+            finally
+            {
+                rw.release();
+            }
+        }
+        catch (Exception e)
+        {
+            log.error("An exception occurred while parsing the commit: ", e);
+            return null;
+        }
+    }
+
+
     // ----------------------------------------------------------
     public NSArray<GitCommit> commitsWithId(ObjectId commitId, String path)
     {
@@ -266,6 +316,53 @@ public class GitRepository
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * Gets the most recent commit that modified each immediate child of a
+     * directory, as of the specified commit. All of the children are
+     * resolved in a single history walk, and the results are cached (see
+     * {@link LastCommitIndex}).
+     *
+     * @param commitId the id of the head commit
+     * @param directory the path of the directory, relative to the root of
+     *     the repository, or null for the root
+     * @return a dictionary that maps the name of each child to its last
+     *     commit, or null if an error occurred
+     */
+    public NSDictionary<String, GitCommit> lastCommitsForChildren(
+            ObjectId commitId, String directory)
+    {
+        if (commitId == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            Map<String, RevCommit> lastCommits =
+                LastCommitIndex.lastCommitsForChildren(
+                        repository, commitId, directory);
+
+            NSMutableDictionary<String, GitCommit> commits =
+                new NSMutableDictionary<String, GitCommit>();
+
+            for (Map.Entry<String, RevCommit> entry : lastCommits.entrySet())
+            {
+                commits.setObjectForKey(
+                        new GitCommit(entry.getValue()), entry.getKey());
+            }
+
+            return commits;
+        }
+        catch (Exception e)
+        {
+            log.error("An exception occurred while finding the last commits "
+                    + "for " + directory + ": ", e);
+            return null;
+        }
+    }
+
+
     // ----------------------------------------------------------
     public NSDictionary<GitRef, NSArray<GitCommit>> commitsForRefs(
             NSArray<GitRef> refs)
@@ -282,6 +379,34 @@ public class GitRepository
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * Gets the commit that each of the specified refs points to.
+     *
+     * @param refs the refs
+     * @return a dictionary that maps each ref to its latest commit; refs
+     *     whose commit could not be found are omitted
+     */
+    public NSDictionary<GitRef, GitCommit> latestCommitsForRefs(
+            NSArray<GitRef> refs)
+    {
+        NSMutableDictionary<GitRef, GitCommit> refsToCommits =
+            new NSMutableDictionary<GitRef, GitCommit>();
+
+        for (GitRef ref : refs)
+        {
+            GitCommit commit = ref.latestCommit();
+
+            if (commit != null)
+            {
+                refsToCommits.setObjectForKey(commit, ref);
+            }
+        }
+
+        return refsToCommits;
+    }
+
+
     // ----------------------------------------------------------
     /**
      * Gets the type of the object with the specified ID (either a tree, tag,
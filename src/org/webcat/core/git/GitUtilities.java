@@ -26,8 +26,6 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
 import org.apache.log4j.Logger;
 import org.eclipse.jgit.api.AddCommand;
 import org.eclipse.jgit.api.CommitCommand;
@@ -195,9 +193,9 @@ public class GitUtilities
      *
      * @param repository the bare repository whose working copy should be
      *     retrieved
-     * @param forcePull if true, always perform a pull from the bare repository
-     *     to update it even if it already exists; if false, only pull when the
-     *     working copy is first being created
+     * @param forcePull if true, bring an existing working copy up to date
+     *     with the bare repository (this is cheap when nothing has changed);
+     *     if false, only pull when the working copy is first being created
      * @return a {@code Repository} object representing the working copy
      */
     public static Repository workingCopyForRepository(Repository repository,
@@ -205,7 +203,7 @@ public class GitUtilities
     {
         RepositoryInfo repoInfo = repositoryInfos.get(repository);
 
-        GitCloner cloner = new GitCloner(repoInfo.repositoryDir,
+        GitCloner cloner = new GitCloner(repository,
                 repoInfo.workingCopyDir);
 
         Repository wcRepository = null;
@@ -234,7 +232,9 @@ public class GitUtilities
     // ----------------------------------------------------------
     /**
      * Push any changes to the specified working copy to the main repository
-     * associated with the working copy.
+     * associated with the working copy. The push is deferred for a few
+     * seconds so that a burst of changes results in a single commit (see
+     * {@link WorkingCopyPushScheduler}).
      *
      * @param workingCopy the working copy
      * @param user the user who is making the push
@@ -243,23 +243,8 @@ public class GitUtilities
     public static void pushWorkingCopy(Repository workingCopy, User user,
             String commitMessage)
     {
-        synchronized (workingCopyPushTimers)
-        {
-            Timer timer = workingCopyPushTimers.get(workingCopy);
-
-            if (timer != null)
-            {
-                timer.cancel();
-                workingCopyPushTimers.remove(workingCopy);
-            }
-
-            timer = new Timer();
-            PushWorkingCopyTask task = new PushWorkingCopyTask(
-                    workingCopy, user, commitMessage);
-            timer.schedule(task, 5000);
-
-            workingCopyPushTimers.put(workingCopy, timer);
-        }
+        WorkingCopyPushScheduler.scheduler().schedule(workingCopy,
+                user.name_LF(), user.email(), commitMessage);
     }
 
 
@@ -273,8 +258,41 @@ public class GitUtilities
 
 
     // ----------------------------------------------------------
+    /**
+     * Push any changes to the specified working copy right away, without
+     * waiting for other changes to accumulate. This replaces any deferred
+     * push for the same working copy that has not started yet.
+     *
+     * @param workingCopy the working copy
+     * @param authorName the name of the author and committer
+     * @param emailAddress the e-mail address of the author and committer
+     * @param commitMessage the commit message to associate with the push
+     * @return the new commit, or null if the push failed
+     */
     public static RevCommit pushWorkingCopyImmediately(Repository workingCopy,
             String authorName, String emailAddress, String commitMessage)
+    {
+        return WorkingCopyPushScheduler.scheduler().pushNow(workingCopy,
+                authorName, emailAddress, commitMessage);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Adds all changes in a working copy, commits them, and pushes the
+     * commit to the main repository. Callers must ensure that no other
+     * push of the same working copy is running at the same time; use
+     * {@link #pushWorkingCopyImmediately(Repository, String, String, String)}
+     * rather than calling this directly.
+     *
+     * @param workingCopy the working copy
+     * @param authorName the name of the author and committer
+     * @param emailAddress the e-mail address of the author and committer
+     * @param commitMessage the commit message
+     * @return the new commit, or null if the push failed
+     */
+    static RevCommit commitAndPush(Repository workingCopy,
+            String authorName, String emailAddress, String commitMessage)
     {
         try
         {
@@ -335,47 +353,6 @@ public class GitUtilities
     }
 
 
-    // ----------------------------------------------------------
-    private static class PushWorkingCopyTask extends TimerTask
-    {
-        //~ Constructors ......................................................
-
-        // ----------------------------------------------------------
-        public PushWorkingCopyTask(Repository workingCopy, User user,
-                String commitMessage)
-        {
-            this.workingCopy = workingCopy;
-            this.authorName = user.name_LF();
-            this.emailAddress = user.email();
-            this.commitMessage = commitMessage;
-        }
-
-
-        //~ Methods ...........................................................
-
-        // ----------------------------------------------------------
-        @Override
-        public void run()
-        {
-            synchronized (workingCopyPushTimers)
-            {
-                workingCopyPushTimers.remove(workingCopy);
-
-                pushWorkingCopyImmediately(workingCopy, authorName,
-                        emailAddress, commitMessage);
-            }
-        }
-
-
-        //~ Static/instance variables .........................................
-
-        private Repository workingCopy;
-        private String authorName;
-        private String emailAddress;
-        private String commitMessage;
-    }
-
-
     // ----------------------------------------------------------
     /**
      * Sorts an array of {@link GitTreeEntry} objects with a case-insensitive
@@ -609,8 +586,6 @@ public class GitUtilities
 
     private static Map<Repository, RepositoryInfo> repositoryInfos =
         new HashMap<Repository, RepositoryInfo>();
-    private static Map<Repository, Timer> workingCopyPushTimers =
-        new HashMap<Repository, Timer>();
 
     private static final Logger log = Logger.getLogger(GitUtilities.class);
 }
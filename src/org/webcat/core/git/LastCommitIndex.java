@@ -0,0 +1,447 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.core.git;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.apache.log4j.Logger;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import er.extensions.foundation.ERXProperties;
+
+//-------------------------------------------------------------------------
+/**
+ * Computes the most recent commit that modified each immediate child of a
+ * directory in a Git repository.
+ * <p>
+ * All of the children are resolved in a single history walk: each commit
+ * that touches the directory is diffed against its parents, and is
+ * credited to every still-unresolved child that it changed.  The walk
+ * stops as soon as every child has been resolved.  Results are kept in an
+ * LRU cache keyed by the directory's tree id and the head commit id (the
+ * size is set with the property <code>LastCommitIndex.cacheSize</code>).
+ * When the head of a branch advances, the result for the previous head is
+ * reused, so that only the new commits need to be examined.
+ * </p>
+ *
+ * @author  Stephen Edwards
+ */
+public class LastCommitIndex
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * This class only has static methods.
+     */
+    private LastCommitIndex()
+    {
+        // Nothing to construct
+    }
+
+
+    //~ Methods ...............................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the last commit that modified each immediate child of a
+     * directory, as of the specified head commit.
+     *
+     * @param repository the repository
+     * @param headId the id of the head commit
+     * @param directory the path of the directory, relative to the root of
+     *     the repository, or null (or an empty string) for the root
+     * @return a map from the name of each child to its last commit; children
+     *     whose commit could not be determined are omitted
+     * @throws IOException if an error occurs reading the repository
+     */
+    public static Map<String, RevCommit> lastCommitsForChildren(
+            Repository repository, ObjectId headId, String directory)
+        throws IOException
+    {
+        if (directory != null && directory.length() == 0)
+        {
+            directory = null;
+        }
+
+        RevWalk rw = new RevWalk(repository);
+
+        try
+        {
+            RevCommit head = rw.parseCommit(headId);
+            ObjectId treeId = treeForDirectory(repository, head, directory);
+
+            if (treeId == null)
+            {
+                return Collections.emptyMap();
+            }
+
+            String directoryKey = repositoryKey(repository) + ":"
+                + (directory == null ? "" : directory);
+            String key = directoryKey + "@" + treeId.name()
+                + "/" + head.name();
+
+            Entry previous;
+            synchronized (cache)
+            {
+                Entry entry = cache.get(key);
+                if (entry != null)
+                {
+                    hits++;
+                    return entry.commits;
+                }
+
+                String previousKey = latestKeys.get(directoryKey);
+                previous = (previousKey == null)
+                    ? null : cache.get(previousKey);
+            }
+
+            long start = System.currentTimeMillis();
+            Set<String> remaining = childNames(repository, treeId);
+            Map<String, RevCommit> found = new HashMap<String, RevCommit>();
+            boolean incremental = false;
+
+            if (previous != null && !previous.headId.equals(head))
+            {
+                RevCommit previousHead = rw.parseCommit(previous.headId);
+                if (rw.isMergedInto(previousHead, head))
+                {
+                    // Only the commits since the previous head can have
+                    // changed anything; everything else carries over.
+                    incremental = true;
+                    rw.reset();
+                    walk(rw, head, previousHead, directory, remaining, found);
+
+                    for (String name : remaining.toArray(
+                            new String[remaining.size()]))
+                    {
+                        RevCommit commit = previous.commits.get(name);
+                        if (commit != null)
+                        {
+                            found.put(name, commit);
+                            remaining.remove(name);
+                        }
+                    }
+                }
+                rw.reset();
+            }
+
+            if (!remaining.isEmpty())
+            {
+                walk(rw, head, null, directory, remaining, found);
+            }
+
+            if (log.isDebugEnabled())
+            {
+                log.debug((incremental ? "incrementally " : "")
+                    + "resolved " + found.size() + " entries in " + key + " in "
+                    + (System.currentTimeMillis() - start) + "ms");
+            }
+
+            Entry entry = new Entry(head.copy(),
+                Collections.unmodifiableMap(found));
+            synchronized (cache)
+            {
+                if (incremental)
+                {
+                    incrementalMisses++;
+                }
+                else
+                {
+                    misses++;
+                }
+                cache.put(key, entry);
+                latestKeys.put(directoryKey, key);
+            }
+
+            return entry.commits;
+        }
+        finally
+        {
+            rw.release();
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Produce a compact one-line summary of the cache's effectiveness.
+     *
+     * @return the summary
+     */
+    public static String summary()
+    {
+        synchronized (cache)
+        {
+            return cache.size() + " cached, " + hits + " hits, "
+                + incrementalMisses + " incremental, " + misses + " full";
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Walks the history from the head commit, crediting each commit to the
+     * unresolved children that it changed.
+     *
+     * @param rw the walk to use, which must be freshly reset
+     * @param head the commit to start from
+     * @param boundary a commit at which to stop, or null to walk the entire
+     *     history
+     * @param directory the directory path, or null for the root
+     * @param remaining the names of the unresolved children, which is
+     *     updated as children are resolved
+     * @param found the map in which to record resolved children
+     */
+    private static void walk(RevWalk rw, RevCommit head, RevCommit boundary,
+            String directory, Set<String> remaining,
+            Map<String, RevCommit> found)
+        throws IOException
+    {
+        if (remaining.isEmpty())
+        {
+            return;
+        }
+
+        rw.sort(RevSort.COMMIT_TIME_DESC);
+        rw.setTreeFilter(directory == null
+            ? TreeFilter.ANY_DIFF
+            : AndTreeFilter.create(
+                PathFilter.create(directory), TreeFilter.ANY_DIFF));
+        rw.markStart(head);
+        if (boundary != null)
+        {
+            rw.markUninteresting(boundary);
+        }
+
+        int depth = (directory == null) ? 0 : directory.split("/").length;
+        TreeWalk diff = new TreeWalk(rw.getObjectReader());
+        diff.setRecursive(false);
+        if (directory != null)
+        {
+            diff.setFilter(PathFilter.create(directory));
+        }
+
+        for (RevCommit commit : rw)
+        {
+            diff.reset();
+            diff.addTree(commit.getTree());
+            for (RevCommit parent : commit.getParents())
+            {
+                rw.parseHeaders(parent);
+                diff.addTree(parent.getTree());
+            }
+
+            while (diff.next())
+            {
+                if (diff.getDepth() < depth)
+                {
+                    // One of the directory's ancestors; only descend into
+                    // it if it differs from at least one parent.
+                    if (diff.isSubtree() && !sameAsAnyParent(diff))
+                    {
+                        diff.enterSubtree();
+                    }
+                    continue;
+                }
+
+                String name = diff.getNameString();
+                if (remaining.contains(name)
+                    && diff.getRawMode(0) != FileMode.MISSING.getBits()
+                    && !sameAsAnyParent(diff))
+                {
+                    found.put(name, commit);
+                    remaining.remove(name);
+                }
+            }
+
+            if (remaining.isEmpty())
+            {
+                break;
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Determines whether the current entry of a tree walk is identical in
+     * the first tree (the commit) and any of the others (its parents).  An
+     * entry that matches one parent was inherited from that parent rather
+     * than changed by the commit.
+     */
+    private static boolean sameAsAnyParent(TreeWalk diff)
+    {
+        for (int i = 1; i < diff.getTreeCount(); i++)
+        {
+            if (diff.getRawMode(0) == diff.getRawMode(i)
+                && diff.idEqual(0, i))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    // ----------------------------------------------------------
+    private static ObjectId treeForDirectory(
+            Repository repository, RevCommit head, String directory)
+        throws IOException
+    {
+        RevTree root = head.getTree();
+
+        if (directory == null)
+        {
+            return root;
+        }
+
+        TreeWalk tw = TreeWalk.forPath(repository, directory, root);
+        if (tw == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            return (tw.getFileMode(0) == FileMode.TREE)
+                ? tw.getObjectId(0) : null;
+        }
+        finally
+        {
+            tw.release();
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private static Set<String> childNames(
+            Repository repository, ObjectId treeId)
+        throws IOException
+    {
+        Set<String> names = new HashSet<String>();
+        TreeWalk tw = new TreeWalk(repository);
+
+        try
+        {
+            tw.addTree(treeId);
+            tw.setRecursive(false);
+            while (tw.next())
+            {
+                names.add(tw.getNameString());
+            }
+        }
+        finally
+        {
+            tw.release();
+        }
+
+        return names;
+    }
+
+
+    // ----------------------------------------------------------
+    private static String repositoryKey(Repository repository)
+    {
+        return (repository.getDirectory() != null)
+            ? repository.getDirectory().getAbsolutePath()
+            : Integer.toHexString(System.identityHashCode(repository));
+    }
+
+
+    //~ Nested classes ........................................................
+
+    // ----------------------------------------------------------
+    private static class Entry
+    {
+        // ----------------------------------------------------------
+        public Entry(ObjectId headId, Map<String, RevCommit> commits)
+        {
+            this.headId = headId;
+            this.commits = commits;
+        }
+
+
+        //~ Instance/static variables .........................................
+
+        public final ObjectId headId;
+        public final Map<String, RevCommit> commits;
+    }
+
+
+    // ----------------------------------------------------------
+    private static class LruMap<K, V>
+        extends LinkedHashMap<K, V>
+    {
+        // ----------------------------------------------------------
+        public LruMap()
+        {
+            super(16, 0.75f, true);
+        }
+
+
+        // ----------------------------------------------------------
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest)
+        {
+            return size() > CACHE_SIZE;
+        }
+
+
+        //~ Instance/static variables .........................................
+
+        private static final long serialVersionUID = 1L;
+    }
+
+
+    //~ Static/instance variables .............................................
+
+    private static final int CACHE_SIZE = Math.max(1,
+        ERXProperties.intForKeyWithDefault("LastCommitIndex.cacheSize", 256));
+
+    private static final Map<String, Entry> cache =
+        new LruMap<String, Entry>();
+
+    // The most recently computed cache key for each directory, used to find
+    // a result to build on when the head advances.  Guarded by cache.
+    private static final Map<String, String> latestKeys =
+        new LruMap<String, String>();
+
+    private static long hits;
+    private static long misses;
+    private static long incrementalMisses;
+
+    private static final Logger log = Logger.getLogger(LastCommitIndex.class);
+}
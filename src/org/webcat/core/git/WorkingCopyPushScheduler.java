@@ -0,0 +1,480 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.core.git;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.log4j.Logger;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import er.extensions.foundation.ERXProperties;
+
+//-------------------------------------------------------------------------
+/**
+ * Schedules the deferred pushes requested by
+ * {@link GitUtilities#pushWorkingCopy(Repository, org.webcat.core.User,
+ * String)}.
+ * <p>
+ * Requests are debounced per working copy: a new request for a working
+ * copy that already has a push waiting replaces it and restarts its delay,
+ * so a burst of WebDAV writes produces a single commit.  All pushes run on
+ * one shared pool of <code>GitUtilities.pushThreads</code> threads (default
+ * 4), which bounds how many pushes can run at once, after a delay of
+ * <code>GitUtilities.pushDelayMillis</code> (default 5000).  Each working
+ * copy has its own lock, which is also taken by immediate pushes, so
+ * pushes to the same working copy never overlap while pushes to different
+ * working copies proceed independently.
+ * </p>
+ *
+ * @author  Stephen Edwards
+ */
+public class WorkingCopyPushScheduler
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Create a new scheduler.
+     * @param threads     The maximum number of pushes to run at once
+     * @param delayMillis How long to wait for further changes before a
+     *                    push is performed
+     */
+    public WorkingCopyPushScheduler(int threads, long delayMillis)
+    {
+        this.delayMillis = Math.max(0, delayMillis);
+
+        executor = new ScheduledThreadPoolExecutor(
+            Math.max(1, threads),
+            new ThreadFactory() {
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r,
+                        "WorkingCopyPush-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+    }
+
+
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Get the shared scheduler, creating it on first use.
+     * @return The scheduler
+     */
+    public static synchronized WorkingCopyPushScheduler scheduler()
+    {
+        if (scheduler == null)
+        {
+            scheduler = new WorkingCopyPushScheduler(
+                ERXProperties.intForKeyWithDefault(
+                    "GitUtilities.pushThreads", 4),
+                ERXProperties.longForKeyWithDefault(
+                    "GitUtilities.pushDelayMillis", 5000L));
+        }
+        return scheduler;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Schedule a push of a working copy, replacing any push for the same
+     * working copy that has not started yet.
+     * @param workingCopy   The working copy to push
+     * @param authorName    The name to record as author and committer
+     * @param emailAddress  The e-mail address of the author
+     * @param commitMessage The commit message
+     */
+    public void schedule(Repository workingCopy, String authorName,
+        String emailAddress, String commitMessage)
+    {
+        String key = keyFor(workingCopy);
+        PendingPush push = new PendingPush(
+            key, workingCopy, authorName, emailAddress, commitMessage);
+
+        synchronized (push)
+        {
+            PendingPush previous = pending.put(key, push);
+            if (previous != null && previous.cancel())
+            {
+                coalescedCount.incrementAndGet();
+            }
+            push.future = executor.schedule(
+                push, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Push a working copy right away, on the calling thread, while
+     * holding that working copy's lock.  Any deferred push for the same
+     * working copy that has not started yet is cancelled, since this push
+     * will include its changes.
+     * @param workingCopy   The working copy to push
+     * @param authorName    The name to record as author and committer
+     * @param emailAddress  The e-mail address of the author
+     * @param commitMessage The commit message
+     * @return The new commit, or null if the push failed
+     */
+    public RevCommit pushNow(Repository workingCopy, String authorName,
+        String emailAddress, String commitMessage)
+    {
+        String key = keyFor(workingCopy);
+        PendingPush previous = pending.remove(key);
+        if (previous != null && previous.cancel())
+        {
+            coalescedCount.incrementAndGet();
+        }
+        return push(key, workingCopy, authorName, emailAddress,
+            commitMessage);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Run every waiting push immediately, and wait for them to finish.
+     * This is meant to be called when the application is shutting down.
+     * @param timeoutMillis The longest time to wait
+     */
+    public void flush(long timeoutMillis)
+    {
+        List<ScheduledFuture<?>> futures = new ArrayList<ScheduledFuture<?>>();
+        for (PendingPush push : pending.values())
+        {
+            if (push.cancel())
+            {
+                pending.remove(push.key, push);
+                futures.add(executor.schedule(
+                    push.copy(), 0, TimeUnit.MILLISECONDS));
+            }
+        }
+
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (ScheduledFuture<?> future : futures)
+        {
+            try
+            {
+                future.get(Math.max(1, deadline - System.currentTimeMillis()),
+                    TimeUnit.MILLISECONDS);
+            }
+            catch (Exception e)
+            {
+                log.error("pending working copy push did not complete", e);
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the number of pushes that are waiting for their delay to expire
+     * or for a free thread.
+     * @return The number of waiting pushes
+     */
+    public int queueDepth()
+    {
+        return pending.size();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the number of pushes currently running.
+     * @return The number of running pushes
+     */
+    public int activeCount()
+    {
+        return running.get();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the number of pushes that have completed successfully.
+     * @return The number of successful pushes
+     */
+    public long pushCount()
+    {
+        return pushCount.get();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the number of pushes that have failed.
+     * @return The number of failed pushes
+     */
+    public long failedCount()
+    {
+        return failedCount.get();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the number of deferred pushes that were folded into a later
+     * push for the same working copy.
+     * @return The number of coalesced requests
+     */
+    public long coalescedCount()
+    {
+        return coalescedCount.get();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the mean time taken by a push (add, commit, and push), in
+     * milliseconds.
+     * @return The mean push latency
+     */
+    public long meanLatencyMillis()
+    {
+        long count = pushCount.get() + failedCount.get();
+        return count == 0 ? 0 : totalLatencyMillis.get() / count;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the longest time taken by a push, in milliseconds.
+     * @return The maximum push latency
+     */
+    public long maxLatencyMillis()
+    {
+        return maxLatencyMillis.get();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Produce a compact one-line summary of the scheduler's activity.
+     * @return The summary
+     */
+    public String summary()
+    {
+        return queueDepth() + " waiting, " + activeCount() + " running, "
+            + pushCount() + " pushed, " + coalescedCount() + " coalesced, "
+            + failedCount() + " failed, latency avg " + meanLatencyMillis()
+            + "ms/max " + maxLatencyMillis() + "ms";
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the lock that serializes pushes to a working copy.  Other code
+     * that modifies the working copy (such as
+     * {@link WorkingCopySynchronizer}) takes the same lock.
+     * @param workingCopy The working copy
+     * @return The working copy's lock
+     */
+    ReentrantLock lockFor(Repository workingCopy)
+    {
+        return lockFor(keyFor(workingCopy));
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    private RevCommit push(String key, Repository workingCopy,
+        String authorName, String emailAddress, String commitMessage)
+    {
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        running.incrementAndGet();
+        long start = System.currentTimeMillis();
+        try
+        {
+            RevCommit commit = GitUtilities.commitAndPush(
+                workingCopy, authorName, emailAddress, commitMessage);
+            if (commit == null)
+            {
+                failedCount.incrementAndGet();
+            }
+            else
+            {
+                pushCount.incrementAndGet();
+            }
+            return commit;
+        }
+        finally
+        {
+            long elapsed = System.currentTimeMillis() - start;
+            totalLatencyMillis.addAndGet(elapsed);
+            long max = maxLatencyMillis.get();
+            while (elapsed > max
+                && !maxLatencyMillis.compareAndSet(max, elapsed))
+            {
+                max = maxLatencyMillis.get();
+            }
+            running.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private ReentrantLock lockFor(String key)
+    {
+        ReentrantLock lock = locks.get(key);
+        if (lock == null)
+        {
+            ReentrantLock newLock = new ReentrantLock();
+            lock = locks.putIfAbsent(key, newLock);
+            if (lock == null)
+            {
+                lock = newLock;
+            }
+        }
+        return lock;
+    }
+
+
+    // ----------------------------------------------------------
+    private static String keyFor(Repository workingCopy)
+    {
+        return (workingCopy.getDirectory() != null)
+            ? workingCopy.getDirectory().getAbsolutePath()
+            : Integer.toHexString(System.identityHashCode(workingCopy));
+    }
+
+
+    //~ Private Classes .......................................................
+
+    // ----------------------------------------------------------
+    /**
+     * A deferred push that is waiting to run.
+     */
+    private class PendingPush
+        implements Runnable
+    {
+        // ----------------------------------------------------------
+        public PendingPush(String key, Repository workingCopy,
+            String authorName, String emailAddress, String commitMessage)
+        {
+            this.key = key;
+            this.workingCopy = workingCopy;
+            this.authorName = authorName;
+            this.emailAddress = emailAddress;
+            this.commitMessage = commitMessage;
+        }
+
+
+        // ----------------------------------------------------------
+        public void run()
+        {
+            synchronized (this)
+            {
+                if (cancelled)
+                {
+                    return;
+                }
+                started = true;
+            }
+            pending.remove(key, this);
+            try
+            {
+                push(key, workingCopy, authorName, emailAddress,
+                    commitMessage);
+            }
+            catch (RuntimeException e)
+            {
+                log.error("unexpected error pushing " + key, e);
+            }
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Create a new, uncancelled push of the same changes.
+         * @return The copy
+         */
+        public PendingPush copy()
+        {
+            return new PendingPush(key, workingCopy, authorName,
+                emailAddress, commitMessage);
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Cancel this push if it has not started yet.
+         * @return True if the push was cancelled
+         */
+        public synchronized boolean cancel()
+        {
+            if (started || cancelled)
+            {
+                return false;
+            }
+            cancelled = true;
+            if (future != null)
+            {
+                future.cancel(false);
+            }
+            return true;
+        }
+
+
+        //~ Instance/static variables .........................................
+
+        private final String key;
+        private final Repository workingCopy;
+        private final String authorName;
+        private final String emailAddress;
+        private final String commitMessage;
+        private ScheduledFuture<?> future;
+        private boolean started;
+        private boolean cancelled;
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private final long delayMillis;
+    private final ScheduledThreadPoolExecutor executor;
+    private final ConcurrentHashMap<String, PendingPush> pending =
+        new ConcurrentHashMap<String, PendingPush>();
+    private final ConcurrentHashMap<String, ReentrantLock> locks =
+        new ConcurrentHashMap<String, ReentrantLock>();
+    private final AtomicInteger threadCount = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicLong pushCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong totalLatencyMillis = new AtomicLong();
+    private final AtomicLong maxLatencyMillis = new AtomicLong();
+
+    private static WorkingCopyPushScheduler scheduler;
+
+    static Logger log = Logger.getLogger(WorkingCopyPushScheduler.class);
+}
@@ -0,0 +1,479 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.core.git;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.log4j.Logger;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheCheckout;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.Transport;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+//-------------------------------------------------------------------------
+/**
+ * Brings a working copy up to date with the master branch of the bare
+ * repository it was cloned from.
+ * <p>
+ * The commit that each working copy was last synchronized to is
+ * remembered, so when the bare repository's master ref has not moved,
+ * synchronizing costs only a ref lookup.  When it has moved, the new
+ * objects are fetched and only the paths that differ between the old and
+ * new trees are written to (or removed from) the working tree and the
+ * index.  Files that have been changed in the working copy but not yet
+ * pushed are left alone, so that pending WebDAV edits are not lost.
+ * </p><p>
+ * Synchronization holds the same per-working-copy lock as
+ * {@link WorkingCopyPushScheduler}, so it never overlaps with a push.
+ * </p>
+ *
+ * @author  Stephen Edwards
+ */
+public class WorkingCopySynchronizer
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * This class only has static methods.
+     */
+    private WorkingCopySynchronizer()
+    {
+        // Nothing to construct
+    }
+
+
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Bring a working copy up to date with its bare repository.
+     * @param repository  The bare repository
+     * @param workingCopy The working copy cloned from it
+     * @return True if the working copy was changed
+     * @throws IOException if the repositories cannot be read or the
+     *                     working tree cannot be updated
+     */
+    public static boolean synchronize(
+        Repository repository, Repository workingCopy)
+        throws IOException
+    {
+        ObjectId remoteHead = repository.resolve(MASTER);
+        if (remoteHead == null)
+        {
+            // Nothing has been committed yet
+            return false;
+        }
+
+        String key = workingCopy.getDirectory().getAbsolutePath();
+        ObjectId lastSynced = lastSyncedCommits.get(key);
+        if (remoteHead.equals(lastSynced))
+        {
+            skippedCount.incrementAndGet();
+            return false;
+        }
+
+        ReentrantLock lock =
+            WorkingCopyPushScheduler.scheduler().lockFor(workingCopy);
+        lock.lock();
+        try
+        {
+            // The working copy may have been the source of the new commit,
+            // in which case there is nothing to do.
+            ObjectId localHead = workingCopy.resolve(Constants.HEAD);
+            if (remoteHead.equals(localHead))
+            {
+                lastSyncedCommits.put(key, remoteHead.copy());
+                skippedCount.incrementAndGet();
+                return false;
+            }
+
+            long start = System.currentTimeMillis();
+            if (!workingCopy.getObjectDatabase().has(remoteHead))
+            {
+                fetch(workingCopy);
+            }
+
+            boolean incremental = localHead != null;
+            if (incremental)
+            {
+                applyChanges(workingCopy, localHead, remoteHead);
+                incrementalCount.incrementAndGet();
+            }
+            else
+            {
+                checkout(workingCopy, remoteHead);
+                fullCount.incrementAndGet();
+            }
+
+            RefUpdate update = workingCopy.updateRef(Constants.HEAD);
+            update.setNewObjectId(remoteHead);
+            update.forceUpdate();
+
+            lastSyncedCommits.put(key, remoteHead.copy());
+
+            if (log.isDebugEnabled())
+            {
+                log.debug((incremental ? "incrementally " : "")
+                    + "synchronized " + key + " to " + remoteHead.name()
+                    + " in " + (System.currentTimeMillis() - start) + "ms");
+            }
+            return true;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Record the commit that a working copy has been brought up to date
+     * with by other means, such as a fresh clone.
+     * @param workingCopy The working copy
+     * @param commitId    The commit it now matches
+     */
+    public static void recordSynchronized(
+        Repository workingCopy, ObjectId commitId)
+    {
+        if (commitId != null)
+        {
+            lastSyncedCommits.put(
+                workingCopy.getDirectory().getAbsolutePath(),
+                commitId.copy());
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Produce a compact one-line summary of synchronization activity.
+     * @return The summary
+     */
+    public static String summary()
+    {
+        return skippedCount.get() + " unchanged, " + incrementalCount.get()
+            + " incremental, " + fullCount.get() + " full, "
+            + pathCount.get() + " paths updated, " + keptCount.get()
+            + " local edits kept";
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    private static void fetch(Repository workingCopy)
+        throws IOException
+    {
+        try
+        {
+            Transport transport = Transport.open(workingCopy, "origin");
+            try
+            {
+                transport.fetch(NullProgressMonitor.INSTANCE, null);
+            }
+            finally
+            {
+                transport.close();
+            }
+        }
+        catch (URISyntaxException e)
+        {
+            throw new IOException("Working copy "
+                + workingCopy.getDirectory() + " has an invalid origin: "
+                + e.getMessage());
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Check out an entire commit, for a working copy that has no commits
+     * of its own yet.
+     */
+    private static void checkout(Repository workingCopy, ObjectId commitId)
+        throws IOException
+    {
+        RevWalk rw = new RevWalk(workingCopy);
+        try
+        {
+            RevCommit commit = rw.parseCommit(commitId);
+            DirCache dirCache = workingCopy.lockDirCache();
+            DirCacheCheckout checkout = new DirCacheCheckout(
+                workingCopy, dirCache, commit.getTree());
+            checkout.checkout();
+        }
+        finally
+        {
+            rw.release();
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Write the differences between two commits into the working tree and
+     * index, touching only the paths that changed.
+     */
+    private static void applyChanges(
+        Repository workingCopy, ObjectId fromId, ObjectId toId)
+        throws IOException
+    {
+        File workTree = workingCopy.getWorkTree();
+        RevWalk rw = new RevWalk(workingCopy);
+        TreeWalk tw = new TreeWalk(workingCopy);
+        long indexTime = workingCopy.getIndexFile().lastModified();
+        DirCache dirCache = workingCopy.lockDirCache();
+
+        try
+        {
+            tw.addTree(rw.parseCommit(fromId).getTree());
+            tw.addTree(rw.parseCommit(toId).getTree());
+            tw.setRecursive(true);
+            tw.setFilter(TreeFilter.ANY_DIFF);
+
+            ObjectReader reader = tw.getObjectReader();
+            DirCacheEditor editor = dirCache.editor();
+
+            while (tw.next())
+            {
+                String path = tw.getPathString();
+                File file = new File(workTree, path);
+                FileMode mode = tw.getFileMode(1);
+
+                if (mode == FileMode.GITLINK || tw.getFileMode(0)
+                    == FileMode.GITLINK)
+                {
+                    continue;
+                }
+
+                ObjectId blobId =
+                    (mode == FileMode.MISSING) ? null : tw.getObjectId(1);
+                if (isLocallyModified(
+                    dirCache.getEntry(path), indexTime, file, blobId))
+                {
+                    log.warn("not updating " + file + " during sync, since "
+                        + "it has local changes that have not been pushed");
+                    keptCount.incrementAndGet();
+                    continue;
+                }
+
+                if (mode == FileMode.MISSING)
+                {
+                    if (file.exists() && !file.delete())
+                    {
+                        throw new IOException("Unable to delete " + file);
+                    }
+                    deleteEmptyParents(file.getParentFile(), workTree);
+                    editor.add(new DirCacheEditor.DeletePath(path));
+                }
+                else
+                {
+                    writeBlob(reader, blobId, file);
+                    if (mode == FileMode.EXECUTABLE_FILE)
+                    {
+                        file.setExecutable(true);
+                    }
+                    editor.add(new UpdateEntry(path, mode, blobId, file));
+                }
+                pathCount.incrementAndGet();
+            }
+
+            editor.commit();
+        }
+        finally
+        {
+            dirCache.unlock();
+            tw.release();
+            rw.release();
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Determine whether a file in the working tree has changes that would
+     * be lost by replacing it.  The index's size and timestamp are checked
+     * first; only if they disagree (or the entry is racily clean, meaning
+     * the file was modified no earlier than the index was written, so a
+     * later change in the same tick would go unnoticed) is the file's
+     * content hashed.
+     * @param entry  The file's index entry, or null if it is untracked
+     * @param indexTime The time the index file was last written
+     * @param file   The file
+     * @param newId  The blob that is about to be written there, or null if
+     *               the file is about to be deleted
+     */
+    private static boolean isLocallyModified(
+        DirCacheEntry entry, long indexTime, File file, ObjectId newId)
+        throws IOException
+    {
+        if (!file.exists())
+        {
+            // Deleted locally, if it was tracked
+            return entry != null;
+        }
+        if (!file.isFile())
+        {
+            return true;
+        }
+        if (entry != null
+            && !entry.isSmudged()
+            && entry.getLastModified() < indexTime
+            && file.length() == entry.getLength()
+            && file.lastModified() == entry.getLastModified())
+        {
+            return false;
+        }
+
+        ObjectId actual;
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            actual = new ObjectInserter.Formatter().idFor(
+                Constants.OBJ_BLOB, file.length(), in);
+        }
+        finally
+        {
+            in.close();
+        }
+
+        return !actual.equals(newId)
+            && (entry == null || !actual.equals(entry.getObjectId()));
+    }
+
+
+    // ----------------------------------------------------------
+    private static void writeBlob(
+        ObjectReader reader, ObjectId blobId, File file)
+        throws IOException
+    {
+        File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs())
+        {
+            throw new IOException("Unable to create " + parent);
+        }
+
+        OutputStream out = new FileOutputStream(file);
+        try
+        {
+            reader.open(blobId, Constants.OBJ_BLOB).copyTo(out);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private static void deleteEmptyParents(File dir, File workTree)
+    {
+        while (dir != null && !dir.equals(workTree))
+        {
+            String[] children = dir.list();
+            if (children == null || children.length > 0 || !dir.delete())
+            {
+                break;
+            }
+            dir = dir.getParentFile();
+        }
+    }
+
+
+    //~ Private Classes .......................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Sets an index entry to match a file that was just written.
+     */
+    private static class UpdateEntry
+        extends DirCacheEditor.PathEdit
+    {
+        // ----------------------------------------------------------
+        public UpdateEntry(String path, FileMode mode, ObjectId blobId,
+            File file)
+        {
+            super(path);
+            this.mode = mode;
+            this.blobId = blobId.copy();
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+        }
+
+
+        // ----------------------------------------------------------
+        @Override
+        public void apply(DirCacheEntry entry)
+        {
+            entry.setFileMode(mode);
+            entry.setObjectId(blobId);
+            entry.setLength((int) length);
+            entry.setLastModified(lastModified);
+        }
+
+
+        //~ Instance/static variables .........................................
+
+        private final FileMode mode;
+        private final ObjectId blobId;
+        private final long length;
+        private final long lastModified;
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private static final String MASTER =
+        Constants.R_HEADS + Constants.MASTER;
+
+    private static final ConcurrentHashMap<String, ObjectId>
+        lastSyncedCommits = new ConcurrentHashMap<String, ObjectId>();
+
+    private static final AtomicLong skippedCount = new AtomicLong();
+    private static final AtomicLong incrementalCount = new AtomicLong();
+    private static final AtomicLong fullCount = new AtomicLong();
+    private static final AtomicLong pathCount = new AtomicLong();
+    private static final AtomicLong keptCount = new AtomicLong();
+
+    static Logger log = Logger.getLogger(WorkingCopySynchronizer.class);
+}
@@ -113,20 +113,17 @@ public class GitAuthenticationFilter extends BasicAuthenticationFilter
 
     // ----------------------------------------------------------
     @Override
-    protected User validateUser(String username, String password, WCEC ec)
+    protected User authorizedUserForRequest(
+        String username, String password, WCEC ec)
     {
         EOEnterpriseObject object = requestInfo.requestedObject(ec);
 
         if (object instanceof RepositoryProviderWithAuthentication)
         {
-            User u = ((RepositoryProviderWithAuthentication)object)
+            return ((RepositoryProviderWithAuthentication)object)
                 .authorizedUserForRepository(ec, username, password);
-            if (u != null)
-            {
-                return u;
-            }
         }
-        return super.validateUser(username, password, ec);
+        return null;
     }
 
 
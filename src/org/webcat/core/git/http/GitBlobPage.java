@@ -73,8 +73,10 @@ public class GitBlobPage
     {
         if (commits == null)
         {
-            commits = gitContext().repository().commitsWithId(
-                    gitContext().headObjectId(), gitContext().path());
+            // Only the latest commit is shown, so don't walk any further
+            commits = gitContext().repository()
+                .commitQuery(gitContext().headObjectId())
+                .path(gitContext().path()).limit(1).commits();
         }
 
         if (commitMessageForChanges == null)
@@ -61,12 +61,12 @@ public class GitBranchesPage
     public NSArray<GitRef> headRefs;
     public GitRef          headRef;
     public int             headRefIndex;
-    public NSDictionary<GitRef, NSArray<GitCommit>> headRefCommits;
+    public NSDictionary<GitRef, GitCommit> headRefCommits;
 
     public NSArray<GitRef> tagRefs;
     public GitRef          tagRef;
     public int             tagRefIndex;
-    public NSDictionary<GitRef, NSArray<GitCommit>> tagRefCommits;
+    public NSDictionary<GitRef, GitCommit> tagRefCommits;
 
     public String          newTagName;
 
@@ -84,7 +84,7 @@ public class GitBranchesPage
 
         if (headRefCommits == null)
         {
-            headRefCommits = gitContext().repository().commitsForRefs(
+            headRefCommits = gitContext().repository().latestCommitsForRefs(
                     headRefs);
         }
 
@@ -98,7 +98,8 @@ public class GitBranchesPage
     private void gatherTags()
     {
         tagRefs = gitContext().repository().tagRefs();
-        tagRefCommits = gitContext().repository().commitsForRefs(tagRefs);
+        tagRefCommits =
+            gitContext().repository().latestCommitsForRefs(tagRefs);
     }
 
 
@@ -125,32 +126,14 @@ public class GitBranchesPage
     // ----------------------------------------------------------
     public GitCommit latestCommitForHeadRef()
     {
-        NSArray<GitCommit> commits = headRefCommits.objectForKey(headRef);
-
-        if (commits != null && commits.count() > 0)
-        {
-            return commits.objectAtIndex(0);
-        }
-        else
-        {
-            return null;
-        }
+        return headRefCommits.objectForKey(headRef);
     }
 
 
     // ----------------------------------------------------------
     public GitCommit latestCommitForTagRef()
     {
-        NSArray<GitCommit> commits = tagRefCommits.objectForKey(tagRef);
-
-        if (commits != null && commits.count() > 0)
-        {
-            return commits.objectAtIndex(0);
-        }
-        else
-        {
-            return null;
-        }
+        return tagRefCommits.objectForKey(tagRef);
     }
 
 
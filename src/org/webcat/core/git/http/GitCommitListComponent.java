@@ -58,6 +58,8 @@ public class GitCommitListComponent extends GitWebComponent
     public boolean isInTable;
     public GitCommit parentCommit;
     public DateFormat commitHeaderFormat = new SimpleDateFormat("yyyy-MM-dd");
+    public String olderCommitsURL;
+    public String newerCommitsURL;
 
 
     //~ Methods ...............................................................
@@ -75,7 +77,7 @@ public class GitCommitListComponent extends GitWebComponent
     // ----------------------------------------------------------
     public NSArray<GitCommit> commits()
     {
-        if (commits != null && showsOnlyLatestCommit)
+        if (commits != null && commits.count() > 1 && showsOnlyLatestCommit)
         {
             return new NSArray<GitCommit>(commits.objectAtIndex(0));
         }
@@ -86,6 +88,13 @@ public class GitCommitListComponent extends GitWebComponent
     }
 
 
+    // ----------------------------------------------------------
+    public boolean hasPageLinks()
+    {
+        return olderCommitsURL != null || newerCommitsURL != null;
+    }
+
+
     // ----------------------------------------------------------
     public boolean testAndSetIsInTable()
     {
@@ -22,11 +22,14 @@
 package org.webcat.core.git.http;
 
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import org.apache.log4j.Logger;
 import org.webcat.core.FileUtilities;
 import org.webcat.core.InlineStatusIndicator;
+import org.webcat.core.git.CommitDiff;
 import org.webcat.core.git.GitCommit;
 import org.webcat.core.git.GitRef;
-import org.webcat.core.git.PrettyDiffFormatter;
 import org.webcat.core.git.PrettyDiffResult;
 import org.webcat.ui.generators.JavascriptGenerator;
 import com.webobjects.appserver.WOContext;
@@ -59,9 +62,10 @@ public class GitCommitPage
 
     public String newTagName;
 
-    public NSArray<String> modifiedPaths;
-    public String aPath;
+    public NSArray<CommitDiff.FileDiff> files;
+    public CommitDiff.FileDiff aFile;
     public int index;
+    public boolean expandAll;
 
 
     //~ Methods ...............................................................
@@ -71,32 +75,31 @@ public class GitCommitPage
     {
         if (commit == null)
         {
-            commit = gitContext().repository().commitsWithId(
-                    gitContext().headObjectId(), null).objectAtIndex(0);
-
-            diffFormatter = new PrettyDiffFormatter();
-            diffFormatter.setRepository(gitContext().repository().repository());
-            diffFormatter.setContext(3);
+            commit = gitContext().repository().commitWithId(
+                    gitContext().headObjectId());
 
             try
             {
-                if (commit.parent() != null)
-                {
-                    diffFormatter.format(
-                            commit.parent().revCommit(), commit.revCommit());
-                }
-                else
-                {
-                    diffFormatter.format(commit.revCommit());
-                }
+                diff = CommitDiff.diffForCommit(
+                        gitContext().repository().repository(),
+                        commit.revCommit(), CONTEXT_LINES);
+                files = diff.files();
             }
             catch (IOException e)
             {
-                // TODO Auto-generated catch block
-                e.printStackTrace();
+                log.error("Unable to compute the diff for commit "
+                        + gitContext().headObjectId().name(), e);
+                files = NSArray.emptyArray();
             }
 
-            modifiedPaths = diffFormatter.modifiedPaths();
+            // Small commits are shown in full, as they always have been;
+            // otherwise, only the requested file's hunks are rendered.
+            expandedPath = context.request().stringFormValueForKey(FILE_KEY);
+            expandAll = context.request().stringFormValueForKey(ALL_KEY) != null
+                || (diff != null
+                    && files.count() <= AUTO_EXPAND_FILES
+                    && diff.totalAdditionCount() + diff.totalDeletionCount()
+                        <= AUTO_EXPAND_LINES);
         }
 
         super.appendToResponse(response, context);
@@ -113,28 +116,76 @@ public class GitCommitPage
     // ----------------------------------------------------------
     public String iconURLForPath()
     {
-        return FileUtilities.iconURL(aPath);
+        return FileUtilities.iconURL(aFile.path());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets a value indicating whether the hunks for the current file
+     * should be rendered.
+     *
+     * @return true if the current file's diff should be shown
+     */
+    public boolean isAFileExpanded()
+    {
+        return aFile.canShowDiff()
+            && (expandAll || aFile.path().equals(expandedPath));
     }
 
 
     // ----------------------------------------------------------
     public PrettyDiffResult diffResults()
     {
-        return diffFormatter.prettyDiffForPath(aPath);
+        return aFile.prettyDiff(gitContext().repository().repository());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the URL that shows this commit with the current file's hunks
+     * expanded.
+     *
+     * @return the URL
+     */
+    public String expandFileURL()
+    {
+        try
+        {
+            return gitContext().toURL(context()) + "?" + FILE_KEY + "="
+                + URLEncoder.encode(aFile.path(), "UTF-8") + "#diff-" + index;
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            // UTF-8 is always supported
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the URL that shows this commit with every file expanded.
+     *
+     * @return the URL
+     */
+    public String expandAllURL()
+    {
+        return gitContext().toURL(context()) + "?" + ALL_KEY + "=1";
     }
 
 
     // ----------------------------------------------------------
     public int totalAdditionCount()
     {
-        return diffFormatter.totalAdditionCount();
+        return diff == null ? 0 : diff.totalAdditionCount();
     }
 
 
     // ----------------------------------------------------------
     public int totalDeletionCount()
     {
-        return diffFormatter.totalDeletionCount();
+        return diff == null ? 0 : diff.totalDeletionCount();
     }
 
 
@@ -186,5 +237,14 @@ public class GitCommitPage
 
     //~ Static/instance variables .............................................
 
-    private PrettyDiffFormatter diffFormatter;
+    private CommitDiff diff;
+    private String expandedPath;
+
+    private static final int CONTEXT_LINES = 3;
+    private static final int AUTO_EXPAND_FILES = 25;
+    private static final int AUTO_EXPAND_LINES = 2000;
+    private static final String FILE_KEY = "file";
+    private static final String ALL_KEY = "all";
+
+    private static final Logger log = Logger.getLogger(GitCommitPage.class);
 }
@@ -22,8 +22,9 @@
 package org.webcat.core.git.http;
 
 import org.webcat.core.git.GitCommit;
-import org.webcat.core.git.GitRef;
+import org.webcat.core.git.GitCommitQuery;
 import com.webobjects.appserver.WOContext;
+import com.webobjects.appserver.WORequest;
 import com.webobjects.appserver.WOResponse;
 import com.webobjects.foundation.NSArray;
 
@@ -47,6 +48,8 @@ public class GitCommitsPage
 
     public NSArray<GitCommit> commits;
     public GitCommit          commit;
+    public int                offset;
+    public boolean            hasOlderCommits;
 
 
     // ----------------------------------------------------------
@@ -55,13 +58,79 @@ public class GitCommitsPage
     {
         if (commits == null)
         {
-            GitRef ref = gitContext().repository().refWithName(
-                    gitContext().headName());
+            offset = skipFromRequest(context.request());
 
-            commits = gitContext().repository().commitsForRefs(
-                    new NSArray<GitRef>(ref)).objectForKey(ref);
+            GitCommitQuery query = gitContext().repository()
+                .commitQuery(gitContext().headObjectId())
+                .path(gitContext().path())
+                .offset(offset)
+                .limit(COMMITS_PER_PAGE);
+
+            commits = query.commits();
+            hasOlderCommits = query.hasMore();
         }
 
         super.appendToResponse(response, context);
     }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the URL of the next page of older commits.
+     *
+     * @return the URL, or null if this is the last page
+     */
+    public String olderCommitsURL()
+    {
+        return hasOlderCommits ? pageURL(offset + COMMITS_PER_PAGE) : null;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the URL of the previous page of newer commits.
+     *
+     * @return the URL, or null if this is the first page
+     */
+    public String newerCommitsURL()
+    {
+        return offset > 0
+            ? pageURL(Math.max(0, offset - COMMITS_PER_PAGE)) : null;
+    }
+
+
+    // ----------------------------------------------------------
+    private String pageURL(int skip)
+    {
+        String url = gitContext().toURL(context());
+        return (skip > 0) ? url + "?" + SKIP_KEY + "=" + skip : url;
+    }
+
+
+    // ----------------------------------------------------------
+    private static int skipFromRequest(WORequest request)
+    {
+        String skip = (request == null)
+            ? null : request.stringFormValueForKey(SKIP_KEY);
+
+        if (skip != null)
+        {
+            try
+            {
+                return Math.max(0, Integer.parseInt(skip));
+            }
+            catch (NumberFormatException e)
+            {
+                // Fall through and show the first page
+            }
+        }
+
+        return 0;
+    }
+
+
+    //~ Static/instance variables .............................................
+
+    private static final int COMMITS_PER_PAGE = 50;
+    private static final String SKIP_KEY = "skip";
 }
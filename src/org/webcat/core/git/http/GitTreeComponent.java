@@ -27,7 +27,7 @@ import org.webcat.core.git.GitTreeEntry;
 import com.webobjects.appserver.WOContext;
 import com.webobjects.appserver.WOResponse;
 import com.webobjects.foundation.NSArray;
-import com.webobjects.foundation.NSMutableDictionary;
+import com.webobjects.foundation.NSDictionary;
 
 //-------------------------------------------------------------------------
 /**
@@ -72,22 +72,17 @@ public class GitTreeComponent
     {
         if (commitsForEntries == null)
         {
-            commitsForEntries =
-                new NSMutableDictionary<GitTreeEntry, NSArray<GitCommit>>();
+            if (entries != null && entries.count() > 0)
+            {
+                commitsForEntries =
+                    entries.objectAtIndex(0).repository()
+                    .lastCommitsForChildren(
+                        gitContext().headObjectId(), gitContext().path());
+            }
 
-            if (entries != null)
+            if (commitsForEntries == null)
             {
-                for (GitTreeEntry entry : entries)
-                {
-                    NSArray<GitCommit> commits =
-                        entry.repository().commitsWithId(
-                            gitContext().headObjectId(), entry.path());
-
-                    if (commits != null)
-                    {
-                        commitsForEntries.setObjectForKey(commits, entry);
-                    }
-                }
+                commitsForEntries = new NSDictionary<String, GitCommit>();
             }
         }
 
@@ -181,33 +176,11 @@ public class GitTreeComponent
      */
     public GitCommit anEntryLatestCommit()
     {
-        NSArray<GitCommit> commits = anEntryCommits();
-
-        if (commits == null || commits.size() == 0)
-        {
-            return null;
-        }
-        else
-        {
-            return commits.objectAtIndex(0);
-        }
-    }
-
-
-    // ----------------------------------------------------------
-    /**
-     * Gets the array of commits for the current entry.
-     *
-     * @return the commits for the current entry
-     */
-    public NSArray<GitCommit> anEntryCommits()
-    {
-        return commitsForEntries.objectForKey(anEntry);
+        return commitsForEntries.objectForKey(anEntry.name());
     }
 
 
     //~ Static/instance variables .............................................
 
-    private NSMutableDictionary<GitTreeEntry, NSArray<GitCommit>>
-        commitsForEntries;
+    private NSDictionary<String, GitCommit> commitsForEntries;
 }
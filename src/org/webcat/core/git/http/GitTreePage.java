@@ -24,6 +24,7 @@ package org.webcat.core.git.http;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.zip.ZipOutputStream;
 import org.apache.log4j.Logger;
 import org.eclipse.jgit.lib.ObjectId;
@@ -32,7 +33,7 @@ import org.webcat.archives.ArchiveManager;
 import org.webcat.archives.IWritableContainer;
 import org.webcat.core.DeliverFile;
 import org.webcat.core.FileUtilities;
-import org.webcat.core.NSMutableDataOutputStream;
+import org.webcat.core.git.GitRepository;
 import org.webcat.core.git.GitTreeEntry;
 import org.webcat.core.git.GitTreeIterator;
 import org.webcat.core.git.GitUtilities;
@@ -121,40 +122,35 @@ public class GitTreePage extends GitWebComponent
             filename = gitContext().repositoryName();
         }
 
-        ObjectId treeId = gitContext().objectId();
-        if (treeId == null)
+        ObjectId oid = gitContext().objectId();
+        if (oid == null)
         {
-            treeId = gitContext().headObjectId();
+            oid = gitContext().headObjectId();
         }
 
-        try
-        {
-            // FIXME right now this writes the tree to a zip file in memory.
-            // Maybe a better approach would be to write it to a file in
-            // temporary storage and then deliver that file.
-
-            NSMutableDataOutputStream out = new NSMutableDataOutputStream();
-            ZipOutputStream zipOut = new ZipOutputStream(out);
-            IWritableContainer container =
-                ArchiveManager.getInstance().writableContainerForZip(zipOut);
+        // The zip is written as the response is generated, rather than
+        // being built in memory here
+        final ObjectId treeId = oid;
+        final GitRepository repository = gitContext().repository();
+        file.setContentWriter(new DeliverFile.ContentWriter() {
+            public void writeTo(OutputStream out)
+                throws IOException
+            {
+                ZipOutputStream zipOut = new ZipOutputStream(out);
+                IWritableContainer container = ArchiveManager.getInstance()
+                    .writableContainerForZip(zipOut);
 
-            gitContext().repository().copyItemToContainer(
-                    treeId, null, container);
+                repository.copyItemToContainer(treeId, null, container);
 
-            container.finish();
-            zipOut.close();
+                container.finish();
+            }
+        });
 
-            file.setDeliveredName(filename + ".zip");
-            file.setContentType("application/zip");
-            file.setStartDownload(true);
-            file.setFileData(out.data());
+        file.setDeliveredName(filename + ".zip");
+        file.setContentType("application/zip");
+        file.setStartDownload(true);
 
-            return file;
-        }
-        catch (IOException e)
-        {
-            return null;
-        }
+        return file;
     }
 
 
@@ -53,6 +53,14 @@ import com.webobjects.appserver.WOResponse;
  * a session is created. If there are no credentials associated with the
  * request, a 401 status code is returned.</li>
  * </ol>
+ * <p>
+ * Credentials that have been verified recently are answered from the
+ * {@link CredentialCache} without consulting the user's authenticator. If
+ * bearer tokens are enabled, each successful basic login also returns a
+ * signed token in the "X-Auth-Token" header, which the client can send back
+ * as "Authorization: Bearer <i>token</i>" to skip the password check
+ * entirely.
+ * </p>
  *
  * @author  Tony Allevato
  */
@@ -209,14 +217,26 @@ public abstract class BasicAuthenticationFilter
             }
             else
             {
-                authorization = Base64.decode(authorization.substring(6));
-                String[] parts = authorization.split(":");
+                String token = null;
+                String[] parts = null;
+                if (authorization.regionMatches(
+                    true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length()))
+                {
+                    token = authorization.substring(BEARER_PREFIX.length());
+                }
+                else
+                {
+                    authorization = Base64.decode(authorization.substring(6));
+                    parts = authorization.split(":");
+                }
 
-                if (parts != null && parts.length >= 2)
+                if (token != null || (parts != null && parts.length >= 2))
                 {
-                    final String username = parts[0];
+                    final String bearerToken = token;
+                    final String username =
+                        (parts != null) ? parts[0] : null;
                     final String password =
-                        (parts.length > 1) ? parts[1] : null;
+                        (parts != null && parts.length > 1) ? parts[1] : null;
 
                     final Session oldSession = session;
                     session = call(new ECActionWithResult<Session>()
@@ -224,7 +244,41 @@ public abstract class BasicAuthenticationFilter
                         public Session action()
                         {
                             Session result = oldSession;
-                            User user = validateUser(username, password, ec);
+                            CredentialCache cache = CredentialCache.cache();
+                            String cacheRealm = getClass().getName();
+                            User user = null;
+
+                            // Only a bearer token or the user's own account
+                            // credentials earn a new token
+                            boolean accountLogin = true;
+                            if (bearerToken != null)
+                            {
+                                user = cache.userForToken(bearerToken, ec);
+                                accountLogin = false;
+                            }
+                            else
+                            {
+                                user = cache.userForCredentials(
+                                    cacheRealm, username, password, ec);
+                                if (user == null)
+                                {
+                                    user = authorizedUserForRequest(
+                                        username, password, ec);
+                                    accountLogin = (user == null);
+                                }
+                                if (user == null)
+                                {
+                                    long verified =
+                                        System.currentTimeMillis();
+                                    user = validateUser(
+                                        username, password, ec);
+                                    if (user != null)
+                                    {
+                                        cache.remember(cacheRealm, username,
+                                            password, user, verified);
+                                    }
+                                }
+                            }
 
                             if (user == null)
                             {
@@ -261,6 +315,15 @@ public abstract class BasicAuthenticationFilter
                                 {
                                     result._appendCookieToResponse(response);
                                 }
+                                if (accountLogin)
+                                {
+                                    String newToken = cache.issueToken(user);
+                                    if (newToken != null)
+                                    {
+                                        response.setHeader(
+                                            newToken, AUTH_TOKEN_HEADER);
+                                    }
+                                }
                             }
                             return result;
                         }
@@ -273,6 +336,28 @@ public abstract class BasicAuthenticationFilter
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * Looks up a user from credentials that are only good for the object
+     * being requested, such as a password set up for a single repository,
+     * rather than for the user's whole account.  Users found this way are
+     * checked again on every request and are never issued a bearer token,
+     * unlike those found by {@link #validateUser(String, String, WCEC)}.
+     * The default implementation accepts no such credentials.
+     *
+     * @param username the username
+     * @param password the password
+     * @param ec the editing context to fetch the user into
+     * @return the user, or null if these are not credentials for the
+     *     requested object
+     */
+    protected User authorizedUserForRequest(
+        String username, String password, WCEC ec)
+    {
+        return null;
+    }
+
+
     // ----------------------------------------------------------
     /**
      * Looks up a user with the specified username (in the format "username" or
@@ -303,4 +388,6 @@ public abstract class BasicAuthenticationFilter
 
     static Logger log = Logger.getLogger(BasicAuthenticationFilter.class);
     private static final String SESSION_ID_HEADER = "X-Session-Id";
+    private static final String AUTH_TOKEN_HEADER = "X-Auth-Token";
+    private static final String BEARER_PREFIX = "Bearer ";
 }
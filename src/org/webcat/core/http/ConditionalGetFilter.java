@@ -0,0 +1,286 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.core.http;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.security.SecureRandom;
+import java.util.HashSet;
+import java.util.Set;
+import org.webcat.core.Session;
+import org.webcat.core.User;
+import com.webobjects.appserver.WORequest;
+import com.webobjects.appserver.WOResponse;
+import com.webobjects.eocontrol.EOEnterpriseObject;
+import com.webobjects.foundation.NSData;
+
+//-------------------------------------------------------------------------
+/**
+ * A filter that lets clients revalidate read-only responses instead of
+ * downloading them again.  It must come after an authentication filter,
+ * since responses are cached per user.
+ * <p>
+ * For each successful GET whose body was generated in memory, the filter
+ * computes a strong {@code ETag} from the body and answers a matching
+ * {@code If-None-Match} with 304 (Not Modified).  The body is also kept
+ * in the shared {@link ResponseCache} under the user and URL, so a repeat
+ * request is answered from there, either with a 304 or with the cached
+ * body, without running the handler or serializing anything.  Cached
+ * responses are dropped when EOF reports changes to any entity they were
+ * built from: the entities of the objects in the session's editing
+ * context, plus any the handler names with
+ * {@link #dependsOn(WORequest, String)}.
+ * </p><p>
+ * Handlers that echo the session identifier in the body should write the
+ * value of {@link #sessionIdForBody(WORequest, String)} instead, so that
+ * the cached body (and its ETag) is the same for every session of the
+ * user.  The current session's identifier is filled in each time the
+ * body is sent.
+ * </p><p>
+ * Responses are marked <code>Cache-Control: private, no-cache</code>, so
+ * clients may keep them but must revalidate every time.  Use this filter
+ * in place of {@link NoCacheRequestFilter}, not in addition to it.
+ * </p>
+ *
+ * @author  Stephen Edwards
+ */
+public class ConditionalGetFilter
+    implements RequestFilter
+{
+    //~ Methods ...............................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Answers the request from the cache if possible, and otherwise passes
+     * it on and then adds validators to (and caches) the response.
+     *
+     * @param request the request
+     * @param response the response
+     * @param filterChain the filter chain
+     * @throws Exception if an error occurs
+     */
+    public void filterRequest(WORequest request, WOResponse response,
+            RequestFilterChain filterChain) throws Exception
+    {
+        Session session = (Session) request.context()._session();
+        User user = (session == null) ? null : session.primeUser();
+
+        if (user == null || !"GET".equals(request.method()))
+        {
+            response.disableClientCaching();
+            filterChain.filterRequest(request, response);
+            return;
+        }
+
+        request.setUserInfoForKey(Boolean.TRUE, SESSION_ID_IN_BODY);
+        ResponseCache cache = ResponseCache.cache();
+        String key = user.id() + " " + request.uri();
+        ResponseCache.Entry entry = cache.entryForKey(key);
+
+        if (entry != null)
+        {
+            send(request, response, entry, session.sessionID());
+            return;
+        }
+
+        long generation = cache.generation();
+        filterChain.filterRequest(request, response);
+
+        NSData body = response.content();
+        if (response.status() != WOResponse.HTTP_STATUS_OK
+            || response.contentInputStream() != null
+            || body == null)
+        {
+            // Errors and streamed bodies are not revalidated
+            response.disableClientCaching();
+            if (body != null)
+            {
+                response.setContent(
+                    withSessionId(body, session.sessionID()));
+            }
+            return;
+        }
+
+        Set<String> entityNames = new HashSet<String>();
+        for (Object eo : session.defaultEditingContext().registeredObjects())
+        {
+            entityNames.add(((EOEnterpriseObject) eo).entityName());
+        }
+        @SuppressWarnings("unchecked")
+        Set<String> named = (Set<String>) request.userInfoForKey(DEPENDENCIES);
+        if (named != null)
+        {
+            entityNames.addAll(named);
+        }
+
+        entry = new ResponseCache.Entry(ResponseCache.etagForBody(body),
+            response.headerForKey(CONTENT_TYPE), body, entityNames);
+        cache.store(key, entry, generation);
+        send(request, response, entry, session.sessionID());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the value a handler should write in place of the session
+     * identifier in a response body.  When the request is passing through
+     * this filter, this is a placeholder that the filter replaces with the
+     * current session's identifier whenever it sends the body, so that the
+     * body can be cached and validated independently of the session.
+     * Otherwise, it is the session identifier itself.
+     * <p>
+     * The filter only rewrites bodies generated in memory, so a handler
+     * that streams its body must write the real identifier, or generate
+     * it with a {@link SpillingOutputStream} that replaces the placeholder
+     * if the body spills.
+     * </p>
+     *
+     * @param request the request
+     * @param sessionId the identifier of the current session
+     * @return the value to write in the body
+     */
+    public static String sessionIdForBody(WORequest request, String sessionId)
+    {
+        return request.userInfoForKey(SESSION_ID_IN_BODY) == null
+            ? sessionId
+            : SESSION_ID_PLACEHOLDER;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Records that the response to a request depends on an entity, so that
+     * it is invalidated when objects of that entity change even if none of
+     * them were fetched (for example, an empty collection that a new
+     * object would join).
+     *
+     * @param request the request
+     * @param entityName the name of the entity
+     */
+    public static void dependsOn(WORequest request, String entityName)
+    {
+        @SuppressWarnings("unchecked")
+        Set<String> named = (Set<String>) request.userInfoForKey(DEPENDENCIES);
+        if (named == null)
+        {
+            named = new HashSet<String>();
+            request.setUserInfoForKey(named, DEPENDENCIES);
+        }
+        named.add(entityName);
+    }
+
+
+    // ----------------------------------------------------------
+    private static void send(WORequest request, WOResponse response,
+        ResponseCache.Entry entry, String sessionId)
+    {
+        FileDelivery.setValidators(response, entry.etag, 0);
+        response.setHeader(CACHE_CONTROL, "Cache-Control");
+
+        if (FileDelivery.isNotModified(request, entry.etag, 0))
+        {
+            response.setStatus(FileDelivery.HTTP_STATUS_NOT_MODIFIED);
+            response.setContent("");
+        }
+        else
+        {
+            response.setStatus(WOResponse.HTTP_STATUS_OK);
+            if (entry.contentType != null)
+            {
+                response.setHeader(entry.contentType, CONTENT_TYPE);
+            }
+            response.setContent(withSessionId(entry.body, sessionId));
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Replaces every occurrence of the session placeholder in a body.
+     *
+     * @param body the body
+     * @param sessionId the identifier of the current session
+     * @return the body with the session identifier filled in, or the
+     *         original body if it contains no placeholder
+     */
+    private static NSData withSessionId(NSData body, String sessionId)
+    {
+        byte[] bytes = body.bytes();
+        ByteArrayOutputStream result = null;
+        int copied = 0;
+        for (int i = indexOfPlaceholder(bytes, 0);
+             i >= 0;
+             i = indexOfPlaceholder(bytes, copied))
+        {
+            if (result == null)
+            {
+                result = new ByteArrayOutputStream(bytes.length);
+            }
+            result.write(bytes, copied, i - copied);
+            byte[] id = sessionId.getBytes(UTF_8);
+            result.write(id, 0, id.length);
+            copied = i + PLACEHOLDER_BYTES.length;
+        }
+        if (result == null)
+        {
+            return body;
+        }
+        result.write(bytes, copied, bytes.length - copied);
+        return new NSData(result.toByteArray());
+    }
+
+
+    // ----------------------------------------------------------
+    private static int indexOfPlaceholder(byte[] bytes, int from)
+    {
+        int last = bytes.length - PLACEHOLDER_BYTES.length;
+        outer:
+        for (int i = from; i <= last; i++)
+        {
+            for (int j = 0; j < PLACEHOLDER_BYTES.length; j++)
+            {
+                if (bytes[i + j] != PLACEHOLDER_BYTES[j])
+                {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+
+    //~ Static/instance variables .............................................
+
+    private static final String DEPENDENCIES =
+        ConditionalGetFilter.class.getName() + ".dependencies";
+    private static final String SESSION_ID_IN_BODY =
+        ConditionalGetFilter.class.getName() + ".sessionIdInBody";
+    private static final String CONTENT_TYPE = "Content-Type";
+    private static final String CACHE_CONTROL = "private, no-cache";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Random, so that no result can contain it by accident, and made only
+    // of characters that neither JSON nor XML escape
+    private static final String SESSION_ID_PLACEHOLDER = "wcsession"
+        + Long.toHexString(new SecureRandom().nextLong() | Long.MIN_VALUE);
+    private static final byte[] PLACEHOLDER_BYTES =
+        SESSION_ID_PLACEHOLDER.getBytes(UTF_8);
+}
@@ -0,0 +1,562 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.core.http;
+
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.apache.log4j.Logger;
+import org.webcat.core.EOBase;
+import org.webcat.core.User;
+import com.webobjects.eocontrol.EOEditingContext;
+import er.extensions.foundation.ERXProperties;
+
+//-------------------------------------------------------------------------
+/**
+ * Remembers recently verified HTTP credentials so that the clients of
+ * {@link BasicAuthenticationFilter} (git, WebDAV, and the web API), which
+ * send the same user name and password on every request, do not pay for
+ * a user lookup and a password check (possibly an LDAP bind) each time.
+ * <p>
+ * Entries are keyed by an HMAC of the user name and password (and the
+ * kind of request they were checked for) under a random per-process salt,
+ * so plain-text passwords are never kept, and they expire after
+ * <code>BasicAuthenticationFilter.credentialCacheSeconds</code> (300 by
+ * default; 0 turns the cache off).  Only successful logins are cached.
+ * </p><p>
+ * When <code>BasicAuthenticationFilter.tokens</code> is true, this class
+ * also issues signed bearer tokens that carry a user's API id, credential
+ * version, issue time, and expiry time.  A request with a valid token is
+ * authenticated by checking its signature and the user's current
+ * credential version.  Tokens are signed with
+ * <code>BasicAuthenticationFilter.tokenSecret</code>, or with a random
+ * key if that is not set (in which case tokens do not survive a restart),
+ * and last <code>BasicAuthenticationFilter.tokenSeconds</code> (3600 by
+ * default).
+ * </p><p>
+ * A user's credential version is derived from the password stored in the
+ * database, so changing the password rejects every token issued before the
+ * change, on every instance and after restarts, as well as any cached
+ * credentials.  Calling {@link #invalidate(User)} when a password changes
+ * also drops this instance's cached entries for the user at once.
+ * </p>
+ *
+ * @author  Stephen Edwards
+ */
+public class CredentialCache
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Create a new cache.  Use {@link #cache()} to get the shared instance.
+     */
+    private CredentialCache()
+    {
+        cacheMillis = 1000L * Math.max(0, ERXProperties.intForKeyWithDefault(
+            PROPERTY_PREFIX + "credentialCacheSeconds", 300));
+        maxEntries = Math.max(1, ERXProperties.intForKeyWithDefault(
+            PROPERTY_PREFIX + "credentialCacheSize", 4096));
+        tokensEnabled = ERXProperties.booleanForKeyWithDefault(
+            PROPERTY_PREFIX + "tokens", false);
+        tokenMillis = 1000L * Math.max(1, ERXProperties.intForKeyWithDefault(
+            PROPERTY_PREFIX + "tokenSeconds", 3600));
+
+        SecureRandom random = new SecureRandom();
+        salt = new byte[KEY_BYTES];
+        random.nextBytes(salt);
+
+        String secret = ERXProperties.stringForKey(
+            PROPERTY_PREFIX + "tokenSecret");
+        if (secret != null && secret.length() > 0)
+        {
+            tokenKey = utf8(secret);
+        }
+        else
+        {
+            tokenKey = new byte[KEY_BYTES];
+            random.nextBytes(tokenKey);
+            if (tokensEnabled)
+            {
+                log.info("no " + PROPERTY_PREFIX + "tokenSecret set; "
+                    + "bearer tokens will not survive a restart");
+            }
+        }
+    }
+
+
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Get the shared cache.
+     * @return The cache
+     */
+    public static CredentialCache cache()
+    {
+        return instance;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Look up a user whose credentials were verified recently.
+     * @param realm    The kind of request the credentials were checked
+     *                 for, such as the name of the filter that checked them
+     * @param username The user name, as sent by the client
+     * @param password The password, as sent by the client
+     * @param ec       The editing context to fetch the user into
+     * @return The user, or null if these credentials are not cached
+     */
+    public User userForCredentials(String realm,
+        String username, String password, EOEditingContext ec)
+    {
+        if (cacheMillis == 0)
+        {
+            return null;
+        }
+
+        String key = credentialKey(realm, username, password);
+        Entry entry;
+        synchronized (entries)
+        {
+            entry = entries.get(key);
+        }
+
+        long now = System.currentTimeMillis();
+        User user = (entry == null || entry.expires <= now)
+            ? null
+            : User.forId(ec, entry.userId);
+        if (user != null && !entry.version.equals(credentialVersion(user)))
+        {
+            // The password has changed since these credentials were checked
+            user = null;
+        }
+
+        if (user == null)
+        {
+            if (entry != null)
+            {
+                synchronized (entries)
+                {
+                    entries.remove(key);
+                }
+            }
+            misses.incrementAndGet();
+        }
+        else
+        {
+            hits.incrementAndGet();
+        }
+        return user;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Remember credentials that have just been verified.
+     * @param realm    The kind of request the credentials were checked
+     *                 for, such as the name of the filter that checked them
+     * @param username The user name, as sent by the client
+     * @param password The password, as sent by the client
+     * @param user     The user they identify, as fetched for the check
+     * @param verified When the check began
+     */
+    public void remember(String realm,
+        String username, String password, User user, long verified)
+    {
+        if (cacheMillis == 0 || user.id() == null)
+        {
+            return;
+        }
+
+        Entry entry = new Entry(user.id().intValue(),
+            credentialVersion(user), verified + cacheMillis);
+        String key = credentialKey(realm, username, password);
+        synchronized (entries)
+        {
+            entries.put(key, entry);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Determine whether bearer tokens are turned on.
+     * @return True if tokens are issued and accepted
+     */
+    public boolean tokensEnabled()
+    {
+        return tokensEnabled;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Issue a signed bearer token for a user.
+     * @param user The user
+     * @return The token, or null if tokens are turned off
+     */
+    public String issueToken(User user)
+    {
+        if (!tokensEnabled)
+        {
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        String payload = toHex(utf8(user.apiId()))
+            + TOKEN_SEPARATOR + credentialVersion(user)
+            + TOKEN_SEPARATOR + Long.toHexString(now)
+            + TOKEN_SEPARATOR + Long.toHexString(now + tokenMillis);
+        tokensIssued.incrementAndGet();
+        return payload + TOKEN_SEPARATOR + toHex(hmac(tokenKey, payload));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Look up the user a bearer token was issued to.
+     * @param token The token
+     * @param ec    The editing context to fetch the user into
+     * @return The user, or null if the token is malformed, forged,
+     *         expired, or was issued before the user's password changed
+     *         (here or on any other instance)
+     */
+    public User userForToken(String token, EOEditingContext ec)
+    {
+        if (!tokensEnabled || token == null)
+        {
+            return null;
+        }
+
+        String[] parts = token.trim().split("\\" + TOKEN_SEPARATOR);
+        if (parts.length != 5)
+        {
+            tokensRejected.incrementAndGet();
+            return null;
+        }
+
+        String payload = parts[0] + TOKEN_SEPARATOR + parts[1]
+            + TOKEN_SEPARATOR + parts[2] + TOKEN_SEPARATOR + parts[3];
+        byte[] signature = fromHex(parts[4]);
+        if (signature == null
+            || !MessageDigest.isEqual(signature, hmac(tokenKey, payload)))
+        {
+            log.warn("rejected bearer token with a bad signature");
+            tokensRejected.incrementAndGet();
+            return null;
+        }
+
+        User user = null;
+        try
+        {
+            long expires = Long.parseLong(parts[3], 16);
+            byte[] apiId = fromHex(parts[0]);
+            if (apiId != null && expires > System.currentTimeMillis())
+            {
+                user = EOBase.objectWithApiId(
+                    ec, User.class, new String(apiId, UTF_8));
+                if (user != null
+                    && !parts[1].equals(credentialVersion(user)))
+                {
+                    user = null;
+                }
+            }
+        }
+        catch (NumberFormatException e)
+        {
+            user = null;
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            user = null;
+        }
+
+        if (user == null)
+        {
+            tokensRejected.incrementAndGet();
+        }
+        else
+        {
+            tokensAccepted.incrementAndGet();
+        }
+        return user;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Forget a user's cached credentials on this instance.  Call this
+     * whenever a password changes.  Tokens and cached credentials issued
+     * before the change are rejected even without this call, once the new
+     * password has been saved, since they carry the old credential version.
+     * @param user The user
+     */
+    public void invalidate(User user)
+    {
+        if (user.id() == null)
+        {
+            return;
+        }
+
+        int userId = user.id().intValue();
+        invalidations.incrementAndGet();
+
+        synchronized (entries)
+        {
+            Iterator<Entry> i = entries.values().iterator();
+            while (i.hasNext())
+            {
+                if (i.next().userId == userId)
+                {
+                    i.remove();
+                }
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the number of requests answered from the cache.
+     * @return The number of hits
+     */
+    public long hits()
+    {
+        return hits.get();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the number of requests that had to be checked by an
+     * authenticator.
+     * @return The number of misses
+     */
+    public long misses()
+    {
+        return misses.get();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Produce a compact one-line summary of cache and token activity.
+     * @return The summary
+     */
+    public String summary()
+    {
+        int size;
+        synchronized (entries)
+        {
+            size = entries.size();
+        }
+        return hits.get() + " hits, " + misses.get() + " misses, "
+            + size + " cached, " + invalidations.get() + " invalidated"
+            + (tokensEnabled
+                ? ", tokens " + tokensIssued.get() + " issued/"
+                    + tokensAccepted.get() + " accepted/"
+                    + tokensRejected.get() + " rejected"
+                : "");
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Derive a short version string from the password stored for a user,
+     * which changes whenever the password does.  It is signed with the
+     * token key, so it is the same on every instance that shares
+     * <code>tokenSecret</code>, and reveals nothing about the password.
+     */
+    private String credentialVersion(User user)
+    {
+        String stored = user.password();
+        byte[] digest = hmac(tokenKey, "version\0" + user.id() + '\0'
+            + (stored == null ? "" : stored));
+        byte[] version = new byte[VERSION_BYTES];
+        System.arraycopy(digest, 0, version, 0, VERSION_BYTES);
+        return toHex(version);
+    }
+
+
+    // ----------------------------------------------------------
+    private String credentialKey(
+        String realm, String username, String password)
+    {
+        return toHex(hmac(salt, realm + '\0' + username + '\0' + password));
+    }
+
+
+    // ----------------------------------------------------------
+    private static byte[] hmac(byte[] key, String text)
+    {
+        try
+        {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(key, HMAC_ALGORITHM));
+            return mac.doFinal(utf8(text));
+        }
+        catch (GeneralSecurityException e)
+        {
+            // Every Java platform is required to support HmacSHA256
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private static byte[] utf8(String text)
+    {
+        try
+        {
+            return text.getBytes(UTF_8);
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private static String toHex(byte[] bytes)
+    {
+        StringBuilder buffer = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+        {
+            buffer.append(HEX_DIGITS[(b >> 4) & 0xf]);
+            buffer.append(HEX_DIGITS[b & 0xf]);
+        }
+        return buffer.toString();
+    }
+
+
+    // ----------------------------------------------------------
+    private static byte[] fromHex(String hex)
+    {
+        if (hex.length() % 2 != 0)
+        {
+            return null;
+        }
+
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++)
+        {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0)
+            {
+                return null;
+            }
+            bytes[i] = (byte)((high << 4) | low);
+        }
+        return bytes;
+    }
+
+
+    //~ Private Nested Classes ................................................
+
+    // ----------------------------------------------------------
+    private static class Entry
+    {
+        // ----------------------------------------------------------
+        public Entry(int userId, String version, long expires)
+        {
+            this.userId = userId;
+            this.version = version;
+            this.expires = expires;
+        }
+
+
+        //~ Instance/static variables .........................................
+
+        public final int userId;
+        public final String version;
+        public final long expires;
+    }
+
+
+    // ----------------------------------------------------------
+    private class LruMap
+        extends LinkedHashMap<String, Entry>
+    {
+        // ----------------------------------------------------------
+        public LruMap()
+        {
+            super(16, 0.75f, true);
+        }
+
+
+        // ----------------------------------------------------------
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest)
+        {
+            return size() > maxEntries;
+        }
+
+
+        //~ Instance/static variables .........................................
+
+        private static final long serialVersionUID = 1L;
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private final long cacheMillis;
+    private final int maxEntries;
+    private final boolean tokensEnabled;
+    private final long tokenMillis;
+    private final byte[] salt;
+    private final byte[] tokenKey;
+
+    private final Map<String, Entry> entries = new LruMap();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong tokensIssued = new AtomicLong();
+    private final AtomicLong tokensAccepted = new AtomicLong();
+    private final AtomicLong tokensRejected = new AtomicLong();
+
+    private static final String PROPERTY_PREFIX =
+        "BasicAuthenticationFilter.";
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final String UTF_8 = "UTF-8";
+    private static final String TOKEN_SEPARATOR = ".";
+    private static final int KEY_BYTES = 32;
+    private static final int VERSION_BYTES = 8;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    static Logger log = Logger.getLogger(CredentialCache.class);
+
+    // Created last, since the constructor uses the constants above
+    private static final CredentialCache instance = new CredentialCache();
+}
@@ -0,0 +1,154 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.core.http;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+//-------------------------------------------------------------------------
+/**
+ * An input stream that reads a byte range of a file through a
+ * {@link FileChannel}, using positional reads so that no more than one
+ * buffer's worth of the file is ever held in memory.  The channel is
+ * closed when the stream is closed.
+ *
+ * @author  Stephen Edwards
+ */
+public class FileChannelInputStream
+    extends InputStream
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Creates a stream that reads the whole file.
+     *
+     * @param file the file to read
+     * @throws IOException if the file cannot be opened
+     */
+    public FileChannelInputStream(File file)
+        throws IOException
+    {
+        this(file, 0L, file.length());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Creates a stream that reads part of a file.
+     *
+     * @param file the file to read
+     * @param start the offset of the first byte to read
+     * @param length the number of bytes to read
+     * @throws IOException if the file cannot be opened
+     */
+    public FileChannelInputStream(File file, long start, long length)
+        throws IOException
+    {
+        channel = new FileInputStream(file).getChannel();
+        position = start;
+        end = start + length;
+    }
+
+
+    //~ Methods ...............................................................
+
+    // ----------------------------------------------------------
+    @Override
+    public int read()
+        throws IOException
+    {
+        byte[] one = new byte[1];
+        int count = read(one, 0, 1);
+        return (count <= 0) ? -1 : (one[0] & 0xff);
+    }
+
+
+    // ----------------------------------------------------------
+    @Override
+    public int read(byte[] buffer, int offset, int length)
+        throws IOException
+    {
+        if (length == 0)
+        {
+            return 0;
+        }
+
+        long remaining = end - position;
+        if (remaining <= 0)
+        {
+            return -1;
+        }
+
+        if (length > remaining)
+        {
+            length = (int)remaining;
+        }
+
+        int count = channel.read(
+            ByteBuffer.wrap(buffer, offset, length), position);
+        if (count > 0)
+        {
+            position += count;
+        }
+
+        return count;
+    }
+
+
+    // ----------------------------------------------------------
+    @Override
+    public long skip(long n)
+        throws IOException
+    {
+        long skipped = Math.max(0L, Math.min(n, end - position));
+        position += skipped;
+        return skipped;
+    }
+
+
+    // ----------------------------------------------------------
+    @Override
+    public int available()
+        throws IOException
+    {
+        return (int)Math.min(Integer.MAX_VALUE, end - position);
+    }
+
+
+    // ----------------------------------------------------------
+    @Override
+    public void close()
+        throws IOException
+    {
+        channel.close();
+    }
+
+
+    //~ Static/instance variables .............................................
+
+    private final FileChannel channel;
+    private long position;
+    private final long end;
+}
@@ -0,0 +1,415 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.core.http;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import org.apache.log4j.Logger;
+import com.webobjects.appserver.WORequest;
+import com.webobjects.appserver.WOResponse;
+
+//-------------------------------------------------------------------------
+/**
+ * Helper methods for sending files from disk as HTTP responses.  The file
+ * content is streamed through a {@link FileChannelInputStream} rather than
+ * being loaded into memory, single byte ranges are supported for resumed
+ * downloads, and validators ({@code ETag}/{@code Last-Modified}) are sent
+ * so that conditional requests can be answered with 304 Not Modified.
+ *
+ * @author  Stephen Edwards
+ */
+public class FileDelivery
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Prevent instantiation.
+     */
+    private FileDelivery()
+    {
+        // Do nothing.
+    }
+
+
+    //~ Methods ...............................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Sends the contents of a file as the response, honoring any
+     * {@code Range}, {@code If-Range}, {@code If-None-Match}, and
+     * {@code If-Modified-Since} headers in the request.  The caller is
+     * responsible for setting the content type and disposition.
+     *
+     * @param file the file to send
+     * @param request the request (may be null, in which case the whole
+     *     file is sent unconditionally)
+     * @param response the response
+     * @throws FileNotFoundException if the file does not exist or is not
+     *     a regular file, in which case the response is left untouched
+     * @throws IOException if the file cannot be opened
+     */
+    public static void sendFile(File file, WORequest request,
+            WOResponse response) throws IOException
+    {
+        if (!file.isFile())
+        {
+            throw new FileNotFoundException(file.getPath());
+        }
+
+        long length = file.length();
+        long lastModified = file.lastModified();
+        String etag = etagForFile(file);
+
+        setValidators(response, etag, lastModified);
+        response.setHeader("bytes", HDR_ACCEPT_RANGES);
+
+        if (request != null && isNotModified(request, etag, lastModified))
+        {
+            response.setStatus(HTTP_STATUS_NOT_MODIFIED);
+            response.setContent("");
+            return;
+        }
+
+        long start = 0;
+        long end = length - 1;
+
+        String range = (request == null)
+            ? null : request.headerForKey(HDR_RANGE);
+        if (range != null && rangeApplies(request, etag, lastModified))
+        {
+            long[] bounds = parseRange(range, length);
+
+            if (bounds == UNSATISFIABLE)
+            {
+                response.setStatus(HTTP_STATUS_RANGE_NOT_SATISFIABLE);
+                response.setHeader("bytes */" + length, HDR_CONTENT_RANGE);
+                response.setContent("");
+                return;
+            }
+            else if (bounds != null)
+            {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HTTP_STATUS_PARTIAL_CONTENT);
+                response.setHeader("bytes " + start + "-" + end + "/" + length,
+                    HDR_CONTENT_RANGE);
+            }
+        }
+        else
+        {
+            response.setStatus(WOResponse.HTTP_STATUS_OK);
+        }
+
+        long count = end - start + 1;
+        if (log.isDebugEnabled())
+        {
+            log.debug("sending " + file + " bytes " + start + "-" + end
+                + " (" + count + " of " + length + ")");
+        }
+
+        if (count <= 0)
+        {
+            response.setContent("");
+        }
+        else
+        {
+            response.setContentStream(
+                new FileChannelInputStream(file, start, count),
+                BUFFER_SIZE, count);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Computes a strong entity tag for a file from its size and
+     * modification time.
+     *
+     * @param file the file
+     * @return the quoted entity tag
+     */
+    public static String etagForFile(File file)
+    {
+        return "\"" + Long.toHexString(file.length()) + "-"
+            + Long.toHexString(file.lastModified()) + "\"";
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Sets the {@code ETag} and {@code Last-Modified} headers on a response.
+     *
+     * @param response the response
+     * @param etag the quoted entity tag, or null to omit it
+     * @param lastModified the modification time in milliseconds, or a value
+     *     less than or equal to zero to omit it
+     */
+    public static void setValidators(
+        WOResponse response, String etag, long lastModified)
+    {
+        if (etag != null)
+        {
+            response.setHeader(etag, HDR_ETAG);
+        }
+        if (lastModified > 0)
+        {
+            response.setHeader(formatHttpDate(lastModified),
+                HDR_LAST_MODIFIED);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Determines whether a request's conditional headers show that the
+     * client already has the current representation.  As required by
+     * RFC 7232, {@code If-Modified-Since} is only consulted when the request
+     * has no {@code If-None-Match} header.
+     *
+     * @param request the request
+     * @param etag the current quoted entity tag, or null if none
+     * @param lastModified the current modification time in milliseconds,
+     *     or a value less than or equal to zero if unknown
+     * @return true if a 304 Not Modified response should be sent
+     */
+    public static boolean isNotModified(
+        WORequest request, String etag, long lastModified)
+    {
+        String method = request.method();
+        if (!"GET".equals(method) && !"HEAD".equals(method))
+        {
+            return false;
+        }
+
+        String ifNoneMatch = request.headerForKey(HDR_IF_NONE_MATCH);
+        if (ifNoneMatch != null)
+        {
+            return etag != null && etagMatches(ifNoneMatch, etag);
+        }
+
+        String ifModifiedSince = request.headerForKey(HDR_IF_MODIFIED_SINCE);
+        if (ifModifiedSince != null && lastModified > 0)
+        {
+            long since = parseHttpDate(ifModifiedSince);
+
+            // HTTP dates only have one-second resolution
+            return since >= 0 && lastModified / 1000 <= since / 1000;
+        }
+
+        return false;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Determines whether a list of entity tags from an {@code If-None-Match}
+     * or {@code If-Match} header contains the given tag.
+     *
+     * @param header the header value
+     * @param etag the quoted entity tag to look for
+     * @return true if the header is "*" or lists the tag
+     */
+    public static boolean etagMatches(String header, String etag)
+    {
+        for (String candidate : header.split(","))
+        {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/"))
+            {
+                candidate = candidate.substring(2);
+            }
+            if ("*".equals(candidate) || etag.equals(candidate))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Formats a time as an RFC 1123 HTTP date.
+     *
+     * @param time the time in milliseconds
+     * @return the formatted date
+     */
+    public static String formatHttpDate(long time)
+    {
+        return httpDateFormat().format(new Date(time));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Parses an RFC 1123 HTTP date.
+     *
+     * @param value the header value
+     * @return the time in milliseconds, or -1 if the value could not be
+     *     parsed
+     */
+    public static long parseHttpDate(String value)
+    {
+        try
+        {
+            return httpDateFormat().parse(value.trim()).getTime();
+        }
+        catch (ParseException e)
+        {
+            log.debug("unparseable HTTP date: " + value);
+            return -1;
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Checks the {@code If-Range} header, if present, to see whether a
+     * partial response may be sent.
+     */
+    private static boolean rangeApplies(
+        WORequest request, String etag, long lastModified)
+    {
+        String ifRange = request.headerForKey(HDR_IF_RANGE);
+        if (ifRange == null)
+        {
+            return true;
+        }
+
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/"))
+        {
+            return ifRange.equals(etag);
+        }
+
+        long since = parseHttpDate(ifRange);
+        return since >= 0 && lastModified / 1000 <= since / 1000;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Parses a {@code Range} header containing a single byte range.
+     * Multiple ranges and malformed headers are ignored (by returning null),
+     * which results in the whole file being sent.
+     *
+     * @return an array of the first and last byte positions, null if the
+     *     header should be ignored, or {@link #UNSATISFIABLE}
+     */
+    private static long[] parseRange(String header, long length)
+    {
+        header = header.trim();
+        if (!header.startsWith(BYTES_UNIT) || header.indexOf(',') >= 0)
+        {
+            return null;
+        }
+
+        String spec = header.substring(BYTES_UNIT.length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0)
+        {
+            return null;
+        }
+
+        try
+        {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+
+            if (first.length() == 0)
+            {
+                // Suffix range: the last N bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0)
+                {
+                    return UNSATISFIABLE;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            }
+            else
+            {
+                start = Long.parseLong(first);
+                end = (last.length() == 0)
+                    ? length - 1
+                    : Math.min(Long.parseLong(last), length - 1);
+                if (end < start)
+                {
+                    return (last.length() == 0 || start >= length)
+                        ? UNSATISFIABLE : null;
+                }
+            }
+
+            if (start >= length)
+            {
+                return UNSATISFIABLE;
+            }
+
+            return new long[] { start, end };
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private static SimpleDateFormat httpDateFormat()
+    {
+        // SimpleDateFormat is not thread-safe, so make a new one each time
+        SimpleDateFormat format = new SimpleDateFormat(
+            "EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format;
+    }
+
+
+    //~ Static/instance variables .............................................
+
+    public static final int HTTP_STATUS_PARTIAL_CONTENT = 206;
+    public static final int HTTP_STATUS_NOT_MODIFIED = 304;
+    public static final int HTTP_STATUS_RANGE_NOT_SATISFIABLE = 416;
+
+    public static final String HDR_ETAG = "ETag";
+    public static final String HDR_LAST_MODIFIED = "Last-Modified";
+    public static final String HDR_IF_NONE_MATCH = "If-None-Match";
+    public static final String HDR_IF_MODIFIED_SINCE = "If-Modified-Since";
+    public static final String HDR_IF_RANGE = "If-Range";
+    public static final String HDR_RANGE = "Range";
+    public static final String HDR_CONTENT_RANGE = "Content-Range";
+    public static final String HDR_ACCEPT_RANGES = "Accept-Ranges";
+
+    private static final String BYTES_UNIT = "bytes=";
+    private static final long[] UNSATISFIABLE = new long[0];
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Logger log = Logger.getLogger(FileDelivery.class);
+}
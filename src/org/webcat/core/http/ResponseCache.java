@@ -0,0 +1,437 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.core.http;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Logger;
+import com.webobjects.eocontrol.EOGlobalID;
+import com.webobjects.eocontrol.EOKeyGlobalID;
+import com.webobjects.eocontrol.EOObjectStore;
+import com.webobjects.foundation.NSArray;
+import com.webobjects.foundation.NSData;
+import com.webobjects.foundation.NSDictionary;
+import com.webobjects.foundation.NSNotification;
+import com.webobjects.foundation.NSNotificationCenter;
+import com.webobjects.foundation.NSSelector;
+import er.extensions.foundation.ERXProperties;
+
+//-------------------------------------------------------------------------
+/**
+ * A small in-memory cache of recently generated read-only responses, used
+ * by {@link ConditionalGetFilter}.  Entries are keyed by user and URL, and
+ * each one records the entities its response was built from.  The cache
+ * listens for EOF's
+ * {@link EOObjectStore#ObjectsChangedInStoreNotification}, and drops
+ * every entry that depends on an entity with inserted, updated, deleted,
+ * or invalidated objects.  Changes made by other instances reach this one
+ * through the same notification when the object store coordinator
+ * synchronizer is running; entries also expire after
+ * <code>ConditionalGetFilter.maxAgeSeconds</code> (300 by default) as a
+ * safety net.
+ * <p>
+ * The cache holds at most <code>ConditionalGetFilter.maxEntries</code>
+ * responses (512 by default), each no larger than
+ * <code>ConditionalGetFilter.maxEntryBytes</code> (256KB by default),
+ * and evicts the least recently used first.
+ * </p>
+ *
+ * @author  Stephen Edwards
+ */
+public class ResponseCache
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Create a new cache.  Use {@link #cache()} to get the shared instance.
+     */
+    private ResponseCache()
+    {
+        maxEntries = Math.max(1, ERXProperties.intForKeyWithDefault(
+            PROPERTY_PREFIX + "maxEntries", 512));
+        maxEntryBytes = Math.max(0, ERXProperties.intForKeyWithDefault(
+            PROPERTY_PREFIX + "maxEntryBytes", 256 * 1024));
+        maxAgeMillis = 1000L * Math.max(0, ERXProperties.intForKeyWithDefault(
+            PROPERTY_PREFIX + "maxAgeSeconds", 300));
+
+        NSNotificationCenter.defaultCenter().addObserver(this,
+            new NSSelector<Void>("objectsChangedInStore",
+                new Class<?>[] { NSNotification.class }),
+            EOObjectStore.ObjectsChangedInStoreNotification,
+            null);
+        NSNotificationCenter.defaultCenter().addObserver(this,
+            new NSSelector<Void>("allObjectsInvalidated",
+                new Class<?>[] { NSNotification.class }),
+            EOObjectStore.InvalidatedAllObjectsInStoreNotification,
+            null);
+    }
+
+
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Get the shared cache.
+     * @return The cache
+     */
+    public static ResponseCache cache()
+    {
+        return instance;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Look up a cached response.
+     * @param key The key built from the user and URL
+     * @return The cached response, or null if there is none (or it has
+     *         expired)
+     */
+    public Entry entryForKey(String key)
+    {
+        Entry entry;
+        synchronized (entries)
+        {
+            entry = entries.get(key);
+            if (entry != null
+                && System.currentTimeMillis() - entry.created > maxAgeMillis)
+            {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+
+        if (entry == null)
+        {
+            misses.incrementAndGet();
+        }
+        else
+        {
+            hits.incrementAndGet();
+        }
+        return entry;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the current invalidation generation.  Read this before building
+     * a response and pass it to {@link #store(String, Entry, long)}, so
+     * that a response built while its data was changing is not cached.
+     * The generation advances with every invalidation, but each entity
+     * remembers the generation it last changed in, so a response is only
+     * turned away when one of its own entities changed.
+     * @return The generation
+     */
+    public long generation()
+    {
+        return generation.get();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Cache a response, unless it is too big or one of the entities it was
+     * built from changed since the given generation.
+     * @param key        The key built from the user and URL
+     * @param entry      The response
+     * @param generation The value of {@link #generation()} from before
+     *                   the response was built
+     * @return True if the response was cached
+     */
+    public boolean store(String key, Entry entry, long generation)
+    {
+        if (maxAgeMillis == 0 || entry.body.length() > maxEntryBytes)
+        {
+            return false;
+        }
+
+        synchronized (entries)
+        {
+            // Checked inside the lock, since invalidation holds it too
+            if (allChangedAt > generation)
+            {
+                return false;
+            }
+            for (String name : entry.entityNames)
+            {
+                Long changed = changedAt.get(name);
+                if (changed != null && changed.longValue() > generation)
+                {
+                    return false;
+                }
+            }
+            entries.put(key, entry);
+        }
+        return true;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Drop every cached response that depends on any of the given
+     * entities.
+     * @param entityNames The names of the changed entities
+     */
+    public void invalidate(Collection<String> entityNames)
+    {
+        if (entityNames.isEmpty())
+        {
+            return;
+        }
+
+        synchronized (entries)
+        {
+            Long now = generation.incrementAndGet();
+            for (String name : entityNames)
+            {
+                changedAt.put(name, now);
+            }
+            Iterator<Entry> i = entries.values().iterator();
+            while (i.hasNext())
+            {
+                Entry entry = i.next();
+                for (String name : entityNames)
+                {
+                    if (entry.entityNames.contains(name))
+                    {
+                        i.remove();
+                        invalidations.incrementAndGet();
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Respond to EOF change notifications by invalidating the responses
+     * that depend on the changed entities.
+     * @param notification The notification
+     */
+    public void objectsChangedInStore(NSNotification notification)
+    {
+        @SuppressWarnings("unchecked")
+        NSDictionary<String, NSArray<EOGlobalID>> userInfo =
+            notification.userInfo();
+        if (userInfo == null)
+        {
+            return;
+        }
+
+        Set<String> changed = new HashSet<String>();
+        for (String key : CHANGE_KEYS)
+        {
+            NSArray<EOGlobalID> ids = userInfo.objectForKey(key);
+            if (ids != null)
+            {
+                for (EOGlobalID id : ids)
+                {
+                    if (id instanceof EOKeyGlobalID)
+                    {
+                        changed.add(((EOKeyGlobalID) id).entityName());
+                    }
+                }
+            }
+        }
+
+        if (!changed.isEmpty())
+        {
+            if (log.isDebugEnabled())
+            {
+                log.debug("invalidating responses for " + changed);
+            }
+            invalidate(changed);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Respond to EOF's notification that every object in a store has been
+     * invalidated by dropping every cached response.
+     * @param notification The notification
+     */
+    public void allObjectsInvalidated(NSNotification notification)
+    {
+        synchronized (entries)
+        {
+            allChangedAt = generation.incrementAndGet();
+            invalidations.addAndGet(entries.size());
+            entries.clear();
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Compute a strong entity tag for a response body from its contents.
+     * @param body The response body
+     * @return The quoted entity tag
+     */
+    public static String etagForBody(NSData body)
+    {
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(body.bytes());
+            StringBuilder buffer = new StringBuilder(2 + ETAG_BYTES * 2);
+            buffer.append('"');
+            for (int i = 0; i < ETAG_BYTES; i++)
+            {
+                buffer.append(HEX_DIGITS[(hash[i] >> 4) & 0xf]);
+                buffer.append(HEX_DIGITS[hash[i] & 0xf]);
+            }
+            buffer.append('"');
+            return buffer.toString();
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Produce a compact one-line summary of cache activity.
+     * @return The summary
+     */
+    public String summary()
+    {
+        int size;
+        synchronized (entries)
+        {
+            size = entries.size();
+        }
+        return hits.get() + " hits, " + misses.get() + " misses, "
+            + size + " cached, " + invalidations.get() + " invalidated";
+    }
+
+
+    //~ Public Nested Classes .................................................
+
+    // ----------------------------------------------------------
+    /**
+     * One cached response.
+     */
+    public static class Entry
+    {
+        // ----------------------------------------------------------
+        /**
+         * Create a new entry.
+         * @param etag        The quoted entity tag of the body
+         * @param contentType The content type of the body
+         * @param body        The body
+         * @param entityNames The entities the body was built from
+         */
+        public Entry(String etag, String contentType, NSData body,
+            Set<String> entityNames)
+        {
+            this.etag = etag;
+            this.contentType = contentType;
+            this.body = body;
+            this.entityNames = entityNames;
+            this.created = System.currentTimeMillis();
+        }
+
+
+        //~ Instance/static variables .........................................
+
+        public final String etag;
+        public final String contentType;
+        public final NSData body;
+        public final Set<String> entityNames;
+        public final long created;
+    }
+
+
+    //~ Private Nested Classes ................................................
+
+    // ----------------------------------------------------------
+    private class LruMap
+        extends LinkedHashMap<String, Entry>
+    {
+        // ----------------------------------------------------------
+        public LruMap()
+        {
+            super(16, 0.75f, true);
+        }
+
+
+        // ----------------------------------------------------------
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest)
+        {
+            return size() > maxEntries;
+        }
+
+
+        //~ Instance/static variables .........................................
+
+        private static final long serialVersionUID = 1L;
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private final int maxEntries;
+    private final int maxEntryBytes;
+    private final long maxAgeMillis;
+
+    private final Map<String, Entry> entries = new LruMap();
+    private final AtomicLong generation = new AtomicLong();
+
+    // The generation each entity last changed in, and the last generation
+    // in which everything changed, both guarded by entries
+    private final Map<String, Long> changedAt = new HashMap<String, Long>();
+    private long allChangedAt = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private static final String PROPERTY_PREFIX = "ConditionalGetFilter.";
+    private static final String[] CHANGE_KEYS = {
+        EOObjectStore.InsertedKey,
+        EOObjectStore.UpdatedKey,
+        EOObjectStore.DeletedKey,
+        EOObjectStore.InvalidatedKey
+    };
+    private static final int ETAG_BYTES = 16;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    static Logger log = Logger.getLogger(ResponseCache.class);
+
+    // Created last, since the constructor uses the constants above
+    private static final ResponseCache instance = new ResponseCache();
+}
@@ -0,0 +1,354 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.core.http;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import com.webobjects.appserver.WOResponse;
+import com.webobjects.foundation.NSData;
+import com.webobjects.foundation.NSRange;
+
+//-------------------------------------------------------------------------
+/**
+ * An output stream for generating response bodies of unknown size.  Bytes
+ * are kept in memory up to a limit; beyond that, everything written so far
+ * is moved to a temporary file and the rest is appended there.  When the
+ * body is complete, {@link #sendTo(WOResponse)} hands it to the response
+ * without copying it again: small bodies become the response content
+ * directly, and spilled bodies are streamed from the temporary file, which
+ * is deleted once it has been sent.
+ * <p>
+ * A stream can also be told to replace a placeholder in any body that
+ * spills.  This lets a body that would be cached if it stayed small (such
+ * as one carrying {@link ConditionalGetFilter}'s session placeholder) be
+ * formatted just once, since a spilled body is never cached.
+ * </p>
+ *
+ * @author  Stephen Edwards
+ */
+public class SpillingOutputStream
+    extends OutputStream
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Creates a stream that keeps up to the given number of bytes in
+     * memory.
+     *
+     * @param memoryLimit the largest body to keep in memory
+     */
+    public SpillingOutputStream(int memoryLimit)
+    {
+        this(memoryLimit, null, null);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Creates a stream that keeps up to the given number of bytes in
+     * memory, and replaces every occurrence of a placeholder with another
+     * string if the body spills to a temporary file.  Bodies that stay in
+     * memory are left as written.
+     *
+     * @param memoryLimit the largest body to keep in memory
+     * @param placeholder the text to replace in a spilled body, or null
+     * @param replacement the text to put in its place
+     */
+    public SpillingOutputStream(
+        int memoryLimit, String placeholder, String replacement)
+    {
+        this.memoryLimit = Math.max(0, memoryLimit);
+        this.buffer = new byte[Math.min(this.memoryLimit, INITIAL_SIZE)];
+        if (placeholder != null && placeholder.length() > 0)
+        {
+            this.placeholder = placeholder.getBytes(UTF_8);
+            this.replacement = replacement.getBytes(UTF_8);
+        }
+    }
+
+
+    //~ Methods ...............................................................
+
+    // ----------------------------------------------------------
+    @Override
+    public void write(int b)
+        throws IOException
+    {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+
+    // ----------------------------------------------------------
+    @Override
+    public void write(byte[] bytes, int offset, int length)
+        throws IOException
+    {
+        if (closed)
+        {
+            throw new IOException("stream is closed");
+        }
+
+        if (file == null && count + length > memoryLimit)
+        {
+            spill();
+        }
+
+        if (file != null)
+        {
+            writeToFile(bytes, offset, length);
+        }
+        else
+        {
+            // In memory, so the count is no more than memoryLimit
+            int used = (int) count;
+            if (used + length > buffer.length)
+            {
+                byte[] bigger = new byte[Math.min(memoryLimit,
+                    Math.max(buffer.length * 2, used + length))];
+                System.arraycopy(buffer, 0, bigger, 0, used);
+                buffer = bigger;
+            }
+            System.arraycopy(bytes, offset, buffer, used, length);
+        }
+        count += length;
+    }
+
+
+    // ----------------------------------------------------------
+    @Override
+    public void flush()
+        throws IOException
+    {
+        if (fileStream != null)
+        {
+            fileStream.flush();
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    @Override
+    public void close()
+        throws IOException
+    {
+        if (!closed)
+        {
+            closed = true;
+            if (fileStream != null)
+            {
+                // Whatever partly matched the placeholder is left as is
+                if (matched > 0)
+                {
+                    fileStream.write(placeholder, 0, matched);
+                    fileCount += matched;
+                    matched = 0;
+                }
+                fileStream.close();
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the number of bytes written so far, before any placeholders
+     * were replaced.
+     *
+     * @return the byte count
+     */
+    public long size()
+    {
+        return count;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Determines whether the body has outgrown memory and been moved to a
+     * temporary file.
+     *
+     * @return true if the body is in a temporary file
+     */
+    public boolean isSpilled()
+    {
+        return file != null;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Closes this stream and makes its contents the body of a response.
+     *
+     * @param response the response
+     * @throws IOException if the temporary file cannot be reopened
+     */
+    public void sendTo(WOResponse response)
+        throws IOException
+    {
+        close();
+
+        if (file == null)
+        {
+            response.setContent(
+                new NSData(buffer, new NSRange(0, (int) count), true));
+        }
+        else
+        {
+            final File spilled = file;
+            file = null;
+            response.setContentStream(
+                new FileChannelInputStream(spilled) {
+                    @Override
+                    public void close()
+                        throws IOException
+                    {
+                        try
+                        {
+                            super.close();
+                        }
+                        finally
+                        {
+                            spilled.delete();
+                        }
+                    }
+                },
+                STREAM_BUFFER_SIZE, fileCount);
+        }
+        buffer = null;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Closes this stream and throws away its contents, deleting the
+     * temporary file if there is one.
+     */
+    public void discard()
+    {
+        try
+        {
+            close();
+        }
+        catch (IOException e)
+        {
+            // Ignore, since the contents are being thrown away anyway
+        }
+        if (file != null)
+        {
+            file.delete();
+            file = null;
+        }
+        buffer = null;
+    }
+
+
+    // ----------------------------------------------------------
+    private void spill()
+        throws IOException
+    {
+        file = File.createTempFile("response", ".tmp");
+        fileStream = new BufferedOutputStream(
+            new FileOutputStream(file), STREAM_BUFFER_SIZE);
+        writeToFile(buffer, 0, (int) count);
+        buffer = null;
+    }
+
+
+    // ----------------------------------------------------------
+    private void writeToFile(byte[] bytes, int offset, int length)
+        throws IOException
+    {
+        if (placeholder == null)
+        {
+            fileStream.write(bytes, offset, length);
+            fileCount += length;
+        }
+        else
+        {
+            for (int i = offset; i < offset + length; i++)
+            {
+                writeMatching(bytes[i]);
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Writes one byte to the temporary file, holding back bytes that might
+     * be the start of the placeholder until it is known whether they are.
+     */
+    private void writeMatching(byte b)
+        throws IOException
+    {
+        if (b == placeholder[matched])
+        {
+            matched++;
+            if (matched == placeholder.length)
+            {
+                fileStream.write(replacement);
+                fileCount += replacement.length;
+                matched = 0;
+            }
+        }
+        else if (matched == 0)
+        {
+            fileStream.write(b);
+            fileCount++;
+        }
+        else
+        {
+            // The held back bytes were not the placeholder, but a later
+            // one of them may still start it
+            int held = matched;
+            matched = 0;
+            fileStream.write(placeholder[0]);
+            fileCount++;
+            for (int i = 1; i < held; i++)
+            {
+                writeMatching(placeholder[i]);
+            }
+            writeMatching(b);
+        }
+    }
+
+
+    //~ Static/instance variables .............................................
+
+    private final int memoryLimit;
+    private byte[] buffer;
+    private long count;
+    private File file;
+    private OutputStream fileStream;
+    private long fileCount;
+    private boolean closed;
+    private byte[] placeholder;
+    private byte[] replacement;
+    private int matched;
+
+    private static final int INITIAL_SIZE = 8 * 1024;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+}
@@ -19,8 +19,6 @@
 
 package org.webcat.core.messaging;
 
-import java.io.File;
-import java.util.List;
 import org.webcat.core.Application;
 import org.webcat.core.User;
 import com.webobjects.foundation.NSArray;
@@ -59,12 +57,9 @@ public class FallbackMessageDispatcher
         NSArray<String> emails = message.userEmails();
         if (emails != null && emails.size() > 0)
         {
-            String title = message.title();
-            List<File> attachments = message.attachments();
-            for (String email : emails)
-            {
-                Application.sendSimpleEmail(email, title, body, attachments);
-            }
+            // Queue one copy for all recipients, rather than one per user
+            Application.sendIndividualEmails(
+                emails, message.title(), body, message.attachments());
         }
     }
 
@@ -0,0 +1,118 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+package org.webcat.core.messaging;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import org.apache.log4j.Logger;
+
+//-------------------------------------------------------------------------
+/**
+ * A mail sink that writes each message to a file in a local directory
+ * instead of sending it, so that outgoing mail can be inspected without
+ * an SMTP server.  Each file is written in RFC 822 format, preceded by
+ * an "X-Envelope-To" header listing the envelope recipients.  Enable it
+ * by setting the <code>mail.outbox.fileSink</code> property to the
+ * directory to use.
+ *
+ * @author  Stephen Edwards
+ */
+public class FileMailSink
+    implements IMailSink
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Create a new sink.
+     * @param directory The directory where messages will be written.
+     */
+    public FileMailSink(File directory)
+    {
+        this.directory = directory;
+    }
+
+
+    //~ Methods ...............................................................
+
+    // ----------------------------------------------------------
+    public void send(Message message, Address[] recipients)
+        throws MessagingException
+    {
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new MessagingException(
+                "cannot create mail sink directory " + directory);
+        }
+        File file = new File(directory, System.currentTimeMillis()
+            + "-" + counter.incrementAndGet() + ".eml");
+        try
+        {
+            OutputStream out =
+                new BufferedOutputStream(new FileOutputStream(file));
+            try
+            {
+                StringBuffer envelope = new StringBuffer("X-Envelope-To: ");
+                for (int i = 0; i < recipients.length; i++)
+                {
+                    if (i > 0)
+                    {
+                        envelope.append(", ");
+                    }
+                    envelope.append(recipients[i]);
+                }
+                envelope.append("\r\n");
+                out.write(envelope.toString().getBytes("UTF-8"));
+                message.writeTo(out);
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        catch (IOException e)
+        {
+            throw new MessagingException(
+                "cannot write message to " + file, e);
+        }
+        log.debug("wrote message to " + file);
+    }
+
+
+    // ----------------------------------------------------------
+    public void close()
+    {
+        // Nothing to release
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private final File directory;
+
+    private static final AtomicLong counter = new AtomicLong();
+    static Logger log = Logger.getLogger(FileMailSink.class);
+}
@@ -0,0 +1,57 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+package org.webcat.core.messaging;
+
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+
+//-------------------------------------------------------------------------
+/**
+ * Something that can deliver fully composed e-mail messages on behalf of
+ * the {@link MailOutbox}.  Each outbox worker thread owns its own sink, so
+ * implementations do not need to be thread-safe, and may keep a connection
+ * open between calls to {@link #send(Message, Address[])}.
+ *
+ * @author  Stephen Edwards
+ */
+public interface IMailSink
+{
+    //~ Methods ...............................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Deliver a message to the given envelope recipients, opening a
+     * connection first if necessary.
+     * @param message    The message to send.
+     * @param recipients The envelope recipients, which may differ from
+     *                   the recipients listed in the message headers.
+     * @throws MessagingException if delivery fails.
+     */
+    void send(Message message, Address[] recipients)
+        throws MessagingException;
+
+
+    // ----------------------------------------------------------
+    /**
+     * Release any connection held by this sink.  The sink may still be
+     * used afterward, and will reconnect on the next send.
+     */
+    void close();
+}
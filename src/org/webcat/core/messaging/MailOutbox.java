@@ -0,0 +1,765 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+package org.webcat.core.messaging;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import org.apache.log4j.Logger;
+import org.webcat.core.Application;
+import org.webcat.core.WCProperties;
+
+//-------------------------------------------------------------------------
+/**
+ * An asynchronous, persistent queue for outgoing e-mail.
+ * <p>
+ * Callers compose a message and {@link #enqueue(MimeMessage, String)} it,
+ * which writes the message to a spool directory and returns immediately.
+ * A fixed pool of worker threads drains the queue, with each worker
+ * keeping its own {@link IMailSink} (and so its own SMTP connection) open
+ * while there is work to do.  Queued messages that carry the same batch
+ * key are merged and sent as a single SMTP transaction with multiple
+ * envelope recipients.  Failed deliveries are retried with exponential
+ * backoff, and messages still in the spool directory when the application
+ * starts are re-queued, so mail is not lost across restarts.
+ * </p><p>
+ * The outbox is configured with these properties:
+ * </p>
+ * <ul>
+ * <li><code>mail.outbox.dir</code>: the spool directory (defaults to
+ *     <code>_MailOutbox</code> in the storage directory)</li>
+ * <li><code>mail.outbox.threads</code>: the number of worker threads
+ *     (default 2)</li>
+ * <li><code>mail.outbox.maxAttempts</code>: delivery attempts before a
+ *     message is abandoned (default 8)</li>
+ * <li><code>mail.outbox.fileSink</code>: if set, messages are written
+ *     to this directory by a {@link FileMailSink} instead of being sent
+ *     over SMTP</li>
+ * </ul>
+ *
+ * @author  Stephen Edwards
+ */
+public class MailOutbox
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Create a new outbox and start its workers.
+     * @param properties   The mail configuration properties.
+     * @param spoolDir     The directory used to persist queued messages,
+     *                     or null to keep them in memory only.
+     * @param fileSinkDir  If non-null, deliver messages to files in this
+     *                     directory instead of over SMTP.
+     * @param threads      The number of worker threads.
+     * @param maxAttempts  The number of delivery attempts for each message.
+     */
+    public MailOutbox(
+        WCProperties properties,
+        File spoolDir,
+        File fileSinkDir,
+        int threads,
+        int maxAttempts)
+    {
+        this.session = Session.getInstance(properties, null);
+        this.spoolDir = spoolDir;
+        this.fileSinkDir = fileSinkDir;
+        this.maxAttempts = Math.max(1, maxAttempts);
+
+        ThreadFactory factory = new ThreadFactory() {
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r,
+                    "MailOutbox-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        };
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(factory);
+        workers = Executors.newFixedThreadPool(Math.max(1, threads), factory);
+
+        if (spoolDir != null)
+        {
+            if (!spoolDir.isDirectory() && !spoolDir.mkdirs())
+            {
+                log.error("cannot create mail outbox directory " + spoolDir
+                    + ", queued mail will not survive a restart");
+            }
+            else
+            {
+                recoverSpooledMessages();
+            }
+        }
+
+        for (int i = 0; i < Math.max(1, threads); i++)
+        {
+            workers.execute(new Worker());
+        }
+    }
+
+
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Get the application-wide outbox, creating it from the application's
+     * configuration properties on first use.
+     * @return The shared outbox
+     */
+    public static synchronized MailOutbox outbox()
+    {
+        if (sharedOutbox == null)
+        {
+            WCProperties properties = Application.configurationProperties();
+            String spool = properties.getProperty("mail.outbox.dir");
+            File spoolDir = null;
+            if (spool != null && spool.length() > 0)
+            {
+                spoolDir = new File(spool);
+            }
+            else if (properties.getProperty("grader.submissiondir") != null)
+            {
+                spoolDir = new File(
+                    Application.storageDirectory(), "_MailOutbox");
+            }
+            String sink = properties.getProperty("mail.outbox.fileSink");
+            sharedOutbox = new MailOutbox(
+                properties,
+                spoolDir,
+                (sink == null || sink.length() == 0) ? null : new File(sink),
+                properties.intForKeyWithDefault("mail.outbox.threads", 2),
+                properties.intForKeyWithDefault("mail.outbox.maxAttempts", 8));
+        }
+        return sharedOutbox;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the mail session used to compose messages for this outbox.
+     * @return The session
+     */
+    public Session session()
+    {
+        return session;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Queue a message for delivery to all of the recipients in its
+     * headers (including Bcc recipients).
+     * @param message  The message to send
+     * @param batchKey A key identifying the message's content.  Queued
+     *                 messages with equal, non-null keys are assumed to
+     *                 be identical apart from their recipients, and may
+     *                 be merged into a single delivery.  Only use a key
+     *                 for messages whose recipients are all Bcc.
+     * @throws MessagingException if the message has no recipients or
+     *                 cannot be written to the spool directory
+     */
+    public void enqueue(MimeMessage message, String batchKey)
+        throws MessagingException
+    {
+        Address[] recipients = message.getAllRecipients();
+        if (recipients == null || recipients.length == 0)
+        {
+            throw new MessagingException("message has no recipients");
+        }
+        message.saveChanges();
+        OutgoingMail mail = new OutgoingMail(
+            message, recipients, batchKey, spool(message));
+        enqueued.incrementAndGet();
+        queue.offer(mail);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the number of messages waiting for delivery, including those
+     * waiting to be retried.
+     * @return The queue depth
+     */
+    public int queueDepth()
+    {
+        return queue.size() + waitingForRetry.get();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the number of messages enqueued since startup.
+     * @return The number of messages
+     */
+    public long enqueuedCount()
+    {
+        return enqueued.get();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the number of messages delivered since startup.
+     * @return The number of messages
+     */
+    public long sentCount()
+    {
+        return sent.get();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the number of messages abandoned since startup.
+     * @return The number of messages
+     */
+    public long failedCount()
+    {
+        return failed.get();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the number of delivery retries since startup.
+     * @return The number of retries
+     */
+    public long retryCount()
+    {
+        return retries.get();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the number of SMTP transactions used since startup.  This is
+     * less than {@link #sentCount()} when messages have been batched.
+     * @return The number of transactions
+     */
+    public long deliveryCount()
+    {
+        return deliveries.get();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the mean time between enqueueing and delivering a message.
+     * @return The mean latency, in milliseconds
+     */
+    public long meanLatencyMillis()
+    {
+        long count = sent.get();
+        return count == 0 ? 0 : totalLatency.get() / count;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the longest time between enqueueing and delivering a message.
+     * @return The maximum latency, in milliseconds
+     */
+    public long maxLatencyMillis()
+    {
+        return maxLatency.get();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Produce a compact one-line summary of the outbox metrics.
+     * @return The summary
+     */
+    public String summary()
+    {
+        return queueDepth() + " queued, " + sentCount() + " sent in "
+            + deliveryCount() + " deliveries, " + retryCount()
+            + " retries, " + failedCount() + " failed, latency avg "
+            + meanLatencyMillis() + "ms/max " + maxLatencyMillis() + "ms";
+    }
+
+
+    //~ Private Classes .......................................................
+
+    // ----------------------------------------------------------
+    /**
+     * A single queued message and its delivery state.
+     */
+    private static class OutgoingMail
+    {
+        public OutgoingMail(MimeMessage message, Address[] recipients,
+            String batchKey, File spoolFile)
+        {
+            this.message = message;
+            this.recipients = recipients;
+            this.batchKey = batchKey;
+            this.spoolFile = spoolFile;
+        }
+
+        public final MimeMessage message;
+        public Address[] recipients;
+        public final String batchKey;
+        public File spoolFile;
+        public final long enqueuedAt = System.currentTimeMillis();
+        public int attempts = 0;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Drains the queue using its own mail sink, which is closed whenever
+     * the queue has been idle for a while.
+     */
+    private class Worker
+        implements Runnable
+    {
+        public void run()
+        {
+            // Work around the JAF/Mail issue that prevents mail from being
+            // sent when the context class loader is not the application's
+            Thread.currentThread().setContextClassLoader(
+                Application.class.getClassLoader());
+            IMailSink sink = (fileSinkDir == null)
+                ? new SmtpMailSink(session)
+                : new FileMailSink(fileSinkDir);
+            try
+            {
+                while (!Thread.currentThread().isInterrupted())
+                {
+                    OutgoingMail first =
+                        queue.poll(IDLE_SECONDS, TimeUnit.SECONDS);
+                    if (first == null)
+                    {
+                        sink.close();
+                    }
+                    else
+                    {
+                        deliver(sink, collectBatch(first));
+                    }
+                }
+            }
+            catch (InterruptedException e)
+            {
+                // Shutting down
+            }
+            finally
+            {
+                sink.close();
+            }
+        }
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Remove any other queued messages with the same batch key as the
+     * given one, up to the batch recipient limit.
+     */
+    private List<OutgoingMail> collectBatch(OutgoingMail first)
+    {
+        List<OutgoingMail> batch = new ArrayList<OutgoingMail>();
+        batch.add(first);
+        if (first.batchKey != null)
+        {
+            int recipientCount = first.recipients.length;
+            Iterator<OutgoingMail> candidates = queue.iterator();
+            while (candidates.hasNext()
+                && recipientCount < MAX_BATCH_RECIPIENTS)
+            {
+                OutgoingMail candidate = candidates.next();
+                if (first.batchKey.equals(candidate.batchKey)
+                    && queue.remove(candidate))
+                {
+                    batch.add(candidate);
+                    recipientCount += candidate.recipients.length;
+                }
+            }
+        }
+        return batch;
+    }
+
+
+    // ----------------------------------------------------------
+    private void deliver(IMailSink sink, List<OutgoingMail> batch)
+    {
+        Set<Address> recipients = new LinkedHashSet<Address>();
+        for (OutgoingMail mail : batch)
+        {
+            recipients.addAll(Arrays.asList(mail.recipients));
+        }
+        OutgoingMail first = batch.get(0);
+        try
+        {
+            sink.send(first.message,
+                recipients.toArray(new Address[recipients.size()]));
+            deliveries.incrementAndGet();
+            for (OutgoingMail mail : batch)
+            {
+                completed(mail);
+            }
+        }
+        catch (SendFailedException e)
+        {
+            Address[] invalid = e.getInvalidAddresses();
+            if (invalid != null && invalid.length > 0)
+            {
+                log.error("dropping invalid recipients "
+                    + Arrays.asList(invalid) + " for message: "
+                    + subjectOf(first));
+            }
+            Address[] unsent = e.getValidUnsentAddresses();
+            Address[] sentTo = e.getValidSentAddresses();
+            if (sentTo != null && sentTo.length > 0)
+            {
+                deliveries.incrementAndGet();
+            }
+            Set<Address> remaining = new LinkedHashSet<Address>();
+            if (unsent != null)
+            {
+                remaining.addAll(Arrays.asList(unsent));
+            }
+            for (OutgoingMail mail : batch)
+            {
+                List<Address> left = new ArrayList<Address>();
+                for (Address address : mail.recipients)
+                {
+                    if (remaining.contains(address))
+                    {
+                        left.add(address);
+                    }
+                }
+                if (left.isEmpty())
+                {
+                    completed(mail);
+                }
+                else
+                {
+                    if (left.size() < mail.recipients.length)
+                    {
+                        mail.recipients =
+                            left.toArray(new Address[left.size()]);
+                        respool(mail);
+                    }
+                    retry(mail, e);
+                }
+            }
+        }
+        catch (MessagingException e)
+        {
+            // The connection may be broken, so start over next time
+            sink.close();
+            for (OutgoingMail mail : batch)
+            {
+                retry(mail, e);
+            }
+        }
+        catch (RuntimeException e)
+        {
+            sink.close();
+            for (OutgoingMail mail : batch)
+            {
+                retry(mail, e);
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private void completed(OutgoingMail mail)
+    {
+        long latency = System.currentTimeMillis() - mail.enqueuedAt;
+        sent.incrementAndGet();
+        totalLatency.addAndGet(latency);
+        long max = maxLatency.get();
+        while (latency > max && !maxLatency.compareAndSet(max, latency))
+        {
+            max = maxLatency.get();
+        }
+        unspool(mail);
+    }
+
+
+    // ----------------------------------------------------------
+    private void retry(final OutgoingMail mail, Exception cause)
+    {
+        mail.attempts++;
+        if (mail.attempts >= maxAttempts)
+        {
+            failed.incrementAndGet();
+            log.error("abandoning message after " + mail.attempts
+                + " attempts: " + subjectOf(mail) + ", to "
+                + Arrays.asList(mail.recipients), cause);
+            unspool(mail);
+            return;
+        }
+
+        long delay = Math.min(MAX_RETRY_DELAY_SECONDS,
+            FIRST_RETRY_DELAY_SECONDS << (mail.attempts - 1));
+        String msg = cause.getMessage();
+        if (msg != null && msg.contains("java.net.UnknownHostException:"))
+        {
+            log.warn("attempt " + mail.attempts + " failed, retrying in "
+                + delay + "s: " + cause);
+        }
+        else
+        {
+            log.warn("attempt " + mail.attempts + " failed, retrying in "
+                + delay + "s: " + subjectOf(mail), cause);
+        }
+        retries.incrementAndGet();
+        waitingForRetry.incrementAndGet();
+        retryScheduler.schedule(new Runnable() {
+            public void run()
+            {
+                waitingForRetry.decrementAndGet();
+                queue.offer(mail);
+            }
+        }, delay, TimeUnit.SECONDS);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Write a message to the spool directory, using a temporary name
+     * and a rename so that a partially written file is never recovered.
+     */
+    private File spool(MimeMessage message)
+        throws MessagingException
+    {
+        if (spoolDir == null || !spoolDir.isDirectory())
+        {
+            return null;
+        }
+        String name = System.currentTimeMillis() + "-"
+            + spoolCount.incrementAndGet();
+        File temp = new File(spoolDir, name + ".tmp");
+        File file = new File(spoolDir, name + SPOOL_SUFFIX);
+        try
+        {
+            OutputStream out =
+                new BufferedOutputStream(new FileOutputStream(temp));
+            try
+            {
+                message.writeTo(out);
+            }
+            finally
+            {
+                out.close();
+            }
+            if (!temp.renameTo(file))
+            {
+                throw new IOException("cannot rename " + temp + " to "
+                    + file);
+            }
+        }
+        catch (IOException e)
+        {
+            temp.delete();
+            log.error("cannot spool outgoing message, sending from memory",
+                e);
+            return null;
+        }
+        return file;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Replace a message's spool file with one that names only its
+     * remaining recipients, so that a restart does not send it again to
+     * the recipients who already have it.
+     */
+    private void respool(OutgoingMail mail)
+    {
+        if (mail.spoolFile == null)
+        {
+            return;
+        }
+        try
+        {
+            MimeMessage copy = new MimeMessage(mail.message);
+            copy.setHeader(
+                RECIPIENTS_HEADER, InternetAddress.toString(mail.recipients));
+            File file = spool(copy);
+            if (file != null)
+            {
+                unspool(mail);
+                mail.spoolFile = file;
+            }
+        }
+        catch (MessagingException e)
+        {
+            log.error("cannot update spooled message " + mail.spoolFile
+                + "; after a restart, it will be sent to all of its "
+                + "original recipients again", e);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private void unspool(OutgoingMail mail)
+    {
+        if (mail.spoolFile != null && !mail.spoolFile.delete()
+            && mail.spoolFile.exists())
+        {
+            log.error("cannot remove spooled message " + mail.spoolFile);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Re-queue any messages left in the spool directory by a previous run.
+     */
+    private void recoverSpooledMessages()
+    {
+        File[] files = spoolDir.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name)
+            {
+                return name.endsWith(SPOOL_SUFFIX);
+            }
+        });
+        if (files == null || files.length == 0)
+        {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files)
+        {
+            try
+            {
+                InputStream in =
+                    new BufferedInputStream(new FileInputStream(file));
+                try
+                {
+                    MimeMessage message = new MimeMessage(session, in);
+                    Address[] recipients;
+                    String remaining =
+                        message.getHeader(RECIPIENTS_HEADER, ",");
+                    if (remaining != null)
+                    {
+                        // Left by a partially successful delivery
+                        recipients = InternetAddress.parse(remaining);
+                        message.removeHeader(RECIPIENTS_HEADER);
+                    }
+                    else
+                    {
+                        recipients = message.getAllRecipients();
+                    }
+                    if (recipients == null || recipients.length == 0)
+                    {
+                        log.error("discarding spooled message with no "
+                            + "recipients: " + file);
+                        file.delete();
+                        continue;
+                    }
+                    queue.offer(
+                        new OutgoingMail(message, recipients, null, file));
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+            catch (Exception e)
+            {
+                log.error("cannot recover spooled message " + file, e);
+            }
+        }
+        log.info("recovered " + queue.size() + " queued mail messages from "
+            + spoolDir);
+    }
+
+
+    // ----------------------------------------------------------
+    private static String subjectOf(OutgoingMail mail)
+    {
+        try
+        {
+            return mail.message.getSubject();
+        }
+        catch (MessagingException e)
+        {
+            return "<unknown subject>";
+        }
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private final Session session;
+    private final File spoolDir;
+    private final File fileSinkDir;
+    private final int maxAttempts;
+    private final ScheduledExecutorService retryScheduler;
+    private final ExecutorService workers;
+    private final LinkedBlockingQueue<OutgoingMail> queue =
+        new LinkedBlockingQueue<OutgoingMail>();
+
+    private final AtomicInteger threadCount = new AtomicInteger();
+    private final AtomicInteger waitingForRetry = new AtomicInteger();
+    private final AtomicLong spoolCount = new AtomicLong();
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong deliveries = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    private static MailOutbox sharedOutbox;
+
+    private static final String SPOOL_SUFFIX = ".eml";
+    private static final String RECIPIENTS_HEADER =
+        "X-WebCAT-Outbox-Recipients";
+    private static final int IDLE_SECONDS = 30;
+    private static final int MAX_BATCH_RECIPIENTS = 50;
+    private static final long FIRST_RETRY_DELAY_SECONDS = 30;
+    private static final long MAX_RETRY_DELAY_SECONDS = 60 * 60;
+
+    static Logger log = Logger.getLogger(MailOutbox.class);
+}
@@ -0,0 +1,95 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+package org.webcat.core.messaging;
+
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import org.apache.log4j.Logger;
+
+//-------------------------------------------------------------------------
+/**
+ * A mail sink that delivers messages over SMTP, reusing a single
+ * connected {@link Transport} for consecutive messages instead of opening
+ * a new connection for each one.
+ *
+ * @author  Stephen Edwards
+ */
+public class SmtpMailSink
+    implements IMailSink
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Create a new sink.
+     * @param session The mail session providing the SMTP settings.
+     */
+    public SmtpMailSink(Session session)
+    {
+        this.session = session;
+    }
+
+
+    //~ Methods ...............................................................
+
+    // ----------------------------------------------------------
+    public void send(Message message, Address[] recipients)
+        throws MessagingException
+    {
+        if (transport == null || !transport.isConnected())
+        {
+            close();
+            transport = session.getTransport("smtp");
+            transport.connect();
+            log.debug("opened SMTP connection");
+        }
+        message.saveChanges();
+        transport.sendMessage(message, recipients);
+    }
+
+
+    // ----------------------------------------------------------
+    public void close()
+    {
+        if (transport != null)
+        {
+            try
+            {
+                transport.close();
+                log.debug("closed SMTP connection");
+            }
+            catch (MessagingException e)
+            {
+                log.debug("error closing SMTP connection", e);
+            }
+            transport = null;
+        }
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private final Session session;
+    private Transport transport;
+
+    static Logger log = Logger.getLogger(SmtpMailSink.class);
+}
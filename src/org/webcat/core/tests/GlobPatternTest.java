@@ -0,0 +1,290 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.core.tests;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.regex.Pattern;
+import org.webcat.core.FilePattern;
+import org.webcat.core.GlobPattern;
+import org.webcat.core.GlobSet;
+import org.webcat.core.PathMatcher;
+
+// -------------------------------------------------------------------------
+/**
+ *  Test class for GlobPattern, PathMatcher, FilePattern, and GlobSet.
+ *  Wildcards used to be matched by translating them into regular
+ *  expressions, so most of these cases compare the compiled matchers
+ *  against that translation, over both hand-picked and randomly generated
+ *  patterns and paths.
+ *
+ *  @author  Stephen Edwards
+ */
+public class GlobPatternTest
+extends com.codefab.wounittest.WOUTTestCase
+{
+    //~ Test cases ............................................................
+
+    public void testLiteral()
+    {
+        GlobPattern glob = GlobPattern.compile( "Foo.java" );
+        assertTrue( glob.isLiteral() );
+        assertTrue( glob.matches( "Foo.java" ) );
+        assertFalse( glob.matches( "FooXjava" ) );
+        assertFalse( glob.matches( "Foo.jav" ) );
+    }
+
+    public void testStar()
+    {
+        GlobPattern glob = GlobPattern.compile( "*.java" );
+        assertFalse( glob.isLiteral() );
+        assertTrue( glob.matches( ".java" ) );
+        assertTrue( glob.matches( "Foo.java" ) );
+        assertTrue( glob.matches( "a.b.java" ) );
+        assertFalse( glob.matches( "Foo.jav" ) );
+        assertFalse( glob.matches( "line\nbreak.java" ) );
+    }
+
+    public void testQuestionMarkIsOptional()
+    {
+        GlobPattern glob = GlobPattern.compile( "a?c" );
+        assertTrue( glob.matches( "abc" ) );
+        assertTrue( glob.matches( "ac" ) );
+        assertFalse( glob.matches( "abbc" ) );
+    }
+
+    public void testRegexCharactersAreLiteral()
+    {
+        GlobPattern glob = GlobPattern.compile( "a+(b)[c]$\\" );
+        assertTrue( glob.matches( "a+(b)[c]$\\" ) );
+        assertFalse( glob.matches( "aa(b)c$\\" ) );
+    }
+
+    public void testSupplementaryCharacters()
+    {
+        // A surrogate pair is one character, as it was to the regex "."
+        String face = new String( Character.toChars( 0x1F600 ) );
+        assertTrue( GlobPattern.compile( "a?b" ).matches( "a" + face + "b" ) );
+        assertTrue( GlobPattern.compile( "?" ).matches( face ) );
+        assertFalse( GlobPattern.compile( "?" ).matches( face + face ) );
+        assertTrue( GlobPattern.compile( "*" + face ).matches( "x" + face ) );
+        assertFalse( GlobPattern.compile( face ).matches( "x" ) );
+        assertTrue( legacyRegex( "a?b" ).matcher( "a" + face + "b" )
+            .matches() );
+    }
+
+    public void testCompileIsCached()
+    {
+        assertSame( GlobPattern.compile( "*.txt" ),
+                    GlobPattern.compile( "*.txt" ) );
+    }
+
+    public void testGlobPatternsAgainstRegex()
+    {
+        Random random = new Random( SEED );
+        for ( int i = 0; i < TRIALS; i++ )
+        {
+            String pattern = randomComponent( random, true );
+            GlobPattern glob = GlobPattern.compile( pattern );
+            Pattern regex = legacyRegex( pattern );
+            for ( int j = 0; j < 20; j++ )
+            {
+                String text = randomComponent( random, false );
+                assertEquals( pattern + " vs. " + text,
+                              regex.matcher( text ).matches(),
+                              glob.matches( text ) );
+            }
+        }
+    }
+
+    public void testFilePatternAgainstRegex()
+    {
+        Random random = new Random( SEED );
+        for ( int i = 0; i < TRIALS; i++ )
+        {
+            String pattern = randomPath( random, true );
+            FilePattern filePattern = new FilePattern( pattern );
+            Pattern regex = legacyRegex( pattern );
+            for ( int j = 0; j < 20; j++ )
+            {
+                String path = randomPath( random, false );
+                assertEquals( pattern + " vs. " + path,
+                              regex.matcher( path ).matches(),
+                              filePattern.matches( path ) );
+            }
+        }
+    }
+
+    public void testPathMatcher()
+    {
+        assertTrue( new PathMatcher( "Foo.java" ).matches( "src/Foo.java" ) );
+        assertTrue( new PathMatcher( "Foo.java" ).matches( "Foo.java" ) );
+        assertFalse( new PathMatcher( "/Foo.java" ).matches( "/a/Foo.java" ) );
+        assertTrue( new PathMatcher( "/src/*.java" ).matches( "/src/A.java" ) );
+        assertFalse(
+            new PathMatcher( "/src/*.java" ).matches( "/src/a/A.java" ) );
+        assertTrue(
+            new PathMatcher( "/src/**/*.java" ).matches( "/src/a/A.java" ) );
+        assertTrue(
+            new PathMatcher( "/src/**/*.java" ).matches( "/src/A.java" ) );
+        assertTrue( new PathMatcher( "/src/*" ).matches( "/src/" ) );
+        assertFalse( new PathMatcher( "/src/*" ).matches( "/src/a/" ) );
+        assertFalse( new PathMatcher( "/src/" ).matches( "/src" ) );
+    }
+
+    public void testGlobSet()
+    {
+        GlobSet set = new GlobSet( "*.java", "/src/**", "/doc/*", "*.txt" );
+        assertEquals( 4, set.size() );
+        assertEquals( "/src/**", set.pattern( 1 ) );
+
+        BitSet matches = set.matching( "/src/a/Foo.java" );
+        assertEquals( 2, matches.cardinality() );
+        assertTrue( matches.get( 0 ) );
+        assertTrue( matches.get( 1 ) );
+
+        assertTrue( set.matchesAny( "/doc/readme" ) );
+        assertFalse( set.matchesAny( "/doc/a/readme" ) );
+        assertTrue( set.matching( "/doc/a/readme" ).isEmpty() );
+    }
+
+    public void testGlobSetAgainstPathMatcher()
+    {
+        Random random = new Random( SEED );
+        for ( int i = 0; i < TRIALS / 10; i++ )
+        {
+            String[] patterns = new String[1 + random.nextInt( 12 )];
+            PathMatcher[] matchers = new PathMatcher[patterns.length];
+            for ( int p = 0; p < patterns.length; p++ )
+            {
+                patterns[p] = randomPath( random, true );
+                matchers[p] = new PathMatcher( patterns[p] );
+            }
+
+            GlobSet set = new GlobSet( patterns );
+            for ( int j = 0; j < 50; j++ )
+            {
+                String path = randomPath( random, false );
+                BitSet matches = set.matching( path );
+                for ( int p = 0; p < patterns.length; p++ )
+                {
+                    assertEquals( patterns[p] + " vs. " + path,
+                                  matchers[p].matches( path ),
+                                  matches.get( p ) );
+                }
+            }
+        }
+    }
+
+
+    //~ Private methods .......................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Translates a wildcard pattern into a regular expression the way
+     * PathMatcher and FilePattern used to, except that whole code points
+     * are escaped rather than single {@code char}s.  This difference is
+     * deliberate: the old code escaped each half of a surrogate pair
+     * separately, so a supplementary character in a pattern never matched
+     * anything, and GlobPattern fixes that instead of reproducing it.
+     * Patterns without supplementary characters translate exactly as
+     * before.
+     */
+    private static Pattern legacyRegex( String pattern )
+    {
+        StringBuffer buffer = new StringBuffer();
+        for ( int i = 0; i < pattern.length(); )
+        {
+            int c = pattern.codePointAt( i );
+            i += Character.charCount( c );
+            if ( !Character.isLetterOrDigit( c ) )
+            {
+                if ( c == '?' || c == '*' )
+                {
+                    buffer.append( '.' );
+                }
+                else
+                {
+                    buffer.append( '\\' );
+                }
+            }
+            buffer.appendCodePoint( c );
+        }
+        return Pattern.compile( buffer.toString() );
+    }
+
+
+    // ----------------------------------------------------------
+    private static String randomComponent( Random random, boolean wildcards )
+    {
+        String pieces = wildcards ? PATTERN_PIECES : TEXT_PIECES;
+        int count = pieces.codePointCount( 0, pieces.length() );
+        StringBuffer buffer = new StringBuffer();
+        int length = random.nextInt( 5 );
+        for ( int i = 0; i < length; i++ )
+        {
+            buffer.appendCodePoint( pieces.codePointAt(
+                pieces.offsetByCodePoints( 0, random.nextInt( count ) ) ) );
+        }
+        return buffer.toString();
+    }
+
+
+    // ----------------------------------------------------------
+    private static String randomPath( Random random, boolean wildcards )
+    {
+        StringBuffer buffer = new StringBuffer();
+        if ( random.nextInt( 3 ) == 0 )
+        {
+            buffer.append( '/' );
+        }
+        int length = random.nextInt( 5 );
+        for ( int i = 0; i < length; i++ )
+        {
+            if ( i > 0 )
+            {
+                buffer.append( '/' );
+            }
+            if ( wildcards && random.nextInt( 4 ) == 0 )
+            {
+                buffer.append( "**" );
+            }
+            else
+            {
+                buffer.append( randomComponent( random, wildcards ) );
+            }
+        }
+        if ( random.nextInt( 4 ) == 0 )
+        {
+            buffer.append( '/' );
+        }
+        return buffer.toString();
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private static final long SEED = 20261018L;
+    private static final int TRIALS = 2000;
+
+    private static final String TEXT_PIECES =
+        "aab..x$ \n\u00e9\ud83d\ude00";
+    private static final String PATTERN_PIECES = TEXT_PIECES + "**??";
+}
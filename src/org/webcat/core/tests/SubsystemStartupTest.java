@@ -0,0 +1,258 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.core.tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.webcat.core.Subsystem;
+import org.webcat.core.SubsystemStartup;
+import com.webobjects.foundation.NSArray;
+
+// -------------------------------------------------------------------------
+/**
+ *  Test class for SubsystemStartup, using stub subsystems that record when
+ *  they are initialized and started instead of touching the database.
+ *
+ *  @author  Stephen Edwards
+ */
+public class SubsystemStartupTest
+extends com.codefab.wounittest.WOUTTestCase
+{
+    //~ Test case setup .......................................................
+
+    // ----------------------------------------------------------
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        events = Collections.synchronizedList(new ArrayList<String>());
+        prerequisites = new HashMap<String, List<String>>();
+    }
+
+
+    //~ Test cases ............................................................
+
+    public void testOneThreadKeepsOrder()
+    {
+        NSArray<Subsystem> subsystems = subsystems( "Core", "A", "B" );
+        dependsOn( "A", "Core" );
+        dependsOn( "B", "Core" );
+
+        SubsystemStartup startup =
+            new SubsystemStartup( subsystems, prerequisites, 1 );
+        startup.initAll();
+        startup.startAll();
+
+        assertEquals( Arrays.asList(
+            "begin init Core", "end init Core",
+            "begin init A", "end init A",
+            "begin init B", "end init B",
+            "start Core", "start A", "start B" ), events );
+        for (Subsystem subsystem : subsystems)
+        {
+            assertTrue( subsystem.isInitialized() );
+            assertTrue( subsystem.hasStarted() );
+        }
+    }
+
+    public void testThreadsRespectPrerequisites()
+    {
+        NSArray<Subsystem> subsystems =
+            subsystems( "Core", "A", "B", "C", "D" );
+        dependsOn( "A", "Core" );
+        dependsOn( "B", "Core" );
+        dependsOn( "C", "A", "B" );
+        dependsOn( "D", "Core", "C" );
+
+        SubsystemStartup startup =
+            new SubsystemStartup( subsystems, prerequisites, 4 );
+        startup.initAll();
+        startup.startAll();
+
+        assertBefore( "end init Core", "begin init A" );
+        assertBefore( "end init Core", "begin init B" );
+        assertBefore( "end init A", "begin init C" );
+        assertBefore( "end init B", "begin init C" );
+        assertBefore( "end init C", "begin init D" );
+        assertBefore( "start C", "start D" );
+        for (SubsystemStartup.Timing timing : startup.timings())
+        {
+            assertTrue( timing.initMillis() >= 0 );
+            assertTrue( timing.startMillis() >= 0 );
+        }
+    }
+
+    public void testCycleIsReported()
+    {
+        NSArray<Subsystem> subsystems = subsystems( "Core", "A", "B", "C" );
+        dependsOn( "A", "Core", "C" );
+        dependsOn( "B", "A" );
+        dependsOn( "C", "B" );
+
+        try
+        {
+            new SubsystemStartup( subsystems, prerequisites, 4 );
+            fail( "cycle not detected" );
+        }
+        catch (IllegalStateException e)
+        {
+            String message = e.getMessage();
+            assertTrue( message, message.startsWith( "cyclic" ) );
+            assertTrue( message, message.indexOf( "A -> C -> B -> A" ) >= 0
+                || message.indexOf( "B -> A -> C -> B" ) >= 0
+                || message.indexOf( "C -> B -> A -> C" ) >= 0 );
+            assertTrue( message, message.indexOf( "Core" ) < 0 );
+        }
+        assertTrue( events.isEmpty() );
+    }
+
+    public void testFailureStopsDependents()
+    {
+        NSArray<Subsystem> subsystems = subsystems( "Core", "A", "B" );
+        dependsOn( "A", "Core" );
+        dependsOn( "B", "Core" );
+        failing = "Core";
+
+        try
+        {
+            new SubsystemStartup( subsystems, prerequisites, 4 ).initAll();
+            fail( "failure not reported" );
+        }
+        catch (IllegalStateException e)
+        {
+            String message = e.getMessage();
+            assertTrue( message,
+                message.startsWith( "subsystem Core failed to initialize" ) );
+            assertTrue( message, message.endsWith( "[A, B]" ) );
+        }
+        assertEquals( Arrays.asList( "begin init Core" ), events );
+        for (Subsystem subsystem : subsystems)
+        {
+            assertFalse( subsystem.isInitialized() );
+        }
+    }
+
+    public void testFailureOnOneThreadStopsLaterSubsystems()
+    {
+        NSArray<Subsystem> subsystems = subsystems( "Core", "A", "B" );
+        failing = "A";
+
+        try
+        {
+            new SubsystemStartup( subsystems, prerequisites, 1 ).initAll();
+            fail( "failure not reported" );
+        }
+        catch (IllegalStateException e)
+        {
+            String message = e.getMessage();
+            assertTrue( message,
+                message.startsWith( "subsystem A failed to initialize" ) );
+            assertTrue( message, message.endsWith( "[B]" ) );
+        }
+        assertTrue( subsystems.objectAtIndex( 0 ).isInitialized() );
+        assertFalse( subsystems.objectAtIndex( 2 ).isInitialized() );
+    }
+
+
+    //~ Private methods .......................................................
+
+    // ----------------------------------------------------------
+    private NSArray<Subsystem> subsystems(String ... names)
+    {
+        Subsystem[] result = new Subsystem[names.length];
+        for (int i = 0; i < names.length; i++)
+        {
+            result[i] = new StubSubsystem( names[i] );
+        }
+        return new NSArray<Subsystem>( result );
+    }
+
+
+    // ----------------------------------------------------------
+    private void dependsOn(String name, String ... names)
+    {
+        prerequisites.put( name, Arrays.asList( names ) );
+    }
+
+
+    // ----------------------------------------------------------
+    private void assertBefore(String first, String second)
+    {
+        int firstIndex = events.indexOf( first );
+        int secondIndex = events.indexOf( second );
+        assertTrue( first + " missing from " + events, firstIndex >= 0 );
+        assertTrue( second + " missing from " + events, secondIndex >= 0 );
+        assertTrue( first + " not before " + second + " in " + events,
+            firstIndex < secondIndex );
+    }
+
+
+    //~ Private classes .......................................................
+
+    // ----------------------------------------------------------
+    private class StubSubsystem
+        extends Subsystem
+    {
+        // ----------------------------------------------------------
+        public StubSubsystem(String name)
+        {
+            setName( name );
+        }
+
+
+        // ----------------------------------------------------------
+        public void init()
+        {
+            events.add( "begin init " + name() );
+            if (name().equals( failing ))
+            {
+                throw new RuntimeException( name() + " is broken" );
+            }
+            try
+            {
+                // Long enough for other threads to overtake, if they could
+                Thread.sleep( 20 );
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            events.add( "end init " + name() );
+        }
+
+
+        // ----------------------------------------------------------
+        public void start()
+        {
+            events.add( "start " + name() );
+        }
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private List<String> events;
+    private Map<String, List<String>> prerequisites;
+    private String failing;
+}
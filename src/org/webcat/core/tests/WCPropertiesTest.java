@@ -87,6 +87,111 @@ extends com.codefab.wounittest.WOUTTestCase
                       properties.getProperty( "no.value" ) );
     }
 
+    public void testChangeReachesDependents()
+    {
+        assertEquals( "value1 hello value1 value2",
+                      properties.getProperty( "key3" ) );
+        properties.setProperty( "key1", "new1" );
+        assertEquals( "new1 value2", properties.getProperty( "key2" ) );
+        assertEquals( "new1 hello new1 value2",
+                      properties.getProperty( "key3" ) );
+    }
+
+    public void testRemoveReachesDependents()
+    {
+        assertEquals( "value1 value2", properties.getProperty( "key2" ) );
+        properties.remove( "key1" );
+        assertEquals( "${key1} value2", properties.getProperty( "key2" ) );
+    }
+
+    public void testUndefinedKeyBecomesDefined()
+    {
+        assertEquals( "${undefined.key}",
+                      properties.getProperty( "no.value" ) );
+        properties.setProperty( "undefined.key", "defined" );
+        assertEquals( "defined", properties.getProperty( "no.value" ) );
+    }
+
+    public void testDefaultStringKey()
+    {
+        assertNull( properties.getProperty( "key4" ) );
+        properties.setProperty( "key4.Default", "fallback" );
+        assertEquals( "fallback", properties.getProperty( "key4" ) );
+        properties.setProperty( "key4", "${key1}" );
+        assertEquals( "value1", properties.getProperty( "key4" ) );
+    }
+
+    public void testChangeInDefaults()
+    {
+        java.util.Properties defaults = new java.util.Properties();
+        defaults.setProperty( "base", "one" );
+        WCProperties child = new WCProperties( defaults );
+        child.setProperty( "derived", "${base} two" );
+        assertEquals( "one two", child.getProperty( "derived" ) );
+        defaults.setProperty( "base", "uno" );
+        assertEquals( "uno two", child.getProperty( "derived" ) );
+        defaults.remove( "base" );
+        assertEquals( "${base} two", child.getProperty( "derived" ) );
+    }
+
+    public void testChangeInParent()
+    {
+        WCProperties child = new WCProperties( properties );
+        assertEquals( "value1 value2", child.getProperty( "key2" ) );
+        properties.setProperty( "key1", "new1" );
+        assertEquals( "new1 value2", child.getProperty( "key2" ) );
+        child.setProperty( "key5", "${key1}!" );
+        assertEquals( "new1!", child.getProperty( "key5" ) );
+        child.setProperty( "key1", "child1" );
+        assertEquals( "child1!", child.getProperty( "key5" ) );
+    }
+
+    public void testTypedValuesFollowChanges()
+    {
+        properties.setProperty( "count", "5" );
+        properties.setProperty( "flag", "${enabled}" );
+        properties.setProperty( "enabled", "true" );
+        assertEquals( 5, properties.intForKeyWithDefault( "count", 0 ) );
+        assertEquals( 5L, properties.longForKey( "count" ) );
+        assertTrue( properties.booleanForKey( "flag" ) );
+        properties.setProperty( "count", "7" );
+        properties.setProperty( "enabled", "false" );
+        assertEquals( 7, properties.intForKeyWithDefault( "count", 0 ) );
+        assertEquals( 7L, properties.longForKey( "count" ) );
+        assertFalse( properties.booleanForKey( "flag" ) );
+        assertEquals( 3, properties.intForKeyWithDefault( "missing", 3 ) );
+        assertEquals( 4, properties.intForKeyWithDefault( "missing", 4 ) );
+    }
+
+    public void testArrayFollowsChanges()
+    {
+        properties.setProperty( "list", "(${key1}, b)" );
+        assertEquals( "value1", properties.arrayForKey( "list" )
+                      .objectAtIndex( 0 ) );
+        properties.setProperty( "key1", "a" );
+        assertEquals( "a", properties.arrayForKey( "list" )
+                      .objectAtIndex( 0 ) );
+    }
+
+    public void testAddPropertiesFromDictionary()
+    {
+        assertEquals( "value1 value2", properties.getProperty( "key2" ) );
+        NSMutableDictionary<String, Object> dictionary =
+            new NSMutableDictionary<String, Object>();
+        dictionary.setObjectForKey( "fresh", "key1" );
+        properties.addPropertiesFromDictionary( dictionary );
+        assertEquals( "fresh value2", properties.getProperty( "key2" ) );
+    }
+
+    public void testSubstitutionSwitch()
+    {
+        assertEquals( "value1 value2", properties.getProperty( "key2" ) );
+        properties.setWillPerformPropertySubstitution( false );
+        assertEquals( "${key1} value2", properties.getProperty( "key2" ) );
+        properties.setWillPerformPropertySubstitution( true );
+        assertEquals( "value1 value2", properties.getProperty( "key2" ) );
+    }
+
     //~ Instance/static variables .............................................
     private WCProperties properties;
 }
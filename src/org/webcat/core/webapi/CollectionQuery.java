@@ -0,0 +1,316 @@
+package org.webcat.core.webapi;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.webcat.core.EOBase;
+import org.webcat.core.User;
+import org.webcat.woextensions.WCFetchSpecification;
+import com.webobjects.appserver.WORequest;
+import com.webobjects.eoaccess.EOEntity;
+import com.webobjects.eoaccess.EOUtilities;
+import com.webobjects.eocontrol.EOAndQualifier;
+import com.webobjects.eocontrol.EOEditingContext;
+import com.webobjects.eocontrol.EOQualifier;
+import com.webobjects.eocontrol.EOSortOrdering;
+import com.webobjects.foundation.NSArray;
+import com.webobjects.foundation.NSMutableArray;
+import com.webobjects.foundation.NSRange;
+import er.extensions.eof.ERXEOControlUtilities;
+import er.extensions.eof.ERXQ;
+import er.extensions.eof.ERXS;
+import er.extensions.foundation.ERXProperties;
+
+//-------------------------------------------------------------------------
+/**
+ * <p>
+ * Fetches one page of a collection for an index-style web API action,
+ * reading the paging parameters from the request. Only the requested page
+ * is fetched from the database, so the cost of a call depends on the page
+ * size rather than on the size of the table:
+ * </p>
+ * <ul>
+ * <li><code>limit</code>: the most objects to return (100 by default,
+ *     and never more than {@code WebAPI.maxPageSize}, 1000 by default)</li>
+ * <li><code>offset</code>: the number of objects to skip</li>
+ * <li><code>cursor</code>: only return objects after this one; the value
+ *     to use for the next page is sent back in the
+ *     <code>X-Next-Cursor</code> response header whenever there are more
+ *     objects</li>
+ * <li><code>fields</code>: a comma-separated list of properties to return
+ *     for each object, instead of just its identifier</li>
+ * </ul>
+ * <p>
+ * Objects are returned in database ID order. Unless the user is an
+ * administrator, the fetch is restricted to the objects the user can
+ * access, using the entity's
+ * {@link EOBase#accessibleByQualifier(Class, User) database access
+ * qualifier}. Entities without one are fetched in full and filtered in
+ * memory, as before.
+ * </p>
+ *
+ * @param <T> the type of object in the collection
+ *
+ * @author  Stephen Edwards
+ */
+public class CollectionQuery<T extends EOBase>
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Initializes a new query for a web API call.
+     *
+     * @param context the context of the call
+     * @param type the class of the objects in the collection
+     * @param entityName the entity name of the objects in the collection
+     */
+    public CollectionQuery(
+        WebAPIContext context, Class<T> type, String entityName)
+    {
+        this.context = context;
+        this.type = type;
+        this.entityName = entityName;
+    }
+
+
+    //~ Methods ...............................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Restricts the collection to the objects matching a qualifier, which
+     * must be translatable to SQL.
+     *
+     * @param qualifier the qualifier
+     * @return the receiver, for method chaining
+     */
+    public CollectionQuery<T> where(EOQualifier qualifier)
+    {
+        this.qualifier = qualifier;
+        return this;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Sets the properties (key paths) that clients may ask for with the
+     * <code>fields</code> parameter. By default, clients may ask for any
+     * attribute of the entity that is a class property, except those whose
+     * names mention passwords.
+     *
+     * @param keypaths the properties that may be requested
+     * @return the receiver, for method chaining
+     */
+    public CollectionQuery<T> allowingFields(String... keypaths)
+    {
+        allowedFields = new HashSet<String>();
+        for (String keypath : keypaths)
+        {
+            allowedFields.add(keypath);
+        }
+        return this;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Fetches the page of the collection selected by the request.
+     *
+     * @return the result to return from the action: an array of the
+     *     objects, an array of their extracted fields, or a
+     *     {@link WebAPIError} if a paging parameter is invalid
+     */
+    public Object results()
+    {
+        WORequest request = context.request();
+        int limit;
+        int offset;
+        Integer cursor = null;
+
+        try
+        {
+            limit = intParameter(request, "limit", DEFAULT_PAGE_SIZE);
+            offset = intParameter(request, "offset", 0);
+            String cursorValue = request.stringFormValueForKey("cursor");
+            if (cursorValue != null && cursorValue.length() > 0)
+            {
+                cursor = Integer.valueOf(cursorValue);
+            }
+        }
+        catch (NumberFormatException e)
+        {
+            return new WebAPIError("invalid paging parameter: "
+                + e.getMessage());
+        }
+
+        if (limit < 1 || offset < 0)
+        {
+            return new WebAPIError("invalid paging parameter");
+        }
+        limit = Math.min(limit, MAX_PAGE_SIZE);
+
+        KeyValueExtractor extractor = null;
+        String fields = request.stringFormValueForKey("fields");
+        if (fields != null && fields.length() > 0)
+        {
+            Set<String> allowed = allowedFields();
+            extractor = new KeyValueExtractor();
+            for (String field : fields.split(","))
+            {
+                field = field.trim();
+                if (!allowed.contains(field))
+                {
+                    return new WebAPIError("unknown field: " + field);
+                }
+                extractor.with(field);
+            }
+        }
+
+        NSArray<T> page = fetch(offset, limit, cursor);
+        if (page.count() > limit)
+        {
+            page = page.subarrayWithRange(new NSRange(0, limit));
+            context.response().setHeader(
+                page.lastObject().id().toString(), NEXT_CURSOR_HEADER);
+        }
+
+        return extractor == null
+            ? page
+            : extractor.extracting(page);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Fetches the requested page, plus one more object (if there is one)
+     * to show whether there are further pages.
+     *
+     * @param offset the number of objects to skip
+     * @param limit the page size
+     * @param cursor the ID of the last object already seen, or null
+     * @return the objects
+     */
+    private NSArray<T> fetch(int offset, int limit, Integer cursor)
+    {
+        EOEditingContext ec = context.editingContext();
+        User user = context.user();
+        NSMutableArray<EOQualifier> qualifiers =
+            new NSMutableArray<EOQualifier>();
+
+        if (qualifier != null)
+        {
+            qualifiers.addObject(qualifier);
+        }
+        if (cursor != null)
+        {
+            qualifiers.addObject(ERXQ.greaterThan(ID_KEY, cursor));
+        }
+
+        boolean filterInMemory = false;
+        if (!user.hasAdminPrivileges())
+        {
+            EOQualifier access = EOBase.accessibleByQualifier(type, user);
+            if (access == null)
+            {
+                filterInMemory = true;
+            }
+            else
+            {
+                qualifiers.addObject(access);
+            }
+        }
+
+        WCFetchSpecification<T> spec = new WCFetchSpecification<T>(
+            entityName,
+            qualifiers.count() == 0 ? null : new EOAndQualifier(qualifiers),
+            ID_ORDER);
+        // Joins through to-many relationships in access qualifiers can
+        // match the same row more than once
+        spec.setUsesDistinct(true);
+
+        if (filterInMemory)
+        {
+            NSArray<T> visible =
+                EOBase.accessibleBy(user).filtered(spec.fetchObjects(ec));
+            int start = Math.min(offset, visible.count());
+            int length = Math.min(limit + 1, visible.count() - start);
+            return visible.subarrayWithRange(new NSRange(start, length));
+        }
+        else if (offset > 0)
+        {
+            @SuppressWarnings("unchecked")
+            NSArray<T> result = ERXEOControlUtilities.objectsInRange(
+                ec, spec, offset, offset + limit + 1);
+            return result;
+        }
+        else
+        {
+            spec.setFetchLimit(limit + 1);
+            return spec.fetchObjects(ec);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the properties that clients may ask for with the
+     * <code>fields</code> parameter.
+     *
+     * @return the allowed key paths
+     */
+    private Set<String> allowedFields()
+    {
+        if (allowedFields == null)
+        {
+            EOEntity entity =
+                EOUtilities.entityNamed(context.editingContext(), entityName);
+            Set<String> result = new HashSet<String>();
+
+            for (Object name : entity.classPropertyNames())
+            {
+                String key = (String) name;
+                if (entity.attributeNamed(key) != null
+                    && !key.toLowerCase().contains("password"))
+                {
+                    result.add(key);
+                }
+            }
+
+            allowedFields = result;
+        }
+
+        return allowedFields;
+    }
+
+
+    // ----------------------------------------------------------
+    private static int intParameter(
+        WORequest request, String name, int defaultValue)
+    {
+        String value = request.stringFormValueForKey(name);
+        return (value == null || value.length() == 0)
+            ? defaultValue
+            : Integer.parseInt(value);
+    }
+
+
+    //~ Static/instance variables .............................................
+
+    /** The response header that carries the cursor for the next page. */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final String ID_KEY = "id";
+    private static final NSArray<EOSortOrdering> ID_ORDER =
+        new NSArray<EOSortOrdering>(
+            ERXS.sortOrder(ID_KEY, EOSortOrdering.CompareAscending));
+
+    private static final int DEFAULT_PAGE_SIZE =
+        ERXProperties.intForKeyWithDefault("WebAPI.defaultPageSize", 100);
+    private static final int MAX_PAGE_SIZE =
+        ERXProperties.intForKeyWithDefault("WebAPI.maxPageSize", 1000);
+
+    private final WebAPIContext context;
+    private final Class<T> type;
+    private final String entityName;
+    private EOQualifier qualifier;
+    private Set<String> allowedFields;
+}
@@ -2,6 +2,7 @@ package org.webcat.core.webapi;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.Enumeration;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONWriter;
@@ -9,6 +10,7 @@ import org.webcat.core.EOBase;
 import com.webobjects.appserver.WOMessage;
 import com.webobjects.foundation.NSArray;
 import com.webobjects.foundation.NSDictionary;
+import com.webobjects.foundation.NSKeyValueCoding;
 
 //-------------------------------------------------------------------------
 /**
@@ -61,15 +63,36 @@ public class JSONResponseFormatter extends ResponseFormatter
                 writer.object();
 
                 NSDictionary<?, ?> map = (NSDictionary<?, ?>) object;
+                Enumeration<?> keys = map.keyEnumerator();
 
-                for (Object key : map.allKeys())
+                while (keys.hasMoreElements())
                 {
+                    Object key = keys.nextElement();
                     writer.key(key.toString());
                     format(map.objectForKey(key));
                 }
 
                 writer.endObject();
             }
+            else if (object instanceof KeyValueExtractor.Extraction)
+            {
+                writer.object();
+
+                KeyValueExtractor.Extraction extraction =
+                    (KeyValueExtractor.Extraction) object;
+
+                for (int i = 0; i < extraction.size(); i++)
+                {
+                    writer.key(extraction.nameAt(i));
+                    format(extraction.valueAt(i));
+                }
+
+                writer.endObject();
+            }
+            else if (object == null || object == NSKeyValueCoding.NullValue)
+            {
+                writer.value(null);
+            }
             else if (object instanceof Boolean)
             {
                 writer.value(((Boolean) object).booleanValue());
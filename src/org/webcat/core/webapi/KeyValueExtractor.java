@@ -59,6 +59,8 @@ public class KeyValueExtractor
     public KeyValueExtractor with(String keypath, String newName)
     {
         mapping.setObjectForKey(newName, keypath);
+        keypaths = null;
+        names = null;
         return this;
     }
 
@@ -110,6 +112,126 @@ public class KeyValueExtractor
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * Wraps an object so that a response formatter writes its properties
+     * straight from the object, rather than first copying them into a
+     * dictionary. This is the cheaper choice for results that are only
+     * going to be formatted.
+     *
+     * @param object the object whose properties should be extracted
+     * @return a view of the properties that is read as it is formatted
+     */
+    public Extraction extracting(EOBase object)
+    {
+        if (keypaths == null)
+        {
+            NSArray<String> keys = mapping.allKeys();
+            String[] newKeypaths = new String[keys.count()];
+            String[] newNames = new String[keys.count()];
+
+            for (int i = 0; i < newKeypaths.length; i++)
+            {
+                newKeypaths[i] = keys.objectAtIndex(i);
+                newNames[i] = mapping.objectForKey(newKeypaths[i]);
+            }
+
+            keypaths = newKeypaths;
+            names = newNames;
+        }
+
+        return new Extraction(object, keypaths, names);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Wraps an array of objects so that a response formatter writes their
+     * properties straight from the objects (see
+     * {@link #extracting(EOBase)}).
+     *
+     * @param objects the array of objects whose properties should be
+     *     extracted
+     * @return an array of views of the properties
+     */
+    public NSArray<Extraction> extracting(NSArray<? extends EOBase> objects)
+    {
+        NSMutableArray<Extraction> results =
+            new NSMutableArray<Extraction>(objects.count());
+
+        for (EOBase object : objects)
+        {
+            results.addObject(extracting(object));
+        }
+
+        return results;
+    }
+
+
+    //~ Inner classes .........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * A view of the extracted properties of one object, whose values are
+     * read from the object only when they are formatted.
+     */
+    public static class Extraction
+    {
+        // ----------------------------------------------------------
+        private Extraction(EOBase object, String[] keypaths, String[] names)
+        {
+            this.object = object;
+            this.keypaths = keypaths;
+            this.names = names;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Gets the number of properties.
+         *
+         * @return the number of properties
+         */
+        public int size()
+        {
+            return keypaths.length;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Gets the name of a property in the formatted result.
+         *
+         * @param index the index of the property
+         * @return the name
+         */
+        public String nameAt(int index)
+        {
+            return names[index];
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Reads the value of a property from the object.
+         *
+         * @param index the index of the property
+         * @return the value, which may be null
+         */
+        public Object valueAt(int index)
+        {
+            return object.valueForKeyPath(keypaths[index]);
+        }
+
+
+        //~ Static/instance variables .........................................
+
+        private final EOBase object;
+        private final String[] keypaths;
+        private final String[] names;
+    }
+
+
     //~ Static/instance variables .............................................
 
     /**
@@ -117,4 +239,8 @@ public class KeyValueExtractor
      * dictionary (values).
      */
     private NSMutableDictionary<String, String> mapping;
+
+    // Snapshots of the mapping for extracting(), rebuilt after each change
+    private String[] keypaths;
+    private String[] names;
 }
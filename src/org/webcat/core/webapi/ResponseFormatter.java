@@ -1,10 +1,15 @@
 package org.webcat.core.webapi;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
 import org.webcat.core.Application;
+import org.webcat.core.http.SpillingOutputStream;
 import com.webobjects.appserver.WOApplication;
+import com.webobjects.appserver.WOResponse;
 import com.webobjects.foundation.NSMutableDictionary;
+import er.extensions.foundation.ERXProperties;
 
 //-------------------------------------------------------------------------
 /**
@@ -23,7 +28,9 @@ public abstract class ResponseFormatter
     // ----------------------------------------------------------
     /**
      * Takes the session identifier and the result of the action for
-     * formatting.
+     * formatting. When the response may be cached, the session identifier
+     * should come from
+     * {@link org.webcat.core.http.ConditionalGetFilter#sessionIdForBody}.
      *
      * @param sessionId the session identifier
      * @param result the result of the action
@@ -45,6 +52,67 @@ public abstract class ResponseFormatter
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * Formats the stored result as the content of a response. The result is
+     * encoded as UTF-8 through a buffered writer directly into the response
+     * body, with no intermediate string. Bodies larger than
+     * {@code WebAPI.responseMemoryLimit} bytes (1MB by default) are spooled
+     * to a temporary file and streamed from there, so that a large result
+     * is never held in memory twice.
+     *
+     * @param response the response
+     * @throws IOException if an I/O error occurs
+     */
+    public void formatToResponse(WOResponse response) throws IOException
+    {
+        formatToResponse(response, null, null);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Formats the stored result as the content of a response, as
+     * {@link #formatToResponse(WOResponse)} does, but replaces a
+     * placeholder in bodies that are too large to keep in memory.  This
+     * is how a session identifier placeholder that only a cache could fill
+     * in is replaced in bodies too large to be cached, without formatting
+     * the result a second time.
+     *
+     * @param response the response
+     * @param placeholder the text to replace in a streamed body, or null
+     * @param replacement the text to put in its place
+     * @throws IOException if an I/O error occurs
+     */
+    public void formatToResponse(WOResponse response, String placeholder,
+        String replacement) throws IOException
+    {
+        SpillingOutputStream body = new SpillingOutputStream(
+            MEMORY_LIMIT, placeholder, replacement);
+
+        try
+        {
+            Writer writer = new BufferedWriter(
+                new OutputStreamWriter(body, "UTF-8"), WRITER_BUFFER_SIZE);
+            formatToWriter(writer);
+            writer.flush();
+
+            response.setHeader(mimeType() + "; charset=UTF-8", "Content-Type");
+            body.sendTo(response);
+        }
+        catch (IOException e)
+        {
+            body.discard();
+            throw e;
+        }
+        catch (RuntimeException e)
+        {
+            body.discard();
+            throw e;
+        }
+    }
+
+
     // ----------------------------------------------------------
     /**
      * Formats the stored result to the specified writer.
@@ -82,6 +150,9 @@ public abstract class ResponseFormatter
     //~ Instance/static variables .............................................
 
     private static final String SESSION_ID_KEY = "sessionId";
+    private static final int MEMORY_LIMIT = ERXProperties.intForKeyWithDefault(
+        "WebAPI.responseMemoryLimit", 1024 * 1024);
+    private static final int WRITER_BUFFER_SIZE = 16 * 1024;
 
     private NSMutableDictionary<String, Object> root;
 }
@@ -0,0 +1,137 @@
+package org.webcat.core.webapi;
+
+import org.apache.http.HttpStatus;
+import org.webcat.core.EntityRequestInfo;
+import org.webcat.core.Session;
+import org.webcat.core.User;
+import com.webobjects.appserver.WORequest;
+import com.webobjects.appserver.WOResponse;
+import com.webobjects.eocontrol.EOEditingContext;
+
+//-------------------------------------------------------------------------
+/**
+ * The state of a single web API call: the request, the response, and the
+ * session and editing context of the user who made it. A new context is
+ * created for every call, so {@link WebAPIController} instances (which
+ * are shared by all concurrent calls for the same entity) never hold
+ * per-request state themselves.
+ *
+ * @author  Stephen Edwards
+ */
+public class WebAPIContext
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Initializes a new context for a web API call.
+     *
+     * @param request the request
+     * @param response the response
+     * @param info the entity, object, and action parsed from the request
+     */
+    public WebAPIContext(
+        WORequest request, WOResponse response, EntityRequestInfo info)
+    {
+        this.request = request;
+        this.response = response;
+        this.info = info;
+        this.session = (Session) request.context().session();
+        this.editingContext = session.defaultEditingContext();
+    }
+
+
+    //~ Methods ...............................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the request for this call.
+     *
+     * @return the request
+     */
+    public WORequest request()
+    {
+        return request;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the response for this call.
+     *
+     * @return the response
+     */
+    public WOResponse response()
+    {
+        return response;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the entity, object, and action that were parsed from the
+     * request path.
+     *
+     * @return the request info
+     */
+    public EntityRequestInfo info()
+    {
+        return info;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the session of the user making this call.
+     *
+     * @return the session
+     */
+    public Session session()
+    {
+        return session;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the user making this call.
+     *
+     * @return the user
+     */
+    public User user()
+    {
+        return session.primeUser();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the editing context used to fetch objects during this call.
+     *
+     * @return the editing context
+     */
+    public EOEditingContext editingContext()
+    {
+        return editingContext;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Produces a 403 (Forbidden) response.
+     */
+    public void forbid()
+    {
+        response.setContent("");
+        response.setStatus(HttpStatus.SC_FORBIDDEN);
+    }
+
+
+    //~ Static/instance variables .............................................
+
+    private final WORequest request;
+    private final WOResponse response;
+    private final EntityRequestInfo info;
+    private final Session session;
+    private final EOEditingContext editingContext;
+}
@@ -1,21 +1,27 @@
 package org.webcat.core.webapi;
 
-import java.io.StringWriter;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.http.HttpStatus;
 import org.apache.log4j.Logger;
 import org.webcat.core.EOBase;
 import org.webcat.core.EntityRequestInfo;
 import org.webcat.core.Session;
 import org.webcat.core.User;
+import org.webcat.core.http.ConditionalGetFilter;
 import org.webcat.core.http.MetaRequestHandler;
 import org.webcat.core.http.RequestHandlerWithResponse;
 import com.webobjects.appserver.WORequest;
 import com.webobjects.appserver.WOResponse;
 import com.webobjects.eocontrol.EOEditingContext;
 import com.webobjects.foundation.NSArray;
-import com.webobjects.foundation.NSMutableDictionary;
 
 //-------------------------------------------------------------------------
 /**
@@ -74,6 +80,14 @@ import com.webobjects.foundation.NSMutableDictionary;
  * In the event that the API identifier of an object and an action might
  * collide, then the action is assumed to be a collection action with that name
  * rather than an object action with that ID.
+ * </p><p>
+ * One controller instance serves every call for its entity, concurrently.
+ * The action methods of each controller class are compiled into a route
+ * table of method handles the first time the class is used, and the state
+ * of each call is kept in its own {@link WebAPIContext}, which the
+ * accessors such as {@link #user()} and {@link #editingContext()} read for
+ * the calling thread. Subclasses must not keep per-request state in
+ * fields.
  * </p>
  *
  * @author  Tony Allevato
@@ -90,8 +104,7 @@ public abstract class WebAPIController implements RequestHandlerWithResponse
      */
     public WebAPIController()
     {
-        cacheActionMethods();
-        initializeFormatters();
+        routes = routesFor(getClass());
     }
 
 
@@ -108,28 +121,62 @@ public abstract class WebAPIController implements RequestHandlerWithResponse
      */
     public void handleRequest(WORequest request, WOResponse response)
     {
+        handleRequest(request, response,
+            EntityRequestInfo.fromRequestHandlerPath(
+                request.requestHandlerPath(), true));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Handles the request, using request info that the caller has already
+     * parsed from the request path.
+     *
+     * @param request the request
+     * @param response the response
+     * @param info the entity, object, and action from the request path
+     */
+    public void handleRequest(
+        WORequest request, WOResponse response, EntityRequestInfo info)
+    {
+        WebAPIContext previous = currentContext.get();
+
         try
         {
-            this.request = request;
-            this.response = response;
+            WebAPIContext context =
+                new WebAPIContext(request, response, info);
+            currentContext.set(context);
 
-            session = (Session) request.context().session();
-            editingContext = session.defaultEditingContext();
+            if (info.entityName() != null)
+            {
+                ConditionalGetFilter.dependsOn(request, info.entityName());
+            }
 
-            Object result = dispatchAction();
+            Object result = dispatchAction(context);
 
             if (response.status() < 400)
             {
-                formatResult(result);
+                formatResult(context, result);
             }
         }
-        catch (Exception e)
+        catch (Throwable e)
         {
             log.error("(500) There was an error performing the action", e);
 
             response.setContent("");
             response.setStatus(HttpStatus.SC_INTERNAL_SERVER_ERROR);
         }
+        finally
+        {
+            if (previous == null)
+            {
+                currentContext.remove();
+            }
+            else
+            {
+                currentContext.set(previous);
+            }
+        }
     }
 
 
@@ -139,8 +186,27 @@ public abstract class WebAPIController implements RequestHandlerWithResponse
      */
     public void forbid()
     {
-        response.setContent("");
-        response.setStatus(HttpStatus.SC_FORBIDDEN);
+        context().forbid();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the context of the action being performed by the current thread.
+     *
+     * @return the context
+     */
+    public WebAPIContext context()
+    {
+        WebAPIContext context = currentContext.get();
+
+        if (context == null)
+        {
+            throw new IllegalStateException(
+                "no web API call is in progress on this thread");
+        }
+
+        return context;
     }
 
 
@@ -152,7 +218,7 @@ public abstract class WebAPIController implements RequestHandlerWithResponse
      */
     public WORequest request()
     {
-        return request;
+        return context().request();
     }
 
 
@@ -164,7 +230,7 @@ public abstract class WebAPIController implements RequestHandlerWithResponse
      */
     public WOResponse response()
     {
-        return response;
+        return context().response();
     }
 
 
@@ -176,7 +242,7 @@ public abstract class WebAPIController implements RequestHandlerWithResponse
      */
     public Session session()
     {
-        return session;
+        return context().session();
     }
 
 
@@ -188,7 +254,7 @@ public abstract class WebAPIController implements RequestHandlerWithResponse
      */
     public User user()
     {
-        return session.primeUser();
+        return context().user();
     }
 
 
@@ -201,54 +267,53 @@ public abstract class WebAPIController implements RequestHandlerWithResponse
      */
     public EOEditingContext editingContext()
     {
-        return editingContext;
+        return context().editingContext();
     }
 
 
     // ----------------------------------------------------------
     /**
-     * Cache the reflection method handles for the actions in the class that
-     * subclasses this controller class.
+     * Creates a query that fetches the page of a collection selected by the
+     * paging parameters of the current request, restricted to the objects
+     * the user can access. Index actions should return its
+     * {@link CollectionQuery#results()} rather than fetching every object.
+     *
+     * @param <T> the type of the objects in the collection
+     * @param type the class of the objects in the collection
+     * @param entityName the entity name of the objects in the collection
+     * @return the query
      */
-    private void cacheActionMethods()
+    public <T extends EOBase> CollectionQuery<T> collection(
+        Class<T> type, String entityName)
     {
-        collectionActions = new NSMutableDictionary<String, Method>();
-        objectActions = new NSMutableDictionary<String, Method>();
-
-        for (Method method : getClass().getMethods())
-        {
-            String methodName = method.getName();
-
-            if (methodName.endsWith(ACTION_SUFFIX))
-            {
-                String actionName = methodName.substring(0,
-                        methodName.length() - ACTION_SUFFIX.length());
-
-                Class<?>[] params = method.getParameterTypes();
-
-                if (params.length == 0)
-                {
-                    collectionActions.setObjectForKey(method, actionName);
-                }
-                else if (params.length == 1)
-                {
-                    objectActions.setObjectForKey(method, actionName);
-                }
-            }
-        }
+        return new CollectionQuery<T>(context(), type, entityName);
     }
 
 
     // ----------------------------------------------------------
     /**
-     * Initializes the formatters that can be used for responses from actions.
+     * Gets the route table for a controller class, compiling it the first
+     * time the class is used.
+     *
+     * @param controllerClass the controller class
+     * @return the route table
      */
-    private void initializeFormatters()
+    private static Routes routesFor(
+        Class<? extends WebAPIController> controllerClass)
     {
-        formatters = new NSMutableDictionary<String, ResponseFormatter>();
+        Routes result = routeTables.get(controllerClass);
+
+        if (result == null)
+        {
+            result = new Routes(controllerClass);
+            Routes existing = routeTables.putIfAbsent(controllerClass, result);
+            if (existing != null)
+            {
+                result = existing;
+            }
+        }
 
-        formatters.setObjectForKey(new XmlResponseFormatter(), "xml");
-        formatters.setObjectForKey(new JSONResponseFormatter(), "json");
+        return result;
     }
 
 
@@ -257,27 +322,24 @@ public abstract class WebAPIController implements RequestHandlerWithResponse
      * Dispatches the action by calling the appropriate method on the concrete
      * controller class.
      *
-     * @throws InvocationTargetException if the action method throws an
-     *     exception
-     * @throws IllegalAccessException if the action method is not public
+     * @param context the context of the call
+     * @return the result of the action
+     * @throws Throwable if the action method throws an exception
      */
-    private Object dispatchAction()
-        throws InvocationTargetException, IllegalAccessException
+    private Object dispatchAction(WebAPIContext context)
+        throws Throwable
     {
-        String path = request.requestHandlerPath();
-        EntityRequestInfo info =
-            EntityRequestInfo.fromRequestHandlerPath(path, true);
-
+        EntityRequestInfo info = context.info();
         String actionOrId = info.objectID();
 
         if (actionOrId == null)
         {
-            Method method = collectionActions.objectForKey(
-                    defaultCollectionActionForRequest());
+            MethodHandle action = routes.collectionActions.get(
+                    defaultCollectionActionForRequest(context.request()));
 
-            if (method != null)
+            if (action != null)
             {
-                return method.invoke(this);
+                return (Object) action.invokeExact(this);
             }
         }
         else
@@ -287,34 +349,37 @@ public abstract class WebAPIController implements RequestHandlerWithResponse
             // more efficient (it doesn't require a database hit to find this
             // out).
 
-            Method method = collectionActions.objectForKey(actionOrId);
+            MethodHandle action = routes.collectionActions.get(actionOrId);
 
-            if (method != null)
+            if (action != null)
             {
-                return method.invoke(this);
+                return (Object) action.invokeExact(this);
             }
             else
             {
-                String action = info.resourcePath();
+                String actionName = info.resourcePath();
 
-                if (action == null)
+                if (actionName == null)
                 {
-                    action = defaultObjectActionForRequest();
+                    actionName =
+                        defaultObjectActionForRequest(context.request());
                 }
 
-                method = objectActions.objectForKey(action);
+                action = routes.objectActions.get(actionName);
 
-                if (method != null)
+                if (action != null)
                 {
-                    EOBase object = info.requestedObject(editingContext());
+                    EOBase object =
+                        info.requestedObject(context.editingContext());
 
-                    if (object == null || !object.accessibleByUser(user()))
+                    if (object == null
+                        || !object.accessibleByUser(context.user()))
                     {
-                        forbid();
+                        context.forbid();
                     }
                     else
                     {
-                        return method.invoke(this, object);
+                        return (Object) action.invokeExact(this, object);
                     }
                 }
             }
@@ -328,37 +393,44 @@ public abstract class WebAPIController implements RequestHandlerWithResponse
     /**
      * Formats the result of the action into the handler's response.
      *
+     * @param context the context of the call
      * @param result the result of the action
      * @throws Exception if an error occurs
      */
-    private void formatResult(Object result) throws Exception
+    private void formatResult(WebAPIContext context, Object result)
+        throws Exception
     {
-        ResponseFormatter formatter = null;
+        String format = null;
 
-        NSArray<String> groups = (NSArray<String>) request.userInfoForKey(
-                MetaRequestHandler.REGEX_CAPTURE_GROUPS_KEY);
+        @SuppressWarnings("unchecked")
+        NSArray<String> groups = (NSArray<String>) context.request()
+            .userInfoForKey(MetaRequestHandler.REGEX_CAPTURE_GROUPS_KEY);
 
-        if (groups.size() > WebAPIRequestHandler.FORMAT_CAPTURE_GROUP
+        if (groups != null
+                && groups.size() > WebAPIRequestHandler.FORMAT_CAPTURE_GROUP
                 && groups.objectAtIndex(
                         WebAPIRequestHandler.FORMAT_CAPTURE_GROUP).length() > 0)
         {
-            String format = groups.objectAtIndex(
+            format = groups.objectAtIndex(
                     WebAPIRequestHandler.FORMAT_CAPTURE_GROUP).substring(1);
-
-            formatter = formatters.objectForKey(format);
-        }
-
-        // Use JSON by default if no format specifier is given.
-        if (formatter == null)
-        {
-            formatter = new JSONResponseFormatter();
         }
 
-        formatter.setResult(session().sessionID(), result);
-
-        StringWriter writer = new StringWriter();
-        formatter.formatToWriter(writer);
-        response.setContent(writer.toString());
+        // Formatters hold the result being formatted, so each call gets its
+        // own. Use JSON by default if no format specifier is given.
+        ResponseFormatter formatter = "xml".equals(format)
+            ? new XmlResponseFormatter()
+            : new JSONResponseFormatter();
+
+        String sessionId = context.session().sessionID();
+        String bodySessionId =
+            ConditionalGetFilter.sessionIdForBody(context.request(), sessionId);
+        formatter.setResult(bodySessionId, result);
+
+        // Streamed bodies are too large to cache, and the filter cannot
+        // fill in the session identifier, so it is filled in as they spill
+        formatter.formatToResponse(context.response(),
+            bodySessionId.equals(sessionId) ? null : bodySessionId,
+            sessionId);
     }
 
 
@@ -367,11 +439,12 @@ public abstract class WebAPIController implements RequestHandlerWithResponse
      * Gets the default action name for requests on collections based on the
      * HTTP method used in the request.
      *
+     * @param request the request
      * @return the default action name
      */
-    private String defaultCollectionActionForRequest()
+    private static String defaultCollectionActionForRequest(WORequest request)
     {
-        String method = request().method().toUpperCase();
+        String method = request.method().toUpperCase();
 
         if (method.equals("POST"))
         {
@@ -389,11 +462,12 @@ public abstract class WebAPIController implements RequestHandlerWithResponse
      * Gets the default action name for requests on individual objects based on
      * the HTTP method used in the request.
      *
+     * @param request the request
      * @return the default action name
      */
-    private String defaultObjectActionForRequest()
+    private static String defaultObjectActionForRequest(WORequest request)
     {
-        String method = request().method().toUpperCase();
+        String method = request.method().toUpperCase();
 
         if (method.equals("PUT"))
         {
@@ -410,6 +484,75 @@ public abstract class WebAPIController implements RequestHandlerWithResponse
     }
 
 
+    //~ Inner classes .........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * The immutable route table for one controller class, mapping action
+     * names to method handles. Collection actions take no arguments and
+     * object actions take one; every handle is adapted to return
+     * {@code Object}, so that it can be called with
+     * {@link MethodHandle#invokeExact(Object...)} without boxing the
+     * arguments into an array.
+     */
+    private static class Routes
+    {
+        // ----------------------------------------------------------
+        public Routes(Class<? extends WebAPIController> controllerClass)
+        {
+            Map<String, MethodHandle> collection =
+                new HashMap<String, MethodHandle>();
+            Map<String, MethodHandle> object =
+                new HashMap<String, MethodHandle>();
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+            for (Method method : controllerClass.getMethods())
+            {
+                String methodName = method.getName();
+
+                if (!methodName.endsWith(ACTION_SUFFIX)
+                    || Modifier.isStatic(method.getModifiers()))
+                {
+                    continue;
+                }
+
+                String actionName = methodName.substring(0,
+                        methodName.length() - ACTION_SUFFIX.length());
+                Class<?>[] params = method.getParameterTypes();
+
+                try
+                {
+                    if (params.length == 0)
+                    {
+                        collection.put(actionName, lookup.unreflect(method)
+                            .asType(COLLECTION_ACTION_TYPE));
+                    }
+                    else if (params.length == 1
+                        && EOBase.class.isAssignableFrom(params[0]))
+                    {
+                        object.put(actionName, lookup.unreflect(method)
+                            .asType(OBJECT_ACTION_TYPE));
+                    }
+                }
+                catch (IllegalAccessException e)
+                {
+                    log.error("cannot access web API action "
+                        + controllerClass.getName() + "." + methodName, e);
+                }
+            }
+
+            collectionActions = Collections.unmodifiableMap(collection);
+            objectActions = Collections.unmodifiableMap(object);
+        }
+
+
+        //~ Static/instance variables .........................................
+
+        public final Map<String, MethodHandle> collectionActions;
+        public final Map<String, MethodHandle> objectActions;
+    }
+
+
     //~ Static/instance variables .............................................
 
     private static Logger log = Logger.getLogger(WebAPIController.class);
@@ -423,12 +566,16 @@ public abstract class WebAPIController implements RequestHandlerWithResponse
     private static final String UPDATE_ACTION = "update";
     private static final String DELETE_ACTION = "delete";
 
-    private WORequest request;
-    private WOResponse response;
-    private Session session;
-    private EOEditingContext editingContext;
+    private static final MethodType COLLECTION_ACTION_TYPE =
+        MethodType.methodType(Object.class, WebAPIController.class);
+    private static final MethodType OBJECT_ACTION_TYPE =
+        MethodType.methodType(
+            Object.class, WebAPIController.class, EOBase.class);
+
+    private static final ConcurrentHashMap<Class<?>, Routes> routeTables =
+        new ConcurrentHashMap<Class<?>, Routes>();
+    private static final ThreadLocal<WebAPIContext> currentContext =
+        new ThreadLocal<WebAPIContext>();
 
-    private NSMutableDictionary<String, Method> collectionActions;
-    private NSMutableDictionary<String, Method> objectActions;
-    private NSMutableDictionary<String, ResponseFormatter> formatters;
+    private final Routes routes;
 }
@@ -1,10 +1,12 @@
 package org.webcat.core.webapi;
 
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.http.HttpStatus;
 import org.webcat.core.EOBase;
 import org.webcat.core.EntityRequestInfo;
 import org.webcat.core.User;
 import org.webcat.core.http.BasicAuthenticationFilter;
+import org.webcat.core.http.ConditionalGetFilter;
 import org.webcat.core.http.MetaRequestHandler;
 import org.webcat.core.http.NoCacheRequestFilter;
 import org.webcat.core.http.RequestHandlerBinder;
@@ -12,8 +14,8 @@ import org.webcat.core.http.RequestHandlerWithResponse;
 import com.webobjects.appserver.WOContext;
 import com.webobjects.appserver.WORequest;
 import com.webobjects.appserver.WOResponse;
-import com.webobjects.foundation.NSMutableDictionary;
 import com.webobjects.foundation._NSUtilities;
+import er.extensions.foundation.ERXProperties;
 
 //-------------------------------------------------------------------------
 /**
@@ -33,8 +35,6 @@ public class WebAPIRequestHandler extends MetaRequestHandler
      */
     public WebAPIRequestHandler()
     {
-        controllerCache = new NSMutableDictionary<String, WebAPIController>();
-
         serveRegex("(.+" + FORMAT_NEG
                 + "(?:/.+" + FORMAT_NEG
                 + "(?:/.+" + FORMAT_NEG
@@ -48,7 +48,10 @@ public class WebAPIRequestHandler extends MetaRequestHandler
     /**
      * Overrides the {@link MetaRequestHandler#register(RequestHandlerBinder)}
      * method to ensure that helper filters are attached to every service
-     * binder.
+     * binder. Responses are not cacheable by clients unless the
+     * {@code WebAPI.conditionalGet} property is true, in which case a
+     * {@link ConditionalGetFilter} lets clients revalidate them with
+     * {@code If-None-Match}.
      *
      * @param binder the incoming binder
      * @return the possibly modified binder
@@ -56,15 +59,24 @@ public class WebAPIRequestHandler extends MetaRequestHandler
     @Override
     protected RequestHandlerBinder register(RequestHandlerBinder binder)
     {
-        return binder.through(new NoCacheRequestFilter())
-                     .through(new ValidUserOnlyAuthenticationFilter());
+        if (CONDITIONAL_GET)
+        {
+            return binder.through(new ValidUserOnlyAuthenticationFilter())
+                         .through(new ConditionalGetFilter());
+        }
+        else
+        {
+            return binder.through(new NoCacheRequestFilter())
+                         .through(new ValidUserOnlyAuthenticationFilter());
+        }
     }
 
 
     // ----------------------------------------------------------
     /**
      * Retrieves the {@link WebAPIController} for the specified entity type,
-     * creating it for the first time if necessary.
+     * creating it for the first time if necessary. Controllers are shared by
+     * all concurrent calls for their entity.
      *
      * @param entityName the type of entity for which to retrieve the
      *     controller
@@ -72,7 +84,7 @@ public class WebAPIRequestHandler extends MetaRequestHandler
      */
     private WebAPIController controllerForType(String entityName)
     {
-        WebAPIController controller = controllerCache.objectForKey(entityName);
+        WebAPIController controller = controllerCache.get(entityName);
 
         if (controller == null)
         {
@@ -82,12 +94,18 @@ public class WebAPIRequestHandler extends MetaRequestHandler
                         entityName + CONTROLLER_SUFFIX);
 
                 controller = (WebAPIController) klass.newInstance();
-                controllerCache.setObjectForKey(controller, entityName);
             }
             catch (Exception e)
             {
                 return null;
             }
+
+            WebAPIController existing =
+                controllerCache.putIfAbsent(entityName, controller);
+            if (existing != null)
+            {
+                controller = existing;
+            }
         }
 
         return controller;
@@ -146,7 +164,7 @@ public class WebAPIRequestHandler extends MetaRequestHandler
 
                 if (controller != null)
                 {
-                    controller.handleRequest(request, response);
+                    controller.handleRequest(request, response, info);
                 }
                 else
                 {
@@ -182,5 +200,9 @@ public class WebAPIRequestHandler extends MetaRequestHandler
 
     private static final String CONTROLLER_SUFFIX = "WebAPIController";
 
-    private NSMutableDictionary<String, WebAPIController> controllerCache;
+    private static final boolean CONDITIONAL_GET =
+        ERXProperties.booleanForKeyWithDefault("WebAPI.conditionalGet", false);
+
+    private final ConcurrentHashMap<String, WebAPIController> controllerCache =
+        new ConcurrentHashMap<String, WebAPIController>();
 }
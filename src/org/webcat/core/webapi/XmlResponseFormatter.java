@@ -2,10 +2,12 @@ package org.webcat.core.webapi;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.Enumeration;
 import org.webcat.core.EOBase;
 import com.webobjects.appserver.WOMessage;
 import com.webobjects.foundation.NSArray;
 import com.webobjects.foundation.NSDictionary;
+import com.webobjects.foundation.NSKeyValueCoding;
 
 //-------------------------------------------------------------------------
 /**
@@ -60,10 +62,12 @@ public class XmlResponseFormatter extends ResponseFormatter
             writer.write("<map>\n");
 
             NSDictionary<?, ?> map = (NSDictionary<?, ?>) object;
+            Enumeration<?> keys = map.keyEnumerator();
 
             depth++;
-            for (Object key : map.allKeys())
+            while (keys.hasMoreElements())
             {
+                Object key = keys.nextElement();
                 indent(writer);
                 formatWithTag(map.objectForKey(key), key.toString());
                 writer.write("\n");
@@ -73,6 +77,30 @@ public class XmlResponseFormatter extends ResponseFormatter
             indent(writer);
             writer.write("</map>\n");
         }
+        else if (object instanceof KeyValueExtractor.Extraction)
+        {
+            indent(writer);
+            writer.write("<map>\n");
+
+            KeyValueExtractor.Extraction extraction =
+                (KeyValueExtractor.Extraction) object;
+
+            depth++;
+            for (int i = 0; i < extraction.size(); i++)
+            {
+                indent(writer);
+                formatWithTag(extraction.valueAt(i), extraction.nameAt(i));
+                writer.write("\n");
+            }
+            depth--;
+
+            indent(writer);
+            writer.write("</map>\n");
+        }
+        else if (object == null || object == NSKeyValueCoding.NullValue)
+        {
+            // Leave the element empty
+        }
         else if (object instanceof EOBase)
         {
             writer.write(((EOBase) object).apiId());
@@ -4,8 +4,6 @@ import org.webcat.core.Course;
 import org.webcat.core.webapi.KeyValueExtractor;
 import org.webcat.core.webapi.WebAPIController;
 import org.webcat.core.webapi.WebAPIError;
-import com.webobjects.foundation.NSArray;
-import com.webobjects.foundation.NSDictionary;
 
 //-------------------------------------------------------------------------
 /**
@@ -23,14 +21,13 @@ public class CourseWebAPIController extends WebAPIController
     // ----------------------------------------------------------
     /**
      * An example of handling a "GET .../Course" request that lists all of the
-     * courses that the requesting user has access to.
+     * courses that the requesting user has access to, one page at a time.
      *
-     * @return the array of courses
+     * @return the page of courses
      */
-    public NSArray<Course> indexAction()
+    public Object indexAction()
     {
-        return Course.accessibleBy(user()).filtered(
-                Course.allObjects(editingContext()));
+        return collection(Course.class, Course.ENTITY_NAME).results();
     }
 
 
@@ -39,14 +36,14 @@ public class CourseWebAPIController extends WebAPIController
      * An example of handling a "GET .../Course/id" request that returns some
      * details about the requested course.
      *
-     * @return a dictionary containing properties of the course
+     * @return the properties of the course, read as they are formatted
      */
-    public NSDictionary<String, Object> showAction(Course course)
+    public KeyValueExtractor.Extraction showAction(Course course)
     {
         return new KeyValueExtractor()
             .with("deptNumberAndName")
             .with("offerings")
-            .extract(course);
+            .extracting(course);
     }
 
 
@@ -64,11 +64,29 @@ public abstract class AbstractFSResource extends AbstractDAVResource
     // ----------------------------------------------------------
     public AbstractFSResource(WorkingCopyResourceFactory factory, DAVPath path,
             Repository workingCopy)
+    {
+        this(factory, path, workingCopy, null);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Creates a resource whose metadata is already known, for example from
+     * a scan of its parent directory.
+     *
+     * @param factory the resource factory
+     * @param path the path of the file
+     * @param workingCopy the working copy containing the file
+     * @param info the file's metadata, or null to read it when needed
+     */
+    /*package*/ AbstractFSResource(WorkingCopyResourceFactory factory,
+            DAVPath path, Repository workingCopy, MetadataCache.FileInfo info)
     {
         super(factory);
 
         this.path = path;
         this.workingCopy = workingCopy;
+        this.info = info;
     }
 
 
@@ -92,6 +110,24 @@ public abstract class AbstractFSResource extends AbstractDAVResource
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * Gets the metadata of this resource's file, reading it from the file
+     * system only if it was not supplied when the resource was created.
+     *
+     * @return the metadata
+     */
+    /*package*/ MetadataCache.FileInfo info()
+    {
+        if (info == null)
+        {
+            info = MetadataCache.FileInfo.forFile(path.toFile());
+        }
+
+        return info;
+    }
+
+
     // ----------------------------------------------------------
     public Date getCreateDate()
     {
@@ -102,7 +138,7 @@ public abstract class AbstractFSResource extends AbstractDAVResource
     // ----------------------------------------------------------
     public Date getModifiedDate()
     {
-        return new Date(path.toFile().lastModified());
+        return new Date(info().lastModified);
     }
 
 
@@ -116,20 +152,24 @@ public abstract class AbstractFSResource extends AbstractDAVResource
     // ----------------------------------------------------------
     public String getUniqueId()
     {
-        return (path.toFile().lastModified() + "_"
-                + path.toFile().length()).hashCode() + "";
+        return info().uniqueId();
     }
 
 
     // ----------------------------------------------------------
-    protected void pushWorkingCopy()
+    protected User currentUser()
     {
         WORequest request = MiltonRequestWrapper.currentRequest();
         Session session = (Session) request.context().session();
-        User user = session.primeUser();
+        return session.primeUser();
+    }
 
+
+    // ----------------------------------------------------------
+    protected void pushWorkingCopy()
+    {
         GitUtilities.pushWorkingCopy(workingCopy(),
-                user, WEBDAV_COMMIT_MESSAGE);
+                currentUser(), WEBDAV_COMMIT_MESSAGE);
     }
 
 
@@ -155,6 +195,8 @@ public abstract class AbstractFSResource extends AbstractDAVResource
 
             DAVPath destPath = new DAVPath(newDirParent.path(), newName);
 
+            factory().invalidate(path);
+            factory().invalidate(destPath);
             boolean ok = path.toFile().renameTo(destPath.toFile());
 
             if (!ok)
@@ -164,6 +206,9 @@ public abstract class AbstractFSResource extends AbstractDAVResource
             }
 
             path = destPath;
+            info = null;
+            AtomicUpload.workTreeChanged(workingCopy());
+            AtomicUpload.workTreeChanged(newDirParent.workingCopy());
 
             pushWorkingCopy();
         }
@@ -193,7 +238,9 @@ public abstract class AbstractFSResource extends AbstractDAVResource
                     + ", " + newName);
 
             File dest = new File(newFsParent.path().toFile(), newName);
+            factory().invalidate(new DAVPath(newFsParent.path(), newName));
             doCopy(dest);
+            AtomicUpload.workTreeChanged(newFsParent.workingCopy());
 
             pushWorkingCopy();
         }
@@ -216,11 +263,13 @@ public abstract class AbstractFSResource extends AbstractDAVResource
 
         log.debug("delete: " + path.toFile());
 
+        factory().invalidate(path);
         boolean ok = path.toFile().delete();
         if (!ok)
         {
             throw new RuntimeException("Failed to delete");
         }
+        AtomicUpload.workTreeChanged(workingCopy());
 
         pushWorkingCopy();
     }
@@ -230,6 +279,7 @@ public abstract class AbstractFSResource extends AbstractDAVResource
 
     private DAVPath path;
     private Repository workingCopy;
+    private MetadataCache.FileInfo info;
 
     private static final String WEBDAV_COMMIT_MESSAGE = "Modified via Web-DAV.";
 
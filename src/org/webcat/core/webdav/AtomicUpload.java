@@ -0,0 +1,515 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.core.webdav;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Logger;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Repository;
+import org.webcat.core.Application;
+import org.webcat.core.EOBase;
+import org.webcat.core.FileUtilities;
+import org.webcat.core.RepositoryManager;
+import org.webcat.core.User;
+import er.extensions.foundation.ERXProperties;
+
+//-------------------------------------------------------------------------
+/**
+ * Writes the body of a WebDAV PUT into a working copy so that the target
+ * file only ever holds complete content.  The body is streamed into a
+ * temporary file, synced to disk, and then renamed over the target in a
+ * single atomic step, so a slow or aborted client can never leave a
+ * truncated file behind for the next working copy push to commit.
+ * <p>
+ * Temporary files live in the working copy's git directory, which is on
+ * the same file system as the work tree (so the rename is atomic) but is
+ * never added to commits or listed by WebDAV.
+ * </p><p>
+ * Three limits are enforced while the body streams in, and are checked
+ * against the declared Content-Length before anything is read:
+ * </p>
+ * <ul>
+ * <li><code>WebDAV.maxUserBytesInFlight</code> (100MB by default): the
+ *   most data one user may be uploading at once, over all of that user's
+ *   uploads in progress.  This bounds the temporary space and bandwidth
+ *   one user can tie up, and is answered with 413 Request Entity Too
+ *   Large.</li>
+ * <li><code>WebDAV.maxUserBytes</code> (2GB by default): the most one
+ *   user may have stored, over all of the repositories that WebDAV
+ *   presents to that user.</li>
+ * <li><code>WebDAV.maxRepositoryBytes</code> (1GB by default): the largest
+ *   a repository's work tree may grow to.</li>
+ * </ul>
+ * <p>
+ * Exceeding either storage limit is answered with 507 Insufficient
+ * Storage.  The size of each work tree is measured by walking it once,
+ * and then kept up to date as uploads complete, so a PUT does not rescan
+ * the repository; a user's total is the sum of those measurements.  The
+ * measurements are repeated after deletes, moves, and copies made through
+ * WebDAV, and once they are older than
+ * <code>WebDAV.repositorySizeSeconds</code> (5 minutes by default), which
+ * bounds how long changes made outside of WebDAV can go unnoticed.
+ * </p><p>
+ * No locks are held while data is being received.
+ * </p>
+ *
+ * @author  Stephen Edwards
+ */
+public class AtomicUpload
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Prepares an upload.
+     *
+     * @param workingCopy The working copy that will receive the file.
+     * @param destination The file to create or replace.
+     * @param user        The user making the upload.
+     */
+    public AtomicUpload(Repository workingCopy, File destination, User user)
+    {
+        this.workingCopy = workingCopy;
+        this.destination = destination;
+        this.user = user;
+        this.userId = user.id();
+    }
+
+
+    //~ Methods ...............................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Checks a declared upload size against the amount the uploading user
+     * may have in flight, so that uploads that cannot succeed now are
+     * refused before any of their content is read.
+     *
+     * @param user   The user making the upload.
+     * @param length The declared size of the upload in bytes.
+     *
+     * @throws UploadQuotaException if the upload is too large.
+     */
+    public static void checkInFlightLimit(User user, long length)
+        throws UploadQuotaException
+    {
+        checkInFlightLimit(user.id(), length);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Discards the measured size of a working copy after files in it have
+     * been deleted, moved, or copied, so the next upload measures it
+     * again.
+     *
+     * @param workingCopy The working copy.
+     */
+    public static void workTreeChanged(Repository workingCopy)
+    {
+        storedSizes.remove(workTreeKey(workingCopy));
+        // Each user total is just a sum of work tree sizes, so they are
+        // cheap to recompute
+        userSizes.clear();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Checks the declared size of this upload against all of the limits.
+     *
+     * @param length The value of the Content-Length header, or null if
+     *               the client did not send one.
+     *
+     * @throws IOException if the upload is too large, or the size of the
+     * repository cannot be determined.
+     */
+    public void checkLength(Long length)
+        throws IOException
+    {
+        if (length != null)
+        {
+            checkInFlightLimit(userId, length);
+            checkRepositoryQuota(length);
+            checkUserQuota(length);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Streams the content into place.  If the content is incomplete or
+     * exceeds a limit, the destination is left untouched.
+     *
+     * @param in The content to store.
+     *
+     * @throws IOException if the content cannot be read or stored, or
+     * exceeds a limit.
+     */
+    public void write(InputStream in)
+        throws IOException
+    {
+        File tempDir = new File(workingCopy.getDirectory(), TEMP_DIR_NAME);
+        if (!tempDir.isDirectory() && !tempDir.mkdirs())
+        {
+            throw new IOException("Cannot create " + tempDir);
+        }
+
+        File temp = File.createTempFile("upload", ".tmp", tempDir);
+        FileOutputStream out = null;
+        AtomicLong userTotal = reserve();
+        long written = 0;
+        boolean stored = false;
+
+        try
+        {
+            out = new FileOutputStream(temp);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) > 0)
+            {
+                written += count;
+                if (userTotal.addAndGet(count) > MAX_IN_FLIGHT_BYTES)
+                {
+                    throw inFlightLimitExceeded();
+                }
+                checkRepositoryQuota(written);
+                checkUserQuota(written);
+                out.write(buffer, 0, count);
+            }
+
+            out.getFD().sync();
+            out.close();
+            out = null;
+
+            long replaced = destination.isFile() ? destination.length() : 0;
+            moveIntoPlace(temp);
+            stored = true;
+            if (workTreeBytes != null)
+            {
+                workTreeBytes.addAndGet(written - replaced);
+            }
+            if (userBytes != null)
+            {
+                userBytes.addAndGet(written - replaced);
+            }
+        }
+        finally
+        {
+            release(userTotal, written);
+            if (!stored)
+            {
+                FileUtilities.closeQuietly(out);
+                if (!temp.delete())
+                {
+                    log.warn("Cannot delete partial upload " + temp);
+                }
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private static void checkInFlightLimit(Number userId, long length)
+        throws UploadQuotaException
+    {
+        AtomicLong current = uploading.get(userId);
+        long inProgress = (current == null) ? 0 : current.get();
+        if (inProgress + length > MAX_IN_FLIGHT_BYTES)
+        {
+            throw inFlightLimitExceeded();
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private static UploadQuotaException inFlightLimitExceeded()
+    {
+        return new UploadQuotaException("Upload exceeds the limit of "
+            + MAX_IN_FLIGHT_BYTES
+            + " bytes being uploaded at once by one user",
+            UploadQuotaException.REQUEST_TOO_LARGE);
+    }
+
+
+    // ----------------------------------------------------------
+    private void checkRepositoryQuota(long length)
+        throws IOException
+    {
+        if (repositoryBytes < 0)
+        {
+            // The file being replaced will no longer count
+            workTreeBytes = workTreeBytes();
+            repositoryBytes = workTreeBytes.get()
+                - (destination.isFile() ? destination.length() : 0);
+        }
+        if (repositoryBytes + length > MAX_REPOSITORY_BYTES)
+        {
+            throw new UploadQuotaException(
+                "Upload would exceed the repository size limit of "
+                + MAX_REPOSITORY_BYTES + " bytes",
+                UploadQuotaException.INSUFFICIENT_STORAGE);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private void checkUserQuota(long length)
+        throws IOException
+    {
+        if (storedByUser < 0)
+        {
+            userBytes = userBytes();
+            storedByUser = userBytes.get()
+                - (destination.isFile() ? destination.length() : 0);
+        }
+        if (storedByUser + length > MAX_USER_BYTES)
+        {
+            throw new UploadQuotaException(
+                "Upload would exceed the limit of " + MAX_USER_BYTES
+                + " bytes stored by one user",
+                UploadQuotaException.INSUFFICIENT_STORAGE);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private AtomicLong reserve()
+    {
+        AtomicLong total = uploading.get(userId);
+        if (total == null)
+        {
+            AtomicLong created = new AtomicLong();
+            total = uploading.putIfAbsent(userId, created);
+            if (total == null)
+            {
+                total = created;
+            }
+        }
+        return total;
+    }
+
+
+    // ----------------------------------------------------------
+    private void release(AtomicLong total, long bytes)
+    {
+        if (total.addAndGet(-bytes) <= 0)
+        {
+            // Only drop the counter if no other upload has started using it
+            uploading.remove(userId, total);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private void moveIntoPlace(File temp)
+        throws IOException
+    {
+        try
+        {
+            Files.move(temp.toPath(), destination.toPath(),
+                StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e)
+        {
+            log.warn("Atomic rename not supported for " + destination
+                + ", replacing it non-atomically");
+            Files.move(temp.toPath(), destination.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the running total of the bytes stored in this upload's work
+     * tree, measuring it if there is no recent measurement.
+     */
+    private AtomicLong workTreeBytes()
+        throws IOException
+    {
+        return workTreeBytes(workingCopy.getWorkTree());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the running total of the bytes stored in a work tree, measuring
+     * it if there is no recent measurement.
+     */
+    private static AtomicLong workTreeBytes(File workTree)
+        throws IOException
+    {
+        String key = workTree.getAbsolutePath();
+        long now = System.currentTimeMillis();
+        StoredSize size = storedSizes.get(key);
+        if (size == null || now - size.measuredAt > MAX_SIZE_AGE_MILLIS)
+        {
+            size = new StoredSize(workTreeSize(workTree), now);
+            storedSizes.put(key, size);
+        }
+        return size.bytes;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Gets the running total of the bytes stored in all of the
+     * repositories presented to the uploading user, adding up their
+     * measured work tree sizes if there is no recent total.  Repositories
+     * that have never been checked out have no work tree and count as
+     * empty.
+     */
+    private AtomicLong userBytes()
+        throws IOException
+    {
+        long now = System.currentTimeMillis();
+        StoredSize size = userSizes.get(userId);
+        if (size == null || now - size.measuredAt > MAX_SIZE_AGE_MILLIS)
+        {
+            long total = 0;
+            for (EOBase provider : RepositoryManager.getInstance()
+                .repositoriesPresentedToUser(user, user.editingContext()))
+            {
+                File workTree = Application.wcApplication()
+                    .workingCopyPathForObject(provider);
+                if (workTree != null && workTree.isDirectory())
+                {
+                    total += workTreeBytes(workTree).get();
+                }
+            }
+            size = new StoredSize(total, now);
+            userSizes.put(userId, size);
+        }
+        return size.bytes;
+    }
+
+
+    // ----------------------------------------------------------
+    private static String workTreeKey(Repository workingCopy)
+    {
+        return workingCopy.getWorkTree().getAbsolutePath();
+    }
+
+
+    // ----------------------------------------------------------
+    private static long workTreeSize(File workTree)
+        throws IOException
+    {
+        final long[] total = { 0 };
+        Files.walkFileTree(workTree.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(
+                Path dir, BasicFileAttributes attributes)
+            {
+                return Constants.DOT_GIT.equals(String.valueOf(
+                    dir.getFileName()))
+                    ? FileVisitResult.SKIP_SUBTREE
+                    : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(
+                Path file, BasicFileAttributes attributes)
+            {
+                total[0] += attributes.size();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return total[0];
+    }
+
+
+    //~ Nested classes ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * The measured size of a work tree, adjusted as uploads complete.
+     */
+    private static class StoredSize
+    {
+        // ----------------------------------------------------------
+        public StoredSize(long bytes, long measuredAt)
+        {
+            this.bytes = new AtomicLong(bytes);
+            this.measuredAt = measuredAt;
+        }
+
+
+        //~ Instance/static variables .........................................
+
+        public final AtomicLong bytes;
+        public final long measuredAt;
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private final Repository workingCopy;
+    private final File destination;
+    private final User user;
+    private final Number userId;
+    private long repositoryBytes = -1;
+    private AtomicLong workTreeBytes;
+    private long storedByUser = -1;
+    private AtomicLong userBytes;
+
+    /** Bytes being uploaded right now, by user ID. */
+    private static final ConcurrentMap<Number, AtomicLong> uploading =
+        new ConcurrentHashMap<Number, AtomicLong>();
+
+    /** Measured work tree sizes, by work tree path. */
+    private static final ConcurrentMap<String, StoredSize> storedSizes =
+        new ConcurrentHashMap<String, StoredSize>();
+
+    /** Total sizes of the repositories presented to a user, by user ID. */
+    private static final ConcurrentMap<Number, StoredSize> userSizes =
+        new ConcurrentHashMap<Number, StoredSize>();
+
+    private static final long MAX_IN_FLIGHT_BYTES =
+        ERXProperties.longForKeyWithDefault(
+            "WebDAV.maxUserBytesInFlight", 100L * 1024 * 1024);
+    private static final long MAX_USER_BYTES =
+        ERXProperties.longForKeyWithDefault(
+            "WebDAV.maxUserBytes", 2L * 1024 * 1024 * 1024);
+    private static final long MAX_REPOSITORY_BYTES =
+        ERXProperties.longForKeyWithDefault(
+            "WebDAV.maxRepositoryBytes", 1024L * 1024 * 1024);
+    private static final long MAX_SIZE_AGE_MILLIS = 1000L
+        * ERXProperties.longForKeyWithDefault(
+            "WebDAV.repositorySizeSeconds", 5 * 60);
+
+    private static final String TEMP_DIR_NAME = "webdav-uploads";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    static final Logger log = Logger.getLogger(AtomicUpload.class);
+}
@@ -72,6 +72,13 @@ import com.webobjects.eocontrol.EOEnterpriseObject;
     }
 
 
+    // ----------------------------------------------------------
+    public Repository workingCopy()
+    {
+        return workingCopy;
+    }
+
+
     // ----------------------------------------------------------
     public String path()
     {
@@ -26,7 +26,6 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import org.apache.log4j.Logger;
@@ -91,7 +90,16 @@ public class DirectoryResource
     public DirectoryResource(WorkingCopyResourceFactory factory, DAVPath path,
             Repository workingCopy, String shadowName)
     {
-        super(factory, path, workingCopy);
+        this(factory, path, workingCopy, shadowName, null);
+    }
+
+
+    // ----------------------------------------------------------
+    /*package*/ DirectoryResource(WorkingCopyResourceFactory factory,
+            DAVPath path, Repository workingCopy, String shadowName,
+            MetadataCache.FileInfo info)
+    {
+        super(factory, path, workingCopy, info);
 
         this.shadowName = shadowName;
     }
@@ -125,6 +133,7 @@ public class DirectoryResource
         log.debug("createCollection: " + path() + ", " + name);
 
         DAVPath fnew = new DAVPath(path(), name);
+        factory().invalidate(fnew);
         boolean ok = fnew.toFile().mkdir();
 
         if (!ok)
@@ -140,36 +149,16 @@ public class DirectoryResource
     // ----------------------------------------------------------
     public Resource child(String name)
     {
-        DAVPath fchild = new DAVPath(path(), name);
-        return factory().resolveFile(fchild, workingCopy());
+        return factory().resolveChild(path(), name, workingCopy());
     }
 
 
     // ----------------------------------------------------------
     public List<? extends Resource> getChildren()
     {
-        ArrayList<AbstractFSResource> list =
-            new ArrayList<AbstractFSResource>();
-        File[] files = path().toFile().listFiles();
-        if (files != null)
-        {
-            for (File fchild : files)
-            {
-                DAVPath childPath = new DAVPath(path(), fchild.getName());
-                AbstractFSResource res = factory().resolveFile(childPath,
-                        workingCopy());
-
-                if (res != null)
-                {
-                    list.add(res);
-                }
-                else
-                {
-                    log.error("Couldnt resolve file " + childPath);
-                }
-            }
-        }
-        return list;
+        // Built from one scan of the directory, rather than looking up
+        // each child separately
+        return factory().resolveChildren(path(), workingCopy());
     }
 
 
@@ -197,22 +186,30 @@ public class DirectoryResource
 
         log.debug("createNew: " + path() + ", " + name);
 
+        // The upload only replaces the file once it has been received in
+        // full, and is only committed after that
         DAVPath destPath = new DAVPath(path(), name);
-        FileOutputStream out = null;
+        AtomicUpload upload = new AtomicUpload(
+                workingCopy(), destPath.toFile(), currentUser());
         try
         {
-            out = new FileOutputStream(destPath.toFile());
-            FileUtilities.copyStream(in, out);
+            upload.checkLength(length);
+            upload.write(in);
+        }
+        catch (UploadQuotaException e)
+        {
+            MiltonRequestWrapper.currentRequest().setUserInfoForKey(
+                    e, UploadQuotaException.class.getName());
+            throw e;
         }
         finally
         {
-            FileUtilities.closeQuietly(out);
+            factory().invalidate(destPath);
         }
 
         pushWorkingCopy();
 
         return factory().resolveFile(destPath, workingCopy());
-
     }
 
 
@@ -248,6 +245,7 @@ public class DirectoryResource
         log.debug("createAndLock: " + path() + ", " + name);
 
         DAVPath dest = new DAVPath(path(), name);
+        factory().invalidate(dest);
         createEmptyFile(dest);
         FileResource newRes = new FileResource(factory(), dest, workingCopy());
         LockResult res = newRes.lock(timeout, lockInfo);
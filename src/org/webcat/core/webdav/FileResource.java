@@ -64,6 +64,14 @@ public class FileResource
     }
 
 
+    // ----------------------------------------------------------
+    /*package*/ FileResource(WorkingCopyResourceFactory factory, DAVPath path,
+            Repository workingCopy, MetadataCache.FileInfo info)
+    {
+        super(factory, path, workingCopy, info);
+    }
+
+
     //~ Methods ...............................................................
 
     // ----------------------------------------------------------
@@ -83,7 +91,7 @@ public class FileResource
     // ----------------------------------------------------------
     public Long getContentLength()
     {
-        return path().toFile().length();
+        return info().size;
     }
 
 
@@ -0,0 +1,392 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.core.webdav;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.log4j.Logger;
+import org.eclipse.jgit.lib.Constants;
+
+//-------------------------------------------------------------------------
+/**
+ * Caches the names, types, sizes, and modification times of the files in
+ * working copy directories, so that listing a folder over WebDAV (a
+ * Depth:1 PROPFIND, as sent by Explorer and Finder whenever a folder is
+ * opened) takes one directory scan instead of several file system calls
+ * per child.
+ * <p>
+ * A directory's listing is read with a single directory stream, fetching
+ * each child's attributes in the same pass.  It is reused until it is
+ * {@link #invalidate(DAVPath) invalidated} by a write through WebDAV, the
+ * directory's own modification time changes (as it does when another
+ * process adds, removes, or renames a child), or it is older than
+ * <code>WebDAV.metadataCacheSeconds</code> (5 by default), which bounds
+ * how long changes to existing files made outside of WebDAV can go
+ * unnoticed.
+ * </p><p>
+ * Listings are keyed by the lower-cased directory path, matching the
+ * case-insensitive equality of {@link DAVPath}, so a write through a path
+ * spelled in a different case still invalidates them.  A listing is only
+ * reused for a directory spelled exactly as it was when it was scanned.
+ * </p><p>
+ * The working copy's <code>.git</code> directory is left out of listings.
+ * </p>
+ *
+ * @author  Stephen Edwards
+ */
+/*package*/ class MetadataCache
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Create a new cache.
+     *
+     * @param maxAgeMillis   How long a listing may be reused.
+     * @param maxDirectories The most listings to keep for one working copy.
+     */
+    public MetadataCache(long maxAgeMillis, int maxDirectories)
+    {
+        this.maxAgeMillis = maxAgeMillis;
+        this.maxDirectories = maxDirectories;
+    }
+
+
+    //~ Methods ...............................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Get the metadata of the files in a directory.
+     *
+     * @param dir The directory.
+     *
+     * @return The metadata of its children, or an empty collection if it
+     * is not a readable directory.
+     */
+    public Collection<FileInfo> children(DAVPath dir)
+    {
+        return listing(dir).children.values();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the metadata of one file in a directory from the directory's
+     * cached listing, without scanning the directory if it has none.
+     *
+     * @param dir  The directory.
+     * @param name The name of the file.
+     *
+     * @return The file's metadata, or null if no current listing of the
+     * directory is cached or the listing has no child with that name.
+     */
+    public FileInfo cachedChild(DAVPath dir, String name)
+    {
+        Listing listing = cachedListing(dir, listingsFor(dir),
+            System.currentTimeMillis());
+        return (listing == null) ? null : listing.children.get(name);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Discard what is known about a file that has been created, changed,
+     * or deleted.  This discards the listing of the directory containing
+     * it and, if it is a directory, the listings of everything inside it.
+     *
+     * @param path The path of the file.
+     */
+    public void invalidate(DAVPath path)
+    {
+        ConcurrentMap<String, Listing> listings =
+            byWorkingCopy.get(workingCopyKey(path));
+        if (listings == null)
+        {
+            return;
+        }
+
+        if (path.parent() != null)
+        {
+            listings.remove(pathKey(path.parent()));
+        }
+
+        String pathKey = pathKey(path);
+        String prefix = pathKey + "/";
+        Iterator<String> keys = listings.keySet().iterator();
+        while (keys.hasNext())
+        {
+            String key = keys.next();
+            if (key.equals(pathKey) || key.startsWith(prefix)
+                || path.isRoot())
+            {
+                keys.remove();
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private Listing listing(DAVPath dir)
+    {
+        ConcurrentMap<String, Listing> listings = listingsFor(dir);
+        long now = System.currentTimeMillis();
+
+        Listing listing = cachedListing(dir, listings, now);
+        if (listing != null)
+        {
+            return listing;
+        }
+
+        // Read the directory's time first, so a change made during the
+        // scan makes this listing stale rather than being missed
+        File file = dir.toFile();
+        listing = new Listing(dir.path(), file.lastModified(), now,
+            scan(file, dir.isRoot()));
+        if (listings.size() >= maxDirectories)
+        {
+            listings.clear();
+        }
+        listings.put(pathKey(dir), listing);
+        return listing;
+    }
+
+
+    // ----------------------------------------------------------
+    private Listing cachedListing(
+        DAVPath dir, ConcurrentMap<String, Listing> listings, long now)
+    {
+        Listing listing = listings.get(pathKey(dir));
+        return (listing != null
+            && listing.path.equals(dir.path())
+            && now - listing.scannedAt < maxAgeMillis
+            && dir.toFile().lastModified() == listing.directoryModified)
+            ? listing
+            : null;
+    }
+
+
+    // ----------------------------------------------------------
+    private static Map<String, FileInfo> scan(File dir, boolean isRoot)
+    {
+        Map<String, FileInfo> children = new LinkedHashMap<String, FileInfo>();
+        try
+        {
+            DirectoryStream<Path> stream = Files.newDirectoryStream(
+                dir.toPath());
+            try
+            {
+                for (Path child : stream)
+                {
+                    String name = child.getFileName().toString();
+                    if (isRoot && Constants.DOT_GIT.equals(name))
+                    {
+                        continue;
+                    }
+
+                    BasicFileAttributes attributes;
+                    try
+                    {
+                        attributes = Files.readAttributes(
+                            child, BasicFileAttributes.class);
+                    }
+                    catch (IOException e)
+                    {
+                        // Deleted since the directory was read, or a
+                        // broken link
+                        continue;
+                    }
+                    children.put(name, new FileInfo(name,
+                        attributes.isDirectory(),
+                        attributes.size(),
+                        attributes.lastModifiedTime().toMillis()));
+                }
+            }
+            finally
+            {
+                stream.close();
+            }
+        }
+        catch (IOException e)
+        {
+            log.debug("cannot list " + dir, e);
+        }
+        return Collections.unmodifiableMap(children);
+    }
+
+
+    // ----------------------------------------------------------
+    private ConcurrentMap<String, Listing> listingsFor(DAVPath path)
+    {
+        String key = workingCopyKey(path);
+        ConcurrentMap<String, Listing> listings = byWorkingCopy.get(key);
+        if (listings == null)
+        {
+            ConcurrentMap<String, Listing> created =
+                new ConcurrentHashMap<String, Listing>();
+            listings = byWorkingCopy.putIfAbsent(key, created);
+            if (listings == null)
+            {
+                listings = created;
+            }
+        }
+        return listings;
+    }
+
+
+    // ----------------------------------------------------------
+    private static String workingCopyKey(DAVPath path)
+    {
+        return path.workingCopy().getWorkTree().getAbsolutePath();
+    }
+
+
+    // ----------------------------------------------------------
+    private static String pathKey(DAVPath path)
+    {
+        return path.path().toLowerCase();
+    }
+
+
+    //~ Nested classes ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * The metadata of a single file or directory.
+     */
+    public static class FileInfo
+    {
+        // ----------------------------------------------------------
+        public FileInfo(
+            String name, boolean directory, long size, long lastModified)
+        {
+            this.name = name;
+            this.directory = directory;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Read the metadata of a file directly.
+         *
+         * @param file The file.
+         * @return Its metadata.
+         */
+        public static FileInfo forFile(File file)
+        {
+            return new FileInfo(file.getName(), file.isDirectory(),
+                file.length(), file.lastModified());
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Read the metadata of a file directly, with a single file system
+         * call.
+         *
+         * @param file The file.
+         * @return Its metadata, or null if it does not exist.
+         */
+        public static FileInfo read(File file)
+        {
+            try
+            {
+                BasicFileAttributes attributes = Files.readAttributes(
+                    file.toPath(), BasicFileAttributes.class);
+                return new FileInfo(file.getName(),
+                    attributes.isDirectory(),
+                    attributes.size(),
+                    attributes.lastModifiedTime().toMillis());
+            }
+            catch (IOException e)
+            {
+                return null;
+            }
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Get the value used as the file's WebDAV unique ID (and ETag).
+         *
+         * @return The unique ID.
+         */
+        public String uniqueId()
+        {
+            return (lastModified + "_" + size).hashCode() + "";
+        }
+
+
+        //~ Instance/static variables .........................................
+
+        public final String name;
+        public final boolean directory;
+        public final long size;
+        public final long lastModified;
+    }
+
+
+    // ----------------------------------------------------------
+    private static class Listing
+    {
+        // ----------------------------------------------------------
+        public Listing(String path, long directoryModified, long scannedAt,
+            Map<String, FileInfo> children)
+        {
+            this.path = path;
+            this.directoryModified = directoryModified;
+            this.scannedAt = scannedAt;
+            this.children = children;
+        }
+
+
+        //~ Instance/static variables .........................................
+
+        public final String path;
+        public final long directoryModified;
+        public final long scannedAt;
+        public final Map<String, FileInfo> children;
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private final long maxAgeMillis;
+    private final int maxDirectories;
+
+    /** Listings by lower-cased directory path, for each work tree. */
+    private final ConcurrentMap<String, ConcurrentMap<String, Listing>>
+        byWorkingCopy =
+            new ConcurrentHashMap<String, ConcurrentMap<String, Listing>>();
+
+    static Logger log = Logger.getLogger(MetadataCache.class);
+}
@@ -0,0 +1,78 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.core.webdav;
+
+import java.io.IOException;
+
+//-------------------------------------------------------------------------
+/**
+ * Thrown when a WebDAV upload would exceed the amount the uploading user
+ * may have in flight at once, the amount that user may have stored, or the
+ * size limit of the target repository.
+ * The exception carries the HTTP status that the client should receive,
+ * which {@link WebDAVHandler} substitutes for the generic error that
+ * Milton would otherwise send.
+ *
+ * @author  Stephen Edwards
+ */
+public class UploadQuotaException
+    extends IOException
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Creates a new exception.
+     *
+     * @param message The message to send to the client.
+     * @param status  The HTTP status to send to the client.
+     */
+    public UploadQuotaException(String message, int status)
+    {
+        super(message);
+        this.status = status;
+    }
+
+
+    //~ Methods ...............................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Get the HTTP status that the client should receive.
+     *
+     * @return The status code.
+     */
+    public int status()
+    {
+        return status;
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    /** HTTP status for an upload that is larger than the user may send. */
+    public static final int REQUEST_TOO_LARGE = 413;
+
+    /** HTTP status for an upload that would exceed a storage limit. */
+    public static final int INSUFFICIENT_STORAGE = 507;
+
+    private final int status;
+    private static final long serialVersionUID = 1L;
+}
@@ -21,6 +21,7 @@
 
 package org.webcat.core.webdav;
 
+import org.webcat.core.Session;
 import org.webcat.core.http.RequestHandlerWithResponse;
 import org.webcat.core.webdav.MiltonRequestWrapper;
 import org.webcat.core.webdav.MiltonResponseWrapper;
@@ -57,12 +58,51 @@ public class WebDAVHandler implements RequestHandlerWithResponse
     // ----------------------------------------------------------
     public void handleRequest(WORequest request, WOResponse response)
     {
-        MiltonRequestWrapper miltonRequest =
-            new MiltonRequestWrapper(request);
-        MiltonResponseWrapper miltonResponse =
-            new MiltonResponseWrapper(response);
+        UploadQuotaException quotaError = null;
 
-        httpManager.process(miltonRequest, miltonResponse);
+        // Refuse uploads that are declared to be too large before reading
+        // any of their content
+        String length = request.headerForKey("content-length");
+        if ("PUT".equals(request.method()) && length != null)
+        {
+            try
+            {
+                Session session = (Session) request.context().session();
+                AtomicUpload.checkInFlightLimit(
+                    session.primeUser(), Long.parseLong(length.trim()));
+            }
+            catch (NumberFormatException e)
+            {
+                // Leave it to Milton to reject
+            }
+            catch (UploadQuotaException e)
+            {
+                quotaError = e;
+            }
+        }
+
+        if (quotaError == null)
+        {
+            MiltonRequestWrapper miltonRequest =
+                new MiltonRequestWrapper(request);
+            MiltonResponseWrapper miltonResponse =
+                new MiltonResponseWrapper(response);
+
+            httpManager.process(miltonRequest, miltonResponse);
+
+            // Milton reports any exception from a resource as a server
+            // error, so substitute the proper status for quota failures
+            quotaError = (UploadQuotaException) request.userInfoForKey(
+                UploadQuotaException.class.getName());
+        }
+
+        if (quotaError != null)
+        {
+            response.setStatus(quotaError.status());
+            response.setHeader("text/plain", "content-type");
+            response.setHeader("close", "connection");
+            response.setContent(quotaError.getMessage());
+        }
     }
 
 
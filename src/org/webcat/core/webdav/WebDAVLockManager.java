@@ -0,0 +1,859 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.core.webdav;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Logger;
+import org.webcat.core.Application;
+import org.webcat.core.WCProperties;
+import com.bradmcevoy.http.LockInfo;
+import com.bradmcevoy.http.LockResult;
+import com.bradmcevoy.http.LockTimeout;
+import com.bradmcevoy.http.LockToken;
+import com.bradmcevoy.http.LockableResource;
+import com.bradmcevoy.http.LockResult.FailureReason;
+import com.bradmcevoy.http.exceptions.NotAuthorizedException;
+import com.ettrema.http.fs.LockManager;
+
+//-------------------------------------------------------------------------
+/**
+ * The lock manager shared by all WebDAV resources.
+ * <p>
+ * Locks are kept in a separate concurrent map for each working copy, and
+ * are only ever changed with atomic compare-and-set operations, so LOCK,
+ * refresh, UNLOCK, and lock discovery requests never wait on each other,
+ * even for the same repository.  Office-style clients that refresh their
+ * locks every few seconds therefore cost no more than a map update.
+ * </p><p>
+ * Expired locks are removed by a background sweeper that ticks once a
+ * second over a hashed timer wheel, so the cost of expiry depends only on
+ * the number of locks actually due.  Every lock is also checked for expiry
+ * whenever it is used, so a late sweep never keeps a dead lock alive.
+ * </p><p>
+ * Changes are appended to a journal file by the sweeper thread, and the
+ * journal is replayed when the server starts, so clients keep their locks
+ * across a restart.  The journal is compacted to just the live locks at
+ * startup and whenever it grows well beyond them.  Its location is set by
+ * the <code>WebDAV.lockJournal</code> property, and defaults to a file in
+ * the storage directory.  The longest lock that a client may hold is set
+ * by <code>WebDAV.maxLockSeconds</code> (one hour by default).
+ * </p>
+ *
+ * @author  Stephen Edwards
+ */
+public class WebDAVLockManager
+    implements LockManager
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Create a new lock manager.
+     *
+     * @param journal        The journal file, or null to keep locks only in
+     *                       memory.
+     * @param maxLockSeconds The longest time a lock may be held without
+     *                       being refreshed.
+     */
+    public WebDAVLockManager(File journal, long maxLockSeconds)
+    {
+        this.journal = journal;
+        this.maxLockSeconds = Math.max(1, maxLockSeconds);
+
+        @SuppressWarnings("unchecked")
+        Queue<ActiveLock>[] slots = new Queue[WHEEL_SLOTS];
+        for (int i = 0; i < slots.length; i++)
+        {
+            slots[i] = new ConcurrentLinkedQueue<ActiveLock>();
+        }
+        wheel = slots;
+
+        if (journal != null)
+        {
+            restore();
+        }
+
+        sweeper = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r, "WebDAVLockManager");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        sweeper.scheduleWithFixedDelay(new Runnable() {
+                public void run()
+                {
+                    try
+                    {
+                        sweep(System.currentTimeMillis());
+                        writeJournal();
+                    }
+                    catch (Throwable t)
+                    {
+                        log.error("unable to sweep WebDAV locks", t);
+                    }
+                }
+            }, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+
+    //~ Methods ...............................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Get the application-wide lock manager, creating it from the
+     * application's configuration properties on first use.
+     *
+     * @return The shared lock manager
+     */
+    public static synchronized WebDAVLockManager manager()
+    {
+        if (sharedManager == null)
+        {
+            WCProperties properties = Application.configurationProperties();
+            String path = properties.getProperty("WebDAV.lockJournal");
+            File journalFile = null;
+            if (path != null && path.length() > 0)
+            {
+                journalFile = new File(path);
+            }
+            else if (properties.getProperty("grader.submissiondir") != null)
+            {
+                journalFile = new File(
+                    Application.storageDirectory(), "_WebDAVLocks.journal");
+            }
+            sharedManager = new WebDAVLockManager(journalFile,
+                properties.longForKeyWithDefault(
+                    "WebDAV.maxLockSeconds", 60 * 60));
+        }
+        return sharedManager;
+    }
+
+
+    // ----------------------------------------------------------
+    public LockResult lock(
+        LockTimeout timeout, LockInfo lockInfo, LockableResource r)
+    {
+        if (!(r instanceof AbstractFSResource))
+        {
+            return LockResult.failed(FailureReason.PRECONDITION_FAILED);
+        }
+
+        DAVPath path = ((AbstractFSResource) r).path();
+        ConcurrentMap<String, ActiveLock> locks =
+            locksFor(repositoryKey(path));
+        long now = System.currentTimeMillis();
+        ActiveLock lock = new ActiveLock(repositoryKey(path), pathKey(path),
+            UUID.randomUUID().toString(), lockInfo, lockSeconds(timeout),
+            now);
+
+        while (true)
+        {
+            ActiveLock existing = locks.putIfAbsent(lock.path, lock);
+            if (existing == null)
+            {
+                break;
+            }
+            else if (!existing.isExpired(now))
+            {
+                conflicts.incrementAndGet();
+                return LockResult.failed(FailureReason.ALREADY_LOCKED);
+            }
+            else if (locks.replace(lock.path, existing, lock))
+            {
+                forget(existing);
+                expirations.incrementAndGet();
+                break;
+            }
+            retries.incrementAndGet();
+        }
+
+        byToken.put(lock.tokenId, lock);
+        schedule(lock);
+        pendingJournal.add(lock.toJournal());
+        granted.incrementAndGet();
+        return LockResult.success(lock.token());
+    }
+
+
+    // ----------------------------------------------------------
+    public LockResult refresh(String tokenId, LockableResource resource)
+    {
+        ActiveLock located = byToken.get(tokenId);
+        ConcurrentMap<String, ActiveLock> locks = (located == null)
+            ? null
+            : byRepository.get(located.repository);
+
+        while (locks != null)
+        {
+            long now = System.currentTimeMillis();
+            ActiveLock current = locks.get(located.path);
+            if (current == null
+                || !current.tokenId.equals(tokenId)
+                || current.isExpired(now))
+            {
+                break;
+            }
+
+            ActiveLock refreshed = current.refreshedAt(now);
+            if (locks.replace(located.path, current, refreshed))
+            {
+                pendingJournal.add(refreshed.toJournal());
+                refreshes.incrementAndGet();
+                return LockResult.success(refreshed.token());
+            }
+            retries.incrementAndGet();
+        }
+
+        log.debug("can't refresh because no lock");
+        return LockResult.failed(FailureReason.PRECONDITION_FAILED);
+    }
+
+
+    // ----------------------------------------------------------
+    public void unlock(String tokenId, LockableResource r)
+        throws NotAuthorizedException
+    {
+        if (!(r instanceof AbstractFSResource))
+        {
+            return;
+        }
+
+        AbstractFSResource resource = (AbstractFSResource) r;
+        ConcurrentMap<String, ActiveLock> locks =
+            byRepository.get(repositoryKey(resource.path()));
+        String key = pathKey(resource.path());
+        ActiveLock current = (locks == null) ? null : locks.get(key);
+
+        if (current == null || current.isExpired(System.currentTimeMillis()))
+        {
+            log.debug("not locked");
+        }
+        else if (!current.tokenId.equals(tokenId))
+        {
+            throw new NotAuthorizedException(resource);
+        }
+        else
+        {
+            // Refreshes only replace a lock with one carrying the same
+            // token, so retry until whichever version is current is gone
+            while (current != null
+                && current.tokenId.equals(tokenId)
+                && !locks.remove(key, current))
+            {
+                retries.incrementAndGet();
+                current = locks.get(key);
+            }
+            forget(current);
+            released.incrementAndGet();
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    public LockToken getCurrentToken(LockableResource r)
+    {
+        if (!(r instanceof AbstractFSResource))
+        {
+            return null;
+        }
+
+        DAVPath path = ((AbstractFSResource) r).path();
+        ConcurrentMap<String, ActiveLock> locks =
+            byRepository.get(repositoryKey(path));
+        ActiveLock lock = (locks == null) ? null : locks.get(pathKey(path));
+
+        return (lock == null || lock.isExpired(System.currentTimeMillis()))
+            ? null
+            : lock.token();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the number of locks currently held.
+     *
+     * @return The number of locks
+     */
+    public int lockCount()
+    {
+        return byToken.size();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Produce a compact one-line summary of locking activity, for the
+     * administrator's status page.  "Conflicts" are LOCK requests refused
+     * because the resource was already locked; "retries" are updates that
+     * had to be repeated because another request changed the same lock at
+     * the same moment.
+     *
+     * @return The summary
+     */
+    public String summary()
+    {
+        return lockCount() + " held, " + granted.get() + " granted, "
+            + refreshes.get() + " refreshed, " + released.get()
+            + " released, " + expirations.get() + " expired, "
+            + conflicts.get() + " conflicts, " + retries.get() + " retries";
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get a summary of the shared lock manager's activity, without
+     * creating it if WebDAV has not been used yet.
+     *
+     * @return The summary
+     */
+    public static synchronized String sharedSummary()
+    {
+        return (sharedManager == null)
+            ? "not in use"
+            : sharedManager.summary();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Remove a lock that is no longer in its repository's map from the
+     * token index, and record its removal in the journal.  The index keeps
+     * the record the lock was granted with, while its repository's map
+     * holds the latest refresh, so the entry is removed by token alone.
+     */
+    private void forget(ActiveLock lock)
+    {
+        if (lock != null)
+        {
+            byToken.remove(lock.tokenId);
+            pendingJournal.add(UNLOCK + SEPARATOR + lock.tokenId);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private ConcurrentMap<String, ActiveLock> locksFor(String repository)
+    {
+        ConcurrentMap<String, ActiveLock> locks =
+            byRepository.get(repository);
+        if (locks == null)
+        {
+            ConcurrentMap<String, ActiveLock> created =
+                new ConcurrentHashMap<String, ActiveLock>();
+            locks = byRepository.putIfAbsent(repository, created);
+            if (locks == null)
+            {
+                locks = created;
+            }
+        }
+        return locks;
+    }
+
+
+    // ----------------------------------------------------------
+    private long lockSeconds(LockTimeout timeout)
+    {
+        Long seconds = (timeout == null) ? null : timeout.getSeconds();
+        return (seconds == null || seconds <= 0 || seconds > maxLockSeconds)
+            ? maxLockSeconds
+            : seconds;
+    }
+
+
+    // ----------------------------------------------------------
+    private static String repositoryKey(DAVPath path)
+    {
+        return path.workingCopy().getWorkTree().getAbsolutePath();
+    }
+
+
+    // ----------------------------------------------------------
+    private static String pathKey(DAVPath path)
+    {
+        // Paths are compared case-insensitively, as in DAVPath.equals()
+        return path.path().toLowerCase();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Add a lock to the timer wheel slot for its expiry time.  Each lock
+     * token is in the wheel only once: refreshing a lock does not add it
+     * again, but when its old slot comes due, the sweeper moves it to the
+     * slot for its new expiry time.
+     */
+    private void schedule(ActiveLock lock)
+    {
+        long tick = Math.max(lock.expiresAt / TICK_MILLIS, lastTick + 1);
+        wheel[(int) (tick % WHEEL_SLOTS)].add(lock);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Remove the locks that have expired since the last sweep.
+     */
+    private void sweep(long now)
+    {
+        long tick = now / TICK_MILLIS;
+        if (lastTick < 0)
+        {
+            lastTick = tick - 1;
+        }
+
+        // Visit each slot at most once per sweep, even after a long pause
+        long first = Math.max(lastTick + 1, tick - WHEEL_SLOTS + 1);
+        lastTick = tick;
+        for (long t = first; t <= tick; t++)
+        {
+            Queue<ActiveLock> slot = wheel[(int) (t % WHEEL_SLOTS)];
+            List<ActiveLock> due = new ArrayList<ActiveLock>();
+            for (ActiveLock lock = slot.poll();
+                 lock != null;
+                 lock = slot.poll())
+            {
+                due.add(lock);
+            }
+
+            for (ActiveLock entry : due)
+            {
+                ConcurrentMap<String, ActiveLock> locks =
+                    byRepository.get(entry.repository);
+                ActiveLock current =
+                    (locks == null) ? null : locks.get(entry.path);
+                if (current == null || !current.tokenId.equals(entry.tokenId))
+                {
+                    // Released, or replaced by a new lock with its own
+                    // wheel entry
+                    continue;
+                }
+                if (current.isExpired(now))
+                {
+                    if (locks.remove(entry.path, current))
+                    {
+                        forget(current);
+                        expirations.incrementAndGet();
+                    }
+                    else
+                    {
+                        // Refreshed or released at this moment; look again
+                        // on the next tick
+                        wheel[(int) ((tick + 1) % WHEEL_SLOTS)].add(entry);
+                    }
+                }
+                else
+                {
+                    schedule(current);
+                }
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Append the changes made since the last call to the journal file,
+     * compacting the journal first if it has grown well beyond the set of
+     * live locks.  Only called on the sweeper thread, or before it starts.
+     */
+    private void writeJournal()
+    {
+        if (journal == null)
+        {
+            pendingJournal.clear();
+            return;
+        }
+        if (pendingJournal.isEmpty())
+        {
+            return;
+        }
+
+        try
+        {
+            if (journalRecords > COMPACT_MIN_RECORDS
+                && journalRecords > COMPACT_FACTOR * lockCount())
+            {
+                // The snapshot covers everything that is pending
+                pendingJournal.clear();
+                compact();
+                return;
+            }
+
+            Writer out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(journal, true), UTF_8));
+            try
+            {
+                for (String record = pendingJournal.poll();
+                     record != null;
+                     record = pendingJournal.poll())
+                {
+                    out.write(record);
+                    out.write('\n');
+                    journalRecords++;
+                }
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        catch (IOException e)
+        {
+            log.error("unable to write WebDAV lock journal " + journal, e);
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Replace the journal with a snapshot of the live locks.
+     */
+    private void compact()
+        throws IOException
+    {
+        File temp = new File(journal.getPath() + ".tmp");
+        Writer out = new BufferedWriter(new OutputStreamWriter(
+            new FileOutputStream(temp), UTF_8));
+        int records = 0;
+        try
+        {
+            for (ConcurrentMap<String, ActiveLock> locks
+                : byRepository.values())
+            {
+                for (ActiveLock lock : locks.values())
+                {
+                    out.write(lock.toJournal());
+                    out.write('\n');
+                    records++;
+                }
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+
+        if (!temp.renameTo(journal))
+        {
+            journal.delete();
+            if (!temp.renameTo(journal))
+            {
+                throw new IOException("cannot replace " + journal);
+            }
+        }
+        journalRecords = records;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Reload the locks that were live when the server last stopped.
+     */
+    private void restore()
+    {
+        Map<String, ActiveLock> live = new LinkedHashMap<String, ActiveLock>();
+        if (journal.exists())
+        {
+            try
+            {
+                BufferedReader in = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(journal), UTF_8));
+                try
+                {
+                    for (String line = in.readLine();
+                         line != null;
+                         line = in.readLine())
+                    {
+                        if (line.startsWith(UNLOCK + SEPARATOR))
+                        {
+                            live.remove(line.substring(UNLOCK.length() + 1));
+                        }
+                        else if (line.startsWith(LOCK + SEPARATOR))
+                        {
+                            ActiveLock lock = ActiveLock.fromJournal(line);
+                            if (lock != null)
+                            {
+                                live.put(lock.tokenId, lock);
+                            }
+                        }
+                    }
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+            catch (IOException e)
+            {
+                log.error("unable to read WebDAV lock journal " + journal, e);
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        for (ActiveLock lock : live.values())
+        {
+            if (!lock.isExpired(now)
+                && locksFor(lock.repository).putIfAbsent(lock.path, lock)
+                    == null)
+            {
+                byToken.put(lock.tokenId, lock);
+                schedule(lock);
+            }
+        }
+        log.info("restored " + lockCount() + " WebDAV locks from " + journal);
+
+        try
+        {
+            compact();
+        }
+        catch (IOException e)
+        {
+            log.error("unable to compact WebDAV lock journal " + journal, e);
+        }
+    }
+
+
+    //~ Nested classes ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * An immutable record of a lock.  Refreshing a lock replaces its record
+     * with a new one carrying the same token.
+     */
+    private static class ActiveLock
+    {
+        // ----------------------------------------------------------
+        public ActiveLock(String repository, String path, String tokenId,
+            LockInfo info, long timeoutSeconds, long from)
+        {
+            this.repository = repository;
+            this.path = path;
+            this.tokenId = tokenId;
+            this.lockedByUser = info.lockedByUser;
+            this.scope = info.scope;
+            this.type = info.type;
+            this.depth = info.depth;
+            this.timeoutSeconds = timeoutSeconds;
+            this.from = from;
+            this.expiresAt = from + timeoutSeconds * 1000;
+        }
+
+
+        // ----------------------------------------------------------
+        public ActiveLock refreshedAt(long now)
+        {
+            return new ActiveLock(
+                repository, path, tokenId, info(), timeoutSeconds, now);
+        }
+
+
+        // ----------------------------------------------------------
+        public boolean isExpired(long now)
+        {
+            return now >= expiresAt;
+        }
+
+
+        // ----------------------------------------------------------
+        public LockInfo info()
+        {
+            LockInfo info = new LockInfo(scope, type, lockedByUser, depth);
+            info.lockedByUser = lockedByUser;
+            return info;
+        }
+
+
+        // ----------------------------------------------------------
+        public LockToken token()
+        {
+            LockToken token = new LockToken(
+                tokenId, info(), new LockTimeout(timeoutSeconds));
+            token.setFrom(new Date(from));
+            return token;
+        }
+
+
+        // ----------------------------------------------------------
+        public String toJournal()
+        {
+            return LOCK + SEPARATOR + tokenId
+                + SEPARATOR + encode(repository)
+                + SEPARATOR + encode(path)
+                + SEPARATOR + encode(lockedByUser)
+                + SEPARATOR + scope
+                + SEPARATOR + type
+                + SEPARATOR + depth
+                + SEPARATOR + timeoutSeconds
+                + SEPARATOR + from;
+        }
+
+
+        // ----------------------------------------------------------
+        public static ActiveLock fromJournal(String line)
+        {
+            String[] fields = line.split(SEPARATOR, -1);
+            try
+            {
+                LockInfo info = new LockInfo(
+                    valueOf(LockInfo.LockScope.class, fields[5]),
+                    valueOf(LockInfo.LockType.class, fields[6]),
+                    decode(fields[4]),
+                    valueOf(LockInfo.LockDepth.class, fields[7]));
+                info.lockedByUser = decode(fields[4]);
+                return new ActiveLock(decode(fields[2]), decode(fields[3]),
+                    fields[1], info, Long.parseLong(fields[8]),
+                    Long.parseLong(fields[9]));
+            }
+            catch (RuntimeException e)
+            {
+                log.warn("ignoring bad WebDAV lock journal record: " + line);
+                return null;
+            }
+        }
+
+
+        // ----------------------------------------------------------
+        private static <E extends Enum<E>> E valueOf(
+            Class<E> type, String name)
+        {
+            return "null".equals(name) ? null : Enum.valueOf(type, name);
+        }
+
+
+        // ----------------------------------------------------------
+        private static String encode(String value)
+        {
+            try
+            {
+                return (value == null)
+                    ? ""
+                    : URLEncoder.encode(value, UTF_8);
+            }
+            catch (UnsupportedEncodingException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+
+
+        // ----------------------------------------------------------
+        private static String decode(String value)
+        {
+            try
+            {
+                return (value.length() == 0)
+                    ? null
+                    : URLDecoder.decode(value, UTF_8);
+            }
+            catch (UnsupportedEncodingException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+
+
+        //~ Instance/static variables .........................................
+
+        public final String repository;
+        public final String path;
+        public final String tokenId;
+        public final String lockedByUser;
+        public final LockInfo.LockScope scope;
+        public final LockInfo.LockType type;
+        public final LockInfo.LockDepth depth;
+        public final long timeoutSeconds;
+        public final long from;
+        public final long expiresAt;
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private final File journal;
+    private final long maxLockSeconds;
+
+    /** Locks by lower-case path, in a separate map for each work tree. */
+    private final ConcurrentMap<String, ConcurrentMap<String, ActiveLock>>
+        byRepository =
+            new ConcurrentHashMap<String, ConcurrentMap<String, ActiveLock>>();
+
+    /** The first record of each live lock, to find it from its token. */
+    private final ConcurrentMap<String, ActiveLock> byToken =
+        new ConcurrentHashMap<String, ActiveLock>();
+
+    private final Queue<ActiveLock>[] wheel;
+    private volatile long lastTick = -1;
+
+    private final Queue<String> pendingJournal =
+        new ConcurrentLinkedQueue<String>();
+    private int journalRecords;
+
+    private final ScheduledExecutorService sweeper;
+
+    private final AtomicLong granted = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+
+    private static WebDAVLockManager sharedManager;
+
+    private static final long TICK_MILLIS = 1000;
+    private static final int WHEEL_SLOTS = 512;
+    private static final int COMPACT_MIN_RECORDS = 1000;
+    private static final int COMPACT_FACTOR = 4;
+
+    private static final String LOCK = "LOCK";
+    private static final String UNLOCK = "UNLOCK";
+    private static final String SEPARATOR = "\t";
+    private static final String UTF_8 = "UTF-8";
+
+    static Logger log = Logger.getLogger(WebDAVLockManager.class);
+}
@@ -0,0 +1,137 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.core.webdav;
+
+import java.io.File;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+import org.webcat.core.FileUtilities;
+import com.bradmcevoy.http.LockInfo;
+import com.bradmcevoy.http.LockResult;
+import com.bradmcevoy.http.LockTimeout;
+
+// -------------------------------------------------------------------------
+/**
+ *  Test class for WebDAVLockManager.  It lives in this package, rather than
+ *  in org.webcat.core.tests, because WebDAV paths and resources can only
+ *  be created here.
+ *
+ *  @author  Stephen Edwards
+ */
+public class WebDAVLockManagerTest
+extends com.codefab.wounittest.WOUTTestCase
+{
+    //~ Test case setup .......................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Create an empty working copy and an in-memory lock manager.
+     * @throws Exception
+     */
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        workTree = File.createTempFile( "WebDAVLockManagerTest", "" );
+        workTree.delete();
+        workTree.mkdirs();
+        repository = Git.init().setDirectory( workTree ).call()
+            .getRepository();
+        resource = new FileResource( null,
+            new DAVPath( repository, "/Foo.java" ), repository );
+        manager = new WebDAVLockManager( null, 60 );
+    }
+
+
+    // ----------------------------------------------------------
+    protected void tearDown()
+        throws Exception
+    {
+        repository.close();
+        FileUtilities.deleteDirectory( workTree );
+        super.tearDown();
+    }
+
+
+    //~ Test cases ............................................................
+
+    public void testLockAndUnlock()
+        throws Exception
+    {
+        String token = lock();
+        assertEquals( 1, manager.lockCount() );
+        assertEquals( token, manager.getCurrentToken( resource ).tokenId );
+        manager.unlock( token, resource );
+        assertEquals( 0, manager.lockCount() );
+        assertNull( manager.getCurrentToken( resource ) );
+    }
+
+    public void testLockRefreshUnlock()
+        throws Exception
+    {
+        String token = lock();
+        assertTrue( manager.refresh( token, resource ).isSuccessful() );
+        assertTrue( manager.refresh( token, resource ).isSuccessful() );
+        assertEquals( 1, manager.lockCount() );
+        manager.unlock( token, resource );
+        assertEquals( 0, manager.lockCount() );
+        assertNull( manager.getCurrentToken( resource ) );
+    }
+
+    public void testConflictingLock()
+        throws Exception
+    {
+        String token = lock();
+        LockResult second = manager.lock(
+            new LockTimeout( 60L ), lockInfo(), resource );
+        assertFalse( second.isSuccessful() );
+        assertEquals( 1, manager.lockCount() );
+        manager.unlock( token, resource );
+        assertEquals( 0, manager.lockCount() );
+    }
+
+
+    //~ Private methods .......................................................
+
+    // ----------------------------------------------------------
+    private String lock()
+    {
+        LockResult result = manager.lock(
+            new LockTimeout( 60L ), lockInfo(), resource );
+        assertTrue( result.isSuccessful() );
+        return result.getLockToken().tokenId;
+    }
+
+
+    // ----------------------------------------------------------
+    private LockInfo lockInfo()
+    {
+        return new LockInfo( LockInfo.LockScope.EXCLUSIVE,
+            LockInfo.LockType.WRITE, "user", LockInfo.LockDepth.ZERO );
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private File workTree;
+    private Repository repository;
+    private AbstractFSResource resource;
+    private WebDAVLockManager manager;
+}
@@ -22,6 +22,8 @@
 package org.webcat.core.webdav;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import org.eclipse.jgit.lib.Repository;
 import org.webcat.core.EOBase;
 import org.webcat.core.EntityRequestInfo;
@@ -35,6 +37,7 @@ import com.ettrema.http.fs.LockManager;
 import com.ettrema.http.fs.NullSecurityManager;
 import com.webobjects.appserver.WORequest;
 import com.webobjects.eocontrol.EOEditingContext;
+import er.extensions.foundation.ERXProperties;
 
 //-------------------------------------------------------------------------
 /**
@@ -52,8 +55,13 @@ public class WorkingCopyResourceFactory implements ResourceFactory
     // ----------------------------------------------------------
     public WorkingCopyResourceFactory()
     {
-        lockManager = new FileBasedLockManager();
+        lockManager = WebDAVLockManager.manager();
         securityManager = new NullSecurityManager();
+        metadataCache = new MetadataCache(
+            ERXProperties.longForKeyWithDefault(
+                "WebDAV.metadataCacheSeconds", 5) * 1000,
+            ERXProperties.intForKeyWithDefault(
+                "WebDAV.metadataCacheDirectories", 1000));
     }
 
 
@@ -235,6 +243,84 @@ public class WorkingCopyResourceFactory implements ResourceFactory
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * Creates resources for all of the children of a directory, from a
+     * single (possibly cached) scan of the directory.
+     *
+     * @param dir the directory
+     * @param workingCopy the working copy containing the directory
+     * @return the resources for its children
+     */
+    /*package*/ List<AbstractFSResource> resolveChildren(DAVPath dir,
+            Repository workingCopy)
+    {
+        List<AbstractFSResource> children = new ArrayList<AbstractFSResource>();
+        for (MetadataCache.FileInfo info : metadataCache.children(dir))
+        {
+            children.add(resourceFor(
+                    new DAVPath(dir, info.name), workingCopy, info));
+        }
+        return children;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Creates the resource for a child of a directory, using the cached
+     * scan of the directory when there is one.  Otherwise, only the child
+     * itself is read, so that looking up each of many new files (as a bulk
+     * upload does) does not rescan the whole directory every time.
+     *
+     * @param dir the directory
+     * @param name the name of the child
+     * @param workingCopy the working copy containing the directory
+     * @return the resource, or null if the child does not exist
+     */
+    /*package*/ AbstractFSResource resolveChild(DAVPath dir, String name,
+            Repository workingCopy)
+    {
+        DAVPath path = new DAVPath(dir, name);
+        MetadataCache.FileInfo info = metadataCache.cachedChild(dir, name);
+        if (info == null)
+        {
+            // No listing is cached, or the child is not in it but may have
+            // been created since
+            info = MetadataCache.FileInfo.read(path.toFile());
+        }
+
+        return (info == null) ? null : resourceFor(path, workingCopy, info);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Discards cached metadata for a file that is being created, changed,
+     * moved, or deleted.
+     *
+     * @param path the path of the file
+     */
+    /*package*/ void invalidate(DAVPath path)
+    {
+        metadataCache.invalidate(path);
+    }
+
+
+    // ----------------------------------------------------------
+    private AbstractFSResource resourceFor(DAVPath path,
+            Repository workingCopy, MetadataCache.FileInfo info)
+    {
+        if (info.directory)
+        {
+            return new DirectoryResource(this, path, workingCopy, null, info);
+        }
+        else
+        {
+            return new FileResource(this, path, workingCopy, info);
+        }
+    }
+
+
     private class WorkingCopyRequestInfo
     {
         public EOBase object;
@@ -247,4 +333,5 @@ public class WorkingCopyResourceFactory implements ResourceFactory
 
     private LockManager lockManager;
     private SecurityManager securityManager;
+    private MetadataCache metadataCache;
 }
@@ -0,0 +1,335 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.woextensions;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Logger;
+import er.extensions.foundation.ERXProperties;
+
+//-------------------------------------------------------------------------
+/**
+ * A low-overhead alternative to {@link ResourceCounter} for resources
+ * that are allocated on hot paths, such as editing contexts.
+ * <p>
+ * Each call to {@link #allocate(Object)} returns a {@link Token} that
+ * the resource keeps and hands back to {@link #deallocate(Token)} when
+ * it is disposed.  Tokens are kept in a concurrent identity-keyed
+ * registry, so allocation and deallocation never take a global lock.
+ * An allocation site stack trace is only captured for one in every
+ * <code>sampleRate</code> allocations (set with the property
+ * <code>LeakTracker.<i>name</i>.sampleRate</code>, or
+ * <code>LeakTracker.sampleRate</code> for all trackers).
+ * </p><p>
+ * Each token is also a phantom reference to its resource.  When a
+ * resource is garbage collected without ever being deallocated, its
+ * token is reported as a leak the next time the tracker is used.
+ * </p>
+ *
+ * @author  Stephen Edwards
+ */
+public class LeakTracker
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Create a new tracker, using the configured sample rate.
+     * @param name The name of this tracker, used in log messages
+     */
+    public LeakTracker(String name)
+    {
+        this(name, ERXProperties.intForKeyWithDefault(
+            "LeakTracker." + name + ".sampleRate",
+            ERXProperties.intForKeyWithDefault(
+                "LeakTracker.sampleRate", DEFAULT_SAMPLE_RATE)));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Create a new tracker.
+     * @param name       The name of this tracker, used in log messages
+     * @param sampleRate Capture an allocation stack for one in this many
+     *                   allocations (1 captures all, 0 captures none)
+     */
+    public LeakTracker(String name, int sampleRate)
+    {
+        this.name = name;
+        this.sampleRate = Math.max(0, sampleRate);
+        this.log = Logger.getLogger(
+            this.getClass().getName() + "." + name);
+    }
+
+
+    //~ Public Nested Classes .................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Records a single allocation.  Resources must keep a strong
+     * reference to their token and pass it to {@link #deallocate(Token)}
+     * when they are disposed.
+     */
+    public static class Token
+        extends PhantomReference<Object>
+    {
+        // ----------------------------------------------------------
+        private Token(
+            Object resource, ReferenceQueue<Object> queue, String site)
+        {
+            super(resource, queue);
+            this.type = resource.getClass().getSimpleName();
+            this.identity = System.identityHashCode(resource);
+            this.site = site;
+        }
+
+
+        // ----------------------------------------------------------
+        /**
+         * Get the allocation site recorded for this token.
+         * @return The allocation stack trace, or null if this allocation
+         *         was not sampled
+         */
+        public String site()
+        {
+            return site;
+        }
+
+
+        // ----------------------------------------------------------
+        public String toString()
+        {
+            return type + " : " + identity;
+        }
+
+
+        //~ Instance/static variables .........................................
+
+        private final String type;
+        private final int identity;
+        private final String site;
+        private final AtomicBoolean released = new AtomicBoolean();
+    }
+
+
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Record the allocation of a resource.
+     * @param resource The newly allocated resource
+     * @return A token that must be passed to {@link #deallocate(Token)}
+     */
+    public Token allocate(Object resource)
+    {
+        reclaimCollected();
+        long count = allocCount.incrementAndGet();
+        String site = null;
+        int rate = sampleRate;
+        if (rate > 0 && count % rate == 0)
+        {
+            site = ResourceCounter.stackTrace(ResourceCounter.stackTraceHere(
+                TRIM_FRAMES, ResourceCounter.MAX_FRAMES));
+        }
+        Token token = new Token(resource, queue, site);
+        active.put(token, Boolean.TRUE);
+        siteCounter(site).incrementAndGet();
+        return token;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Record that a resource has been disposed.  Deallocating the same
+     * token more than once is harmless.
+     * @param token The token returned by {@link #allocate(Object)}
+     * @return True if the token was active, or false if it had already
+     *         been deallocated
+     */
+    public boolean deallocate(Token token)
+    {
+        if (token == null || !token.released.compareAndSet(false, true))
+        {
+            if (log.isDebugEnabled())
+            {
+                log.debug("repeated deallocation of " + token,
+                    new Exception("from here"));
+            }
+            return false;
+        }
+        release(token);
+        deallocCount.incrementAndGet();
+        token.clear();
+        return true;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the total number of allocations recorded by this tracker.
+     * @return The number of allocations
+     */
+    public long allocationCount()
+    {
+        return allocCount.get();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the number of resources that have been allocated but not yet
+     * deallocated or garbage collected.
+     * @return The number of live resources
+     */
+    public int activeCount()
+    {
+        return active.size();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the number of resources that were garbage collected without
+     * being deallocated.
+     * @return The number of leaks detected so far
+     */
+    public long leakCount()
+    {
+        return leakCount.get();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Log a summary of outstanding allocations, grouped by sampled
+     * allocation site.
+     */
+    public void dumpLeaks()
+    {
+        reclaimCollected();
+        log.info("CSV2:" + name
+            + "," + active.size()
+            + "," + allocCount.get()
+            + "," + deallocCount.get()
+            + "," + leakCount.get());
+        for (Map.Entry<String, AtomicInteger> pair : sites.entrySet())
+        {
+            int count = pair.getValue().get();
+            if (count > 5)
+            {
+                log.info("CSV3:" + name
+                    + "," + pair.getKey().hashCode()
+                    + "," + count
+                    + "\n" + pair.getKey());
+            }
+        }
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    private AtomicInteger siteCounter(String site)
+    {
+        String key = (site == null) ? UNSAMPLED : site;
+        AtomicInteger counter = sites.get(key);
+        if (counter == null)
+        {
+            AtomicInteger newCounter = new AtomicInteger();
+            counter = sites.putIfAbsent(key, newCounter);
+            if (counter == null)
+            {
+                counter = newCounter;
+            }
+        }
+        return counter;
+    }
+
+
+    // ----------------------------------------------------------
+    private void release(Token token)
+    {
+        active.remove(token);
+        siteCounter(token.site).decrementAndGet();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Drain tokens for resources that have been garbage collected,
+     * reporting any that were never deallocated.
+     */
+    private void reclaimCollected()
+    {
+        for (int i = 0; i < MAX_RECLAIM_PER_CALL; i++)
+        {
+            Reference<?> ref = queue.poll();
+            if (ref == null)
+            {
+                break;
+            }
+            Token token = (Token)ref;
+            if (token.released.compareAndSet(false, true))
+            {
+                release(token);
+                long leaks = leakCount.incrementAndGet();
+                if (token.site != null)
+                {
+                    log.error("leakinfo: " + name + " " + token
+                        + " garbage collected without dispose() "
+                        + "(leak " + leaks + "), allocated at\n"
+                        + token.site);
+                }
+                else if (log.isInfoEnabled())
+                {
+                    log.info("leakinfo: " + name + " " + token
+                        + " garbage collected without dispose() "
+                        + "(leak " + leaks + ")");
+                }
+            }
+        }
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private final String name;
+    private final int sampleRate;
+    private final Logger log;
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+    private final Map<Token, Boolean> active =
+        new ConcurrentHashMap<Token, Boolean>();
+    private final ConcurrentHashMap<String, AtomicInteger> sites =
+        new ConcurrentHashMap<String, AtomicInteger>();
+    private final AtomicLong allocCount = new AtomicLong();
+    private final AtomicLong deallocCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+
+    private static final int DEFAULT_SAMPLE_RATE = 100;
+    private static final int TRIM_FRAMES = 2;
+    private static final int MAX_RECLAIM_PER_CALL = 16;
+    private static final String UNSAMPLED = "(allocation site not sampled)";
+}
@@ -0,0 +1,280 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.woextensions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Logger;
+import er.extensions.foundation.ERXProperties;
+
+//-------------------------------------------------------------------------
+/**
+ * Controls how much diagnostic information {@link WCObjectStoreCoordinator}
+ * gathers about its lock() and unlock() calls, and keeps a registry of
+ * the per-coordinator {@link LockStatistics} so that they can be shown
+ * on an admin page.
+ * <p>
+ * The mode is set with the property
+ * <code>WCObjectStoreCoordinator.lockDiagnostics</code>, which may be
+ * <code>off</code>, <code>sampled</code> (the default), or
+ * <code>full</code>.  In sampled mode, a stack is captured for one in
+ * every <code>WCObjectStoreCoordinator.lockDiagnostics.sampleRate</code>
+ * acquisitions, and for any acquisition that waits or holds the lock
+ * longer than
+ * <code>WCObjectStoreCoordinator.lockDiagnostics.thresholdMillis</code>.
+ * Full mode keeps a complete record of every lock holder and waiter,
+ * with stacks, which is expensive and only meant for tracking down
+ * deadlocks.
+ * </p>
+ *
+ * @author  Stephen Edwards
+ */
+public class LockDiagnostics
+{
+    //~ Public Constants ......................................................
+
+    // ----------------------------------------------------------
+    /**
+     * The level of lock diagnostics to collect.
+     */
+    public static enum Mode
+    {
+        /** Only the nesting check is performed; no counters or stacks. */
+        OFF,
+        /** Contention counters, plus occasional stack samples. */
+        SAMPLED,
+        /** Full lock/queue records with a stack for every acquisition. */
+        FULL
+    }
+
+
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * This class only has static methods.
+     */
+    private LockDiagnostics()
+    {
+        // Nothing to construct
+    }
+
+
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Get the current diagnostics mode.
+     * @return The mode
+     */
+    public static Mode mode()
+    {
+        return mode;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Change the diagnostics mode at runtime.  Locks that are already
+     * held when the mode changes are released using the bookkeeping
+     * that was in effect when they were acquired.
+     * @param newMode The new mode
+     */
+    public static void setMode(Mode newMode)
+    {
+        if (newMode == null)
+        {
+            newMode = Mode.SAMPLED;
+        }
+        if (newMode != mode)
+        {
+            log.info("lock diagnostics mode changed from " + mode
+                + " to " + newMode);
+            mode = newMode;
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the sampling rate used in {@link Mode#SAMPLED} mode.
+     * @return One stack is captured for this many acquisitions (0 disables
+     *         rate-based sampling)
+     */
+    public static int sampleRate()
+    {
+        return sampleRate;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the sampling rate used in {@link Mode#SAMPLED} mode.
+     * @param rate One stack is captured for this many acquisitions (0
+     *             disables rate-based sampling)
+     */
+    public static void setSampleRate(int rate)
+    {
+        sampleRate = Math.max(0, rate);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the wait/hold threshold used in {@link Mode#SAMPLED} mode.
+     * @return The threshold, in milliseconds
+     */
+    public static long thresholdMillis()
+    {
+        return thresholdMillis;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Set the wait/hold threshold used in {@link Mode#SAMPLED} mode.
+     * @param millis The threshold, in milliseconds
+     */
+    public static void setThresholdMillis(long millis)
+    {
+        thresholdMillis = Math.max(0, millis);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Determine whether the next acquisition should have its stack
+     * sampled.  This is always false unless the mode is
+     * {@link Mode#SAMPLED}.
+     * @return True if a stack should be captured
+     */
+    public static boolean shouldSample()
+    {
+        int rate = sampleRate;
+        return mode == Mode.SAMPLED
+            && rate > 0
+            && sampleCounter.incrementAndGet() % rate == 0;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Determine whether a wait or hold time exceeds the configured
+     * threshold.
+     * @param nanos The elapsed time, in nanoseconds
+     * @return True if the time is over the threshold
+     */
+    public static boolean overThreshold(long nanos)
+    {
+        return nanos / NANOS_PER_MILLI >= thresholdMillis;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Register the statistics for a coordinator so they can be found
+     * by {@link #allStatistics()}.
+     * @param stats The statistics to register
+     */
+    public static void register(LockStatistics stats)
+    {
+        statistics.put(stats.name(), stats);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Remove the statistics for a coordinator that has been disposed.
+     * @param stats The statistics to remove
+     */
+    public static void unregister(LockStatistics stats)
+    {
+        statistics.remove(stats.name());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the statistics for all live coordinators.
+     * @return A snapshot list of the registered statistics
+     */
+    public static List<LockStatistics> allStatistics()
+    {
+        return new ArrayList<LockStatistics>(statistics.values());
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the statistics for a specific coordinator by name.
+     * @param name The coordinator's name
+     * @return The statistics, or null if there is no such coordinator
+     */
+    public static LockStatistics statisticsFor(String name)
+    {
+        return statistics.get(name);
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    private static Mode modeFromProperty(String value)
+    {
+        if (value != null)
+        {
+            try
+            {
+                return Mode.valueOf(value.trim().toUpperCase());
+            }
+            catch (IllegalArgumentException e)
+            {
+                log.error("unrecognized value for " + PROPERTY_PREFIX
+                    + ": \"" + value + "\", using sampled");
+            }
+        }
+        return Mode.SAMPLED;
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private static final String PROPERTY_PREFIX =
+        "WCObjectStoreCoordinator.lockDiagnostics";
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    static Logger log = Logger.getLogger(LockDiagnostics.class);
+
+    private static volatile Mode mode = modeFromProperty(
+        ERXProperties.stringForKey(PROPERTY_PREFIX));
+    private static volatile int sampleRate = Math.max(0,
+        ERXProperties.intForKeyWithDefault(
+            PROPERTY_PREFIX + ".sampleRate", 1000));
+    private static volatile long thresholdMillis = Math.max(0,
+        ERXProperties.intForKeyWithDefault(
+            PROPERTY_PREFIX + ".thresholdMillis", 10000));
+
+    private static final AtomicLong sampleCounter = new AtomicLong();
+    private static final Map<String, LockStatistics> statistics =
+        new ConcurrentHashMap<String, LockStatistics>();
+}
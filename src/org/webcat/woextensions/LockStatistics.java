@@ -0,0 +1,349 @@
+/*==========================================================================*\
+ |  Copyright (C) 2026 Virginia Tech
+ |
+ |  This file is part of Web-CAT.
+ |
+ |  Web-CAT is free software; you can redistribute it and/or modify
+ |  it under the terms of the GNU Affero General Public License as published
+ |  by the Free Software Foundation; either version 3 of the License, or
+ |  (at your option) any later version.
+ |
+ |  Web-CAT is distributed in the hope that it will be useful,
+ |  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ |  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ |  GNU General Public License for more details.
+ |
+ |  You should have received a copy of the GNU Affero General Public License
+ |  along with Web-CAT; if not, see <http://www.gnu.org/licenses/>.
+\*==========================================================================*/
+
+package org.webcat.woextensions;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//-------------------------------------------------------------------------
+/**
+ * Lock-free contention counters for a single object store coordinator.
+ * Wait and hold times are kept in power-of-four millisecond histograms,
+ * and the number of threads already waiting when a new lock request
+ * arrives is kept in a power-of-two queue depth histogram.  All updates
+ * are simple atomic operations, so these counters are safe to maintain
+ * on every lock() call and to read from an admin page at any time.
+ *
+ * @author  Stephen Edwards
+ */
+public class LockStatistics
+{
+    //~ Constructors ..........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Create a new, empty set of counters.
+     * @param name The name of the coordinator these counters describe
+     */
+    public LockStatistics(String name)
+    {
+        this.name = name;
+    }
+
+
+    //~ Public Methods ........................................................
+
+    // ----------------------------------------------------------
+    /**
+     * Get the name of the coordinator these statistics describe.
+     * @return The name
+     */
+    public String name()
+    {
+        return name;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Record that a thread has started waiting for the lock.
+     * @return The number of threads that were already waiting
+     */
+    public int lockRequested()
+    {
+        int depth = waiting.getAndIncrement();
+        queueDepths.incrementAndGet(depthBucket(depth));
+        return depth;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Record that a waiting thread has acquired the lock.
+     * @param waitNanos How long the thread waited, in nanoseconds
+     */
+    public void lockAcquired(long waitNanos)
+    {
+        waiting.decrementAndGet();
+        acquisitions.incrementAndGet();
+        long millis = waitNanos / NANOS_PER_MILLI;
+        totalWaitMillis.addAndGet(millis);
+        updateMax(maxWaitMillis, millis);
+        waitTimes.incrementAndGet(timeBucket(millis));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Record that a lock request was abandoned because lock() threw
+     * an exception.
+     */
+    public void lockAbandoned()
+    {
+        waiting.decrementAndGet();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Record that a thread has released the lock.
+     * @param holdNanos How long the lock was held, in nanoseconds
+     */
+    public void lockReleased(long holdNanos)
+    {
+        releases.incrementAndGet();
+        long millis = holdNanos / NANOS_PER_MILLI;
+        totalHoldMillis.addAndGet(millis);
+        updateMax(maxHoldMillis, millis);
+        holdTimes.incrementAndGet(timeBucket(millis));
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the number of threads currently waiting for this lock.
+     * @return The current queue depth
+     */
+    public int currentQueueDepth()
+    {
+        return waiting.get();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the total number of lock acquisitions recorded.
+     * @return The number of acquisitions
+     */
+    public long acquisitions()
+    {
+        return acquisitions.get();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the total number of lock releases recorded.
+     * @return The number of releases
+     */
+    public long releases()
+    {
+        return releases.get();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the mean time spent waiting for the lock, in milliseconds.
+     * @return The mean wait time
+     */
+    public long meanWaitMillis()
+    {
+        long count = acquisitions.get();
+        return count == 0 ? 0 : totalWaitMillis.get() / count;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the longest time spent waiting for the lock, in milliseconds.
+     * @return The maximum wait time
+     */
+    public long maxWaitMillis()
+    {
+        return maxWaitMillis.get();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the mean time the lock was held, in milliseconds.
+     * @return The mean hold time
+     */
+    public long meanHoldMillis()
+    {
+        long count = releases.get();
+        return count == 0 ? 0 : totalHoldMillis.get() / count;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the longest time the lock was held, in milliseconds.
+     * @return The maximum hold time
+     */
+    public long maxHoldMillis()
+    {
+        return maxHoldMillis.get();
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get a snapshot of the wait time histogram.  Bucket i counts
+     * waits shorter than 4^i ms; the last bucket holds everything longer.
+     * @return The bucket counts
+     */
+    public long[] waitHistogram()
+    {
+        return snapshot(waitTimes);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get a snapshot of the hold time histogram, using the same buckets
+     * as {@link #waitHistogram()}.
+     * @return The bucket counts
+     */
+    public long[] holdHistogram()
+    {
+        return snapshot(holdTimes);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get a snapshot of the queue depth histogram.  Bucket 0 counts
+     * requests that found no other waiters, and bucket i counts
+     * requests that found fewer than 2^i waiters.
+     * @return The bucket counts
+     */
+    public long[] queueDepthHistogram()
+    {
+        return snapshot(queueDepths);
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Get the labels for the time histogram buckets.
+     * @return The labels, in bucket order
+     */
+    public static String[] timeBucketLabels()
+    {
+        String[] labels = new String[TIME_BUCKETS];
+        long limit = 1;
+        for (int i = 0; i < TIME_BUCKETS - 1; i++)
+        {
+            labels[i] = "<" + limit + "ms";
+            limit *= 4;
+        }
+        labels[TIME_BUCKETS - 1] = ">=" + (limit / 4) + "ms";
+        return labels;
+    }
+
+
+    // ----------------------------------------------------------
+    /**
+     * Produce a compact one-line summary of these statistics.
+     * @return The summary
+     */
+    public String summary()
+    {
+        return acquisitions() + " locks, wait avg " + meanWaitMillis()
+            + "ms/max " + maxWaitMillis() + "ms, hold avg "
+            + meanHoldMillis() + "ms/max " + maxHoldMillis()
+            + "ms, queue " + currentQueueDepth();
+    }
+
+
+    // ----------------------------------------------------------
+    public String toString()
+    {
+        return name + ": " + summary();
+    }
+
+
+    //~ Private Methods .......................................................
+
+    // ----------------------------------------------------------
+    private static int timeBucket(long millis)
+    {
+        int bucket = 0;
+        long limit = 1;
+        while (bucket < TIME_BUCKETS - 1 && millis >= limit)
+        {
+            bucket++;
+            limit *= 4;
+        }
+        return bucket;
+    }
+
+
+    // ----------------------------------------------------------
+    private static int depthBucket(int depth)
+    {
+        int bucket = 0;
+        int limit = 1;
+        while (bucket < DEPTH_BUCKETS - 1 && depth >= limit)
+        {
+            bucket++;
+            limit *= 2;
+        }
+        return bucket;
+    }
+
+
+    // ----------------------------------------------------------
+    private static void updateMax(AtomicLong max, long value)
+    {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value))
+        {
+            current = max.get();
+        }
+    }
+
+
+    // ----------------------------------------------------------
+    private static long[] snapshot(AtomicLongArray array)
+    {
+        long[] result = new long[array.length()];
+        for (int i = 0; i < result.length; i++)
+        {
+            result[i] = array.get(i);
+        }
+        return result;
+    }
+
+
+    //~ Instance/static variables .............................................
+
+    private final String name;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong releases = new AtomicLong();
+    private final AtomicLong totalWaitMillis = new AtomicLong();
+    private final AtomicLong maxWaitMillis = new AtomicLong();
+    private final AtomicLong totalHoldMillis = new AtomicLong();
+    private final AtomicLong maxHoldMillis = new AtomicLong();
+    private final AtomicLongArray waitTimes =
+        new AtomicLongArray(TIME_BUCKETS);
+    private final AtomicLongArray holdTimes =
+        new AtomicLongArray(TIME_BUCKETS);
+    private final AtomicLongArray queueDepths =
+        new AtomicLongArray(DEPTH_BUCKETS);
+
+    private static final int TIME_BUCKETS = 9;
+    private static final int DEPTH_BUCKETS = 7;
+    private static final long NANOS_PER_MILLI = 1000000L;
+}
@@ -20,9 +20,8 @@
 
 package org.webcat.woextensions;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -51,7 +50,7 @@ public class ResourceCounter
     private final Logger log;
     private NSTimestamp nextDump;
 
-    private static final int MAX_FRAMES = 15;
+    static final int MAX_FRAMES = 15;
     private static final int MAX_FRAMES_EXAMINED = 32;
     private static final int TRIM_FRAMES = 2 + 1;
     private static final int PERIODIC_DUMP_HOURS = 1;
@@ -259,14 +258,14 @@ public class ResourceCounter
 
 
     // ----------------------------------------------------------
-    private RuntimeException stackTraceHere()
+    private static RuntimeException stackTraceHere()
     {
         return stackTraceHere(TRIM_FRAMES, MAX_FRAMES);
     }
 
 
     // ----------------------------------------------------------
-    private RuntimeException stackTraceHere(int trim, int size)
+    static RuntimeException stackTraceHere(int trim, int size)
     {
         RuntimeException e = new RuntimeException("here");
         StackTraceElement[] fullTrace = e.getStackTrace();
@@ -323,27 +322,19 @@ public class ResourceCounter
 
 
     // ----------------------------------------------------------
-    private String stackTrace()
+    private static String stackTrace()
     {
         return stackTrace(stackTraceHere(TRIM_FRAMES, MAX_FRAMES));
     }
 
 
     // ----------------------------------------------------------
-    private String stackTrace(Throwable t)
+    static String stackTrace(Throwable t)
     {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        try
-        {
-            PrintStream ps = new PrintStream(baos);
-            t.printStackTrace(ps);
-            ps.close();
-            baos.close();
-        }
-        catch (IOException e)
-        {
-            log.error(e);
-        }
-        return baos.toString();
+        StringWriter writer = new StringWriter();
+        PrintWriter out = new PrintWriter(writer);
+        t.printStackTrace(out);
+        out.close();
+        return writer.toString();
     }
 }
@@ -66,7 +66,7 @@ public class WCEC
     public WCEC(EOObjectStore os)
     {
         super(os);
-        counter.allocate(this);
+        leakToken = counter.allocate(this);
         setUndoManager(null);
         // setSharedEditingContext(null);
         if (log.isDebugEnabled())
@@ -78,7 +78,6 @@ public class WCEC
                 + "; at " + System.currentTimeMillis();
             log.debug(message, new Exception("from here"));
         }
-        active.incrementAndGet();
     }
 
 
@@ -287,8 +286,7 @@ public class WCEC
                     new Exception("EC dispose() with locks called from here"));
             }
         }
-        counter.deallocate(this);
-        active.decrementAndGet();
+        counter.deallocate(leakToken);
         super.dispose();
     }
 
@@ -327,14 +325,14 @@ public class WCEC
     // ----------------------------------------------------------
     public static int createdCount()
     {
-        return created.get();
+        return (int)counter.allocationCount();
     }
 
 
     // ----------------------------------------------------------
     public static int activeCount()
     {
-        return active.get();
+        return counter.activeCount();
     }
 
 
@@ -830,11 +828,11 @@ public class WCEC
 
     //~ Instance/static variables .............................................
 
-    private static final ResourceCounter counter =
-        new ResourceCounter(WCEC.class.getSimpleName());
+    private LeakTracker.Token leakToken;
+
+    private static final LeakTracker counter =
+        new LeakTracker(WCEC.class.getSimpleName());
 
-    private static final AtomicInteger created = new AtomicInteger();
-    private static final AtomicInteger active = new AtomicInteger();
     private static final AtomicInteger lockWarnings = new AtomicInteger();
     private static final int MAX_LOCK_WARNINGS = 1000;
 
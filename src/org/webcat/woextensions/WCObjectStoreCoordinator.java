@@ -48,6 +48,7 @@ public class WCObjectStoreCoordinator
     {
         super();
 //        counter.allocate(this);
+        LockDiagnostics.register(stats);
         if (log.isDebugEnabled())
         {
             log.debug("creating " + this); // , new Exception("from here"));
@@ -120,31 +121,38 @@ public class WCObjectStoreCoordinator
     @Override
     public void lock()
     {
-//            EOSharedEditingContext sharedEC =
-//                EOSharedEditingContext.defaultSharedEditingContext();
-//            if (sharedEC != null)
-//            {
-//                sharedEC.lock();
-//            }
-        LockRecord record = new LockRecord(this.toString());
-//        log.fatal("lock(): thread[" + Thread.currentThread().getName()
-//            + "] on " + this + " called here",
-//            new Exception("lock(): thread[" + Thread.currentThread().getName()
-//            + "] on " + this + " called here"));
-        synchronized (locks)
+        LockDiagnostics.Mode diagnostics = LockDiagnostics.mode();
+        LockRecord record = null;
+        if (diagnostics == LockDiagnostics.Mode.FULL)
         {
-            activeLogging =
-                record.preCheckout("lock", locks, queue, activeLogging);
+            record = new LockRecord(this.toString());
+            synchronized (locks)
+            {
+                activeLogging =
+                    record.preCheckout("lock", locks, queue, activeLogging);
+            }
         }
         {
             ThreadLockedObjectStore alreadyHolding = lockedStore.get();
             if (alreadyHolding != null && alreadyHolding.os != this)
             {
+                if (record != null)
+                {
+                    synchronized (locks)
+                    {
+                        queue.remove(record);
+                    }
+                }
                 log.fatal("!!!!! lock(): attempting to lock " + this
                     + " while already holding lock on " + alreadyHolding.os
-                    + "!!!!!", record.location);
-                log.fatal("!!!!! lock(): previous lock location",
-                    alreadyHolding.location);
+                    + "!!!!!", (record == null)
+                        ? new Exception("lock() called here")
+                        : record.location);
+                if (alreadyHolding.location != null)
+                {
+                    log.fatal("!!!!! lock(): previous lock location",
+                        alreadyHolding.location);
+                }
                 throw new IllegalStateException(
                     "WCObjectStoreCoordinator.lock() called to lock " + this
                         + " while already holding lock on "
@@ -152,102 +160,126 @@ public class WCObjectStoreCoordinator
                         + "Check log for more details.");
             }
         }
-//        String message = null;
-//        if (log.isDebugEnabled())
-//        {
-//            synchronized (this)
-//            {
-//                message = "object store; " + this
-//                    + "; by " + Thread.currentThread()
-//                    + "; at " + System.currentTimeMillis();
-//                log.debug("lock() attempt; "
-//                    + message,
-//                    new Exception("from here"));
-//                if (owners == null)
-//                {
-//                    initDebugFields();
-//                }
-//                else if (owners.size() > 0
-//                    && owners.get(owners.size() - 1) != Thread.currentThread())
-//                {
-//                    log.warn("This object store is already locked "
-//                        + "by another thread! Owners = " + owners);
-//                    String dump = "Existing locks from = "
-//                        + lockLocations.size();
-//                    for (String msg : lockLocations)
-//                    {
-//                        dump += "\n" + msg;
-//                    }
-//                    log.warn(dump);
-//                }
-//            }
-//        }
-        super.lock();
-        lockedStore.set(new ThreadLockedObjectStore(this, lockedStore.get()));
-        synchronized (locks)
+
+        boolean counting = diagnostics != LockDiagnostics.Mode.OFF;
+        long tryTime = 0L;
+        if (counting)
         {
-            activeLogging =
-                record.acquired("lock", locks, queue, activeLogging);
+            stats.lockRequested();
+            tryTime = System.nanoTime();
         }
-//        if (log.isDebugEnabled())
-//        {
-//            synchronized (this)
-//            {
-//                if (writer == null)
-//                {
-//                    initDebugFields();
-//                }
-//                writer.getBuffer().setLength(0);
-//                message = "lock() acquired; " + message;
-//                new Exception(message).printStackTrace(out);
-//                lockLocations.add(writer.toString());
-//                owners.add(Thread.currentThread());
-//                log.debug(message);
-//            }
-//        }
+        boolean acquired = false;
+        try
+        {
+            super.lock();
+            acquired = true;
+        }
+        finally
+        {
+            if (counting && !acquired)
+            {
+                stats.lockAbandoned();
+            }
+        }
+        long acquireTime = 0L;
+        Exception location = null;
+        if (counting)
+        {
+            acquireTime = System.nanoTime();
+            long wait = acquireTime - tryTime;
+            stats.lockAcquired(wait);
+            if (record != null)
+            {
+                synchronized (locks)
+                {
+                    activeLogging =
+                        record.acquired("lock", locks, queue, activeLogging);
+                }
+                location = record.location;
+            }
+            else if (LockDiagnostics.overThreshold(wait))
+            {
+                location = new Exception(threadTag()
+                    + " acquired lock on " + this + " after waiting "
+                    + (wait / NANOS_PER_MILLI) + "ms");
+                log.warn("lock(): slow acquisition, " + stats.summary(),
+                    location);
+            }
+            else if (LockDiagnostics.shouldSample())
+            {
+                location = new Exception(threadTag()
+                    + " acquired lock on " + this + " (sampled)");
+                if (log.isDebugEnabled())
+                {
+                    log.debug("lock(): sampled acquisition, "
+                        + stats.summary(), location);
+                }
+            }
+        }
+        lockedStore.set(new ThreadLockedObjectStore(
+            this, lockedStore.get(), diagnostics, acquireTime, location));
     }
 
     // ----------------------------------------------------------
     @Override
     public void unlock()
     {
+        ThreadLockedObjectStore holding = lockedStore.get();
+        LockDiagnostics.Mode diagnostics = LockDiagnostics.mode();
+        if (holding != null && holding.os == this)
+        {
+            // Release using the bookkeeping in place when the lock was taken
+            diagnostics = holding.mode;
+        }
+
         LockRecord record = null;
-//        log.fatal("unlock(): thread[" + Thread.currentThread().getName()
-//            + "] on " + this + " called here",
-//            new Exception("lock(): thread[" + Thread.currentThread().getName()
-//            + "] on " + this + " called here"));
-        synchronized (locks)
+        if (diagnostics == LockDiagnostics.Mode.FULL)
         {
-            record = findLock(locks);
-            if (record == null)
+            synchronized (locks)
             {
-                log.error("unlock(): thread ["
-                    + Thread.currentThread().getName() + "] attempting to "
-                    + " unlock " + this + " but is not in lock list!",
-                    new Exception("unlock() called from here"));
+                record = findLock(locks);
+                if (record == null)
+                {
+                    log.error("unlock(): thread ["
+                        + Thread.currentThread().getName() + "] attempting to "
+                        + " unlock " + this + " but is not in lock list!",
+                        new Exception("unlock() called from here"));
+                }
             }
         }
+        if (holding == null)
         {
-            ThreadLockedObjectStore alreadyHolding = lockedStore.get();
-            if (alreadyHolding == null)
-            {
-                log.fatal("!!!!! unlock(): attempting to unlock " + this
-                    + " while not holding lock"
-                    + "!!!!!");
-            }
-            else if (alreadyHolding.os != this)
-            {
-                log.fatal("!!!!! unlock(): attempting to unlock " + this
-                    + " while holding lock on " + alreadyHolding.os
-                    + "!!!!!");
-            }
-            else
+            log.fatal("!!!!! unlock(): attempting to unlock " + this
+                + " while not holding lock"
+                + "!!!!!");
+        }
+        else if (holding.os != this)
+        {
+            log.fatal("!!!!! unlock(): attempting to unlock " + this
+                + " while holding lock on " + holding.os
+                + "!!!!!");
+            holding = null;
+        }
+        else
+        {
+            // Must be holding == this, so clear it
+            lockedStore.set(holding.parent);
+        }
+        super.unlock();
+        if (holding != null && holding.mode != LockDiagnostics.Mode.OFF)
+        {
+            long held = System.nanoTime() - holding.acquireNanos;
+            stats.lockReleased(held);
+            if (record == null && LockDiagnostics.overThreshold(held))
             {
-                // Must be alreadyHolding == this, so clear it
-                lockedStore.set(alreadyHolding.parent);
+                log.warn("unlock(): " + threadTag() + " released " + this
+                    + " after holding it for " + (held / NANOS_PER_MILLI)
+                    + "ms, " + stats.summary(),
+                    (holding.location != null)
+                        ? holding.location
+                        : new Exception("unlock() called from here"));
             }
         }
-        super.unlock();
         if (record != null)
         {
             synchronized (locks)
@@ -284,30 +316,6 @@ public class WCObjectStoreCoordinator
                 }
             }
         }
-//        if (log.isDebugEnabled())
-//        {
-//            synchronized (this)
-//            {
-//                log.debug("unlock(); object store; " + this
-//                    + "; by " + Thread.currentThread()
-//                    + "; at " + System.currentTimeMillis()
-//                    // , new Exception("from here")
-//                );
-//                if (lockLocations == null)
-//                {
-//                    initDebugFields();
-//                }
-//                if (lockLocations.size() > 0)
-//                {
-//                    lockLocations.remove(lockLocations.size() - 1);
-//                    owners.remove(owners.size() - 1);
-//                }
-//                else
-//                {
-//                    log.error("no lock location to pop!");
-//                }
-//            }
-//        }
     }
 
 
@@ -320,6 +328,7 @@ public class WCObjectStoreCoordinator
             log.debug("dispose(): " + this);
         }
 //        counter.deallocate(this);
+        LockDiagnostics.unregister(stats);
         super.dispose();
     }
 
@@ -331,6 +340,17 @@ public class WCObjectStoreCoordinator
     }
 
 
+    // ----------------------------------------------------------
+    /**
+     * Get the lock contention counters for this coordinator.
+     * @return The lock statistics
+     */
+    public LockStatistics lockStatistics()
+    {
+        return stats;
+    }
+
+
     // ----------------------------------------------------------
     public static ThreadLockedObjectStore threadHasLockedStore()
     {
@@ -367,18 +387,24 @@ public class WCObjectStoreCoordinator
         public final Exception location;
         public final int count;
         public final ThreadLockedObjectStore parent;
+        public final LockDiagnostics.Mode mode;
+        public final long acquireNanos;
         public ThreadLockedObjectStore(WCObjectStoreCoordinator os,
             ThreadLockedObjectStore parent)
+        {
+            this(os, parent, LockDiagnostics.Mode.FULL, System.nanoTime(),
+                new Exception(threadTag() + " locked " + os + " here"));
+        }
+        public ThreadLockedObjectStore(WCObjectStoreCoordinator os,
+            ThreadLockedObjectStore parent, LockDiagnostics.Mode mode,
+            long acquireNanos, Exception location)
         {
             this.os = os;
             this.parent = parent;
             this.count = parent == null ? 1 : parent.count + 1;
-            ERXSession s = ERXSession.session();
-            location = new Exception("thread ["
-                + Thread.currentThread().getName()
-                + "]"
-                + (s == null ? "" : "[" + s.sessionID() + "]")
-                + " locked " + os + " here");
+            this.mode = mode;
+            this.acquireNanos = acquireNanos;
+            this.location = location;
         }
     }
 
@@ -537,6 +563,12 @@ public class WCObjectStoreCoordinator
             null, null, null, null, null, sec, earlier);
         return sec.value;
     }
+    private static String threadTag()
+    {
+        ERXSession s = ERXSession.session();
+        return "thread [" + Thread.currentThread().getName() + "]"
+            + (s == null ? "" : "[" + s.sessionID() + "]");
+    }
     private static LockRecord findLock(List<LockRecord> locks)
     {
         String owner = Thread.currentThread().getName();
@@ -588,6 +620,9 @@ public class WCObjectStoreCoordinator
         new java.util.concurrent.atomic.AtomicInteger();
     private final int storeId = maxId.incrementAndGet();
     private final AtomicInteger sourceCount = new AtomicInteger();
+    private final LockStatistics stats =
+        new LockStatistics("ObjectStore-" + storeId);
+    private static final long NANOS_PER_MILLI = 1000000L;
     private static ThreadLocal<ThreadLockedObjectStore> lockedStore =
         new ThreadLocal<ThreadLockedObjectStore>();
 